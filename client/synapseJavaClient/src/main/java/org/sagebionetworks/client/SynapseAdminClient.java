@@ -14,6 +14,8 @@ import org.sagebionetworks.repo.model.message.ChangeMessages;
 import org.sagebionetworks.repo.model.message.FireMessagesResult;
 import org.sagebionetworks.repo.model.message.PublishResults;
 import org.sagebionetworks.repo.model.IdList;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCount;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCounts;
@@ -51,6 +53,31 @@ public interface SynapseAdminClient extends SynapseClient {
 	 */
 	public RowMetadataResult getRowMetadata(MigrationType migrationType, Long limit, Long offset) throws SynapseException, JSONObjectAdapterException;
 	
+	/**
+	 * Get the number of rows and a checksum of their IDs and etags for a range of IDs (inclusive) of the given MigrationType
+	 * 
+	 * @param migrationType
+	 * @param minId
+	 * @param maxId
+	 * @return
+	 * @throws SynapseException
+	 * @throws JSONObjectAdapterException
+	 */
+	public MigrationRangeChecksum getChecksumForIdRange(MigrationType migrationType, Long minId, Long maxId) throws SynapseException, JSONObjectAdapterException;
+	
+	/**
+	 * Get the metadata for the rows with an ID in a range (inclusive) of the given MigrationType
+	 * 
+	 * @param migrationType
+	 * @param minId
+	 * @param maxId
+	 * @param limit
+	 * @return
+	 * @throws SynapseException
+	 * @throws JSONObjectAdapterException
+	 */
+	public RowMetadataResult getRowMetadataForIdRange(MigrationType migrationType, Long minId, Long maxId, Long limit) throws SynapseException, JSONObjectAdapterException;
+	
 	/**
 	 * Get the counts for all types
 	 * @return
@@ -88,6 +115,18 @@ public interface SynapseAdminClient extends SynapseClient {
 	 */
 	public BackupRestoreStatus startBackup(MigrationType migrationType, IdList ids) throws JSONObjectAdapterException, SynapseException;
 	
+	/**
+	 * Start a backup daemon task that writes the backup in the given format.
+	 * Only use BINARY when the destination stack can restore it.
+	 * @param migrationType
+	 * @param ids
+	 * @param format
+	 * @return
+	 * @throws JSONObjectAdapterException
+	 * @throws SynapseException
+	 */
+	public BackupRestoreStatus startBackup(MigrationType migrationType, IdList ids, BackupFormat format) throws JSONObjectAdapterException, SynapseException;
+	
 	/**
 	 * Start a restore daemon task
 	 * @param migrationType
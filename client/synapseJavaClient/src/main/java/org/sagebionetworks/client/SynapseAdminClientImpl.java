@@ -20,6 +20,8 @@ import org.sagebionetworks.repo.model.daemon.RestoreSubmission;
 import org.sagebionetworks.repo.model.message.ChangeMessages;
 import org.sagebionetworks.repo.model.message.FireMessagesResult;
 import org.sagebionetworks.repo.model.message.PublishResults;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCount;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCounts;
@@ -50,6 +52,8 @@ public class SynapseAdminClientImpl extends SynapseClientImpl implements Synapse
 	private static final String MIGRATION_COUNTS = MIGRATION + "/counts";
 	private static final String MIGRATION_ROWS = MIGRATION + "/rows";
 	private static final String MIGRATION_DELTA = MIGRATION + "/delta";
+	private static final String MIGRATION_RANGE_CHECKSUM = MIGRATION + "/rangechecksum";
+	private static final String MIGRATION_RANGE_ROWS = MIGRATION + "/rangerows";
 	private static final String MIGRATION_BACKUP = MIGRATION + "/backup";
 	private static final String MIGRATION_RESTORE = MIGRATION + "/restore";
 	private static final String MIGRATION_DELETE = MIGRATION + "/delete";
@@ -146,6 +150,24 @@ public class SynapseAdminClientImpl extends SynapseClientImpl implements Synapse
 		return results;
 	}
 	
+	public MigrationRangeChecksum getChecksumForIdRange(MigrationType migrationType, Long minId, Long maxId) throws SynapseException, JSONObjectAdapterException {
+		String uri = MIGRATION_RANGE_CHECKSUM + "?type=" + migrationType.name() + "&minId=" + minId + "&maxId=" + maxId;
+		JSONObject jsonObj = getSharedClientConnection().getJson(repoEndpoint, uri, getUserAgent());
+		JSONObjectAdapter adapter = new JSONObjectAdapterImpl(jsonObj);
+		MigrationRangeChecksum checksum = new MigrationRangeChecksum();
+		checksum.initializeFromJSONObject(adapter);
+		return checksum;
+	}
+	
+	public RowMetadataResult getRowMetadataForIdRange(MigrationType migrationType, Long minId, Long maxId, Long limit) throws SynapseException, JSONObjectAdapterException {
+		String uri = MIGRATION_RANGE_ROWS + "?type=" + migrationType.name() + "&minId=" + minId + "&maxId=" + maxId + "&limit=" + limit;
+		JSONObject jsonObj = getSharedClientConnection().getJson(repoEndpoint, uri, getUserAgent());
+		JSONObjectAdapter adapter = new JSONObjectAdapterImpl(jsonObj);
+		RowMetadataResult results = new RowMetadataResult();
+		results.initializeFromJSONObject(adapter);
+		return results;
+	}
+	
 	public RowMetadataResult getRowMetadataDelta(MigrationType migrationType, IdList ids) throws JSONObjectAdapterException, SynapseException {
 		String uri = MIGRATION_DELTA + "?type=" + migrationType.name();
 		String jsonStr = EntityFactory.createJSONStringForEntity(ids);
@@ -157,7 +179,14 @@ public class SynapseAdminClientImpl extends SynapseClientImpl implements Synapse
 	}
 	
 	public BackupRestoreStatus startBackup(MigrationType migrationType, IdList ids) throws JSONObjectAdapterException, SynapseException {
+		return startBackup(migrationType, ids, BackupFormat.XML);
+	}
+	
+	public BackupRestoreStatus startBackup(MigrationType migrationType, IdList ids, BackupFormat format) throws JSONObjectAdapterException, SynapseException {
 		String uri = MIGRATION_BACKUP + "?type=" + migrationType.name();
+		if (format != null) {
+			uri += "&format=" + format.name();
+		}
 		String jsonStr = EntityFactory.createJSONStringForEntity(ids);
 		JSONObject jsonObj = getSharedClientConnection().postJson(repoEndpoint, uri, jsonStr, getUserAgent(), null);
 		JSONObjectAdapter adapter = new JSONObjectAdapterImpl(jsonObj);
@@ -1,5 +1,7 @@
 package org.sagebionetworks.ids;
 
+import java.util.List;
+
 /**
  * 
  * @author jmhill
@@ -37,6 +39,14 @@ public interface IdGenerator {
 	 */
 	public Long generateNewId(TYPE type);
 	
+	/**
+	 * Generate a batch of new Ids.  The Ids are unique but not necessarily contiguous.
+	 * @param type
+	 * @param count The number of Ids to generate.
+	 * @return
+	 */
+	public List<Long> generateNewIds(TYPE type, int count);
+	
 	/**
 	 * Ensure that the given ID is reserved.  If the ID is not already reserved then, 
 	 * this method will reserve it and all values below it.
@@ -3,8 +3,12 @@ package org.sagebionetworks.ids;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sql.DataSource;
 
@@ -14,18 +18,41 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * This class creates domain unique ids using a MySql sequence via AUTO_INCREMENT of a primary key.
  * For a full explanation of how this works @See http://dev.mysql.com/doc/refman/5.1/en/information-functions.html#function_last-insert-id.
+ * <p>
+ * Types with a block size greater than one are leased: a single multi-row insert reserves a
+ * contiguous block of IDs which are then handed out from memory.  Leased IDs are unique but are not
+ * ordered across machines so types that depend on ordering (such as CHANGE_ID) must not be leased.
+ * Other machines would not see a reserveId() call until their current lease is used up, so a leased
+ * type cannot be reserved.
  * @author jmhill
  *
  */
 @Transactional(readOnly = false)
 public class IdGeneratorImpl implements IdGenerator, InitializingBean{
 	
+	/**
+	 * The maximum number of rows inserted by a single statement when reserving a block.
+	 */
+	public static final int MAX_ROWS_PER_INSERT = 1000;
+	/**
+	 * By default a lease that has not been used up is discarded after this amount of time.
+	 */
+	public static final long DEFAULT_LEASE_TIMEOUT_MS = 60*1000;
+	
+	// Check that auto increment values of a multi-row insert will be consecutive.
+	public static final String AUTO_INCREMENT_LOCK_MODE = "SELECT @@innodb_autoinc_lock_mode";
+	public static final String AUTO_INCREMENT_INCREMENT = "SELECT @@auto_increment_increment";
+	
 	// Create table template
 	private static final String CREATE_TABLE_TEMPLATE = "CREATE TABLE %1$S (ID bigint(20) NOT NULL AUTO_INCREMENT, CREATED_ON bigint(20) NOT NULL, PRIMARY KEY (ID)) ENGINE=InnoDB AUTO_INCREMENT=0";
 
@@ -51,10 +78,75 @@ public class IdGeneratorImpl implements IdGenerator, InitializingBean{
 	@Autowired
 	DataSourceTransactionManager idGeneratorTransactionManager;
 	
+	private TransactionTemplate requiresNewTemplate;
+	
 	/**
-	 * This call occurs in its own transaction.
+	 * The number of IDs leased at a time for each type.  Types without a block size are not leased.
 	 */
-	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
+	private Map<TYPE, Integer> blockSizes = new EnumMap<TYPE, Integer>(TYPE.class);
+	private long leaseTimeoutMS = DEFAULT_LEASE_TIMEOUT_MS;
+	/**
+	 * Set to false if the database cannot guarantee consecutive values for a multi-row insert.
+	 */
+	private volatile boolean leasingSupported = true;
+	/**
+	 * The current lease of each type.
+	 */
+	private final Map<TYPE, AtomicReference<Lease>> leases;
+	
+	public IdGeneratorImpl(){
+		leases = new EnumMap<TYPE, AtomicReference<Lease>>(TYPE.class);
+		for(TYPE type: TYPE.values()){
+			leases.put(type, new AtomicReference<Lease>());
+		}
+	}
+	
+	/**
+	 * Injected. The number of IDs to lease at a time for each type.
+	 * @param blockSizes
+	 */
+	public void setBlockSizes(Map<TYPE, Integer> blockSizes) {
+		this.blockSizes = new EnumMap<TYPE, Integer>(TYPE.class);
+		this.blockSizes.putAll(blockSizes);
+	}
+
+	/**
+	 * Injected.  Unused IDs of a lease are discarded after this amount of time.
+	 * @param leaseTimeoutMS
+	 */
+	public void setLeaseTimeoutMS(long leaseTimeoutMS) {
+		this.leaseTimeoutMS = leaseTimeoutMS;
+	}
+
+	/**
+	 * A contiguous block of IDs reserved in the database for this JVM.
+	 */
+	static class Lease {
+		private final AtomicLong next;
+		private final long last;
+		private final long expiresOn;
+		
+		Lease(long first, long last, long expiresOn){
+			this.next = new AtomicLong(first);
+			this.last = last;
+			this.expiresOn = expiresOn;
+		}
+		
+		/**
+		 * @return The next ID of this lease or null if the lease is used up or expired.
+		 */
+		Long nextId(long now){
+			if(now > expiresOn) return null;
+			long id = next.getAndIncrement();
+			if(id > last) return null;
+			return id;
+		}
+	}
+	
+	/**
+	 * New IDs are allocated in their own transaction.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
 	@Override
 	public Long generateNewId() {
 		// Use the default domain
@@ -62,27 +154,135 @@ public class IdGeneratorImpl implements IdGenerator, InitializingBean{
 	}
 
 	/**
-	 * This call occurs in its own transaction.
+	 * IDs are handed out from the current lease without touching the database.  When there
+	 * is no lease for this type each call occurs in its own transaction.
 	 */
-	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
+	@Transactional(propagation = Propagation.SUPPORTS)
 	@Override
 	public Long generateNewId(TYPE type) {
-		// Create a new time
-		final long now = System.currentTimeMillis();
-		idGeneratorJdbcTemplate.update(String.format(INSERT_SQL, type.name()), new PreparedStatementSetter(){
+		if(type == null) throw new IllegalArgumentException("Type cannot be null");
+		int blockSize = getBlockSize(type);
+		if(blockSize < 2){
+			return allocateFromDatabase(type, 1).get(0);
+		}
+		AtomicReference<Lease> ref = leases.get(type);
+		while(true){
+			Lease lease = ref.get();
+			long now = System.currentTimeMillis();
+			if(lease != null){
+				Long id = lease.nextId(now);
+				if(id != null) return id;
+			}
+			// Only one thread per type needs to go to the database for a new lease.
+			synchronized (ref) {
+				if(ref.get() == lease){
+					List<Long> block = allocateFromDatabase(type, blockSize);
+					ref.set(new Lease(block.get(0), block.get(block.size()-1), now+leaseTimeoutMS));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * New IDs are allocated in their own transaction.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
+	@Override
+	public List<Long> generateNewIds(TYPE type, int count) {
+		if(type == null) throw new IllegalArgumentException("Type cannot be null");
+		if(count < 1) throw new IllegalArgumentException("Count must be at least one");
+		int blockSize = getBlockSize(type);
+		if(blockSize > 1 && count < blockSize){
+			// Small batches come from the lease.
+			List<Long> ids = new ArrayList<Long>(count);
+			for(int i=0; i<count; i++){
+				ids.add(generateNewId(type));
+			}
+			return ids;
+		}
+		// Large batches go straight to the database.
+		List<Long> ids = new ArrayList<Long>(count);
+		int remaining = count;
+		while(remaining > 0){
+			int size = Math.min(remaining, MAX_ROWS_PER_INSERT);
+			ids.addAll(allocateFromDatabase(type, size));
+			remaining -= size;
+		}
+		return ids;
+	}
+	
+	/**
+	 * The number of IDs that should be leased at once for the given type.
+	 * @param type
+	 * @return
+	 */
+	int getBlockSize(TYPE type){
+		if(!leasingSupported) return 1;
+		Integer size = blockSizes.get(type);
+		if(size == null) return 1;
+		return Math.min(size, MAX_ROWS_PER_INSERT);
+	}
+	
+	/**
+	 * Reserve IDs in a new transaction.  When the database guarantees consecutive values
+	 * a single multi-row insert is used, otherwise each ID is inserted by its own statement.
+	 * @param type
+	 * @param count
+	 * @return The reserved IDs in order.
+	 */
+	List<Long> allocateFromDatabase(final TYPE type, final int count){
+		return requiresNewTemplate.execute(new TransactionCallback<List<Long>>() {
 			@Override
-			public void setValues(PreparedStatement ps) throws SQLException {
-				ps.setLong(1, now);
-				
-			}});
-		// Get the ID we just created.
-		return idGeneratorJdbcTemplate.queryForLong(String.format(GET_ID_SQL, type.name()));
+			public List<Long> doInTransaction(TransactionStatus status) {
+				final long now = System.currentTimeMillis();
+				List<Long> ids = new ArrayList<Long>(count);
+				if(!leasingSupported){
+					// The values of a multi-row insert could be interleaved with other inserts or not be
+					// consecutive, so only LAST_INSERT_ID() of a single row insert can be trusted.
+					String sql = String.format(INSERT_SQL, type.name());
+					for(int i=0; i<count; i++){
+						idGeneratorJdbcTemplate.update(sql, now);
+						ids.add(idGeneratorJdbcTemplate.queryForLong(String.format(GET_ID_SQL, type.name())));
+					}
+					return ids;
+				}
+				idGeneratorJdbcTemplate.update(createMultipleRowInsertSQL(type, count), new PreparedStatementSetter(){
+					@Override
+					public void setValues(PreparedStatement ps) throws SQLException {
+						for(int i=1; i<=count; i++){
+							ps.setLong(i, now);
+						}
+					}});
+				// For a multi-row insert this is the first ID inserted.
+				long first = idGeneratorJdbcTemplate.queryForLong(String.format(GET_ID_SQL, type.name()));
+				for(int i=0; i<count; i++){
+					ids.add(first+i);
+				}
+				return ids;
+			}
+		});
+	}
+	
+	/**
+	 * Create the SQL to insert the given number of rows with one statement.
+	 * @param type
+	 * @param count
+	 * @return
+	 */
+	static String createMultipleRowInsertSQL(TYPE type, int count){
+		StringBuilder builder = new StringBuilder(String.format(INSERT_SQL, type.name()));
+		for(int i=1; i<count; i++){
+			builder.append(", (?)");
+		}
+		return builder.toString();
 	}
 	
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
 	@Override
 	public void reserveId(final Long idToLock, TYPE type) {
 		if(idToLock == null) throw new IllegalArgumentException("ID to reserve cannot be null");
+		// The leases of other machines could still hand out the reserved ID.
+		if(getBlockSize(type) > 1) throw new IllegalArgumentException("Cannot reserve an ID of a leased type: "+type.name());
 		// First check if this value is greater than the last value
 		Long max = idGeneratorJdbcTemplate.queryForLong(String.format(MAX_ID, type.name()));
 		if(idToLock > max){
@@ -104,6 +304,12 @@ public class IdGeneratorImpl implements IdGenerator, InitializingBean{
 		Connection con = ds.getConnection();
 		if(con == null) throw new RuntimeException("Failed get a connecion from the datasource");
 		if(!con.getAutoCommit()) throw new RuntimeException("The connections from this datasources should be set to auto-commit");
+		requiresNewTemplate = new TransactionTemplate(idGeneratorTransactionManager);
+		requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		// Leasing relies on a multi-row insert getting consecutive values.
+		long lockMode = idGeneratorJdbcTemplate.queryForLong(AUTO_INCREMENT_LOCK_MODE);
+		long increment = idGeneratorJdbcTemplate.queryForLong(AUTO_INCREMENT_INCREMENT);
+		leasingSupported = lockMode < 2 && increment == 1;
 		// First make sure the table exists
 		String connectionString = stackConfiguration.getIdGeneratorDatabaseConnectionUrl();
 		String schema = getSchemaFromConnectionString(connectionString);
@@ -5,10 +5,16 @@ import static org.junit.Assert.*;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.sagebionetworks.ids.IdGenerator.TYPE;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -76,4 +82,39 @@ public class IdGeneratorConcurrencyTest {
 		assertEquals("Did not get the expceted count of unique IDs", numberOfThreads*numberIds, sharedIdSet.size());
 	}
 
+	@Test
+	public void testConcurrentLeasedIds() throws Exception {
+		final int numberIds = 500;
+		ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			Set<Future<Long[]>> futures = new HashSet<Future<Long[]>>();
+			for(int i=0; i<numberOfThreads; i++){
+				futures.add(pool.submit(new Callable<Long[]>() {
+					@Override
+					public Long[] call() throws Exception {
+						Long[] ids = new Long[numberIds];
+						for(int j=0; j<numberIds; j++){
+							ids[j] = idGenerator.generateNewId(TYPE.FILE_IDS);
+						}
+						return ids;
+					}
+				}));
+			}
+			Set<Long> unique = new HashSet<Long>();
+			for(Future<Long[]> future: futures){
+				Long[] ids = future.get(TIME_OUT, TimeUnit.MILLISECONDS);
+				for(int j=0; j<ids.length; j++){
+					assertTrue("Duplicate ID found!", unique.add(ids[j]));
+					// Leases are handed out in order so each thread sees increasing IDs.
+					if(j > 0){
+						assertTrue("IDs are not increasing", ids[j] > ids[j-1]);
+					}
+				}
+			}
+			assertEquals(numberOfThreads*numberIds, unique.size());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
 }
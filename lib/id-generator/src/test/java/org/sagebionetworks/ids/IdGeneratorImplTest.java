@@ -5,6 +5,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Test;
@@ -69,4 +70,65 @@ public class IdGeneratorImplTest {
 		assertEquals(next.longValue(), id.longValue()+1);
 	}
 
+	@Test(expected=IllegalArgumentException.class)
+	public void testReserveIdLeasedType(){
+		// FILE_IDS are leased so other machines would not see the reservation.
+		Long id = idGenerator.generateNewId(TYPE.FILE_IDS);
+		idGenerator.reserveId(id+10, TYPE.FILE_IDS);
+	}
+
+	@Test
+	public void testGenerateNewIdsSmallBatch(){
+		List<Long> ids = idGenerator.generateNewIds(TYPE.FILE_IDS, 10);
+		assertEquals(10, ids.size());
+		assertEquals(10, new HashSet<Long>(ids).size());
+		// A single ID should not collide with the batch
+		Long next = idGenerator.generateNewId(TYPE.FILE_IDS);
+		assertTrue(!ids.contains(next));
+	}
+	
+	@Test
+	public void testGenerateNewIdsLargeBatch(){
+		int count = IdGeneratorImpl.MAX_ROWS_PER_INSERT+5;
+		List<Long> ids = idGenerator.generateNewIds(TYPE.CHANGE_ID, count);
+		assertEquals(count, ids.size());
+		assertEquals(count, new HashSet<Long>(ids).size());
+		Long next = idGenerator.generateNewId(TYPE.CHANGE_ID);
+		for(Long id: ids){
+			assertTrue(next > id);
+		}
+	}
+	
+	@Test
+	public void testGenerateNewIdsLeasedTypeLargeBatch(){
+		// Larger than the lease so the batch is reserved in the database.
+		int count = IdGeneratorImpl.MAX_ROWS_PER_INSERT+5;
+		Long leased = idGenerator.generateNewId(TYPE.FILE_IDS);
+		List<Long> ids = idGenerator.generateNewIds(TYPE.FILE_IDS, count);
+		assertEquals(count, ids.size());
+		assertEquals(count, new HashSet<Long>(ids).size());
+		assertTrue(!ids.contains(leased));
+		// The rest of the current lease does not collide with the batch.
+		for(int i=0; i<10; i++){
+			assertTrue(!ids.contains(idGenerator.generateNewId(TYPE.FILE_IDS)));
+		}
+	}
+
+	@Test
+	public void testCreateMultipleRowInsertSQL(){
+		assertEquals("INSERT INTO WIKI_ID (CREATED_ON) VALUES (?), (?), (?)", IdGeneratorImpl.createMultipleRowInsertSQL(TYPE.WIKI_ID, 3));
+	}
+	
+	@Test
+	public void testLease(){
+		IdGeneratorImpl.Lease lease = new IdGeneratorImpl.Lease(10, 12, 1000);
+		assertEquals(new Long(10), lease.nextId(0));
+		assertEquals(new Long(11), lease.nextId(0));
+		assertEquals(new Long(12), lease.nextId(0));
+		assertEquals(null, lease.nextId(0));
+		// expired
+		lease = new IdGeneratorImpl.Lease(10, 12, 1000);
+		assertEquals(null, lease.nextId(1001));
+	}
+
 }
@@ -0,0 +1,94 @@
+package org.sagebionetworks.ids;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sagebionetworks.StackConfiguration;
+import org.sagebionetworks.ids.IdGenerator.TYPE;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Checks how IDs are allocated when the database does not guarantee
+ * consecutive values for a multi-row insert.
+ * 
+ * @author John
+ * 
+ */
+public class IdGeneratorImplUnitTest {
+
+	JdbcTemplate mockJdbcTemplate;
+	IdGeneratorImpl idGenerator;
+
+	@Before
+	public void before() throws Exception {
+		mockJdbcTemplate = Mockito.mock(JdbcTemplate.class);
+		StackConfiguration mockConfig = Mockito.mock(StackConfiguration.class);
+		when(mockConfig.getIdGeneratorDatabaseConnectionUrl()).thenReturn("jdbc:mysql://localhost/idgen");
+		Connection mockConnection = Mockito.mock(Connection.class);
+		when(mockConnection.getAutoCommit()).thenReturn(true);
+		DataSource mockDataSource = Mockito.mock(DataSource.class);
+		when(mockDataSource.getConnection()).thenReturn(mockConnection);
+		DataSourceTransactionManager mockTransactionManager = Mockito.mock(DataSourceTransactionManager.class);
+		when(mockTransactionManager.getDataSource()).thenReturn(mockDataSource);
+		// Every table already exists.
+		List<Map<String, Object>> table = Collections.singletonList((Map<String, Object>) new HashMap<String, Object>());
+		when(mockJdbcTemplate.queryForList(anyString())).thenReturn(table);
+		// Interleaved lock mode.
+		when(mockJdbcTemplate.queryForLong(IdGeneratorImpl.AUTO_INCREMENT_LOCK_MODE)).thenReturn(2L);
+		when(mockJdbcTemplate.queryForLong(IdGeneratorImpl.AUTO_INCREMENT_INCREMENT)).thenReturn(1L);
+		// Other inserts take the values in between.
+		when(mockJdbcTemplate.queryForLong(IdGeneratorImpl.GET_ID_SQL)).thenReturn(10L, 12L, 15L);
+
+		idGenerator = new IdGeneratorImpl();
+		ReflectionTestUtils.setField(idGenerator, "idGeneratorJdbcTemplate", mockJdbcTemplate);
+		ReflectionTestUtils.setField(idGenerator, "stackConfiguration", mockConfig);
+		ReflectionTestUtils.setField(idGenerator, "idGeneratorTransactionManager", mockTransactionManager);
+		Map<TYPE, Integer> blockSizes = new HashMap<TYPE, Integer>();
+		blockSizes.put(TYPE.FILE_IDS, 100);
+		idGenerator.setBlockSizes(blockSizes);
+		idGenerator.afterPropertiesSet();
+	}
+
+	@Test
+	public void testNotLeasedWhenInterleaved() {
+		assertEquals(1, idGenerator.getBlockSize(TYPE.FILE_IDS));
+	}
+
+	@Test
+	public void testBatchInsertsOneRowAtATimeWhenInterleaved() {
+		List<Long> ids = idGenerator.generateNewIds(TYPE.FILE_IDS, 3);
+		// Each ID is the one actually inserted, not LAST_INSERT_ID()+i.
+		assertEquals(Arrays.asList(10L, 12L, 15L), ids);
+		verify(mockJdbcTemplate, times(3)).update(eq(String.format(IdGeneratorImpl.INSERT_SQL, TYPE.FILE_IDS.name())), anyLong());
+		verify(mockJdbcTemplate, never()).update(anyString(), any(PreparedStatementSetter.class));
+	}
+
+	@Test
+	public void testSingleIdWhenInterleaved() {
+		assertEquals(new Long(10L), idGenerator.generateNewId(TYPE.FILE_IDS));
+		assertEquals(new Long(12L), idGenerator.generateNewId(TYPE.FILE_IDS));
+		verify(mockJdbcTemplate, times(2)).update(eq(String.format(IdGeneratorImpl.INSERT_SQL, TYPE.FILE_IDS.name())), anyLong());
+	}
+}
@@ -1,5 +1,6 @@
 package org.sagebionetworks.repo.model.dbo;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.sql.ResultSet;
@@ -19,6 +20,7 @@ import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 public class AutoTableMapping<T> implements TableMapping<T> {
 
 	private final Class<? extends T> clazz;
+	private final Constructor<? extends T> constructor;
 	private final String tableName;
 	private final FieldColumn[] fields;
 	private final DBOBuilder.RowMapper[] mappers;
@@ -38,6 +40,7 @@ public class AutoTableMapping<T> implements TableMapping<T> {
 
 	public AutoTableMapping(Class<? extends T> clazz, String... customColumns) {
 		this.clazz = clazz;
+		this.constructor = getDefaultConstructor(clazz);
 		this.fields = DBOBuilder.getFields(clazz, customColumns);
 		this.tableName = DBOBuilder.getTableName(clazz);
 		this.mappers = DBOBuilder.getFieldMappers(clazz, customColumns);
@@ -68,7 +71,7 @@ public class AutoTableMapping<T> implements TableMapping<T> {
 	@Override
 	public T mapRow(ResultSet rs, int rowNum) throws SQLException {
 		try {
-			T result = clazz.newInstance();
+			T result = constructor != null ? constructor.newInstance() : clazz.newInstance();
 			for (DBOBuilder.RowMapper mapper : mappers) {
 				mapper.map(result, rs);
 			}
@@ -84,6 +87,29 @@ public class AutoTableMapping<T> implements TableMapping<T> {
 		}
 	}
 
+	/**
+	 * Look up the constructor once rather than on every row.
+	 * 
+	 * @param clazz
+	 * @return null if the class does not have a public default constructor.
+	 */
+	private static <T> Constructor<? extends T> getDefaultConstructor(Class<? extends T> clazz) {
+		try {
+			return clazz.getConstructor();
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * The conversions applied to field values when binding them to SQL parameters, keyed by field name.
+	 * 
+	 * @return
+	 */
+	Map<String, ParamTypeMapper> getParamTypeMappers() {
+		return paramTypeMappers;
+	}
+
 	public String getDDL() {
 		return DBOBuilder.buildDLL(clazz, tableName);
 	}
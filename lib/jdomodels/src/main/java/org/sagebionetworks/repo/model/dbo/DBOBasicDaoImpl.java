@@ -62,6 +62,11 @@ public class DBOBasicDaoImpl implements DBOBasicDao, InitializingBean {
 	 * We cache the mapping for each object type.
 	 */
 	private Map<Class<? extends DatabaseObject>, TableMapping> classToMapping = new HashMap<Class<? extends DatabaseObject>, TableMapping>();
+	
+	/**
+	 * The parameter binder for each object type. Types without a binder use a BeanPropertySqlParameterSource.
+	 */
+	private Map<Class<? extends DatabaseObject>, DBOParameterBinder> classToBinder = new HashMap<Class<? extends DatabaseObject>, DBOParameterBinder>();
 
 	@Override
 	public void afterPropertiesSet() throws Exception {
@@ -90,6 +95,11 @@ public class DBOBasicDaoImpl implements DBOBasicDao, InitializingBean {
 			String update = DMLUtils.createUpdateStatment(mapping);
 			updateMap.put(mapping.getDBOClass(), update);
 			this.classToMapping.put(mapping.getDBOClass(), dbo.getTableMapping());
+			// Resolve the parameter binding once.
+			DBOParameterBinder binder = DBOParameterBinder.create(mapping);
+			if(binder != null){
+				this.classToBinder.put(mapping.getDBOClass(), binder);
+			}
 		}
 	}
 
@@ -174,7 +184,7 @@ public class DBOBasicDaoImpl implements DBOBasicDao, InitializingBean {
 	
 	@SuppressWarnings("unchecked")
 	private <T> List<T> batchUpdate(List<T> batch, String sql, boolean enforceUpdate) {
-		SqlParameterSource[] namedParameters = new BeanPropertySqlParameterSource[batch.size()];
+		SqlParameterSource[] namedParameters = new SqlParameterSource[batch.size()];
 		TableMapping<T> mapping = null;
 		for(int i=0; i<batch.size(); i++){
 			if (mapping == null) {
@@ -282,7 +292,12 @@ public class DBOBasicDaoImpl implements DBOBasicDao, InitializingBean {
 		return count == 1;
 	}
 	
+	@SuppressWarnings("unchecked")
 	private <T> SqlParameterSource getSqlParameterSource(T toCreate, TableMapping<T> mapping) {
+		DBOParameterBinder<T> binder = classToBinder.get(mapping.getDBOClass());
+		if (binder != null) {
+			return binder.bind(toCreate);
+		}
 		if (mapping instanceof AutoTableMapping) {
 			return ((AutoTableMapping) mapping).getSqlParameterSource(toCreate);
 		}
@@ -58,16 +58,25 @@ public class DBOBuilder<T> {
 				InvocationTargetException;
 	}
 
-	private static class AssignmentRowMapper extends BaseRowMapper {
-		final Method mapperMethod;
+	private static class LongRowMapper extends BaseRowMapper {
 
-		public AssignmentRowMapper(Method fieldSetter, String columnName, boolean nullable, Method mapperMethod) {
+		public LongRowMapper(Method fieldSetter, String columnName, boolean nullable) {
 			super(fieldSetter, columnName, nullable);
-			this.mapperMethod = mapperMethod;
 		}
 
-		public Object getValue(ResultSet rs, String columnName) throws SQLException, IllegalAccessException, InvocationTargetException {
-			return mapperMethod.invoke(rs, columnName);
+		public Object getValue(ResultSet rs, String columnName) throws SQLException {
+			return rs.getLong(columnName);
+		}
+	}
+
+	private static class StringRowMapper extends BaseRowMapper {
+
+		public StringRowMapper(Method fieldSetter, String columnName, boolean nullable) {
+			super(fieldSetter, columnName, nullable);
+		}
+
+		public Object getValue(ResultSet rs, String columnName) throws SQLException {
+			return rs.getString(columnName);
 		}
 	}
 
@@ -192,17 +201,6 @@ public class DBOBuilder<T> {
 		return result.toArray(new FieldColumn[result.size()]);
 	}
 
-	private static final Object[][] TYPE_MAP = { { Long.class, "getLong" }, { long.class, "getLong" }, { String.class, "getString" } };
-
-	private static String getMethodFromTypeMap(Class<?> type) {
-		for (Object[] entry : TYPE_MAP) {
-			if (type == entry[0]) {
-				return (String) entry[1];
-			}
-		}
-		return null;
-	}
-
 	public static <T> RowMapper[] getFieldMappers(final Class<? extends T> clazz, final String[] customColumns) {
 		List<Entry<Field>> fields = getAnnotatedFieldsWithoutCustomColums(clazz, Field.class, customColumns);
 		List<RowMapper> mappers = Lists.transform(fields, new Function<Entry<Field>, RowMapper>() {
@@ -216,15 +214,13 @@ public class DBOBuilder<T> {
 					throw new IllegalArgumentException("Could not find method '" + setterMethodName + "' on " + clazz.getName());
 				}
 
-				String getMethod = getMethodFromTypeMap(fieldEntry.field.getType());
-				if (getMethod != null) {
-					try {
-						Method mapperMethod = ResultSet.class.getMethod((String) getMethod, new Class[] { String.class });
-						return new AssignmentRowMapper(setterMethod, fieldEntry.annotation.name(), fieldEntry.annotation.nullable(),
-								mapperMethod);
-					} catch (NoSuchMethodException e) {
-						throw new IllegalArgumentException("Could not find method '" + getMethod + "' on ResultSet");
-					}
+				// Read the common types directly rather than through a reflective call on the ResultSet
+				if (fieldEntry.field.getType() == Long.class || fieldEntry.field.getType() == long.class) {
+					return new LongRowMapper(setterMethod, fieldEntry.annotation.name(), fieldEntry.annotation.nullable());
+				}
+
+				if (fieldEntry.field.getType() == String.class) {
+					return new StringRowMapper(setterMethod, fieldEntry.annotation.name(), fieldEntry.annotation.nullable());
 				}
 
 				// enum?
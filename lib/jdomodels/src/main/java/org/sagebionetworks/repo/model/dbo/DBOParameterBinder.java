@@ -0,0 +1,152 @@
+package org.sagebionetworks.repo.model.dbo;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sagebionetworks.repo.model.dbo.DBOBuilder.ParamTypeMapper;
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Binds the fields of a DatabaseObject to the named parameters of the SQL
+ * generated by {@link DMLUtils}.
+ * <p>
+ * A BeanPropertySqlParameterSource creates a new BeanWrapper for each object
+ * and looks up each property by name every time a value is read. A binder
+ * resolves the getter, SQL type and any type conversion for each
+ * {@link FieldColumn} once, when the DAO is initialized, so binding a row is
+ * just one getter call per column. This is used for every insert, update and
+ * migration batch.
+ * <p>
+ * Use {@link #create(TableMapping)} to build a binder. It returns null when a
+ * field cannot be resolved, in which case callers should fall back to a
+ * BeanPropertySqlParameterSource.
+ *
+ * @author John
+ *
+ * @param <T>
+ */
+public class DBOParameterBinder<T> {
+
+	/**
+	 * Everything needed to read a single parameter from an object.
+	 */
+	private static class ParameterAccessor {
+		final Method getter;
+		final ParamTypeMapper typeMapper;
+		final int sqlType;
+
+		ParameterAccessor(Method getter, ParamTypeMapper typeMapper, int sqlType) {
+			this.getter = getter;
+			this.typeMapper = typeMapper;
+			this.sqlType = sqlType;
+		}
+	}
+
+	private final Map<String, ParameterAccessor> accessors;
+
+	private DBOParameterBinder(Map<String, ParameterAccessor> accessors) {
+		this.accessors = accessors;
+	}
+
+	/**
+	 * Build a binder for the fields of the given mapping.
+	 *
+	 * @param mapping
+	 * @return The binder or null if any of the fields does not have a readable
+	 *         property on the DBO class.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static <T> DBOParameterBinder<T> create(TableMapping<T> mapping) {
+		if (mapping == null) throw new IllegalArgumentException("Mapping cannot be null");
+		Class<? extends T> clazz = mapping.getDBOClass();
+		FieldColumn[] fields = mapping.getFieldColumns();
+		if (clazz == null || fields == null) return null;
+		Map<String, ParamTypeMapper> typeMappers = null;
+		if (mapping instanceof AutoTableMapping) {
+			typeMappers = ((AutoTableMapping) mapping).getParamTypeMappers();
+		}
+		Map<String, ParameterAccessor> accessors = new HashMap<String, ParameterAccessor>(fields.length * 2);
+		for (FieldColumn field : fields) {
+			PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(clazz, field.getFieldName());
+			if (descriptor == null || descriptor.getReadMethod() == null) {
+				return null;
+			}
+			Method getter = descriptor.getReadMethod();
+			ReflectionUtils.makeAccessible(getter);
+			ParamTypeMapper typeMapper = typeMappers == null ? null : typeMappers.get(field.getFieldName());
+			// Match the types that a BeanPropertySqlParameterSource would use.
+			int sqlType = typeMapper != null ? typeMapper.getSqlType() : StatementCreatorUtils.javaTypeToSqlParameterType(getter
+					.getReturnType());
+			accessors.put(field.getFieldName(), new ParameterAccessor(getter, typeMapper, sqlType));
+		}
+		return new DBOParameterBinder<T>(accessors);
+	}
+
+	/**
+	 * Bind the given object.
+	 *
+	 * @param bean
+	 * @return
+	 */
+	public SqlParameterSource bind(T bean) {
+		if (bean == null) throw new IllegalArgumentException("Bean cannot be null");
+		return new BoundParameterSource(bean);
+	}
+
+	/**
+	 * The parameters of a single object.
+	 */
+	private class BoundParameterSource implements SqlParameterSource {
+
+		private final Object bean;
+
+		BoundParameterSource(Object bean) {
+			this.bean = bean;
+		}
+
+		@Override
+		public boolean hasValue(String paramName) {
+			return accessors.containsKey(paramName);
+		}
+
+		@Override
+		public Object getValue(String paramName) throws IllegalArgumentException {
+			ParameterAccessor accessor = accessors.get(paramName);
+			if (accessor == null) {
+				throw new IllegalArgumentException("No value registered for key '" + paramName + "'");
+			}
+			Object value;
+			try {
+				value = accessor.getter.invoke(bean);
+			} catch (IllegalAccessException e) {
+				throw new IllegalArgumentException("Cannot read '" + paramName + "' from " + bean.getClass().getName(), e);
+			} catch (InvocationTargetException e) {
+				throw new IllegalArgumentException("Cannot read '" + paramName + "' from " + bean.getClass().getName(), e.getTargetException());
+			}
+			if (value != null && accessor.typeMapper != null) {
+				return accessor.typeMapper.convert(value);
+			}
+			return value;
+		}
+
+		@Override
+		public int getSqlType(String paramName) {
+			ParameterAccessor accessor = accessors.get(paramName);
+			if (accessor == null) {
+				return TYPE_UNKNOWN;
+			}
+			return accessor.sqlType;
+		}
+
+		@Override
+		public String getTypeName(String paramName) {
+			return null;
+		}
+	}
+}
@@ -20,6 +20,12 @@ public class DMLUtils {
 	public static final String BIND_VAR_ID_lIST = "BVIDLIST";
 	public static final String BIND_VAR_OFFSET = "BVOFFSET";
 	public static final String BIND_VAR_LIMIT = "BCLIMIT";
+	public static final String BIND_VAR_MIN_ID = "BVMINID";
+	public static final String BIND_VAR_MAX_ID = "BVMAXID";
+	public static final String RANGE_COUNT = "RANGE_COUNT";
+	public static final String RANGE_MIN_ID = "RANGE_MIN_ID";
+	public static final String RANGE_MAX_ID = "RANGE_MAX_ID";
+	public static final String RANGE_CHECKSUM = "RANGE_CHECKSUM";
 
 	/**
 	 * Create an INSERT statement for a given mapping.
@@ -359,6 +365,75 @@ public class DMLUtils {
 		return builder.toString();
 	}
 	
+	/**
+	 * List the row metadata with a backup ID in a range.
+	 * @param mapping
+	 * @return
+	 */
+	public static String listRowMetadataForRange(TableMapping mapping) {
+		validateMigratableTableMapping(mapping);
+		StringBuilder builder = new StringBuilder();
+		builder.append("SELECT ");
+		buildSelectIdAndEtag(mapping, builder);
+		builder.append(" FROM ");
+		builder.append(mapping.getTableName());
+		builder.append(" WHERE ");
+		addBackupIdInRange(builder, mapping);
+		buildBackupOrderBy(mapping, builder, true);
+		builder.append(" LIMIT :");
+		builder.append(BIND_VAR_LIMIT);
+		return builder.toString();
+	}
+	
+	/**
+	 * Count the rows with a backup ID in a range and calculate a checksum of their IDs and etags.
+	 * Two stacks with the same rows in a range will have the same count and checksum for that range.
+	 * The checksum combines a sum and a XOR of the CRC32 of each row so it does not depend on row order.
+	 * @param mapping
+	 * @return
+	 */
+	public static String createRangeChecksumStatement(TableMapping mapping) {
+		validateMigratableTableMapping(mapping);
+		String rowHash = "CRC32("+buildIdAndEtagConcat(mapping)+")";
+		StringBuilder builder = new StringBuilder();
+		String backupId = "`"+getBackupIdColumnName(mapping).getColumnName()+"`";
+		builder.append("SELECT COUNT(*) AS ").append(RANGE_COUNT);
+		builder.append(", MIN(").append(backupId).append(") AS ").append(RANGE_MIN_ID);
+		builder.append(", MAX(").append(backupId).append(") AS ").append(RANGE_MAX_ID);
+		builder.append(", CONCAT(SUM(").append(rowHash).append("), '-', BIT_XOR(").append(rowHash).append(")) AS ").append(RANGE_CHECKSUM);
+		builder.append(" FROM ");
+		builder.append(mapping.getTableName());
+		builder.append(" WHERE ");
+		addBackupIdInRange(builder, mapping);
+		return builder.toString();
+	}
+	
+	/**
+	 * When etag is not null: "CONCAT(`ID`, '@', IFNULL(`ETAG`, 'NULL'))", else: "`ID`"
+	 * @param mapping
+	 * @return
+	 */
+	private static String buildIdAndEtagConcat(TableMapping mapping){
+		String backupId = "`"+getBackupIdColumnName(mapping).getColumnName()+"`";
+		FieldColumn etagColumn = getEtagColumn(mapping);
+		if(etagColumn == null){
+			return backupId;
+		}
+		return "CONCAT("+backupId+", '@', IFNULL(`"+etagColumn.getColumnName()+"`, 'NULL'))";
+	}
+	
+	/**
+	 * 'ID' BETWEEN :BVMINID AND :BVMAXID
+	 * @param builder
+	 * @param mapping
+	 */
+	private static void addBackupIdInRange(StringBuilder builder, TableMapping mapping){
+		builder.append("`");
+		builder.append(getBackupIdColumnName(mapping).getColumnName());
+		builder.append("`");
+		builder.append(" BETWEEN :"+BIND_VAR_MIN_ID+" AND :"+BIND_VAR_MAX_ID);
+	}
+	
 	/**
 	 * List all of the row data.
 	 * @param mapping
@@ -1,16 +1,26 @@
 package org.sagebionetworks.repo.model.dbo.dao;
 
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ACL_ID;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ACL_OWNER_ID;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ACL_OWNER_TYPE;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_BENEFACTOR_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_CREATED_BY;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_NAME;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_PARENT_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_RESOURCE_ACCESS_GROUP_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_RESOURCE_ACCESS_ID;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_RESOURCE_ACCESS_OWNER;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_RESOURCE_ACCESS_TYPE_ELEMENT;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_RESOURCE_ACCESS_TYPE_ID;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_ACCESS_CONTROL_LIST;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_NODE;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_RESOURCE_ACCESS;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_RESOURCE_ACCESS_TYPE;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -25,6 +35,7 @@ import org.sagebionetworks.repo.model.AccessControlList;
 import org.sagebionetworks.repo.model.AccessControlListDAO;
 import org.sagebionetworks.repo.model.ConflictingUpdateException;
 import org.sagebionetworks.repo.model.DatastoreException;
+import org.sagebionetworks.repo.model.EntityAccess;
 import org.sagebionetworks.repo.model.ObjectType;
 import org.sagebionetworks.repo.model.ResourceAccess;
 import org.sagebionetworks.repo.model.dbo.DBOBasicDao;
@@ -36,6 +47,7 @@ import org.sagebionetworks.repo.model.jdo.KeyFactory;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
@@ -53,6 +65,27 @@ public class DBOAccessControlListDaoImpl implements AccessControlListDAO {
 	private static final String SELECT_FOR_UPDATE = "SELECT * FROM "+TABLE_ACCESS_CONTROL_LIST+
 			" WHERE "+COL_ACL_OWNER_ID+" = :" + COL_ACL_OWNER_ID+" AND "+COL_ACL_OWNER_TYPE+" = :" + COL_ACL_OWNER_TYPE+" FOR UPDATE";
 
+	/**
+	 * One row for each access type granted to one of the groups by each
+	 * entity's benefactor ACL. The outer joins keep entities whose benefactor
+	 * grants nothing to the groups, and the parent columns tell if the parent
+	 * is the root.
+	 */
+	private static final String SELECT_ENTITY_ACCESS = "SELECT N."+COL_NODE_ID+", N."+COL_NODE_BENEFACTOR_ID+", N."+COL_NODE_CREATED_BY+
+			", N."+COL_NODE_PARENT_ID+", P."+COL_NODE_PARENT_ID+" AS GRAND_PARENT_ID, P."+COL_NODE_NAME+" AS PARENT_NAME"+
+			", RA."+COL_RESOURCE_ACCESS_GROUP_ID+", AT."+COL_RESOURCE_ACCESS_TYPE_ELEMENT+
+			" FROM "+TABLE_NODE+" N"+
+			" LEFT JOIN "+TABLE_NODE+" P ON P."+COL_NODE_ID+" = N."+COL_NODE_PARENT_ID+
+			" LEFT JOIN ("+TABLE_ACCESS_CONTROL_LIST+" A"+
+			" JOIN "+TABLE_RESOURCE_ACCESS+" RA ON RA."+COL_RESOURCE_ACCESS_OWNER+" = A."+COL_ACL_ID+
+			" JOIN "+TABLE_RESOURCE_ACCESS_TYPE+" AT ON AT."+COL_RESOURCE_ACCESS_TYPE_ID+" = RA."+COL_RESOURCE_ACCESS_ID+")"+
+			" ON A."+COL_ACL_OWNER_ID+" = N."+COL_NODE_BENEFACTOR_ID+
+			" AND A."+COL_ACL_OWNER_TYPE+" = :ownerType"+
+			" AND RA."+COL_RESOURCE_ACCESS_GROUP_ID+" IN (:groupIds)"+
+			" WHERE N."+COL_NODE_ID+" IN (:entityIds)";
+
+	private static final String ROOT_NAME = "root";
+
 	/**
 	 * Keep a copy of the row mapper.
 	 */
@@ -202,6 +235,47 @@ public class DBOAccessControlListDaoImpl implements AccessControlListDAO {
 		}
 	}
 	
+	@Override
+	public Map<Long, EntityAccess> getEntityAccess(Collection<Long> entityIds, Set<Long> groups) throws DatastoreException {
+		if(entityIds == null) throw new IllegalArgumentException("EntityIds cannot be null");
+		if(groups == null || groups.isEmpty()) throw new IllegalArgumentException("Groups cannot be null or empty");
+		final Map<Long, EntityAccess> results = new HashMap<Long, EntityAccess>();
+		if(entityIds.isEmpty()) return results;
+		MapSqlParameterSource params = new MapSqlParameterSource();
+		params.addValue("ownerType", ObjectType.ENTITY.name());
+		params.addValue("groupIds", groups);
+		params.addValue("entityIds", entityIds);
+		try{
+			simpleJdbcTemplate.getNamedParameterJdbcOperations().query(SELECT_ENTITY_ACCESS, params, new RowCallbackHandler() {
+				@Override
+				public void processRow(ResultSet rs) throws SQLException {
+					Long entityId = rs.getLong(COL_NODE_ID);
+					EntityAccess access = results.get(entityId);
+					if(access == null){
+						access = new EntityAccess();
+						access.setEntityId(entityId);
+						access.setBenefactorId(rs.getLong(COL_NODE_BENEFACTOR_ID));
+						access.setCreatedBy(rs.getLong(COL_NODE_CREATED_BY));
+						// Root is the only node with a null parent.
+						rs.getLong(COL_NODE_PARENT_ID);
+						boolean hasParent = !rs.wasNull();
+						rs.getLong("GRAND_PARENT_ID");
+						boolean parentHasParent = !rs.wasNull();
+						access.setParentIsRoot(hasParent && !parentHasParent && ROOT_NAME.equals(rs.getString("PARENT_NAME")));
+						results.put(entityId, access);
+					}
+					String accessType = rs.getString(COL_RESOURCE_ACCESS_TYPE_ELEMENT);
+					if(accessType != null){
+						access.addAccess(rs.getLong(COL_RESOURCE_ACCESS_GROUP_ID), ACCESS_TYPE.valueOf(accessType));
+					}
+				}
+			});
+		}catch (DataAccessException e){
+			throw new DatastoreException(e);
+		}
+		return results;
+	}
+	
 	// To avoid potential race conditions, we do "SELECT ... FOR UPDATE" on etags.
 	private DBOAccessControlList selectForUpdate(final Long ownerId, ObjectType ownerType) {
 		MapSqlParameterSource param = new MapSqlParameterSource();
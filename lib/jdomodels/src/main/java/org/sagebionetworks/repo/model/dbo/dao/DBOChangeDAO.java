@@ -75,6 +75,27 @@ public interface DBOChangeDAO extends ProcessedMessageDAO {
 	 * @param changeNumber
 	 */
 	public boolean registerMessageSent(ChangeMessage message);
+	
+	/**
+	 * Select the messages of a batch that still need to be sent: those that
+	 * are still the current change of their object and have not already been
+	 * registered as sent, in change number order. Nothing is locked, so the
+	 * messages can be published without holding any lock.
+	 * 
+	 * @param batch
+	 * @return
+	 */
+	public List<ChangeMessage> selectMessagesToSend(List<ChangeMessage> batch);
+	
+	/**
+	 * Register a batch of messages as sent with a single multi-row write. See
+	 * {@link #registerMessageSent(ChangeMessage)}. Messages that are no longer
+	 * the current change of their object are not registered.
+	 * 
+	 * @param batch
+	 * @return The messages that were registered as sent.
+	 */
+	public List<ChangeMessage> registerMessagesSent(List<ChangeMessage> batch);
 
 	
 	/**
@@ -20,7 +20,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -37,7 +41,7 @@ import org.sagebionetworks.repo.model.message.ChangeMessage;
 import org.sagebionetworks.repo.model.message.ChangeMessageUtils;
 import org.sagebionetworks.repo.model.message.ChangeType;
 import org.sagebionetworks.util.Clock;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DeadlockLoserDataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -110,6 +114,12 @@ public class DBOChangeDAOImpl implements DBOChangeDAO {
 	
 	private static final String SQL_SENT_CHANGE_NUMBER_FOR_UPDATE = "SELECT "+COL_SENT_MESSAGES_CHANGE_NUM+" FROM "+TABLE_SENT_MESSAGES+" WHERE "+COL_SENT_MESSAGES_OBJECT_ID+" = ? AND "+COL_SENT_MESSAGES_OBJECT_TYPE+" = ? FOR UPDATE";
 	private static final String SQL_CHANGE_NUMBER_FOR_UPDATE = "SELECT "+COL_CHANGES_CHANGE_NUM+" FROM "+TABLE_CHANGES+" WHERE "+COL_CHANGES_OBJECT_ID+" = ? AND "+COL_CHANGES_OBJECT_TYPE+" = ? FOR UPDATE";
+	private static final String SQL_CHANGE_NUMBERS_PREFIX = "SELECT "+COL_CHANGES_CHANGE_NUM+" FROM "+TABLE_CHANGES+" WHERE "+COL_CHANGES_CHANGE_NUM+" IN (";
+	private static final String SQL_SENT_CHANGE_NUMBERS_PREFIX = "SELECT "+COL_SENT_MESSAGES_CHANGE_NUM+" FROM "+TABLE_SENT_MESSAGES+" WHERE "+COL_SENT_MESSAGES_CHANGE_NUM+" IN (";
+	private static final String SQL_IN_SUFFIX = ")";
+	private static final String SQL_FOR_UPDATE_SUFFIX = ") FOR UPDATE";
+	private static final String SQL_INSERT_SENT_PREFIX = "INSERT INTO "+TABLE_SENT_MESSAGES+" ("+COL_SENT_MESSAGES_CHANGE_NUM+", "+COL_SENT_MESSAGES_OBJECT_ID+", "+COL_SENT_MESSAGES_OBJECT_TYPE+") VALUES ";
+	private static final String SQL_INSERT_SENT_SUFFIX = " ON DUPLICATE KEY UPDATE "+COL_SENT_MESSAGES_CHANGE_NUM+" = VALUES("+COL_SENT_MESSAGES_CHANGE_NUM+")";
 
 	@Autowired
 	private DBOBasicDao basicDao;
@@ -303,6 +313,98 @@ public class DBOChangeDAOImpl implements DBOChangeDAO {
 	}
 
 
+	@Override
+	public List<ChangeMessage> selectMessagesToSend(List<ChangeMessage> batch) {
+		if(batch == null) throw new IllegalArgumentException("Batch cannot be null");
+		if(batch.isEmpty()){
+			return new ArrayList<ChangeMessage>(0);
+		}
+		Object[] changeNumbers = getChangeNumbers(batch);
+		String inList = createPlaceholders(batch.size(), "?");
+		// A change number is only in the changes table while it is the current change of its object.
+		Set<Long> current = new HashSet<Long>(jdbcTemplate.query(SQL_CHANGE_NUMBERS_PREFIX+inList+SQL_IN_SUFFIX, new SingleColumnRowMapper<Long>(), changeNumbers));
+		Set<Long> sent = new HashSet<Long>(jdbcTemplate.query(SQL_SENT_CHANGE_NUMBERS_PREFIX+inList+SQL_IN_SUFFIX, new SingleColumnRowMapper<Long>(), changeNumbers));
+		List<ChangeMessage> toSend = new ArrayList<ChangeMessage>(current.size());
+		for(ChangeMessage message: batch){
+			// Each change number is only claimed once.
+			if(current.remove(message.getChangeNumber()) && !sent.contains(message.getChangeNumber())){
+				toSend.add(message);
+			}
+		}
+		Collections.sort(toSend, new Comparator<ChangeMessage>() {
+			@Override
+			public int compare(ChangeMessage one, ChangeMessage two) {
+				return one.getChangeNumber().compareTo(two.getChangeNumber());
+			}
+		});
+		return toSend;
+	}
+
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Override
+	public List<ChangeMessage> registerMessagesSent(List<ChangeMessage> batch) {
+		if(batch == null) throw new IllegalArgumentException("Batch cannot be null");
+		if(batch.isEmpty()){
+			return new ArrayList<ChangeMessage>(0);
+		}
+		/*
+		 * Lock the changes that are still current so they cannot be replaced
+		 * until the sent markers are written. A change replaced since it was
+		 * sent is left unsent so its new message is sent.
+		 */
+		Set<Long> current = new HashSet<Long>(jdbcTemplate.query(SQL_CHANGE_NUMBERS_PREFIX+createPlaceholders(batch.size(), "?")+SQL_FOR_UPDATE_SUFFIX, new SingleColumnRowMapper<Long>(), getChangeNumbers(batch)));
+		List<ChangeMessage> registered = new ArrayList<ChangeMessage>(current.size());
+		for(ChangeMessage message: batch){
+			if(current.remove(message.getChangeNumber())){
+				registered.add(message);
+			}
+		}
+		if(registered.isEmpty()){
+			return registered;
+		}
+		Object[] args = new Object[registered.size()*3];
+		int index = 0;
+		for(ChangeMessage message: registered){
+			args[index++] = message.getChangeNumber();
+			args[index++] = KeyFactory.stringToKey(message.getObjectId());
+			args[index++] = message.getObjectType().name();
+		}
+		jdbcTemplate.update(SQL_INSERT_SENT_PREFIX+createPlaceholders(registered.size(), "(?, ?, ?)")+SQL_INSERT_SENT_SUFFIX, args);
+		return registered;
+	}
+
+	/**
+	 * The change number of each message of a batch.
+	 * @param batch
+	 * @return
+	 */
+	private static Object[] getChangeNumbers(List<ChangeMessage> batch){
+		Object[] changeNumbers = new Object[batch.size()];
+		for(int i=0; i<batch.size(); i++){
+			ChangeMessage message = batch.get(i);
+			if(message.getChangeNumber() == null) throw new IllegalArgumentException("Change.changeNumber cannot be null");
+			changeNumbers[i] = message.getChangeNumber();
+		}
+		return changeNumbers;
+	}
+
+	/**
+	 * Join count copies of the given placeholder with commas.
+	 * @param count
+	 * @param placeholder
+	 * @return
+	 */
+	private static String createPlaceholders(int count, String placeholder){
+		StringBuilder builder = new StringBuilder();
+		for(int i=0; i<count; i++){
+			if(i > 0){
+				builder.append(", ");
+			}
+			builder.append(placeholder);
+		}
+		return builder.toString();
+	}
+
 	/**
 	 * Select the current change number of a sent message for update.
 	 * @param sent
@@ -28,6 +28,9 @@ public class DBOGroupMembersDAOImpl implements GroupMembersDAO {
 	@Autowired
 	private UserGroupDAO userGroupDAO;
 
+	@Autowired
+	private UserInfoCache userInfoCache;
+
 	private static final String PRINCIPAL_ID_PARAM_NAME = "principalId";
 	private static final String GROUP_ID_PARAM_NAME     = "groupId";
 	private static final String MEMBER_ID_PARAM_NAME    = "memberId";
@@ -109,6 +112,8 @@ public class DBOGroupMembersDAOImpl implements GroupMembersDAO {
 		
 		// Update the etag on the parent group
 		userGroupDAO.touch(Long.parseLong(groupId));
+		// The members now belong to another group
+		userInfoCache.invalidate(memberIds);
 	}
 
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
@@ -134,6 +139,8 @@ public class DBOGroupMembersDAOImpl implements GroupMembersDAO {
 		
 		// Update the etag on the parent group
 		userGroupDAO.touch(Long.parseLong(groupId));
+		// The members no longer belong to the group
+		userInfoCache.invalidate(memberIds);
 	}
 
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
@@ -54,6 +54,9 @@ public class DBOUserGroupDAOImpl implements UserGroupDAO {
 	@Autowired
 	private SimpleJdbcTemplate simpleJdbcTemplate;
 	
+	@Autowired
+	private UserInfoCache userInfoCache;
+	
 	private List<BootstrapPrincipal> bootstrapPrincipals;
 	
 	private static final String ID_PARAM_NAME = "id";
@@ -245,6 +248,8 @@ public class DBOUserGroupDAOImpl implements UserGroupDAO {
 		MapSqlParameterSource param = new MapSqlParameterSource();
 		param.addValue(ID_PARAM_NAME, id);
 		basicDao.deleteObjectByPrimaryKey(DBOUserGroup.class, param);
+		// The delete cascades to the memberships of any number of users.
+		userInfoCache.invalidateAll();
 	}
 	
 	/**
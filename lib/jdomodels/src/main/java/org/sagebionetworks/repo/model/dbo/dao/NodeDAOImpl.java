@@ -4,6 +4,9 @@ import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_CURRENT_
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_FILES_CONTENT_MD5;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_FILES_CONTENT_SIZE;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_FILES_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_ANCESTOR_ANCESTOR_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_ANCESTOR_DEPTH;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_ANCESTOR_DESCENDANT_ID;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_CREATED_BY;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_CREATED_ON;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_ETAG;
@@ -28,6 +31,7 @@ import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.LIMIT_PARAM_
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.OFFSET_PARAM_NAME;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_FILES;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_NODE;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_NODE_ANCESTOR;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_NODE_TYPE_ALIAS;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_REVISION;
 
@@ -66,6 +70,7 @@ import org.sagebionetworks.repo.model.Reference;
 import org.sagebionetworks.repo.model.VersionInfo;
 import org.sagebionetworks.repo.model.dbo.DBOBasicDao;
 import org.sagebionetworks.repo.model.dbo.persistence.DBONode;
+import org.sagebionetworks.repo.model.dbo.persistence.DBONodeAncestor;
 import org.sagebionetworks.repo.model.dbo.persistence.DBONodeType;
 import org.sagebionetworks.repo.model.dbo.persistence.DBONodeTypeAlias;
 import org.sagebionetworks.repo.model.dbo.persistence.DBORevision;
@@ -104,6 +109,30 @@ public class NodeDAOImpl implements NodeDAO, InitializingBean {
 	private static final String GET_NODE_CREATED_BY_SQL = "SELECT "+COL_NODE_CREATED_BY+" FROM "+TABLE_NODE+" WHERE "+COL_NODE_ID+" = ?";
 	private static final String UPDATE_ETAG_SQL = "UPDATE "+TABLE_NODE+" SET "+COL_NODE_ETAG+" = ? WHERE "+COL_NODE_ID+" = ?";
 	private static final String SQL_SELECT_PARENT_TYPE_NAME = "SELECT "+COL_NODE_ID+", "+COL_NODE_PARENT_ID+", "+COL_NODE_TYPE+", "+COL_NODE_NAME+" FROM "+TABLE_NODE+" WHERE "+COL_NODE_ID+" = ?";
+	// Node ancestry closure
+	private static final String SQL_COUNT_SELF_ANCESTOR = "SELECT COUNT(*) FROM "+TABLE_NODE_ANCESTOR+" WHERE "+COL_NODE_ANCESTOR_DESCENDANT_ID+" = ? AND "+COL_NODE_ANCESTOR_DEPTH+" = 0";
+	private static final String SQL_INSERT_CHILD_ANCESTORS = "INSERT INTO "+TABLE_NODE_ANCESTOR+" ("+COL_NODE_ANCESTOR_ANCESTOR_ID+", "+COL_NODE_ANCESTOR_DESCENDANT_ID+", "+COL_NODE_ANCESTOR_DEPTH+")"
+			+ " SELECT "+COL_NODE_ANCESTOR_ANCESTOR_ID+", ?, "+COL_NODE_ANCESTOR_DEPTH+" + 1 FROM "+TABLE_NODE_ANCESTOR+" WHERE "+COL_NODE_ANCESTOR_DESCENDANT_ID+" = ?";
+	private static final String SQL_SELECT_PATH = "SELECT N."+COL_NODE_ID+", N."+COL_NODE_PARENT_ID+", N."+COL_NODE_TYPE+", N."+COL_NODE_NAME
+			+ " FROM "+TABLE_NODE_ANCESTOR+" A, "+TABLE_NODE+" N WHERE A."+COL_NODE_ANCESTOR_DESCENDANT_ID+" = ? AND N."+COL_NODE_ID+" = A."+COL_NODE_ANCESTOR_ANCESTOR_ID
+			+ " ORDER BY A."+COL_NODE_ANCESTOR_DEPTH+" DESC";
+	/**
+	 * Removes the links between every node in a sub-tree and every ancestor of the root of that sub-tree.
+	 */
+	private static final String SQL_DETACH_SUBTREE = "DELETE A FROM "+TABLE_NODE_ANCESTOR+" A, "+TABLE_NODE_ANCESTOR+" D, "+TABLE_NODE_ANCESTOR+" U"
+			+ " WHERE D."+COL_NODE_ANCESTOR_ANCESTOR_ID+" = ? AND A."+COL_NODE_ANCESTOR_DESCENDANT_ID+" = D."+COL_NODE_ANCESTOR_DESCENDANT_ID
+			+ " AND U."+COL_NODE_ANCESTOR_DESCENDANT_ID+" = ? AND U."+COL_NODE_ANCESTOR_DEPTH+" > 0 AND A."+COL_NODE_ANCESTOR_ANCESTOR_ID+" = U."+COL_NODE_ANCESTOR_ANCESTOR_ID;
+	/**
+	 * Links every node in a sub-tree to every ancestor of its new parent.
+	 */
+	private static final String SQL_ATTACH_SUBTREE = "INSERT INTO "+TABLE_NODE_ANCESTOR+" ("+COL_NODE_ANCESTOR_ANCESTOR_ID+", "+COL_NODE_ANCESTOR_DESCENDANT_ID+", "+COL_NODE_ANCESTOR_DEPTH+")"
+			+ " SELECT P."+COL_NODE_ANCESTOR_ANCESTOR_ID+", D."+COL_NODE_ANCESTOR_DESCENDANT_ID+", P."+COL_NODE_ANCESTOR_DEPTH+" + D."+COL_NODE_ANCESTOR_DEPTH+" + 1"
+			+ " FROM "+TABLE_NODE_ANCESTOR+" P, "+TABLE_NODE_ANCESTOR+" D WHERE P."+COL_NODE_ANCESTOR_DESCENDANT_ID+" = ? AND D."+COL_NODE_ANCESTOR_ANCESTOR_ID+" = ?";
+	private static final String SQL_CLEAR_SUBTREE = "DELETE A FROM "+TABLE_NODE_ANCESTOR+" A, "+TABLE_NODE_ANCESTOR+" D"
+			+ " WHERE D."+COL_NODE_ANCESTOR_ANCESTOR_ID+" = ? AND A."+COL_NODE_ANCESTOR_DESCENDANT_ID+" = D."+COL_NODE_ANCESTOR_DESCENDANT_ID;
+	private static final String SQL_SELECT_NODES_WITHOUT_ANCESTRY = "SELECT N."+COL_NODE_ID+" FROM "+TABLE_NODE+" N LEFT JOIN "+TABLE_NODE_ANCESTOR+" A"
+			+ " ON (A."+COL_NODE_ANCESTOR_DESCENDANT_ID+" = N."+COL_NODE_ID+" AND A."+COL_NODE_ANCESTOR_DEPTH+" = 0)"
+			+ " WHERE A."+COL_NODE_ANCESTOR_DESCENDANT_ID+" IS NULL ORDER BY N."+COL_NODE_ID+" LIMIT ?";
 	private static final String SQL_GET_ALL_CHILDREN_IDS = "SELECT "+COL_NODE_ID+" FROM "+TABLE_NODE+" WHERE "+COL_NODE_PARENT_ID+" = ? ORDER BY "+COL_NODE_ID;
 	private static final String SQL_SELECT_VERSION_LABEL = "SELECT "+COL_REVISION_LABEL+" FROM "+TABLE_REVISION+" WHERE "+COL_REVISION_OWNER_NODE+" = ? AND "+ COL_REVISION_NUMBER +" = ?";
 	private static final String NODE_IDS_LIST_PARAM_NAME = "NODE_IDS";
@@ -232,6 +261,7 @@ public class NodeDAOImpl implements NodeDAO, InitializingBean {
 			checkExceptionDetails(node.getName(), KeyFactory.keyToString(node.getParentId()), e);
 		}
 		dboBasicDao.createNew(rev);		
+		createAncestry(node.getId(), node.getParentId());
 		return KeyFactory.keyToString(node.getId());
 	}
 
@@ -568,8 +598,12 @@ public class NodeDAOImpl implements NodeDAO, InitializingBean {
 		Long nodeId = KeyFactory.stringToKey(updatedNode.getId());
 		DBONode jdoToUpdate = getNodeById(nodeId);
 		DBORevision revToUpdate = getCurrentRevision(jdoToUpdate);
+		Long oldParentId = jdoToUpdate.getParentId();
 		// Update is as simple as copying the values from the passed node.		
 		NodeUtils.updateFromDto(updatedNode, jdoToUpdate, revToUpdate, shouldDeleteActivityId(updatedNode));	
+		if(oldParentId == null ? jdoToUpdate.getParentId() != null : !oldParentId.equals(jdoToUpdate.getParentId())){
+			moveAncestry(nodeId, jdoToUpdate.getParentId());
+		}
 
 		// Update the node.
 		try{
@@ -952,12 +986,102 @@ public class NodeDAOImpl implements NodeDAO, InitializingBean {
 
 	@Override
 	public List<EntityHeader> getEntityPath(String nodeId) throws DatastoreException, NotFoundException {
-		// Call the recursive method
+		Long id = KeyFactory.stringToKey(nodeId);
+		// A single lookup when the node's ancestry is in the closure table.
+		List<EntityHeader> path = simpleJdbcTemplate.query(SQL_SELECT_PATH, new RowMapper<EntityHeader>() {
+			@Override
+			public EntityHeader mapRow(ResultSet rs, int rowNum) throws SQLException {
+				ParentTypeName ptn = new ParentTypeName();
+				ptn.setId(rs.getLong(COL_NODE_ID));
+				ptn.setParentId(rs.getLong(COL_NODE_PARENT_ID));
+				if(rs.wasNull()){
+					ptn.setParentId(null);
+				}
+				ptn.setType(rs.getShort(COL_NODE_TYPE));
+				ptn.setName(rs.getString(COL_NODE_NAME));
+				return createHeaderFromParentTypeName(ptn, null, null);
+			}
+		}, id);
+		if(!path.isEmpty()){
+			return path;
+		}
+		// Nodes that were created before the closure table existed (or migrated) walk up the parents.
 		LinkedList<EntityHeader> results = new LinkedList<EntityHeader>();
-		appendPathBatch(results, KeyFactory.stringToKey(nodeId));
+		appendPathBatch(results, id);
 		return results;
 	}
 	
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Override
+	public void clearAncestry(List<Long> nodeIds) {
+		if(nodeIds == null) throw new IllegalArgumentException("NodeIds cannot be null");
+		for(Long nodeId: nodeIds){
+			simpleJdbcTemplate.update(SQL_CLEAR_SUBTREE, nodeId);
+		}
+	}
+	
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Override
+	public int backfillAncestry(long limit) throws NotFoundException {
+		List<Map<String, Object>> rows = simpleJdbcTemplate.queryForList(SQL_SELECT_NODES_WITHOUT_ANCESTRY, limit);
+		for(Map<String, Object> row: rows){
+			ensureAncestry((Long) row.get(COL_NODE_ID));
+		}
+		return rows.size();
+	}
+	
+	/**
+	 * Add the ancestry closure rows for a new node, copying the rows of its parent.
+	 * @param nodeId
+	 * @param parentId Null for a root.
+	 * @throws NotFoundException
+	 */
+	private void createAncestry(Long nodeId, Long parentId) throws NotFoundException {
+		dboBasicDao.createNew(new DBONodeAncestor(nodeId, nodeId, 0L));
+		if(parentId != null){
+			ensureAncestry(parentId);
+			simpleJdbcTemplate.update(SQL_INSERT_CHILD_ANCESTORS, nodeId, parentId);
+		}
+	}
+	
+	/**
+	 * Move a node and its entire sub-tree to a new parent in the ancestry closure. This must be called
+	 * before the node's parent ID is changed.
+	 * @param nodeId
+	 * @param newParentId Null if the node is becoming a root.
+	 * @throws NotFoundException
+	 */
+	private void moveAncestry(Long nodeId, Long newParentId) throws NotFoundException {
+		// The ancestry must be complete before the parent changes.
+		ensureAncestry(nodeId);
+		simpleJdbcTemplate.update(SQL_DETACH_SUBTREE, nodeId, nodeId);
+		if(newParentId != null){
+			ensureAncestry(newParentId);
+			simpleJdbcTemplate.update(SQL_ATTACH_SUBTREE, newParentId, nodeId);
+		}
+	}
+	
+	/**
+	 * A node's ancestry closure is complete when it has its depth zero row. For nodes created before
+	 * the closure table existed (or migrated), the closure is built by walking up the parents.
+	 * @param nodeId
+	 * @throws NotFoundException
+	 */
+	private void ensureAncestry(Long nodeId) throws NotFoundException {
+		if(simpleJdbcTemplate.queryForLong(SQL_COUNT_SELF_ANCESTOR, nodeId) > 0) return;
+		List<DBONodeAncestor> batch = new LinkedList<DBONodeAncestor>();
+		Long currentId = nodeId;
+		while(currentId != null){
+			// ordered from leaf to root
+			List<ParentTypeName> ptns = getAncestorsPTN(currentId, BATCH_PATH_DEPTH);
+			for(ParentTypeName ptn: ptns){
+				batch.add(new DBONodeAncestor(ptn.getId(), nodeId, (long) batch.size()));
+			}
+			currentId = ptns.get(ptns.size()-1).getParentId();
+		}
+		dboBasicDao.createBatch(batch);
+	}
+	
 	/**
 	 * A recursive method to build up the full path of of an entity.
 	 * The first EntityHeader will be the Root Node, and the last EntityHeader will be the requested Node.
@@ -1134,6 +1258,7 @@ public class NodeDAOImpl implements NodeDAO, InitializingBean {
 		}
 		//get reference to new parent's JDONode, will throw exception if node isn't found
 		DBONode newParentNode = getNodeById(KeyFactory.stringToKey(newParentId));
+		moveAncestry(node.getId(), newParentNode.getId());
 		//make the update 
 		node.setParentId(newParentNode.getId());
 		dboBasicDao.update(node);
@@ -0,0 +1,113 @@
+package org.sagebionetworks.repo.model.dbo.dao;
+
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_SEARCH_INDEX_LEDGER_ENTITY_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_SEARCH_INDEX_LEDGER_ETAG;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_SEARCH_INDEX_LEDGER_INDEXED_ON;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_SEARCH_INDEX_LEDGER;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.sagebionetworks.repo.model.dao.SearchIndexLedgerDao;
+import org.sagebionetworks.repo.model.jdo.KeyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Database backed implementation of the SearchIndexLedgerDao.
+ *
+ * @author John
+ *
+ */
+public class SearchIndexLedgerDaoImpl implements SearchIndexLedgerDao {
+
+	private static final String IDS_BIND = "ids";
+	private static final String SINCE_BIND = "since";
+
+	private static final String SQL_SELECT_ETAGS = "SELECT "+COL_SEARCH_INDEX_LEDGER_ENTITY_ID+", "+COL_SEARCH_INDEX_LEDGER_ETAG+" FROM "+TABLE_SEARCH_INDEX_LEDGER+" WHERE "+COL_SEARCH_INDEX_LEDGER_ENTITY_ID+" IN (:"+IDS_BIND+") AND "+COL_SEARCH_INDEX_LEDGER_INDEXED_ON+" >= :"+SINCE_BIND;
+	private static final String SQL_INSERT_PREFIX = "INSERT INTO "+TABLE_SEARCH_INDEX_LEDGER+" ("+COL_SEARCH_INDEX_LEDGER_ENTITY_ID+", "+COL_SEARCH_INDEX_LEDGER_ETAG+", "+COL_SEARCH_INDEX_LEDGER_INDEXED_ON+") VALUES ";
+	private static final String SQL_INSERT_SUFFIX = " ON DUPLICATE KEY UPDATE "+COL_SEARCH_INDEX_LEDGER_ETAG+" = VALUES("+COL_SEARCH_INDEX_LEDGER_ETAG+"), "+COL_SEARCH_INDEX_LEDGER_INDEXED_ON+" = VALUES("+COL_SEARCH_INDEX_LEDGER_INDEXED_ON+")";
+	private static final String SQL_DELETE = "DELETE FROM "+TABLE_SEARCH_INDEX_LEDGER+" WHERE "+COL_SEARCH_INDEX_LEDGER_ENTITY_ID+" IN (:"+IDS_BIND+")";
+	private static final String SQL_DELETE_ALL = "DELETE FROM "+TABLE_SEARCH_INDEX_LEDGER+" WHERE "+COL_SEARCH_INDEX_LEDGER_ENTITY_ID+" IS NOT NULL";
+
+	@Autowired
+	private SimpleJdbcTemplate simpleJdbcTemplate;
+
+	@Override
+	public Map<String, String> getIndexedEtags(Collection<String> entityIds, long indexedSinceMS) {
+		if(entityIds == null) throw new IllegalArgumentException("EntityIds cannot be null");
+		final Map<String, String> results = new HashMap<String, String>();
+		if(entityIds.isEmpty()){
+			return results;
+		}
+		MapSqlParameterSource params = new MapSqlParameterSource();
+		params.addValue(IDS_BIND, toKeys(entityIds));
+		params.addValue(SINCE_BIND, indexedSinceMS);
+		simpleJdbcTemplate.getNamedParameterJdbcOperations().query(SQL_SELECT_ETAGS, params, new RowCallbackHandler() {
+			@Override
+			public void processRow(ResultSet rs) throws SQLException {
+				results.put(KeyFactory.keyToString(rs.getLong(COL_SEARCH_INDEX_LEDGER_ENTITY_ID)), rs.getString(COL_SEARCH_INDEX_LEDGER_ETAG));
+			}
+		});
+		return results;
+	}
+
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Override
+	public void recordIndexed(Map<String, String> entityIdToEtag) {
+		if(entityIdToEtag == null) throw new IllegalArgumentException("Etags cannot be null");
+		if(entityIdToEtag.isEmpty()){
+			return;
+		}
+		long now = System.currentTimeMillis();
+		StringBuilder sql = new StringBuilder(SQL_INSERT_PREFIX);
+		Object[] args = new Object[entityIdToEtag.size()*3];
+		int index = 0;
+		for(Map.Entry<String, String> entry: entityIdToEtag.entrySet()){
+			if(entry.getValue() == null) throw new IllegalArgumentException("Etag cannot be null for: "+entry.getKey());
+			if(index > 0){
+				sql.append(", ");
+			}
+			sql.append("(?, ?, ?)");
+			args[index++] = KeyFactory.stringToKey(entry.getKey());
+			args[index++] = entry.getValue();
+			args[index++] = now;
+		}
+		sql.append(SQL_INSERT_SUFFIX);
+		simpleJdbcTemplate.update(sql.toString(), args);
+	}
+
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Override
+	public void deleteEntries(Collection<String> entityIds) {
+		if(entityIds == null) throw new IllegalArgumentException("EntityIds cannot be null");
+		if(entityIds.isEmpty()){
+			return;
+		}
+		simpleJdbcTemplate.getNamedParameterJdbcOperations().update(SQL_DELETE, new MapSqlParameterSource(IDS_BIND, toKeys(entityIds)));
+	}
+
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Override
+	public void clear() {
+		simpleJdbcTemplate.update(SQL_DELETE_ALL);
+	}
+
+	private static Set<Long> toKeys(Collection<String> entityIds){
+		Set<Long> keys = new HashSet<Long>(entityIds.size());
+		for(String entityId: entityIds){
+			keys.add(KeyFactory.stringToKey(entityId));
+		}
+		return keys;
+	}
+
+}
@@ -0,0 +1,196 @@
+package org.sagebionetworks.repo.model.dbo.dao;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sagebionetworks.repo.model.UserInfo;
+import org.sagebionetworks.util.Clock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A bounded, in-memory LRU cache of UserInfo keyed by principal ID.
+ * <p>
+ * The group DAOs invalidate entries when memberships change on this node. Each
+ * entry also expires after a short time to live, so membership changes made on
+ * other nodes are picked up. When an invalidation happens inside a transaction,
+ * it is repeated when the transaction completes. Otherwise a concurrent reader
+ * could cache the memberships as they were before the commit, or the
+ * transaction itself could cache memberships that are then rolled back.
+ * <p>
+ * UserInfo is mutable, so entries are copied on the way in and out.
+ *
+ * @author John
+ *
+ */
+public class UserInfoCache {
+
+	private final int maxEntries;
+	private final long timeToLiveMS;
+	private final LinkedHashMap<Long, CacheEntry> entries;
+	private final AtomicLong hitCount = new AtomicLong(0);
+	private final AtomicLong missCount = new AtomicLong(0);
+
+	@Autowired
+	private Clock clock;
+
+	/**
+	 *
+	 * @param maxEntries The maximum number of users held in the cache.
+	 * @param timeToLiveMS Each entry is reloaded after this much time.
+	 */
+	public UserInfoCache(int maxEntries, long timeToLiveMS) {
+		if(maxEntries < 1) throw new IllegalArgumentException("maxEntries must be greater than zero");
+		this.maxEntries = maxEntries;
+		this.timeToLiveMS = timeToLiveMS;
+		// Access order makes this an LRU.
+		this.entries = new LinkedHashMap<Long, CacheEntry>(16, 0.75f, true);
+	}
+
+	/**
+	 * Used for mock testing.
+	 *
+	 * @param clock
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Get a copy of the cached UserInfo for a principal.
+	 *
+	 * @param principalId
+	 * @return null if the principal is not in the cache or has expired.
+	 */
+	public synchronized UserInfo get(Long principalId) {
+		CacheEntry entry = entries.get(principalId);
+		if(entry != null && clock.currentTimeMillis() > entry.expiresOn){
+			entries.remove(principalId);
+			entry = null;
+		}
+		if(entry == null){
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return copy(entry.userInfo);
+	}
+
+	/**
+	 * Cache a copy of the passed UserInfo.
+	 *
+	 * @param userInfo
+	 */
+	public synchronized void put(UserInfo userInfo) {
+		if(userInfo == null) throw new IllegalArgumentException("UserInfo cannot be null");
+		if(userInfo.getId() == null) throw new IllegalArgumentException("UserInfo.id cannot be null");
+		entries.put(userInfo.getId(), new CacheEntry(copy(userInfo), clock.currentTimeMillis()+timeToLiveMS));
+		// Drop the least recently used entries.
+		while(entries.size() > maxEntries){
+			entries.remove(entries.keySet().iterator().next());
+		}
+	}
+
+	/**
+	 * Remove the passed principals from the cache now and again after the
+	 * current transaction completes.
+	 *
+	 * @param principalIds
+	 */
+	public void invalidate(Collection<String> principalIds) {
+		final List<Long> ids = new LinkedList<Long>();
+		for(String id: principalIds){
+			ids.add(Long.parseLong(id));
+		}
+		removeAll(ids);
+		if(TransactionSynchronizationManager.isSynchronizationActive()){
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					removeAll(ids);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Clear the entire cache now and again after the current transaction
+	 * completes.
+	 */
+	public void invalidateAll() {
+		clear();
+		if(TransactionSynchronizationManager.isSynchronizationActive()){
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					clear();
+				}
+			});
+		}
+	}
+
+	private synchronized void removeAll(List<Long> ids) {
+		for(Long id: ids){
+			entries.remove(id);
+		}
+	}
+
+	private synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * The number of calls to {@link #get(Long)} that found a live entry.
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * The number of calls to {@link #get(Long)} that did not find a live entry.
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * The number of users currently in the cache.
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private static UserInfo copy(UserInfo userInfo) {
+		UserInfo copy = new UserInfo(userInfo.isAdmin());
+		copy.setId(userInfo.getId());
+		if(userInfo.getCreationDate() != null){
+			copy.setCreationDate(new Date(userInfo.getCreationDate().getTime()));
+		}
+		if(userInfo.getGroups() != null){
+			copy.setGroups(new HashSet<Long>(userInfo.getGroups()));
+		}
+		return copy;
+	}
+
+	private static class CacheEntry {
+		final UserInfo userInfo;
+		final long expiresOn;
+
+		CacheEntry(UserInfo userInfo, long expiresOn) {
+			this.userInfo = userInfo;
+			this.expiresOn = expiresOn;
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package org.sagebionetworks.repo.model.dbo.dao.semaphore;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.PropertyAccessor;
+import org.sagebionetworks.repo.model.dao.semaphore.SemaphoreGatedRunner;
+import org.sagebionetworks.repo.model.dao.semaphore.ThrottleUsageDao;
+import org.sagebionetworks.repo.model.exception.LockUnavilableException;
+import org.sagebionetworks.util.Clock;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A gate that limits the number of concurrent runners for each key (for
+ * example, a user) without touching the database for each call. Each node
+ * keeps a concurrency counter for each key in memory. At a regular interval
+ * {@link #reconcile()} reads the usage of the rest of the cluster, and
+ * reports the local counters with a single batched write when they have
+ * changed.
+ * <p>
+ * A call is allowed when the local plus the last known remote concurrency for
+ * its key is below the maximum number of runners. Since remote usage is only
+ * as fresh as the last reconcile, the cluster-wide limit can be exceeded for
+ * at most one reconcile interval; the limit on a single node is always exact.
+ *
+ * @author John
+ *
+ */
+public class CountingGatedRunnerImpl implements SemaphoreGatedRunner {
+
+	static private Logger log = LogManager.getLogger(CountingGatedRunnerImpl.class);
+
+	/**
+	 * Reported usage is ignored if it is not refreshed within this time.
+	 */
+	public static final long DEFAULT_USAGE_TIMEOUT_MS = 10*1000;
+	/**
+	 * Idle keys are dropped from memory after this time.
+	 */
+	public static final long IDLE_KEY_TIMEOUT_MS = 60*1000;
+
+	@Autowired
+	private ThrottleUsageDao throttleUsageDao;
+	@Autowired
+	private Clock clock;
+
+	private PropertyAccessor<Integer> maxNumberRunners;
+	private long usageTimeoutMS = DEFAULT_USAGE_TIMEOUT_MS;
+	private String semaphoreKey;
+	private Runnable runner;
+	private final String nodeId = UUID.randomUUID().toString();
+
+	private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private volatile Map<String, Long> clusterUsage = Collections.emptyMap();
+	/**
+	 * The usage written by the last report. Only used by reconcile().
+	 */
+	private Map<String, Long> lastReported = Collections.emptyMap();
+	private long lastReportedOn = 0L;
+
+	/**
+	 * Injected via Spring
+	 *
+	 * @param maxNumberRunners The maximum number of concurrent runners for a single key across the entire cluster. Set
+	 *        this to a number less than one to disable this runner.
+	 */
+	public void setMaxNumberRunnersAccessor(PropertyAccessor<Integer> maxNumberRunners) {
+		this.maxNumberRunners = maxNumberRunners;
+	}
+
+	/**
+	 * Injected via Spring
+	 *
+	 * @param usageTimeoutMS Reported usage is ignored if it is not refreshed within this time. This must be longer
+	 *        than twice the reconcile interval.
+	 */
+	public void setUsageTimeoutMS(long usageTimeoutMS) {
+		this.usageTimeoutMS = usageTimeoutMS;
+	}
+
+	/**
+	 * Injected via Spring. Only needed by {@link #attemptToRun()}.
+	 *
+	 * @param semaphoreKey The key counted for each run of the runner.
+	 */
+	public void setSemaphoreKey(String semaphoreKey) {
+		if(semaphoreKey == null) throw new IllegalArgumentException("semaphoreKey cannot be null");
+		this.semaphoreKey = semaphoreKey;
+	}
+
+	/**
+	 * Injected via Spring. Only needed by {@link #attemptToRun()}.
+	 *
+	 * @param runner When a slot is acquired, the run() of this runner will be called.
+	 */
+	public void setRunner(Runnable runner) {
+		if(runner == null) throw new IllegalArgumentException("Runner cannot be null");
+		this.runner = runner;
+	}
+
+	/**
+	 * Used for mock testing.
+	 *
+	 * @param throttleUsageDao
+	 */
+	public void setThrottleUsageDao(ThrottleUsageDao throttleUsageDao) {
+		this.throttleUsageDao = throttleUsageDao;
+	}
+
+	/**
+	 * Used for mock testing.
+	 *
+	 * @param clock
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	@Override
+	public void attemptToRun() {
+		if(this.semaphoreKey == null) throw new IllegalArgumentException("semaphoreKey cannot be null");
+		if(this.runner == null) throw new IllegalArgumentException("Runner cannot be null");
+		// do nothing if the max number of of runner is less than one
+		if (maxNumberRunners.get() < 1) {
+			if (log.isDebugEnabled()) {
+				log.debug("Max number of runners is less than one so the runner will not be run");
+			}
+			return;
+		}
+		Counter counter = tryAcquire(semaphoreKey);
+		if (counter == null) {
+			// Every slot is in use.
+			return;
+		}
+		try {
+			runner.run();
+		} catch (Exception e) {
+			log.error("runner failed: ", e);
+		} finally {
+			release(counter);
+		}
+	}
+
+	@Override
+	public <T> T attemptToRunAllSlots(Callable<T> task, String extraKey) throws Exception {
+		if (extraKey == null)
+			throw new IllegalArgumentException("Key cannot be null");
+		// do nothing if the max number of of runner is less than one
+		if (maxNumberRunners.get() < 1) {
+			if (log.isDebugEnabled()) {
+				log.debug("Max number of runners is less than one so the runner will not be run");
+			}
+			return null;
+		}
+		Counter counter = tryAcquire(extraKey);
+		if (counter == null) {
+			throw new LockUnavilableException("No empty slot available");
+		}
+		try {
+			return task.call();
+		} finally {
+			release(counter);
+		}
+	}
+
+	/**
+	 * Take a slot from the counter of the given key.
+	 *
+	 * @param key
+	 * @return The counter that was charged or null if the key is at its limit.
+	 */
+	Counter tryAcquire(String key) {
+		while (true) {
+			Counter counter = counters.get(key);
+			if (counter == null) {
+				counter = new Counter(clock.currentTimeMillis());
+				Counter existing = counters.putIfAbsent(key, counter);
+				if (existing != null) {
+					counter = existing;
+				}
+			}
+			synchronized (counter) {
+				if (counter.removed) {
+					// This counter was dropped while idle so try again with a new one.
+					continue;
+				}
+				Long remote = clusterUsage.get(key);
+				long clusterConcurrent = counter.concurrent + (remote == null ? 0L : remote);
+				if (clusterConcurrent >= maxNumberRunners.get()) {
+					return null;
+				}
+				counter.concurrent++;
+				counter.lastUsed = clock.currentTimeMillis();
+				return counter;
+			}
+		}
+	}
+
+	private void release(Counter counter) {
+		synchronized (counter) {
+			counter.concurrent--;
+		}
+	}
+
+	/**
+	 * Called from a timer to learn the usage of the other nodes and to share
+	 * this node's usage with the rest of the cluster. The usage is only
+	 * written when it has changed or when the last report is half way to its
+	 * timeout. Also drops the keys that have been idle for a while.
+	 */
+	public synchronized void reconcile() {
+		long now = clock.currentTimeMillis();
+		Map<String, Long> localUsage = new HashMap<String, Long>();
+		Iterator<Map.Entry<String, Counter>> it = counters.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Counter> entry = it.next();
+			Counter counter = entry.getValue();
+			synchronized (counter) {
+				if (counter.concurrent > 0) {
+					localUsage.put(entry.getKey(), (long) counter.concurrent);
+				} else if (now - counter.lastUsed > IDLE_KEY_TIMEOUT_MS) {
+					counter.removed = true;
+					it.remove();
+				}
+			}
+		}
+		boolean changed = !localUsage.equals(lastReported);
+		boolean refresh = !localUsage.isEmpty() && now - lastReportedOn > usageTimeoutMS / 2;
+		if (changed || refresh) {
+			throttleUsageDao.reportUsage(nodeId, localUsage, usageTimeoutMS);
+			lastReported = localUsage;
+			lastReportedOn = now;
+		}
+		clusterUsage = throttleUsageDao.getClusterUsage(nodeId);
+	}
+
+	@Override
+	public List<String> getAllLockKeys(String extraKey) {
+		// There is a single counter for each key.
+		return Lists.newArrayList(extraKey);
+	}
+
+	/**
+	 * The number of keys currently held in memory.
+	 *
+	 * @return
+	 */
+	int getKeyCount() {
+		return counters.size();
+	}
+
+	/**
+	 * The in-memory usage of a single key.
+	 */
+	static class Counter {
+		int concurrent = 0;
+		long lastUsed;
+		boolean removed = false;
+
+		Counter(long now) {
+			this.lastUsed = now;
+		}
+	}
+}
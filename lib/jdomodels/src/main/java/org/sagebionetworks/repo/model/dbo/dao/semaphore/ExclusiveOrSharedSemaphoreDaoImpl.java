@@ -37,6 +37,7 @@ public class ExclusiveOrSharedSemaphoreDaoImpl implements
 	private static final String SQL_DELETE_ALL_LOCKS = "DELETE FROM "+TABLE_EXCLUSIVE_SEMAPHORE+" WHERE "+COL_EXCLUSIVE_SEMAPHORE_KEY+" IS NOT NULL";
 	private static final String SQL_SELECT_EXCLUSIVE_FOR_UPDATE = "SELECT * FROM "+TABLE_EXCLUSIVE_SEMAPHORE+" WHERE "+COL_EXCLUSIVE_SEMAPHORE_KEY+" = ? FOR UPDATE";
 	private static final String SQL_RELEASE_SHARED_LOCK = "DELETE FROM "+TABLE_SHARED_SEMAPHORE+" WHERE "+COL_SHARED_SEMAPHORE_KEY+" = ? AND "+COL_SHARED_SEMAPHORE_LOCK_TOKEN+" = ?";
+	private static final String SQL_RENEW_SHARED_LOCK = "UPDATE "+TABLE_SHARED_SEMAPHORE+" SET "+COL_SHARED_SEMAPHORE_EXPIRES+" = ? WHERE "+COL_SHARED_SEMAPHORE_KEY+" = ? AND "+COL_SHARED_SEMAPHORE_LOCK_TOKEN+" = ?";
 	private static final String SQL_RELEASE_EXCLUSIVE_LOCK = "UPDATE "+TABLE_EXCLUSIVE_SEMAPHORE+" SET "+COL_EXCLUSIVE_SEMAPHORE_LOCK_TOKEN+" = NULL,"+COL_EXCLUSIVE_SEMAPHORE_PRECURSOR_TOKEN+" = NULL, "+COL_EXCLUSIVE_SEMAPHORE_EXPIRES+" = NULL WHERE "+COL_EXCLUSIVE_SEMAPHORE_KEY+" = ? AND "+COL_EXCLUSIVE_SEMAPHORE_LOCK_TOKEN+" = ?";
 
 	static private Logger log = LogManager.getLogger(DBOSemaphoreDaoImpl.class);
@@ -154,6 +155,26 @@ public class ExclusiveOrSharedSemaphoreDaoImpl implements
 		}
 	}
 
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
+	@Override
+	public void renewSharedLock(String lockKey, String token, long timeoutMS)
+			throws LockUnavilableException, LockReleaseFailedException {
+		if(lockKey == null) throw new IllegalArgumentException("Key cannot be null");
+		if(token == null) throw new IllegalArgumentException("Token cannot be null");
+		if(timeoutMS < 1) throw new IllegalArgumentException("The lock timeout must be greater than one milliseconds");
+		if(timeoutMS > maxSharedLockTimeoutMS) throw new IllegalArgumentException("Passed Timeout exceeds the maximum read-lock timeout of: "+maxSharedLockTimeoutMS+" ms");
+		// Lock the row so a write-lock cannot be issued while we renew.
+		DBOExclusiveLock exclusiveLock = getExclusiveLockForUpdate(lockKey);
+		// A read-lock cannot be extended once a writer is waiting.
+		if(exclusiveLock.getExclusivePrecursorToken() != null || exclusiveLock.getExclusiveLockToken() != null){
+			throw new LockUnavilableException("Cannot renew a read-lock at this time on resource: "+lockKey);
+		}
+		int update = simpleJdbcTemplate.update(SQL_RENEW_SHARED_LOCK, timeoutMS+System.currentTimeMillis(), lockKey, token);
+		if(update < 1){
+			throw new LockReleaseFailedException("Failed to renew the lock for key: "+lockKey+" and token: "+token+".  Expired locks can be forcibly removed.");
+		}
+	}
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
 	@Override
 	public String acquireExclusiveLockPrecursor(String lockKey)
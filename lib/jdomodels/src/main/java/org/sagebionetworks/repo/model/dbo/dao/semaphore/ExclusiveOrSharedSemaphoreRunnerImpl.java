@@ -1,7 +1,19 @@
 package org.sagebionetworks.repo.model.dbo.dao.semaphore;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.sagebionetworks.repo.model.dao.semaphore.ExclusiveOrSharedSemaphoreDao;
 import org.sagebionetworks.repo.model.dao.semaphore.ExclusiveOrSharedSemaphoreRunner;
 import org.sagebionetworks.repo.model.exception.LockUnavilableException;
@@ -10,26 +22,117 @@ import org.springframework.beans.factory.annotation.Autowired;
 /**
  * Basic implementation ExclusiveOrSharedSemaphoreRunner that leverages the
  * ExclusiveOrSharedSemaphoreDao to issue/release all locks.
- * 
+ * <p>
+ * Concurrent readers of the same key within this JVM share a single
+ * database read-lock (a lease). The first reader acquires the read-lock,
+ * later readers join it without a database call and the last reader to
+ * finish releases it. While the lease has readers it is renewed in the
+ * background by {@link #renewLeases()}, and a renewal that finds a
+ * write-lock-precursor or write-lock on the key closes the lease so new
+ * readers must go to the database (and will be rejected). A reader that would
+ * outlive the lease renews it before joining.
+ * <p>
+ * Local readers and writers of a key are also coordinated with an in-memory
+ * read/write lock that exists only while the key is in use. A writer holds it
+ * while it acquires the database write-lock so local readers of that key stop
+ * joining its lease. A reader that cannot get it goes straight to the
+ * database. Readers and writers of different keys never wait on each other.
+ * The database remains the only source of truth for exclusivity across
+ * machines.
+ *
  * @author John
- * 
+ *
  */
 public class ExclusiveOrSharedSemaphoreRunnerImpl implements
 		ExclusiveOrSharedSemaphoreRunner {
 
+	static private Logger log = LogManager.getLogger(ExclusiveOrSharedSemaphoreRunnerImpl.class);
+
 	public static long WAIT_FOR_READ_RELEASE_MS = 500;
-	
+	/**
+	 * The default frequency of lease renewals.
+	 */
+	public static final long DEFAULT_LEASE_RENEWAL_INTERVAL_MS = 1000;
+
 	@Autowired
 	ExclusiveOrSharedSemaphoreDao exclusiveOrSharedSemaphoreDao;
 
+	private long leaseRenewalIntervalMS = DEFAULT_LEASE_RENEWAL_INTERVAL_MS;
+	/**
+	 * The in-memory lock of each key that is in use by this JVM. Guarded by itself.
+	 */
+	private final Map<String, LocalLock> localLocks = new HashMap<String, LocalLock>();
+	/**
+	 * The shared leases currently held by this JVM. Guarded by itself.
+	 */
+	private final Map<String, SharedLease> sharedLeases = new HashMap<String, SharedLease>();
+	private ScheduledExecutorService renewalExecutor;
+
+	/**
+	 * Injected via Spring.
+	 *
+	 * @param leaseRenewalIntervalMS
+	 */
+	public void setLeaseRenewalIntervalMS(long leaseRenewalIntervalMS) {
+		this.leaseRenewalIntervalMS = leaseRenewalIntervalMS;
+	}
+
+	/**
+	 * Called when the Spring bean is initialized to start the lease renewals.
+	 */
+	public void initialize() {
+		renewalExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "shared-lease-renewal");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		renewalExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					renewLeases();
+				} catch (Throwable e) {
+					log.error("Failed to renew shared leases", e);
+				}
+			}
+		}, leaseRenewalIntervalMS, leaseRenewalIntervalMS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Called when the Spring bean is destroyed.
+	 */
+	public void close() {
+		if (renewalExecutor != null) {
+			renewalExecutor.shutdownNow();
+		}
+	}
+
 	@Override
 	public <T> T tryRunWithExclusiveLock(String lockKey, long lockTimeoutMS,
 			Callable<T> runner) throws Exception {
-		// First we need to acquire the write-lock-precursor to block all new read-locks
-		String writeLockPrecursor = exclusiveOrSharedSemaphoreDao.acquireExclusiveLockPrecursor(lockKey);
-		String writeLock = null;
 		long start = System.currentTimeMillis();
+		// Block local readers from joining the lease while we acquire the write-lock.
+		LocalLock local = acquireLocalLock(lockKey);
+		Lock localWriteLock = local.lock.writeLock();
+		boolean locked = false;
+		try {
+			// Only local readers of this key can hold it.
+			locked = localWriteLock.tryLock(lockTimeoutMS, TimeUnit.MILLISECONDS);
+		} finally {
+			if(!locked){
+				releaseLocalLock(local);
+			}
+		}
+		if(!locked){
+			throw new LockUnavilableException("Failed to acquire a write-lock on: "+lockKey+" before timing-out.");
+		}
+		String writeLock = null;
 		try {
+			// First we need to acquire the write-lock-precursor to block all new read-locks
+			String writeLockPrecursor = exclusiveOrSharedSemaphoreDao.acquireExclusiveLockPrecursor(lockKey);
 			while (writeLock == null) {
 				// Break out of the loop if we have failed to acquire the write-lock before the given timeout
 				if((System.currentTimeMillis()-start) > lockTimeoutMS) throw new LockUnavilableException("Failed to acquire a write-lock on: "+lockKey+" before timing-out.");
@@ -42,19 +145,53 @@ public class ExclusiveOrSharedSemaphoreRunnerImpl implements
 					Thread.sleep(WAIT_FOR_READ_RELEASE_MS);
 				}
 			}
+		} finally {
+			// The database now protects the resource.
+			localWriteLock.unlock();
+			releaseLocalLock(local);
+		}
+		try {
 			// Now that we are holding the write-lock we can call the caller
 			return runner.call();
 		} finally {
-			// We must release the write lock if one was issued.
-			if(writeLock != null){
-				exclusiveOrSharedSemaphoreDao.releaseExclusiveLock(lockKey, writeLock);
-			}
+			// We must release the write lock that was issued.
+			exclusiveOrSharedSemaphoreDao.releaseExclusiveLock(lockKey, writeLock);
 		}
 	}
 
 	@Override
 	public <T> T tryRunWithSharedLock(String lockKey, long lockTimeoutMS,
 			Callable<T> runner) throws Exception {
+		LocalLock local = acquireLocalLock(lockKey);
+		Lock localReadLock = local.lock.readLock();
+		// This respects fairness so it fails when a local writer of this key is waiting.
+		if(!localReadLock.tryLock(0, TimeUnit.MILLISECONDS)){
+			releaseLocalLock(local);
+			return runWithDatabaseSharedLock(lockKey, lockTimeoutMS, runner);
+		}
+		try{
+			SharedLease lease = joinSharedLease(lockKey, lockTimeoutMS);
+			if(lease == null){
+				// The lease cannot be used by this reader.
+				return runWithDatabaseSharedLock(lockKey, lockTimeoutMS, runner);
+			}
+			try{
+				// Call the runner while the lease holds the read-lock
+				return runner.call();
+			}finally{
+				leaveSharedLease(lease);
+			}
+		}finally{
+			localReadLock.unlock();
+			releaseLocalLock(local);
+		}
+	}
+
+	/**
+	 * Run with a read-lock that is not shared with any other reader.
+	 */
+	private <T> T runWithDatabaseSharedLock(String lockKey, long lockTimeoutMS,
+			Callable<T> runner) throws Exception {
 		// Acquire a read-lock on this resource
 		String readLockToken = exclusiveOrSharedSemaphoreDao.acquireSharedLock(lockKey, lockTimeoutMS);
 		try{
@@ -66,4 +203,232 @@ public class ExclusiveOrSharedSemaphoreRunnerImpl implements
 		}
 	}
 
+	/**
+	 * Join the lease for the given key, acquiring the database read-lock if
+	 * this is the first reader.
+	 *
+	 * @param lockKey
+	 * @param lockTimeoutMS
+	 * @return The joined lease or null if the lease cannot be joined.
+	 * @throws LockUnavilableException
+	 *             If the database read-lock could not be acquired.
+	 */
+	SharedLease joinSharedLease(String lockKey, long lockTimeoutMS) {
+		long start = System.currentTimeMillis();
+		SharedLease lease;
+		synchronized (sharedLeases) {
+			lease = sharedLeases.get(lockKey);
+			if(lease == null){
+				lease = new SharedLease(lockKey);
+				sharedLeases.put(lockKey, lease);
+			}
+			// Reserve our place so the lease is not released while we wait.
+			lease.holders++;
+		}
+		synchronized (lease) {
+			if(lease.token == null && !lease.closed){
+				try {
+					lease.token = exclusiveOrSharedSemaphoreDao.acquireSharedLock(lockKey, lockTimeoutMS);
+				} catch (RuntimeException e) {
+					lease.closed = true;
+					leaveSharedLease(lease);
+					throw e;
+				}
+				lease.timeoutMS = lockTimeoutMS;
+				lease.expiresOn = start + lockTimeoutMS;
+				lease.lastDeadline = lease.expiresOn;
+				return lease;
+			}
+			long now = System.currentTimeMillis();
+			long deadline = now + lockTimeoutMS;
+			if(!lease.closed && deadline > lease.expiresOn){
+				// Extend the lease to cover this reader and the readers that follow it.
+				renewLease(lease, Math.max(lease.timeoutMS, lockTimeoutMS), now);
+			}
+			if(lease.closed){
+				leaveSharedLease(lease);
+				return null;
+			}
+			lease.lastDeadline = Math.max(lease.lastDeadline, deadline);
+			return lease;
+		}
+	}
+
+	/**
+	 * Leave a lease, releasing the database read-lock if this was the last
+	 * reader.
+	 *
+	 * @param lease
+	 */
+	void leaveSharedLease(SharedLease lease) {
+		synchronized (sharedLeases) {
+			lease.holders--;
+			if(lease.holders > 0){
+				return;
+			}
+			if(sharedLeases.get(lease.lockKey) == lease){
+				sharedLeases.remove(lease.lockKey);
+			}
+		}
+		synchronized (lease) {
+			// Nobody can join a lease once it is removed.
+			lease.closed = true;
+			if(lease.token != null){
+				String token = lease.token;
+				lease.token = null;
+				exclusiveOrSharedSemaphoreDao.releaseSharedLock(lease.lockKey, token);
+			}
+		}
+	}
+
+	/**
+	 * Renew the database read-lock of each lease that still has readers so
+	 * new readers can keep joining it. A lease is only renewed while its
+	 * readers are within their own timeouts, and renewals extend the lock by
+	 * the largest reader timeout plus one renewal interval.
+	 */
+	void renewLeases() {
+		List<SharedLease> leases;
+		synchronized (sharedLeases) {
+			leases = new ArrayList<SharedLease>(sharedLeases.values());
+		}
+		for(SharedLease lease: leases){
+			synchronized (lease) {
+				if(lease.closed || lease.token == null) continue;
+				long now = System.currentTimeMillis();
+				if(now > lease.lastDeadline){
+					// Do not keep a lock alive for readers that have over-run their timeouts.
+					lease.closed = true;
+					continue;
+				}
+				if(lease.expiresOn - now > lease.timeoutMS){
+					// Readers can still join without a renewal.
+					continue;
+				}
+				renewLease(lease, lease.timeoutMS, now);
+			}
+		}
+	}
+
+	/**
+	 * Extend the database read-lock of a lease by the given timeout plus one
+	 * renewal interval. The lease is closed if it cannot be renewed. Must be
+	 * called while synchronized on the lease.
+	 *
+	 * @param lease
+	 * @param timeoutMS
+	 * @param now
+	 */
+	private void renewLease(SharedLease lease, long timeoutMS, long now) {
+		long extensionMS = timeoutMS + leaseRenewalIntervalMS;
+		try {
+			exclusiveOrSharedSemaphoreDao.renewSharedLock(lease.lockKey, lease.token, extensionMS);
+			lease.timeoutMS = timeoutMS;
+			lease.expiresOn = now + extensionMS;
+		} catch (LockUnavilableException e) {
+			// A writer is waiting so no new reader can join this lease.
+			lease.closed = true;
+		} catch (RuntimeException e) {
+			log.warn("Failed to renew the read-lock on: "+lease.lockKey, e);
+			lease.closed = true;
+		}
+	}
+
+	/**
+	 * The number of keys with a lease.
+	 *
+	 * @return
+	 */
+	int getSharedLeaseCount() {
+		synchronized (sharedLeases) {
+			return sharedLeases.size();
+		}
+	}
+
+	/**
+	 * The number of keys with an in-memory lock.
+	 *
+	 * @return
+	 */
+	int getLocalLockCount() {
+		synchronized (localLocks) {
+			return localLocks.size();
+		}
+	}
+
+	/**
+	 * Get the in-memory lock of a key, creating it if this is its first user.
+	 * Each call must be matched by a call to {@link #releaseLocalLock(LocalLock)}.
+	 *
+	 * @param lockKey
+	 * @return
+	 */
+	private LocalLock acquireLocalLock(String lockKey) {
+		if(lockKey == null) throw new IllegalArgumentException("Key cannot be null");
+		synchronized (localLocks) {
+			LocalLock local = localLocks.get(lockKey);
+			if(local == null){
+				local = new LocalLock(lockKey);
+				localLocks.put(lockKey, local);
+			}
+			local.references++;
+			return local;
+		}
+	}
+
+	/**
+	 * Remove the in-memory lock of a key once it has no users.
+	 *
+	 * @param local
+	 */
+	private void releaseLocalLock(LocalLock local) {
+		synchronized (localLocks) {
+			local.references--;
+			if(local.references < 1){
+				localLocks.remove(local.lockKey);
+			}
+		}
+	}
+
+	/**
+	 * The in-memory read/write lock of a single key.
+	 */
+	static class LocalLock {
+		final String lockKey;
+		/**
+		 * Fair so a waiting writer stops new readers from joining the lease.
+		 */
+		final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+		/**
+		 * Guarded by the lock map.
+		 */
+		int references = 0;
+
+		LocalLock(String lockKey) {
+			this.lockKey = lockKey;
+		}
+	}
+
+	/**
+	 * A database read-lock shared by all local readers of a key.
+	 */
+	static class SharedLease {
+		final String lockKey;
+		/**
+		 * Guarded by the lease map.
+		 */
+		int holders = 0;
+		/**
+		 * The remaining fields are guarded by the lease.
+		 */
+		String token;
+		long timeoutMS;
+		long expiresOn;
+		long lastDeadline;
+		boolean closed = false;
+
+		SharedLease(String lockKey) {
+			this.lockKey = lockKey;
+		}
+	}
 }
@@ -0,0 +1,92 @@
+package org.sagebionetworks.repo.model.dbo.dao.semaphore;
+
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_THROTTLE_USAGE_CONCURRENT;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_THROTTLE_USAGE_EXPIRES;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_THROTTLE_USAGE_KEY;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_THROTTLE_USAGE_NODE;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_THROTTLE_USAGE;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.sagebionetworks.repo.model.dao.semaphore.ThrottleUsageDao;
+import org.sagebionetworks.repo.model.dbo.DBOBasicDao;
+import org.sagebionetworks.repo.model.dbo.persistence.DBOThrottleUsage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Database backed implementation of the ThrottleUsageDao.
+ * <p>
+ * Each node writes one row per throttle key it is using.
+ *
+ * @author John
+ *
+ */
+public class ThrottleUsageDaoImpl implements ThrottleUsageDao {
+
+	private static final String SQL_DELETE_NODE_OR_EXPIRED = "DELETE FROM "+TABLE_THROTTLE_USAGE+" WHERE "+COL_THROTTLE_USAGE_NODE+" = ? OR "+COL_THROTTLE_USAGE_EXPIRES+" < ?";
+	private static final String SQL_SUM_USAGE = "SELECT "+COL_THROTTLE_USAGE_KEY+", SUM("+COL_THROTTLE_USAGE_CONCURRENT+") FROM "+TABLE_THROTTLE_USAGE+" WHERE "+COL_THROTTLE_USAGE_NODE+" <> ? AND "+COL_THROTTLE_USAGE_EXPIRES+" >= ? GROUP BY "+COL_THROTTLE_USAGE_KEY;
+	private static final String SQL_DELETE_ALL = "DELETE FROM "+TABLE_THROTTLE_USAGE+" WHERE "+COL_THROTTLE_USAGE_NODE+" IS NOT NULL";
+
+	@Autowired
+	private DBOBasicDao basicDao;
+
+	@Autowired
+	private SimpleJdbcTemplate simpleJdbcTemplate;
+
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
+	@Override
+	public void reportUsage(String nodeId, Map<String, Long> concurrentByKey, long timeoutMS) {
+		if(nodeId == null) throw new IllegalArgumentException("NodeId cannot be null");
+		if(concurrentByKey == null) throw new IllegalArgumentException("Usage cannot be null");
+		long now = System.currentTimeMillis();
+		long expiration = now+timeoutMS;
+		// Clear this node's last report along with anything left by dead nodes.
+		simpleJdbcTemplate.update(SQL_DELETE_NODE_OR_EXPIRED, nodeId, now);
+		List<DBOThrottleUsage> batch = new LinkedList<DBOThrottleUsage>();
+		for(Map.Entry<String, Long> entry: concurrentByKey.entrySet()){
+			if(entry.getValue() == null || entry.getValue() < 1) continue;
+			batch.add(createUsage(nodeId, entry.getKey(), entry.getValue(), expiration));
+		}
+		if(!batch.isEmpty()){
+			basicDao.createBatch(batch);
+		}
+	}
+
+	private static DBOThrottleUsage createUsage(String nodeId, String key, Long concurrent, long expiration){
+		DBOThrottleUsage usage = new DBOThrottleUsage();
+		usage.setNodeId(nodeId);
+		usage.setKey(key);
+		usage.setConcurrent(concurrent);
+		usage.setExpiration(expiration);
+		return usage;
+	}
+
+	@Override
+	public Map<String, Long> getClusterUsage(String excludeNodeId) {
+		if(excludeNodeId == null) throw new IllegalArgumentException("NodeId cannot be null");
+		final Map<String, Long> results = new HashMap<String, Long>();
+		simpleJdbcTemplate.getJdbcOperations().query(SQL_SUM_USAGE, new RowCallbackHandler() {
+			@Override
+			public void processRow(ResultSet rs) throws SQLException {
+				results.put(rs.getString(1), rs.getLong(2));
+			}
+		}, excludeNodeId, System.currentTimeMillis());
+		return results;
+	}
+
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Override
+	public void clearAllUsage() {
+		simpleJdbcTemplate.update(SQL_DELETE_ALL);
+	}
+
+}
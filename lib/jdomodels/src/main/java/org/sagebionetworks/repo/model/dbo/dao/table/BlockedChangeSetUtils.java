@@ -0,0 +1,354 @@
+package org.sagebionetworks.repo.model.dbo.dao.table;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.sagebionetworks.repo.model.dao.table.RowHandler;
+import org.sagebionetworks.repo.model.table.ColumnModel;
+import org.sagebionetworks.repo.model.table.Row;
+import org.sagebionetworks.repo.model.table.RowSet;
+import org.sagebionetworks.util.csv.CsvNullReader;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+/**
+ * Reads and writes the blocked change set format.
+ *
+ * A blocked change set holds the same CSV rows as a csv.gz change set, but the rows are split into independently
+ * gzipped blocks followed by a footer that records the rowId range and byte offset of each block. This allows a
+ * reader to fetch only the blocks that contain the rows it needs using ranged S3 reads. The layout is:
+ *
+ * <pre>
+ * file    := block* int(0) footer trailer
+ * block   := int(length) byte[length]  (gzipped CSV rows)
+ * footer  := int(version) int(blockCount) entry*
+ * entry   := long(minRowId) long(maxRowId) long(offset) int(length) int(rowCount)
+ * trailer := int(footerLength) int(MAGIC)
+ * </pre>
+ *
+ * @author jmhill
+ *
+ */
+public class BlockedChangeSetUtils {
+
+	/**
+	 * Change sets stored with this suffix use the blocked format. All other keys are csv.gz.
+	 */
+	public static final String BLOCKED_KEY_SUFFIX = ".blk";
+	public static final int MAGIC = 0x53594E42;
+	public static final int FORMAT_VERSION = 1;
+	public static final int DEFAULT_ROWS_PER_BLOCK = 500;
+	/**
+	 * Footer entry size in bytes.
+	 */
+	static final int ENTRY_SIZE = 8 + 8 + 8 + 4 + 4;
+	static final int TRAILER_SIZE = 4 + 4;
+	/**
+	 * The number of bytes read from the end of a file in the first request. Most footers will fit in this.
+	 */
+	static final int TAIL_READ_SIZE = 4 * 1024;
+
+	/**
+	 * The footer entry of a single block.
+	 */
+	public static class BlockEntry {
+		long minRowId;
+		long maxRowId;
+		long offset;
+		int length;
+		int rowCount;
+
+		public long getMinRowId() {
+			return minRowId;
+		}
+
+		public long getMaxRowId() {
+			return maxRowId;
+		}
+
+		public long getOffset() {
+			return offset;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		public int getRowCount() {
+			return rowCount;
+		}
+	}
+
+	/**
+	 * Is the change set stored at the given key in the blocked format?
+	 *
+	 * @param key
+	 * @return
+	 */
+	public static boolean isBlockedKey(String key) {
+		return key != null && key.endsWith(BLOCKED_KEY_SUFFIX);
+	}
+
+	/**
+	 * Validate the passed RowSet and write it to the output stream in the blocked format. The stream is closed when
+	 * done.
+	 *
+	 * @param models
+	 * @param set
+	 * @param out
+	 * @param isDeletion
+	 * @param rowsPerBlock
+	 * @throws IOException
+	 */
+	public static void validateAndWriteBlocked(List<ColumnModel> models, RowSet set, OutputStream out, boolean isDeletion,
+			int rowsPerBlock) throws IOException {
+		if (rowsPerBlock < 1)
+			throw new IllegalArgumentException("Rows per block must be at least one");
+		DataOutputStream dataOut = new DataOutputStream(out);
+		try {
+			TableModelUtils.validateRowSet(set);
+			List<BlockEntry> entries = new LinkedList<BlockEntry>();
+			long offset = 0;
+			int rowCount = set.getRows().size();
+			for (int start = 0; start < rowCount; start += rowsPerBlock) {
+				RowSet blockSet = new RowSet();
+				blockSet.setHeaders(set.getHeaders());
+				blockSet.setTableId(set.getTableId());
+				blockSet.setRows(set.getRows().subList(start, Math.min(start + rowsPerBlock, rowCount)));
+				byte[] block = writeBlock(models, blockSet, isDeletion);
+				BlockEntry entry = new BlockEntry();
+				entry.minRowId = Long.MAX_VALUE;
+				entry.maxRowId = Long.MIN_VALUE;
+				for (Row row : blockSet.getRows()) {
+					entry.minRowId = Math.min(entry.minRowId, row.getRowId());
+					entry.maxRowId = Math.max(entry.maxRowId, row.getRowId());
+				}
+				entry.offset = offset + 4;
+				entry.length = block.length;
+				entry.rowCount = blockSet.getRows().size();
+				entries.add(entry);
+				dataOut.writeInt(block.length);
+				dataOut.write(block);
+				offset += 4 + block.length;
+			}
+			// marks the end of the blocks.
+			dataOut.writeInt(0);
+			// footer
+			dataOut.writeInt(FORMAT_VERSION);
+			dataOut.writeInt(entries.size());
+			for (BlockEntry entry : entries) {
+				dataOut.writeLong(entry.minRowId);
+				dataOut.writeLong(entry.maxRowId);
+				dataOut.writeLong(entry.offset);
+				dataOut.writeInt(entry.length);
+				dataOut.writeInt(entry.rowCount);
+			}
+			// trailer
+			dataOut.writeInt(4 + 4 + entries.size() * ENTRY_SIZE);
+			dataOut.writeInt(MAGIC);
+			dataOut.flush();
+		} finally {
+			dataOut.close();
+		}
+	}
+
+	/**
+	 * Write a single gzipped block.
+	 */
+	private static byte[] writeBlock(List<ColumnModel> models, RowSet blockSet, boolean isDeletion) throws IOException {
+		ByteArrayOutputStream blockOut = new ByteArrayOutputStream();
+		CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(new GZIPOutputStream(blockOut)));
+		try {
+			TableModelUtils.validateAndWriteToCSV(models, blockSet, csvWriter, isDeletion);
+		} finally {
+			csvWriter.flush();
+			csvWriter.close();
+		}
+		return blockOut.toByteArray();
+	}
+
+	/**
+	 * Scan every row of a blocked change set from a stream without loading it into memory. Only the blocks are read,
+	 * the footer is not needed.
+	 *
+	 * @param in
+	 * @param handler
+	 * @throws IOException
+	 */
+	public static void scanFromBlockedStream(InputStream in, RowHandler handler) throws IOException {
+		DataInputStream dataIn = new DataInputStream(in);
+		int length;
+		while ((length = dataIn.readInt()) > 0) {
+			byte[] block = new byte[length];
+			dataIn.readFully(block);
+			scanBlock(block, 0, length, handler);
+		}
+	}
+
+	/**
+	 * Scan the rows of a single block.
+	 *
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 * @param handler
+	 * @throws IOException
+	 */
+	public static void scanBlock(byte[] buffer, int offset, int length, RowHandler handler) throws IOException {
+		CsvNullReader csvReader = new CsvNullReader(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(buffer, offset,
+				length))));
+		try {
+			TableModelUtils.scanFromCSV(csvReader, handler);
+		} finally {
+			csvReader.close();
+		}
+	}
+
+	/**
+	 * Read the footer entries from the tail of a blocked file.
+	 *
+	 * @param tail
+	 *            The last bytes of the file. Must include the entire footer and trailer.
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<BlockEntry> readFooter(byte[] tail) throws IOException {
+		int footerLength = readFooterLength(tail);
+		if (footerLength + TRAILER_SIZE > tail.length)
+			throw new IllegalArgumentException("The passed tail does not contain the entire footer");
+		DataInputStream dataIn = new DataInputStream(new ByteArrayInputStream(tail, tail.length - TRAILER_SIZE - footerLength,
+				footerLength));
+		int version = dataIn.readInt();
+		if (version != FORMAT_VERSION)
+			throw new IllegalArgumentException("Unknown blocked change set version: " + version);
+		int count = dataIn.readInt();
+		List<BlockEntry> entries = new LinkedList<BlockEntry>();
+		for (int i = 0; i < count; i++) {
+			BlockEntry entry = new BlockEntry();
+			entry.minRowId = dataIn.readLong();
+			entry.maxRowId = dataIn.readLong();
+			entry.offset = dataIn.readLong();
+			entry.length = dataIn.readInt();
+			entry.rowCount = dataIn.readInt();
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	/**
+	 * Read the length of the footer from the trailer at the end of the passed tail.
+	 *
+	 * @param tail
+	 * @return
+	 * @throws IOException
+	 */
+	static int readFooterLength(byte[] tail) throws IOException {
+		if (tail.length < TRAILER_SIZE)
+			throw new IllegalArgumentException("Not a blocked change set: too short");
+		DataInputStream dataIn = new DataInputStream(new ByteArrayInputStream(tail, tail.length - TRAILER_SIZE, TRAILER_SIZE));
+		int footerLength = dataIn.readInt();
+		int magic = dataIn.readInt();
+		if (magic != MAGIC)
+			throw new IllegalArgumentException("Not a blocked change set: bad magic number");
+		return footerLength;
+	}
+
+	/**
+	 * Select the blocks whose rowId range includes at least one of the passed rowIds.
+	 *
+	 * @param entries
+	 * @param rowIds
+	 * @return
+	 */
+	public static List<BlockEntry> selectBlocks(List<BlockEntry> entries, Set<Long> rowIds) {
+		TreeSet<Long> sorted = new TreeSet<Long>(rowIds);
+		List<BlockEntry> selected = new LinkedList<BlockEntry>();
+		for (BlockEntry entry : entries) {
+			Long first = sorted.ceiling(entry.minRowId);
+			if (first != null && first <= entry.maxRowId) {
+				selected.add(entry);
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Scan only the blocks of a blocked change set in S3 that could contain the requested rows, using ranged reads.
+	 * Adjacent blocks are fetched with a single request. Every row of each fetched block is passed to the handler so
+	 * the handler must still filter on rowId.
+	 *
+	 * @param s3Client
+	 * @param bucket
+	 * @param key
+	 * @param rowIds
+	 * @param handler
+	 * @throws IOException
+	 */
+	public static void scanRowsFromS3(AmazonS3Client s3Client, String bucket, String key, Set<Long> rowIds, RowHandler handler)
+			throws IOException {
+		if (rowIds.isEmpty()) {
+			return;
+		}
+		ObjectMetadata metadata = s3Client.getObjectMetadata(bucket, key);
+		long contentLength = metadata.getContentLength();
+		int tailSize = (int) Math.min(contentLength, TAIL_READ_SIZE);
+		byte[] tail = readRange(s3Client, bucket, key, contentLength - tailSize, tailSize);
+		int footerLength = readFooterLength(tail);
+		if (footerLength + TRAILER_SIZE > tail.length) {
+			// The footer did not fit in the first read.
+			tail = readRange(s3Client, bucket, key, contentLength - footerLength - TRAILER_SIZE, footerLength + TRAILER_SIZE);
+		}
+		List<BlockEntry> selected = selectBlocks(readFooter(tail), rowIds);
+		// Fetch each run of adjacent blocks with a single read.
+		int runStart = 0;
+		BlockEntry[] blocks = selected.toArray(new BlockEntry[selected.size()]);
+		while (runStart < blocks.length) {
+			int runEnd = runStart;
+			while (runEnd + 1 < blocks.length && blocks[runEnd + 1].offset == blocks[runEnd].offset + blocks[runEnd].length + 4) {
+				runEnd++;
+			}
+			long start = blocks[runStart].offset;
+			long length = blocks[runEnd].offset + blocks[runEnd].length - start;
+			byte[] run = readRange(s3Client, bucket, key, start, (int) length);
+			for (int i = runStart; i <= runEnd; i++) {
+				scanBlock(run, (int) (blocks[i].offset - start), blocks[i].length, handler);
+			}
+			runStart = runEnd + 1;
+		}
+	}
+
+	/**
+	 * Read a range of bytes of an S3 object.
+	 */
+	private static byte[] readRange(AmazonS3Client s3Client, String bucket, String key, long start, int length) throws IOException {
+		GetObjectRequest request = new GetObjectRequest(bucket, key);
+		request.setRange(start, start + length - 1);
+		S3Object object = s3Client.getObject(request);
+		try {
+			byte[] buffer = new byte[length];
+			new DataInputStream(object.getObjectContent()).readFully(buffer);
+			return buffer;
+		} finally {
+			// Need to close the stream unconditionally.
+			object.getObjectContent().close();
+		}
+	}
+}
@@ -10,7 +10,6 @@ import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.sagebionetworks.repo.model.ConflictingUpdateException;
 import org.sagebionetworks.repo.model.dao.table.RowAccessor;
 import org.sagebionetworks.repo.model.dao.table.RowHandler;
 import org.sagebionetworks.repo.model.dao.table.RowSetAccessor;
@@ -27,8 +26,6 @@ import org.sagebionetworks.repo.web.NotFoundException;
 import org.sagebionetworks.util.ProgressCallback;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
@@ -46,39 +43,6 @@ public class CachingTableRowTruthDAOImpl extends TableRowTruthDAOImpl {
 	@Autowired
 	private TableRowCache tableRowCache;
 
-	/**
-	 * Check for a row level conflicts in the passed change sets, by scanning each row of each change set and looking
-	 * for the intersection with the passed row Ids.
-	 * 
-	 * @param tableId
-	 * @param delta
-	 * @param coutToReserver
-	 * @throws ConflictingUpdateException when a conflict is found
-	 */
-	@Override
-	public void checkForRowLevelConflict(String tableIdString, RowSet delta, long minVersion) throws IOException {
-		if (delta.getEtag() == null)
-			throw new IllegalArgumentException("RowSet.etag cannot be null when rows are being updated.");
-		long versionOfEtag = getVersionForEtag(tableIdString, delta.getEtag());
-
-		Iterable<Row> updatingRows = Iterables.filter(delta.getRows(), new Predicate<Row>() {
-			@Override
-			public boolean apply(Row row) {
-				return !TableModelUtils.isNullOrInvalid(row.getRowId());
-			}
-		});
-
-		Set<Long> rowIds = TableModelUtils.getDistictValidRowIds(updatingRows);
-		Map<Long, Long> rowIdVersions = getLatestVersions(tableIdString, rowIds, minVersion);
-
-		for (Map.Entry<Long, Long> entry : rowIdVersions.entrySet()) {
-			if (entry.getValue().longValue() > versionOfEtag) {
-				throw new ConflictingUpdateException("Row id: " + entry.getKey()
-						+ " has been changes since last read.  Please get the latest value for this row and then attempt to update it again.");
-			}
-		}
-	}
-
 	@Override
 	public void truncateAllRowData() {
 		super.truncateAllRowData();
@@ -146,9 +110,10 @@ public class CachingTableRowTruthDAOImpl extends TableRowTruthDAOImpl {
 		Long tableId = KeyFactory.stringToKey(tableIdString);
 		final Map<Long, Row> resultRows = tableRowCache.getRowsFromCache(tableId, version, rowsToGet);
 		if (resultRows.size() != rowsToGet.size()) {
-			// we are still missing some (or all) rows here. Read them from S3 and add to cache
+			// we are still missing some (or all) rows here. Read the blocks that hold them from S3 and add to cache
 			final List<Row> rows = Lists.newArrayListWithCapacity(rowsToGet.size() - resultRows.size());
-			scanChange(new RowHandler() {
+			Set<Long> missingRows = Sets.difference(rowsToGet, resultRows.keySet());
+			scanChangeForRows(new RowHandler() {
 				@Override
 				public void nextRow(Row row) {
 					// Is this a row we are still looking for?
@@ -157,7 +122,7 @@ public class CachingTableRowTruthDAOImpl extends TableRowTruthDAOImpl {
 						rows.add(row);
 					}
 				}
-			}, trc);
+			}, trc, missingRows);
 			tableRowCache.putRowsInCache(tableId, rows);
 			for (Row row : rows) {
 				if (rowsToGet.contains(row.getRowId())) {
@@ -193,6 +158,7 @@ public class CachingTableRowTruthDAOImpl extends TableRowTruthDAOImpl {
 
 	@Override
 	public void updateLatestVersionCache(String tableIdString, ProgressCallback<Long> progressCallback) throws IOException {
+		super.updateLatestVersionCache(tableIdString, progressCallback);
 		if (tableRowCache.isEnabled()) {
 			Long tableId = KeyFactory.stringToKey(tableIdString);
 			// Lookup the version number for this update.
@@ -285,10 +251,14 @@ public class CachingTableRowTruthDAOImpl extends TableRowTruthDAOImpl {
 		return rowIdToRowMap;
 	}
 
+	/**
+	 * Tables whose row version index is not current yet are served from the latest version cache, so they do not fall
+	 * back to a scan of every change set until the index has been backfilled.
+	 */
 	@Override
 	public Map<Long, Long> getLatestVersions(String tableIdString, Set<Long> rowIds, long minVersion) throws IOException {
 		try {
-			if (tableRowCache.isEnabled()) {
+			if (tableRowCache.isEnabled() && !isRowVersionIndexCurrent(KeyFactory.stringToKey(tableIdString))) {
 				Long tableId = KeyFactory.stringToKey(tableIdString);
 				// Lookup the version number for this update.
 				CurrentRowCacheStatus currentStatus = tableRowCache.getLatestCurrentVersionNumber(tableId);
@@ -313,7 +283,7 @@ public class CachingTableRowTruthDAOImpl extends TableRowTruthDAOImpl {
 	public Map<Long, Long> getLatestVersions(String tableIdString, long minVersion, long rowIdOffset, long limit) throws IOException,
 			NotFoundException {
 		try {
-			if (tableRowCache.isEnabled()) {
+			if (tableRowCache.isEnabled() && !isRowVersionIndexCurrent(KeyFactory.stringToKey(tableIdString))) {
 				Long tableId = KeyFactory.stringToKey(tableIdString);
 				// Lookup the version number for this update.
 				CurrentRowCacheStatus currentStatus = tableRowCache.getLatestCurrentVersionNumber(tableId);
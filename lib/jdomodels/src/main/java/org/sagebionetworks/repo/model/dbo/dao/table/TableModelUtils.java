@@ -852,14 +852,32 @@ public class TableModelUtils {
 	 * @return
 	 */
 	public static String[] writeRowToStringArray(Row row, boolean includeRowIdAndVersion){
-		String[] array = null;
+		return writeRowToStringArray(row, includeRowIdAndVersion, null);
+	}
+	
+	/**
+	 * Write a row to a string array, reusing the passed buffer when it is the
+	 * right size. This avoids an allocation per row when streaming.
+	 * 
+	 * @param row
+	 * @param includeRowIdAndVersion
+	 * @param buffer
+	 *            Can be null.
+	 * @return The buffer, or a new array if the buffer was null or the wrong
+	 *         size.
+	 */
+	public static String[] writeRowToStringArray(Row row, boolean includeRowIdAndVersion, String[] buffer){
+		int size = includeRowIdAndVersion ? row.getValues().size()+2 : row.getValues().size();
+		String[] array = buffer;
+		if(array == null || array.length != size){
+			array = new String[size];
+		}
 		// Write this row
 		if(!includeRowIdAndVersion){
 			// For aggregates just write the values to the array.
-			array = row.getValues().toArray(new String[row.getValues().size()]);
+			array = row.getValues().toArray(array);
 		}else{
 			// For non-aggregates the rowId and rowVersion must also be written
-			array = new String[row.getValues().size()+2];
 			array[0] = row.getRowId().toString();
 			array[1] = row.getVersionNumber().toString();
 			int index = 2;
@@ -2,11 +2,18 @@ package org.sagebionetworks.repo.model.dbo.dao.table;
 
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ID_SEQUENCE;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ID_SEQUENCE_TABLE_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_ROW_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_STATUS_TABLE_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_STATUS_VERSION;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_TABLE_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_VERSION;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_TABLE_ROW_KEY;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_TABLE_ROW_TABLE_ETAG;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_TABLE_ROW_TABLE_ID;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_TABLE_ROW_VERSION;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_ROW_CHANGE;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_ROW_VERSION_INDEX;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_ROW_VERSION_INDEX_STATUS;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_TABLE_ID_SEQUENCE;
 
 import java.io.File;
@@ -15,12 +22,25 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -45,6 +65,7 @@ import org.sagebionetworks.util.ProgressCallback;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -53,6 +74,7 @@ import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.S3Object;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 
 /**
@@ -92,7 +114,7 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 			+ COL_TABLE_ROW_VERSION
 			+ " > ? ORDER BY "
 			+ COL_TABLE_ROW_VERSION + " ASC";
-	private static final String KEY_TEMPLATE = "%1$s.csv.gz";
+	private static final String KEY_TEMPLATE = "%1$s" + BlockedChangeSetUtils.BLOCKED_KEY_SUFFIX;
 	private static final String SQL_TRUNCATE_SEQUENCE_TABLE = "DELETE FROM "
 			+ TABLE_TABLE_ID_SEQUENCE + " WHERE " + COL_ID_SEQUENCE_TABLE_ID
 			+ " > 0";
@@ -101,6 +123,69 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 			+ " WHERE "
 			+ COL_ID_SEQUENCE_TABLE_ID
 			+ " = ? FOR UPDATE";
+	private static final String SQL_SELECT_INDEXED_VERSION = "SELECT "
+			+ COL_ROW_VERSION_INDEX_STATUS_VERSION + " FROM "
+			+ TABLE_ROW_VERSION_INDEX_STATUS + " WHERE "
+			+ COL_ROW_VERSION_INDEX_STATUS_TABLE_ID + " = ?";
+	private static final String SQL_INSERT_INDEXED_VERSION_IF_ABSENT = "INSERT IGNORE INTO "
+			+ TABLE_ROW_VERSION_INDEX_STATUS + " ("
+			+ COL_ROW_VERSION_INDEX_STATUS_TABLE_ID + ", "
+			+ COL_ROW_VERSION_INDEX_STATUS_VERSION + ") VALUES (?, ?)";
+	private static final String SQL_COMPARE_AND_SET_INDEXED_VERSION = "UPDATE "
+			+ TABLE_ROW_VERSION_INDEX_STATUS + " SET "
+			+ COL_ROW_VERSION_INDEX_STATUS_VERSION + " = ? WHERE "
+			+ COL_ROW_VERSION_INDEX_STATUS_TABLE_ID + " = ? AND "
+			+ COL_ROW_VERSION_INDEX_STATUS_VERSION + " = ?";
+	private static final String SQL_ADVANCE_INDEXED_VERSION = "INSERT INTO "
+			+ TABLE_ROW_VERSION_INDEX_STATUS + " ("
+			+ COL_ROW_VERSION_INDEX_STATUS_TABLE_ID + ", "
+			+ COL_ROW_VERSION_INDEX_STATUS_VERSION
+			+ ") VALUES (?, ?) ON DUPLICATE KEY UPDATE "
+			+ COL_ROW_VERSION_INDEX_STATUS_VERSION + " = GREATEST("
+			+ COL_ROW_VERSION_INDEX_STATUS_VERSION + ", VALUES("
+			+ COL_ROW_VERSION_INDEX_STATUS_VERSION + "))";
+	private static final String SQL_COUNT_CHANGES_NOT_INDEXED = "SELECT COUNT(*) FROM "
+			+ TABLE_ROW_CHANGE + " WHERE " + COL_TABLE_ROW_TABLE_ID
+			+ " = ? AND " + COL_TABLE_ROW_VERSION + " > COALESCE((SELECT "
+			+ COL_ROW_VERSION_INDEX_STATUS_VERSION + " FROM "
+			+ TABLE_ROW_VERSION_INDEX_STATUS + " WHERE "
+			+ COL_ROW_VERSION_INDEX_STATUS_TABLE_ID + " = ?), -1)";
+	private static final String SQL_DELETE_INDEXED_VERSION = "DELETE FROM "
+			+ TABLE_ROW_VERSION_INDEX_STATUS + " WHERE "
+			+ COL_ROW_VERSION_INDEX_STATUS_TABLE_ID + " = ?";
+	private static final String SQL_UPSERT_ROW_VERSION = "INSERT INTO "
+			+ TABLE_ROW_VERSION_INDEX + " (" + COL_ROW_VERSION_INDEX_TABLE_ID
+			+ ", " + COL_ROW_VERSION_INDEX_ROW_ID + ", "
+			+ COL_ROW_VERSION_INDEX_VERSION
+			+ ") VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE "
+			+ COL_ROW_VERSION_INDEX_VERSION + " = GREATEST("
+			+ COL_ROW_VERSION_INDEX_VERSION + ", VALUES("
+			+ COL_ROW_VERSION_INDEX_VERSION + "))";
+	private static final String SQL_SELECT_ROW_VERSIONS_FOR_IDS = "SELECT "
+			+ COL_ROW_VERSION_INDEX_ROW_ID + ", "
+			+ COL_ROW_VERSION_INDEX_VERSION + " FROM "
+			+ TABLE_ROW_VERSION_INDEX + " WHERE "
+			+ COL_ROW_VERSION_INDEX_TABLE_ID + " = :tableId AND "
+			+ COL_ROW_VERSION_INDEX_ROW_ID + " IN (:rowIds) AND "
+			+ COL_ROW_VERSION_INDEX_VERSION + " >= :minVersion";
+	private static final String SQL_SELECT_ROW_VERSIONS_FOR_RANGE = "SELECT "
+			+ COL_ROW_VERSION_INDEX_ROW_ID + ", "
+			+ COL_ROW_VERSION_INDEX_VERSION + " FROM "
+			+ TABLE_ROW_VERSION_INDEX + " WHERE "
+			+ COL_ROW_VERSION_INDEX_TABLE_ID + " = ? AND "
+			+ COL_ROW_VERSION_INDEX_ROW_ID + " >= ? AND "
+			+ COL_ROW_VERSION_INDEX_ROW_ID + " < ? AND "
+			+ COL_ROW_VERSION_INDEX_VERSION + " >= ?";
+	private static final String SQL_SELECT_TABLES_WITHOUT_ROW_VERSION_INDEX = "SELECT DISTINCT C."
+			+ COL_TABLE_ROW_TABLE_ID + " FROM " + TABLE_ROW_CHANGE
+			+ " C LEFT JOIN " + TABLE_ROW_VERSION_INDEX_STATUS + " S ON S."
+			+ COL_ROW_VERSION_INDEX_STATUS_TABLE_ID + " = C."
+			+ COL_TABLE_ROW_TABLE_ID + " WHERE S."
+			+ COL_ROW_VERSION_INDEX_STATUS_TABLE_ID + " IS NULL LIMIT ?";
+	private static final String SQL_DELETE_ROW_VERSIONS = "DELETE FROM "
+			+ TABLE_ROW_VERSION_INDEX + " WHERE "
+			+ COL_ROW_VERSION_INDEX_TABLE_ID + " = ?";
+	
 	@Autowired
 	private DBOBasicDao basicDao;
 	@Autowired
@@ -109,6 +194,12 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 	private AmazonS3Client s3Client;
 
 	private String s3Bucket;
+	private int rowsPerBlock = BlockedChangeSetUtils.DEFAULT_ROWS_PER_BLOCK;
+	/**
+	 * Change sets that are recorded but still being written to S3, by key.
+	 * Reads of these change sets wait for the upload.
+	 */
+	private final ConcurrentMap<String, Future<RowReferenceSet>> pendingUploads = new ConcurrentHashMap<String, Future<RowReferenceSet>>();
 
 	RowMapper<DBOTableIdSequence> sequenceRowMapper = new DBOTableIdSequence()
 			.getTableMapping();
@@ -179,6 +270,80 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 	@Override
 	public RowReferenceSet appendRowSetToTable(String userId, String tableId, List<ColumnModel> models, RowSet delta, boolean isDeletion)
 			throws IOException {
+		IdRange range = assignRowIdsAndVersion(tableId, delta);
+		// We are ready to convert the file to a CSV and save it to S3.
+		String key = createChangeSetKey();
+		saveChangeSetToS3(models, delta, isDeletion, key);
+		return recordChangeSet(userId, tableId, models, delta, range, key);
+	}
+
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Override
+	public Future<RowReferenceSet> appendRowSetToTableAsync(String userId, String tableId, final List<ColumnModel> models,
+			final RowSet delta, ExecutorService uploadExecutor) throws IOException {
+		IdRange range = assignRowIdsAndVersion(tableId, delta);
+		// The key is known before the upload so the change can be recorded now.
+		final String key = createChangeSetKey();
+		final RowReferenceSet results = recordChangeSet(userId, tableId, models, delta, range, key);
+		FutureTask<RowReferenceSet> upload = new FutureTask<RowReferenceSet>(new Callable<RowReferenceSet>() {
+			@Override
+			public RowReferenceSet call() throws Exception {
+				saveChangeSetToS3(models, delta, false, key);
+				return results;
+			}
+		}) {
+			@Override
+			protected void done() {
+				pendingUploads.remove(key);
+			}
+		};
+		// The change is already in the index so it must be pending before the upload can finish.
+		pendingUploads.put(key, upload);
+		try {
+			uploadExecutor.execute(upload);
+		} catch (RuntimeException e) {
+			pendingUploads.remove(key);
+			throw e;
+		}
+		return upload;
+	}
+
+	/**
+	 * If the change set with the passed key is still being written to S3,
+	 * wait for the upload to finish.
+	 * 
+	 * @param key
+	 * @throws IOException
+	 *             If the upload failed.
+	 */
+	private void waitForPendingUpload(String key) throws IOException {
+		Future<RowReferenceSet> upload = pendingUploads.get(key);
+		if (upload == null) {
+			return;
+		}
+		try {
+			upload.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for change set: " + key + " to be written to S3", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to write change set: " + key + " to S3", e.getCause());
+		} catch (CancellationException e) {
+			throw new IOException("Change set: " + key + " was not written to S3", e);
+		}
+	}
+
+	/**
+	 * Reserve IDs for the new rows of the passed change set, check the updated
+	 * rows for conflicts, and then assign the IDs and version number to the
+	 * rows.
+	 * 
+	 * @param tableId
+	 * @param delta
+	 * @return
+	 * @throws IOException
+	 */
+	private IdRange assignRowIdsAndVersion(String tableId, RowSet delta) throws IOException {
 		// Now set the row version numbers and ID.
 		int coutToReserver = TableModelUtils.countEmptyOrInvalidRowIds(delta);
 		// Reserver IDs for the missing
@@ -191,9 +356,25 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 
 		// Now assign the rowIds and set the version number
 		TableModelUtils.assignRowIdsAndVersionNumbers(delta, range);
-		// We are ready to convert the file to a CSV and save it to S3.
-		String key = saveCSVToS3(models, delta, isDeletion);
+		return range;
+	}
+
+	/**
+	 * Record a change set that was saved to S3 with the passed key.
+	 * 
+	 * @param userId
+	 * @param tableId
+	 * @param models
+	 * @param delta
+	 * @param range
+	 * @param key
+	 * @return
+	 */
+	private RowReferenceSet recordChangeSet(String userId, String tableId, List<ColumnModel> models, RowSet delta, IdRange range,
+			String key) {
 		List<String> headers = TableModelUtils.getHeaders(models);
+		// We hold the lock on this table, so the index cannot become current while we record this change.
+		boolean indexIsCurrent = isRowVersionIndexCurrent(KeyFactory.stringToKey(tableId));
 		// record the change
 		DBOTableRowChange changeDBO = new DBOTableRowChange();
 		changeDBO.setTableId(KeyFactory.stringToKey(tableId));
@@ -207,6 +388,15 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 		changeDBO.setBucket(s3Bucket);
 		changeDBO.setRowCount(new Long(delta.getRows().size()));
 		basicDao.createNew(changeDBO);
+		// Add this change to the row version index. An index that is behind is caught up by updateLatestVersionCache().
+		if (indexIsCurrent) {
+			Map<Long, Long> rowVersions = Maps.newHashMap();
+			for (Row row : delta.getRows()) {
+				rowVersions.put(row.getRowId(), row.getVersionNumber());
+			}
+			upsertRowVersions(changeDBO.getTableId(), rowVersions);
+			simpleJdbcTemplate.update(SQL_ADVANCE_INDEXED_VERSION, changeDBO.getTableId(), changeDBO.getRowVersion());
+		}
 
 		// Prepare the results
 		RowReferenceSet results = new RowReferenceSet();
@@ -226,9 +416,8 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 	}
 
 	/**
-	 * Check for a row level conflicts in the passed change sets, by scanning
-	 * each row of each change set and looking for the intersection with the
-	 * passed row Ids.
+	 * Check for a row level conflicts in the passed change sets, by looking up
+	 * the current version of each passed row Id.
 	 * 
 	 * @param tableId
 	 * @param delta
@@ -242,41 +431,19 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 		// Lookup the version number for this update.
 		long versionOfEtag = getVersionForEtag(tableId, delta.getEtag());
 		long firstVersionToCheck = Math.max(minVersion - 1, versionOfEtag);
-		// Check each version greater than the version for the etag
-		List<TableRowChange> changes = listRowSetsKeysForTableGreaterThanVersion(tableId, firstVersionToCheck);
-		// check for row level conflicts
+		// Any row changed after the version of the etag is a conflict
 		Set<Long> rowIds = TableModelUtils.getDistictValidRowIds(delta.getRows());
-		for (TableRowChange change : changes) {
-			checkForRowLevelConflict(change, rowIds);
+		Map<Long, Long> changedRows = getLatestVersions(tableId, rowIds, firstVersionToCheck + 1);
+		if (!changedRows.isEmpty()) {
+			// Report the lowest row ID so the error is deterministic.
+			Long rowId = new TreeSet<Long>(changedRows.keySet()).first();
+			throw new ConflictingUpdateException(
+					"Row id: "
+							+ rowId
+							+ " has been changes since last read.  Please get the latest value for this row and then attempt to update it again.");
 		}
 	}
 
-	/**
-	 * Check for a row level conflict in the passed change set, by scanning the
-	 * rows of the change and looking for the intersection with the passed row
-	 * Ids.
-	 * 
-	 * @param change
-	 * @param rowIds
-	 * @throws ConflictingUpdateException
-	 *             when a conflict is found
-	 */
-	private void checkForRowLevelConflict(final TableRowChange change,
-			final Set<Long> rowIds) throws IOException {
-		scanChange(new RowHandler() {
-			@Override
-			public void nextRow(Row row) {
-				// Does this row match?
-				if (rowIds.contains(row.getRowId())) {
-					throw new ConflictingUpdateException(
-							"Row id: "
-									+ row.getRowId()
-									+ " has been changes since last read.  Please get the latest value for this row and then attempt to update it again.");
-				}
-			}
-		}, change);
-	}
-
 	@Override
 	public long getVersionForEtag(String tableIdString, String etag) {
 		if (tableIdString == null)
@@ -324,7 +491,7 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 	}
 
 	/**
-	 * Save a change to S3
+	 * Save a change to S3 in the blocked format.
 	 * 
 	 * @param models
 	 * @param delta
@@ -333,19 +500,20 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 	 * @throws IOException
 	 * @throws FileNotFoundException
 	 */
-	private String saveCSVToS3(List<ColumnModel> models, RowSet delta, boolean isDeletion)
+	private static String createChangeSetKey() {
+		return String.format(KEY_TEMPLATE, UUID.randomUUID().toString());
+	}
+
+	private void saveChangeSetToS3(List<ColumnModel> models, RowSet delta, boolean isDeletion, String key)
 			throws IOException, FileNotFoundException {
-		File temp = File.createTempFile("rowSet", "csv.gz");
+		File temp = File.createTempFile("rowSet", BlockedChangeSetUtils.BLOCKED_KEY_SUFFIX);
 		FileOutputStream out = null;
 		try {
 			out = new FileOutputStream(temp);
-			// Save this to the the zipped CSV
-			TableModelUtils.validateAnWriteToCSVgz(models, delta, out, isDeletion);
+			// Save this to the blocked file
+			BlockedChangeSetUtils.validateAndWriteBlocked(models, delta, out, isDeletion, rowsPerBlock);
 			// upload it to S3.
-			String key = String.format(KEY_TEMPLATE, UUID.randomUUID()
-					.toString());
 			s3Client.putObject(s3Bucket, key, temp);
-			return key;
 		} finally {
 			if (out != null) {
 				out.close();
@@ -408,20 +576,23 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 	public RowSet getRowSet(String tableId, long rowVersion, Set<Long> rowsToGet)
 			throws IOException, NotFoundException {
 		TableRowChange dto = getTableRowChange(tableId, rowVersion);
-		// Downlaod the file from S3
-		S3Object object = s3Client.getObject(dto.getBucket(), dto.getKey());
-		try {
-			RowSet set = new RowSet();
-			List<Row> rows = TableModelUtils.readFromCSVgzStream(object.getObjectContent(), rowsToGet);
-			set.setTableId(tableId);
-			set.setHeaders(dto.getHeaders());
-			set.setRows(rows);
-			set.setEtag(dto.getEtag());
-			return set;
-		} finally {
-			// Need to close the stream unconditionally.
-			object.getObjectContent().close();
-		}
+		// Stream the file from S3
+		final List<Row> rows = new LinkedList<Row>();
+		final Set<Long> filter = rowsToGet;
+		scanChange(new RowHandler() {
+			@Override
+			public void nextRow(Row row) {
+				if (filter.contains(row.getRowId())) {
+					rows.add(row);
+				}
+			}
+		}, dto);
+		RowSet set = new RowSet();
+		set.setTableId(tableId);
+		set.setHeaders(dto.getHeaders());
+		set.setRows(rows);
+		set.setEtag(dto.getEtag());
+		return set;
 	}
 
 	@Override
@@ -441,16 +612,42 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 	 */
 	public void scanChange(RowHandler handler, TableRowChange dto)
 			throws IOException {
+		waitForPendingUpload(dto.getKey());
 		S3Object object = s3Client.getObject(dto.getBucket(), dto.getKey());
 		try {
-			TableModelUtils.scanFromCSVgzStream(object.getObjectContent(),
-					handler);
+			if (BlockedChangeSetUtils.isBlockedKey(dto.getKey())) {
+				BlockedChangeSetUtils.scanFromBlockedStream(object.getObjectContent(), handler);
+			} else {
+				TableModelUtils.scanFromCSVgzStream(object.getObjectContent(),
+						handler);
+			}
 		} finally {
 			// Need to close the stream unconditionally.
 			object.getObjectContent().close();
 		}
 	}
 
+	/**
+	 * Scan the part of a change set that could contain the passed rows. For a
+	 * blocked change set only the blocks covering the rows are read from S3,
+	 * while a csv.gz change set is scanned in full. Either way the handler can
+	 * be passed rows that were not requested.
+	 * 
+	 * @param handler
+	 * @param dto
+	 * @param rowIds
+	 * @throws IOException
+	 */
+	protected void scanChangeForRows(RowHandler handler, TableRowChange dto, Set<Long> rowIds)
+			throws IOException {
+		if (BlockedChangeSetUtils.isBlockedKey(dto.getKey())) {
+			waitForPendingUpload(dto.getKey());
+			BlockedChangeSetUtils.scanRowsFromS3(s3Client, dto.getBucket(), dto.getKey(), rowIds, handler);
+		} else {
+			scanChange(handler, dto);
+		}
+	}
+
 	@Override
 	public void truncateAllRowData() {
 		// List key so we can delete them
@@ -498,18 +695,18 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 			throw new IllegalArgumentException(
 					"RowReferenceSet.rows cannot be null");
 		// First determine the versions we will need to inspect for this query.
-		Set<Long> versions = TableModelUtils.getDistictVersions(ref.getRows());
+		SetMultimap<Long, Long> versions = TableModelUtils.createVersionToRowsMap(ref.getRows());
 		final Set<RowReference> rowsToFetch = new HashSet<RowReference>(
 				ref.getRows());
 		List<RowSet> results = new LinkedList<RowSet>();
 		// For each version of the table
-		for (Long version : versions) {
+		for (Long version : versions.keySet()) {
 			final RowSet thisSet = new RowSet();
 			thisSet.setTableId(ref.getTableId());
 			thisSet.setRows(new LinkedList<Row>());
 			// Scan over the delta
-			TableRowChange trc = scanRowSet(ref.getTableId(), version,
-					new RowHandler() {
+			TableRowChange trc = getTableRowChange(ref.getTableId(), version);
+			scanChangeForRows(new RowHandler() {
 						@Override
 						public void nextRow(Row row) {
 							// Is this a row we are looking for?
@@ -521,7 +718,7 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 								thisSet.getRows().add(row);
 							}
 						}
-					});
+					}, trc, versions.get(version));
 			// fill in the rest of the values
 			thisSet.setEtag(trc.getEtag());
 			thisSet.setHeaders(trc.getHeaders());
@@ -543,7 +740,8 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 			throw new IllegalArgumentException("RowReferenceSet.tableId cannot be null");
 		// First determine the versions we will need to inspect for this query.
 		final List<Row> results = Lists.newArrayList();
-		TableRowChange trc = scanRowSet(tableId, ref.getVersionNumber(), new RowHandler() {
+		TableRowChange trc = getTableRowChange(tableId, ref.getVersionNumber());
+		scanChangeForRows(new RowHandler() {
 			@Override
 			public void nextRow(Row row) {
 				// Is this a row we are looking for?
@@ -551,7 +749,7 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 					results.add(row);
 				}
 			}
-		});
+		}, trc, Collections.singleton(ref.getRowId()));
 		if (results.size() == 0) {
 			throw new NotFoundException("Row not found, row=" + ref.getRowId() + ", version=" + ref.getVersionNumber());
 		}
@@ -560,31 +758,29 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 	}
 
 	@Override
-	public RowSetAccessor getLatestVersionsWithRowData(String tableId, Set<Long> rowIds, long minVersion) throws IOException {
+	public RowSetAccessor getLatestVersionsWithRowData(String tableId, Set<Long> rowIds, long minVersion) throws IOException,
+			NotFoundException {
+		if (!isRowVersionIndexCurrent(KeyFactory.stringToKey(tableId))) {
+			return scanLatestVersionsWithRowData(tableId, rowIds, minVersion);
+		}
 		final Map<Long, RowAccessor> rowIdToRowMap = Maps.newHashMap();
 
-		List<TableRowChange> rowChanges = listRowSetsKeysForTableGreaterThanVersion(tableId, minVersion - 1);
-
-		final Set<Long> rowsToFind = Sets.newHashSet(rowIds);
-		// we are scanning backwards through the row changes.
-		// For each version of the table (starting at the last one)
-		for (final TableRowChange rowChange : Lists.reverse(rowChanges)) {
-			if (rowsToFind.isEmpty()) {
-				// we found all the rows that we need to find
-				break;
-			}
-
+		// The index tells us which change set holds the current value of each row, so only those sets are scanned.
+		Map<Long, Long> rowVersions = getLatestVersions(tableId, rowIds, minVersion);
+		SetMultimap<Long, Long> versionToRows = TableModelUtils.createVersionToRowsMap(rowVersions);
+		for (Entry<Long, Collection<Long>> versionWithRows : versionToRows.asMap().entrySet()) {
+			final Set<Long> rowsToGet = (Set<Long>) versionWithRows.getValue();
+			TableRowChange rowChange = getTableRowChange(tableId, versionWithRows.getKey());
 			final List<String> rowChangeHeaders = rowChange.getHeaders();
 			// Scan over the delta
-			scanChange(new RowHandler() {
+			scanChangeForRows(new RowHandler() {
 				@Override
 				public void nextRow(final Row row) {
-					// if we still needed it, we no longer need to find this one
-					if (rowsToFind.remove(row.getRowId())) {
+					if (rowsToGet.contains(row.getRowId())) {
 						appendRowDataToMap(rowIdToRowMap, rowChangeHeaders, row);
 					}
 				}
-			}, rowChange);
+			}, rowChange, rowsToGet);
 		}
 
 		return new RowSetAccessor() {
@@ -596,7 +792,137 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 	}
 
 	@Override
-	public Map<Long, Long> getLatestVersions(String tableId, Set<Long> rowIds, long minVersion) throws IOException {
+	public Map<Long, Long> getLatestVersions(String tableIdString, Set<Long> rowIds, long minVersion) throws IOException {
+		if (tableIdString == null)
+			throw new IllegalArgumentException("TableId cannot be null");
+		if (rowIds == null)
+			throw new IllegalArgumentException("RowIds cannot be null");
+		final Map<Long, Long> rowVersions = Maps.newHashMap();
+		if (rowIds.isEmpty()) {
+			return rowVersions;
+		}
+		if (!isRowVersionIndexCurrent(KeyFactory.stringToKey(tableIdString))) {
+			return scanLatestVersions(tableIdString, rowIds, minVersion);
+		}
+		MapSqlParameterSource params = new MapSqlParameterSource();
+		params.addValue("tableId", KeyFactory.stringToKey(tableIdString));
+		params.addValue("rowIds", rowIds);
+		params.addValue("minVersion", minVersion);
+		simpleJdbcTemplate.query(SQL_SELECT_ROW_VERSIONS_FOR_IDS, new RowMapper<Void>() {
+			@Override
+			public Void mapRow(ResultSet rs, int rowNum) throws SQLException {
+				rowVersions.put(rs.getLong(COL_ROW_VERSION_INDEX_ROW_ID), rs.getLong(COL_ROW_VERSION_INDEX_VERSION));
+				return null;
+			}
+		}, params);
+		return rowVersions;
+	}
+
+	@Override
+	public Map<Long, Long> getLatestVersions(String tableIdString, final long minVersion, final long rowIdOffset, final long limit)
+			throws IOException, NotFoundException {
+		if (tableIdString == null)
+			throw new IllegalArgumentException("TableId cannot be null");
+		if (!isRowVersionIndexCurrent(KeyFactory.stringToKey(tableIdString))) {
+			return scanLatestVersions(tableIdString, minVersion, rowIdOffset, limit);
+		}
+		final Map<Long, Long> rowVersions = Maps.newHashMap();
+		simpleJdbcTemplate.query(SQL_SELECT_ROW_VERSIONS_FOR_RANGE, new RowMapper<Void>() {
+			@Override
+			public Void mapRow(ResultSet rs, int rowNum) throws SQLException {
+				rowVersions.put(rs.getLong(COL_ROW_VERSION_INDEX_ROW_ID), rs.getLong(COL_ROW_VERSION_INDEX_VERSION));
+				return null;
+			}
+		}, KeyFactory.stringToKey(tableIdString), rowIdOffset, rowIdOffset + limit, minVersion);
+		return rowVersions;
+	}
+
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Override
+	public void rebuildRowVersionIndex(String tableIdString) throws IOException {
+		if (tableIdString == null)
+			throw new IllegalArgumentException("TableId cannot be null");
+		long tableId = KeyFactory.stringToKey(tableIdString);
+		simpleJdbcTemplate.update(SQL_DELETE_ROW_VERSIONS, tableId);
+		simpleJdbcTemplate.update(SQL_DELETE_INDEXED_VERSION, tableId);
+		ensureRowVersionIndexIsCurrent(tableIdString, null);
+	}
+
+	@Override
+	public List<String> listTablesWithoutRowVersionIndex(long limit) {
+		return simpleJdbcTemplate.query(SQL_SELECT_TABLES_WITHOUT_ROW_VERSION_INDEX, new RowMapper<String>() {
+			@Override
+			public String mapRow(ResultSet rs, int rowNum) throws SQLException {
+				return KeyFactory.keyToString(rs.getLong(COL_TABLE_ROW_TABLE_ID));
+			}
+		}, limit);
+	}
+
+	/**
+	 * Is every change set of this table in the row version index? Reads only
+	 * use the index when it is, and otherwise scan the change sets as they
+	 * did before the index existed.
+	 * 
+	 * @param tableId
+	 * @return
+	 */
+	protected boolean isRowVersionIndexCurrent(long tableId) {
+		return simpleJdbcTemplate.queryForLong(SQL_COUNT_CHANGES_NOT_INDEXED, tableId, tableId) == 0L;
+	}
+
+	/**
+	 * Apply any change set of this table that is not yet in the row version
+	 * index. This is a no-op when the index is already current, and it is how
+	 * the index is initially built for tables that pre-date it or were
+	 * migrated from another stack. It is called by the worker that handles
+	 * table changes, never by a read or an append.
+	 * 
+	 * Applying a change set is idempotent, so concurrent callers can safely
+	 * race. The indexed version is only moved forward from the value it had
+	 * when a change set was applied, so a rebuild running at the same time can
+	 * never be marked as covering rows it does not hold.
+	 * 
+	 * @param tableIdString
+	 * @param progressCallback
+	 *            Called after each change set is applied. Can be null.
+	 * @throws IOException
+	 */
+	private void ensureRowVersionIndexIsCurrent(String tableIdString, ProgressCallback<Long> progressCallback) throws IOException {
+		long tableId = KeyFactory.stringToKey(tableIdString);
+		long indexedVersion = getIndexedVersion(tableId);
+		List<TableRowChange> changes = listRowSetsKeysForTableGreaterThanVersion(tableIdString, indexedVersion);
+		for (TableRowChange change : changes) {
+			final Map<Long, Long> rowVersions = Maps.newHashMap();
+			scanChange(new RowHandler() {
+				@Override
+				public void nextRow(Row row) {
+					rowVersions.put(row.getRowId(), row.getVersionNumber());
+				}
+			}, change);
+			upsertRowVersions(tableId, rowVersions);
+			if (indexedVersion < 0) {
+				simpleJdbcTemplate.update(SQL_INSERT_INDEXED_VERSION_IF_ABSENT, tableId, change.getRowVersion());
+			} else {
+				simpleJdbcTemplate.update(SQL_COMPARE_AND_SET_INDEXED_VERSION, change.getRowVersion(), tableId, indexedVersion);
+			}
+			indexedVersion = change.getRowVersion();
+			if (progressCallback != null) {
+				progressCallback.progressMade(change.getRowVersion());
+			}
+		}
+	}
+
+	/**
+	 * Find the latest version of each passed row by scanning the change sets
+	 * from the last one back. Used until the row version index is current.
+	 * 
+	 * @param tableId
+	 * @param rowIds
+	 * @param minVersion
+	 * @return
+	 * @throws IOException
+	 */
+	private Map<Long, Long> scanLatestVersions(String tableId, Set<Long> rowIds, long minVersion) throws IOException {
 		final Map<Long, Long> rowVersions = Maps.newHashMap();
 
 		List<TableRowChange> rowChanges = listRowSetsKeysForTableGreaterThanVersion(tableId, minVersion - 1);
@@ -625,9 +951,19 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 		return rowVersions;
 	}
 
-	@Override
-	public Map<Long, Long> getLatestVersions(String tableId, final long minVersion, final long rowIdOffset, final long limit)
-			throws IOException, NotFoundException {
+	/**
+	 * Find the latest version of each row in the passed range by scanning the
+	 * change sets. Used until the row version index is current.
+	 * 
+	 * @param tableId
+	 * @param minVersion
+	 * @param rowIdOffset
+	 * @param limit
+	 * @return
+	 * @throws IOException
+	 */
+	private Map<Long, Long> scanLatestVersions(String tableId, final long minVersion, final long rowIdOffset, final long limit)
+			throws IOException {
 		final Map<Long, Long> rowVersions = Maps.newHashMap();
 
 		List<TableRowChange> rowChanges = listRowSetsKeysForTableGreaterThanVersion(tableId, minVersion - 1);
@@ -648,6 +984,84 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 		return rowVersions;
 	}
 
+	/**
+	 * Find the latest value of each passed row by scanning the change sets
+	 * from the last one back. Used until the row version index is current.
+	 * 
+	 * @param tableId
+	 * @param rowIds
+	 * @param minVersion
+	 * @return
+	 * @throws IOException
+	 */
+	private RowSetAccessor scanLatestVersionsWithRowData(String tableId, Set<Long> rowIds, long minVersion) throws IOException {
+		final Map<Long, RowAccessor> rowIdToRowMap = Maps.newHashMap();
+
+		List<TableRowChange> rowChanges = listRowSetsKeysForTableGreaterThanVersion(tableId, minVersion - 1);
+
+		final Set<Long> rowsToFind = Sets.newHashSet(rowIds);
+		// we are scanning backwards through the row changes.
+		// For each version of the table (starting at the last one)
+		for (final TableRowChange rowChange : Lists.reverse(rowChanges)) {
+			if (rowsToFind.isEmpty()) {
+				// we found all the rows that we need to find
+				break;
+			}
+
+			final List<String> rowChangeHeaders = rowChange.getHeaders();
+			// Scan over the delta
+			scanChange(new RowHandler() {
+				@Override
+				public void nextRow(final Row row) {
+					// if we still needed it, we no longer need to find this one
+					if (rowsToFind.remove(row.getRowId())) {
+						appendRowDataToMap(rowIdToRowMap, rowChangeHeaders, row);
+					}
+				}
+			}, rowChange);
+		}
+
+		return new RowSetAccessor() {
+			@Override
+			public Map<Long, RowAccessor> getRowIdToRowMap() {
+				return rowIdToRowMap;
+			}
+		};
+	}
+
+	/**
+	 * The version of the last change set applied to the row version index of
+	 * the given table, or -1 if nothing has been applied.
+	 * 
+	 * @param tableId
+	 * @return
+	 */
+	private long getIndexedVersion(long tableId) {
+		try {
+			return simpleJdbcTemplate.queryForLong(SQL_SELECT_INDEXED_VERSION, tableId);
+		} catch (EmptyResultDataAccessException e) {
+			return -1L;
+		}
+	}
+
+	/**
+	 * Record the version of each row in the index, never moving a row back to
+	 * an older version.
+	 * 
+	 * @param tableId
+	 * @param rowVersions
+	 */
+	private void upsertRowVersions(long tableId, Map<Long, Long> rowVersions) {
+		if (rowVersions.isEmpty()) {
+			return;
+		}
+		List<Object[]> batch = new ArrayList<Object[]>(rowVersions.size());
+		for (Entry<Long, Long> entry : rowVersions.entrySet()) {
+			batch.add(new Object[] { tableId, entry.getKey(), entry.getValue() });
+		}
+		simpleJdbcTemplate.batchUpdate(SQL_UPSERT_ROW_VERSION, batch);
+	}
+
 	protected void appendRowDataToMap(final Map<Long, RowAccessor> rowIdToRowMap, final List<String> rowChangeHeaders, final Row row) {
 		if (TableModelUtils.isDeletedRow(row)) {
 			rowIdToRowMap.remove(row.getRowId());
@@ -687,7 +1101,8 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 
 	@Override
 	public void updateLatestVersionCache(String tableId, ProgressCallback<Long> progressCallback) throws IOException {
-		// do nothing here, only caching version needs to do anything
+		// Catch up the row version index with any change set it does not hold yet.
+		ensureRowVersionIndexIsCurrent(tableId, progressCallback);
 	}
 
 	@Override
@@ -695,6 +1110,16 @@ public class TableRowTruthDAOImpl implements TableRowTruthDAO {
 		// do nothing here, only caching version needs to do anything
 	}
 
+	/**
+	 * IoC
+	 * 
+	 * @param rowsPerBlock
+	 *            The number of rows written to each block of a change set.
+	 */
+	public void setRowsPerBlock(int rowsPerBlock) {
+		this.rowsPerBlock = rowsPerBlock;
+	}
+
 	public String getS3Bucket() {
 		return s3Bucket;
 	}
@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.sagebionetworks.repo.model.dbo.DatabaseObject;
 import org.sagebionetworks.repo.model.dbo.MigratableDatabaseObject;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.RowMetadata;
 import org.sagebionetworks.repo.model.migration.RowMetadataResult;
@@ -33,6 +34,8 @@ public interface MigratableTableDAO {
 	 * List all row metadata in a paginated format. All rows will be migrated in the order listed by this method.
 	 * This means metadata must be listed in dependency order.  For example, if row 'b' depends on row 'a' 
 	 * then row 'a' must be listed before row 'b'.  For this example, row 'a' would be migrated before row 'b'.
+	 * Each page must skip over all of the rows before the offset, so prefer
+	 * {@link #listRowMetadataForIdRange(MigrationType, long, long, long)} to list a whole table.
 	 *    
 	 * @param limit
 	 * @param offset
@@ -51,6 +54,31 @@ public interface MigratableTableDAO {
 	 */
 	public List<RowMetadata> listDeltaRowMetadata(MigrationType type, List<Long> idList);
 	
+	/**
+	 * Count the rows with an ID in the given range (inclusive) and calculate a checksum of their IDs and etags.
+	 * Stacks can compare ranges without listing the rows and only list the rows of the ranges that differ.
+	 * 
+	 * @param type
+	 * @param minId
+	 * @param maxId
+	 * @return
+	 */
+	public MigrationRangeChecksum getChecksumForIdRange(MigrationType type, long minId, long maxId);
+	
+	/**
+	 * List the row metadata for rows with an ID in the given range (inclusive) in the same order as
+	 * {@link #listRowMetadata(MigrationType, long, long)}.
+	 * To list a whole table start each page at the last ID of the previous page plus one. The cost of a page
+	 * then stays the same no matter how many rows have already been listed.
+	 * 
+	 * @param type
+	 * @param minId
+	 * @param maxId
+	 * @param limit
+	 * @return
+	 */
+	public List<RowMetadata> listRowMetadataForIdRange(MigrationType type, long minId, long maxId, long limit);
+	
 	/**
 	 * Get a batch of objects to backup.
 	 * @param clazz
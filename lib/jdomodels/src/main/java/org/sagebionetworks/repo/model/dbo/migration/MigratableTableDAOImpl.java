@@ -12,11 +12,13 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.sagebionetworks.repo.model.dbo.AutoIncrementDatabaseObject;
 import org.sagebionetworks.repo.model.dbo.AutoTableMapping;
+import org.sagebionetworks.repo.model.dbo.DBOParameterBinder;
 import org.sagebionetworks.repo.model.dbo.DMLUtils;
 import org.sagebionetworks.repo.model.dbo.DatabaseObject;
 import org.sagebionetworks.repo.model.dbo.FieldColumn;
 import org.sagebionetworks.repo.model.dbo.MigratableDatabaseObject;
 import org.sagebionetworks.repo.model.dbo.TableMapping;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.RowMetadata;
 import org.sagebionetworks.repo.model.migration.RowMetadataResult;
@@ -87,12 +89,15 @@ public class MigratableTableDAOImpl implements MigratableTableDAO {
 	private Map<MigrationType, String> maxSqlMap = new HashMap<MigrationType, String>();
 	private Map<MigrationType, String> listSqlMap = new HashMap<MigrationType, String>();
 	private Map<MigrationType, String> deltaListSqlMap = new HashMap<MigrationType, String>();
+	private Map<MigrationType, String> rangeListSqlMap = new HashMap<MigrationType, String>();
+	private Map<MigrationType, String> rangeChecksumSqlMap = new HashMap<MigrationType, String>();
 	private Map<MigrationType, String> backupSqlMap = new HashMap<MigrationType, String>();
 	private Map<MigrationType, String> insertOrUpdateSqlMap = new HashMap<MigrationType, String>();
 	
 	private Map<MigrationType, FieldColumn> etagColumns = new HashMap<MigrationType, FieldColumn>();
 	private Map<MigrationType, FieldColumn> backupIdColumns = new HashMap<MigrationType, FieldColumn>();
 	private Map<MigrationType, RowMapper<RowMetadata>> rowMetadataMappers = new HashMap<MigrationType, RowMapper<RowMetadata>>();
+	private Map<MigrationType, DBOParameterBinder> parameterBinders = new HashMap<MigrationType, DBOParameterBinder>();
 	
 	private List<MigrationType> rootTypes = new LinkedList<MigrationType>();
 	
@@ -165,6 +170,13 @@ public class MigratableTableDAOImpl implements MigratableTableDAO {
 		listSqlMap.put(type, listRowMetadataSQL);
 		String deltalistRowMetadataSQL = DMLUtils.deltaListRowMetadata(mapping);
 		deltaListSqlMap.put(type, deltalistRowMetadataSQL);
+		rangeListSqlMap.put(type, DMLUtils.listRowMetadataForRange(mapping));
+		rangeChecksumSqlMap.put(type, DMLUtils.createRangeChecksumStatement(mapping));
+		// Types without a binder use a BeanPropertySqlParameterSource.
+		DBOParameterBinder binder = DBOParameterBinder.create(mapping);
+		if(binder != null){
+			parameterBinders.put(type, binder);
+		}
 		// Does this type have an etag?
 		FieldColumn etag = DMLUtils.getEtagColumn(mapping);
 		if(etag != null){
@@ -275,6 +287,49 @@ public class MigratableTableDAOImpl implements MigratableTableDAO {
 		List<RowMetadata> page = simpleJdbcTemplate.query(sql, mapper, params);
 		return page;
 	}
+	
+	@Override
+	public MigrationRangeChecksum getChecksumForIdRange(final MigrationType type, final long minId, final long maxId) {
+		if(type == null) throw new IllegalArgumentException("type cannot be null");
+		String sql = this.rangeChecksumSqlMap.get(type);
+		if(sql == null) throw new IllegalArgumentException("Cannot find range checksum SQL for type: "+type);
+		MapSqlParameterSource params = new MapSqlParameterSource();
+		params.addValue(DMLUtils.BIND_VAR_MIN_ID, minId);
+		params.addValue(DMLUtils.BIND_VAR_MAX_ID, maxId);
+		return simpleJdbcTemplate.queryForObject(sql, new RowMapper<MigrationRangeChecksum>() {
+			@Override
+			public MigrationRangeChecksum mapRow(ResultSet rs, int rowNum) throws SQLException {
+				MigrationRangeChecksum checksum = new MigrationRangeChecksum();
+				checksum.setType(type);
+				checksum.setMinid(minId);
+				checksum.setMaxid(maxId);
+				checksum.setCount(rs.getLong(DMLUtils.RANGE_COUNT));
+				checksum.setFirstId(rs.getLong(DMLUtils.RANGE_MIN_ID));
+				if(rs.wasNull()){
+					checksum.setFirstId(null);
+				}
+				checksum.setLastId(rs.getLong(DMLUtils.RANGE_MAX_ID));
+				if(rs.wasNull()){
+					checksum.setLastId(null);
+				}
+				checksum.setChecksum(rs.getString(DMLUtils.RANGE_CHECKSUM));
+				return checksum;
+			}
+		}, params);
+	}
+	
+	@Override
+	public List<RowMetadata> listRowMetadataForIdRange(MigrationType type, long minId, long maxId, long limit) {
+		if(type == null) throw new IllegalArgumentException("type cannot be null");
+		String sql = this.rangeListSqlMap.get(type);
+		if(sql == null) throw new IllegalArgumentException("Cannot find range list SQL for type: "+type);
+		RowMapper<RowMetadata> mapper = this.getRowMetadataRowMapper(type);
+		MapSqlParameterSource params = new MapSqlParameterSource();
+		params.addValue(DMLUtils.BIND_VAR_MIN_ID, minId);
+		params.addValue(DMLUtils.BIND_VAR_MAX_ID, maxId);
+		params.addValue(DMLUtils.BIND_VAR_LIMIT, limit);
+		return simpleJdbcTemplate.query(sql, mapper, params);
+	}
 
 
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
@@ -336,9 +391,15 @@ public class MigratableTableDAOImpl implements MigratableTableDAO {
 		MigrationType type = getTypeForClass(batch.get(0).getClass());
 		FieldColumn backukpIdColumn = this.backupIdColumns.get(type);
 		String sql = getInsertOrUpdateSql(type);
-		SqlParameterSource[] namedParameters = new BeanPropertySqlParameterSource[batch.size()];
+		@SuppressWarnings("unchecked")
+		DBOParameterBinder<D> binder = parameterBinders.get(type);
+		SqlParameterSource[] namedParameters = new SqlParameterSource[batch.size()];
 		for(int i=0; i<batch.size(); i++){
-			namedParameters[i] = getSqlParameterSource(batch.get(i), batch.get(i).getTableMapping());
+			if(binder != null){
+				namedParameters[i] = binder.bind(batch.get(i));
+			}else{
+				namedParameters[i] = getSqlParameterSource(batch.get(i), batch.get(i).getTableMapping());
+			}
 			Object obj = namedParameters[i].getValue(backukpIdColumn.getFieldName());
 			if(!(obj instanceof Long)) throw new IllegalArgumentException("Cannot get backup ID for type : "+type);
 			Long id = (Long) obj;
@@ -0,0 +1,121 @@
+package org.sagebionetworks.repo.model.dbo.persistence;
+
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.*;
+
+import org.sagebionetworks.repo.model.dbo.AutoTableMapping;
+import org.sagebionetworks.repo.model.dbo.DatabaseObject;
+import org.sagebionetworks.repo.model.dbo.Field;
+import org.sagebionetworks.repo.model.dbo.ForeignKey;
+import org.sagebionetworks.repo.model.dbo.Table;
+import org.sagebionetworks.repo.model.dbo.TableMapping;
+
+/**
+ * One row of the node ancestry closure. There is a row for every ancestor of a
+ * node, including the node itself at depth zero. The rows are derived from the
+ * node parent IDs so this table is not migrated.
+ *
+ * @author John
+ *
+ */
+@Table(name = TABLE_NODE_ANCESTOR, constraints = {
+		"INDEX (" + COL_NODE_ANCESTOR_ANCESTOR_ID + ", " + COL_NODE_ANCESTOR_DEPTH + ")" })
+public class DBONodeAncestor implements DatabaseObject<DBONodeAncestor> {
+
+	private static TableMapping<DBONodeAncestor> tableMapping = AutoTableMapping
+			.create(DBONodeAncestor.class);
+
+	@ForeignKey(table = TABLE_NODE, field = COL_NODE_ID, cascadeDelete = true)
+	@Field(name = COL_NODE_ANCESTOR_DESCENDANT_ID, nullable = false, primary = true)
+	private Long descendantId;
+
+	@ForeignKey(table = TABLE_NODE, field = COL_NODE_ID, cascadeDelete = true)
+	@Field(name = COL_NODE_ANCESTOR_ANCESTOR_ID, nullable = false, primary = true)
+	private Long ancestorId;
+
+	@Field(name = COL_NODE_ANCESTOR_DEPTH, nullable = false)
+	private Long depth;
+
+	public DBONodeAncestor() {
+	}
+
+	public DBONodeAncestor(Long ancestorId, Long descendantId, Long depth) {
+		this.ancestorId = ancestorId;
+		this.descendantId = descendantId;
+		this.depth = depth;
+	}
+
+	@Override
+	public TableMapping<DBONodeAncestor> getTableMapping() {
+		return tableMapping;
+	}
+
+	public Long getDescendantId() {
+		return descendantId;
+	}
+
+	public void setDescendantId(Long descendantId) {
+		this.descendantId = descendantId;
+	}
+
+	public Long getAncestorId() {
+		return ancestorId;
+	}
+
+	public void setAncestorId(Long ancestorId) {
+		this.ancestorId = ancestorId;
+	}
+
+	public Long getDepth() {
+		return depth;
+	}
+
+	public void setDepth(Long depth) {
+		this.depth = depth;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result
+				+ ((ancestorId == null) ? 0 : ancestorId.hashCode());
+		result = prime * result + ((depth == null) ? 0 : depth.hashCode());
+		result = prime * result
+				+ ((descendantId == null) ? 0 : descendantId.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		DBONodeAncestor other = (DBONodeAncestor) obj;
+		if (ancestorId == null) {
+			if (other.ancestorId != null)
+				return false;
+		} else if (!ancestorId.equals(other.ancestorId))
+			return false;
+		if (depth == null) {
+			if (other.depth != null)
+				return false;
+		} else if (!depth.equals(other.depth))
+			return false;
+		if (descendantId == null) {
+			if (other.descendantId != null)
+				return false;
+		} else if (!descendantId.equals(other.descendantId))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "DBONodeAncestor [descendantId=" + descendantId
+				+ ", ancestorId=" + ancestorId + ", depth=" + depth + "]";
+	}
+
+}
@@ -0,0 +1,107 @@
+package org.sagebionetworks.repo.model.dbo.persistence;
+
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.*;
+
+import org.sagebionetworks.repo.model.dbo.AutoTableMapping;
+import org.sagebionetworks.repo.model.dbo.DatabaseObject;
+import org.sagebionetworks.repo.model.dbo.Field;
+import org.sagebionetworks.repo.model.dbo.Table;
+import org.sagebionetworks.repo.model.dbo.TableMapping;
+
+/**
+ * The etag of an entity as of the last time its document was sent to the
+ * search index by this stack.
+ *
+ * @author John
+ *
+ */
+@Table(name = TABLE_SEARCH_INDEX_LEDGER)
+public class DBOSearchIndexLedger implements DatabaseObject<DBOSearchIndexLedger> {
+
+	private static TableMapping<DBOSearchIndexLedger> tableMapping = AutoTableMapping
+			.create(DBOSearchIndexLedger.class);
+
+	@Field(name = COL_SEARCH_INDEX_LEDGER_ENTITY_ID, nullable = false, primary = true)
+	private Long entityId;
+
+	@Field(name = COL_SEARCH_INDEX_LEDGER_ETAG, nullable = false, varchar = 36)
+	private String etag;
+
+	@Field(name = COL_SEARCH_INDEX_LEDGER_INDEXED_ON, nullable = false)
+	private Long lastIndexedAt;
+
+	@Override
+	public TableMapping<DBOSearchIndexLedger> getTableMapping() {
+		return tableMapping;
+	}
+
+	public Long getEntityId() {
+		return entityId;
+	}
+
+	public void setEntityId(Long entityId) {
+		this.entityId = entityId;
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+
+	public Long getLastIndexedAt() {
+		return lastIndexedAt;
+	}
+
+	public void setLastIndexedAt(Long lastIndexedAt) {
+		this.lastIndexedAt = lastIndexedAt;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result
+				+ ((entityId == null) ? 0 : entityId.hashCode());
+		result = prime * result + ((etag == null) ? 0 : etag.hashCode());
+		result = prime * result
+				+ ((lastIndexedAt == null) ? 0 : lastIndexedAt.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		DBOSearchIndexLedger other = (DBOSearchIndexLedger) obj;
+		if (entityId == null) {
+			if (other.entityId != null)
+				return false;
+		} else if (!entityId.equals(other.entityId))
+			return false;
+		if (etag == null) {
+			if (other.etag != null)
+				return false;
+		} else if (!etag.equals(other.etag))
+			return false;
+		if (lastIndexedAt == null) {
+			if (other.lastIndexedAt != null)
+				return false;
+		} else if (!lastIndexedAt.equals(other.lastIndexedAt))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "DBOSearchIndexLedger [entityId=" + entityId + ", etag=" + etag
+				+ ", lastIndexedAt=" + lastIndexedAt + "]";
+	}
+
+}
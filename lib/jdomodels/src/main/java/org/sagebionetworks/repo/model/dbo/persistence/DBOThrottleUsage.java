@@ -0,0 +1,125 @@
+package org.sagebionetworks.repo.model.dbo.persistence;
+
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.*;
+
+import org.sagebionetworks.repo.model.dbo.AutoTableMapping;
+import org.sagebionetworks.repo.model.dbo.DatabaseObject;
+import org.sagebionetworks.repo.model.dbo.Field;
+import org.sagebionetworks.repo.model.dbo.Table;
+import org.sagebionetworks.repo.model.dbo.TableMapping;
+
+/**
+ * The number of concurrent requests a single node is running for a single
+ * throttle key as of its last report.
+ *
+ * @author John
+ *
+ */
+@Table(name = TABLE_THROTTLE_USAGE)
+public class DBOThrottleUsage implements DatabaseObject<DBOThrottleUsage> {
+
+	private static TableMapping<DBOThrottleUsage> tableMapping = AutoTableMapping
+			.create(DBOThrottleUsage.class);
+
+	@Field(name = COL_THROTTLE_USAGE_NODE, nullable = false, primary = true, fixedchar=100)
+	private String nodeId;
+
+	@Field(name = COL_THROTTLE_USAGE_KEY, nullable = false, primary = true, fixedchar=100)
+	private String key;
+
+	@Field(name = COL_THROTTLE_USAGE_CONCURRENT, nullable = false)
+	private Long concurrent;
+
+	@Field(name = COL_THROTTLE_USAGE_EXPIRES, nullable = false)
+	private Long expiration;
+
+	@Override
+	public TableMapping<DBOThrottleUsage> getTableMapping() {
+		return tableMapping;
+	}
+
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	public void setNodeId(String nodeId) {
+		this.nodeId = nodeId;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public void setKey(String key) {
+		this.key = key;
+	}
+
+	public Long getConcurrent() {
+		return concurrent;
+	}
+
+	public void setConcurrent(Long concurrent) {
+		this.concurrent = concurrent;
+	}
+
+	public Long getExpiration() {
+		return expiration;
+	}
+
+	public void setExpiration(Long expiration) {
+		this.expiration = expiration;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result
+				+ ((concurrent == null) ? 0 : concurrent.hashCode());
+		result = prime * result
+				+ ((expiration == null) ? 0 : expiration.hashCode());
+		result = prime * result + ((key == null) ? 0 : key.hashCode());
+		result = prime * result + ((nodeId == null) ? 0 : nodeId.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		DBOThrottleUsage other = (DBOThrottleUsage) obj;
+		if (concurrent == null) {
+			if (other.concurrent != null)
+				return false;
+		} else if (!concurrent.equals(other.concurrent))
+			return false;
+		if (expiration == null) {
+			if (other.expiration != null)
+				return false;
+		} else if (!expiration.equals(other.expiration))
+			return false;
+		if (key == null) {
+			if (other.key != null)
+				return false;
+		} else if (!key.equals(other.key))
+			return false;
+		if (nodeId == null) {
+			if (other.nodeId != null)
+				return false;
+		} else if (!nodeId.equals(other.nodeId))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "DBOThrottleUsage [nodeId=" + nodeId + ", key=" + key
+				+ ", concurrent=" + concurrent + ", expiration=" + expiration
+				+ "]";
+	}
+
+}
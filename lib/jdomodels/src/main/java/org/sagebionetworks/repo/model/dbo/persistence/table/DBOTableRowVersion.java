@@ -0,0 +1,133 @@
+package org.sagebionetworks.repo.model.dbo.persistence.table;
+
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_ROW_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_TABLE_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_VERSION;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.DDL_TABLE_ROW_VERSION_INDEX;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_ROW_VERSION_INDEX;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.sagebionetworks.repo.model.dbo.DatabaseObject;
+import org.sagebionetworks.repo.model.dbo.FieldColumn;
+import org.sagebionetworks.repo.model.dbo.TableMapping;
+
+/**
+ * Maps each row of a TableEntity to the version number of its latest change.
+ * 
+ * This is not a migrate-able table as it is derived entirely from the change sets of each table and can be rebuilt
+ * from them at any time.
+ * 
+ * @author jmhill
+ * 
+ */
+public class DBOTableRowVersion implements DatabaseObject<DBOTableRowVersion> {
+
+	private static FieldColumn[] FIELDS = new FieldColumn[] {
+		new FieldColumn("tableId", COL_ROW_VERSION_INDEX_TABLE_ID, true),
+		new FieldColumn("rowId", COL_ROW_VERSION_INDEX_ROW_ID, true),
+		new FieldColumn("rowVersion", COL_ROW_VERSION_INDEX_VERSION),
+	};
+
+	private Long tableId;
+	private Long rowId;
+	private Long rowVersion;
+
+	@Override
+	public TableMapping<DBOTableRowVersion> getTableMapping() {
+		return new TableMapping<DBOTableRowVersion>() {
+
+			@Override
+			public DBOTableRowVersion mapRow(ResultSet rs, int rowNum) throws SQLException {
+				DBOTableRowVersion dbo = new DBOTableRowVersion();
+				dbo.setTableId(rs.getLong(COL_ROW_VERSION_INDEX_TABLE_ID));
+				dbo.setRowId(rs.getLong(COL_ROW_VERSION_INDEX_ROW_ID));
+				dbo.setRowVersion(rs.getLong(COL_ROW_VERSION_INDEX_VERSION));
+				return dbo;
+			}
+
+			@Override
+			public String getTableName() {
+				return TABLE_ROW_VERSION_INDEX;
+			}
+
+			@Override
+			public String getDDLFileName() {
+				return DDL_TABLE_ROW_VERSION_INDEX;
+			}
+
+			@Override
+			public FieldColumn[] getFieldColumns() {
+				return FIELDS;
+			}
+
+			@Override
+			public Class<? extends DBOTableRowVersion> getDBOClass() {
+				return DBOTableRowVersion.class;
+			}
+		};
+	}
+
+	public Long getTableId() {
+		return tableId;
+	}
+
+	public void setTableId(Long tableId) {
+		this.tableId = tableId;
+	}
+
+	public Long getRowId() {
+		return rowId;
+	}
+
+	public void setRowId(Long rowId) {
+		this.rowId = rowId;
+	}
+
+	public Long getRowVersion() {
+		return rowVersion;
+	}
+
+	public void setRowVersion(Long rowVersion) {
+		this.rowVersion = rowVersion;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((rowId == null) ? 0 : rowId.hashCode());
+		result = prime * result + ((rowVersion == null) ? 0 : rowVersion.hashCode());
+		result = prime * result + ((tableId == null) ? 0 : tableId.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		DBOTableRowVersion other = (DBOTableRowVersion) obj;
+		if (rowId == null) {
+			if (other.rowId != null)
+				return false;
+		} else if (!rowId.equals(other.rowId))
+			return false;
+		if (rowVersion == null) {
+			if (other.rowVersion != null)
+				return false;
+		} else if (!rowVersion.equals(other.rowVersion))
+			return false;
+		if (tableId == null) {
+			if (other.tableId != null)
+				return false;
+		} else if (!tableId.equals(other.tableId))
+			return false;
+		return true;
+	}
+
+}
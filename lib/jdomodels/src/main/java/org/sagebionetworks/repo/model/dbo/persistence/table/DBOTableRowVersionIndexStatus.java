@@ -0,0 +1,115 @@
+package org.sagebionetworks.repo.model.dbo.persistence.table;
+
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_STATUS_TABLE_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_STATUS_VERSION;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.DDL_TABLE_ROW_VERSION_INDEX_STATUS;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_ROW_VERSION_INDEX_STATUS;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.sagebionetworks.repo.model.dbo.DatabaseObject;
+import org.sagebionetworks.repo.model.dbo.FieldColumn;
+import org.sagebionetworks.repo.model.dbo.TableMapping;
+
+/**
+ * Tracks the last change set of a table that has been applied to the row version index.
+ * 
+ * This is not a migrate-able table. After a migration the index of each table will be caught up from its change
+ * sets.
+ * 
+ * @author jmhill
+ * 
+ */
+public class DBOTableRowVersionIndexStatus implements DatabaseObject<DBOTableRowVersionIndexStatus> {
+
+	private static FieldColumn[] FIELDS = new FieldColumn[] {
+		new FieldColumn("tableId", COL_ROW_VERSION_INDEX_STATUS_TABLE_ID, true),
+		new FieldColumn("indexedVersion", COL_ROW_VERSION_INDEX_STATUS_VERSION),
+	};
+
+	private Long tableId;
+	private Long indexedVersion;
+
+	@Override
+	public TableMapping<DBOTableRowVersionIndexStatus> getTableMapping() {
+		return new TableMapping<DBOTableRowVersionIndexStatus>() {
+
+			@Override
+			public DBOTableRowVersionIndexStatus mapRow(ResultSet rs, int rowNum) throws SQLException {
+				DBOTableRowVersionIndexStatus dbo = new DBOTableRowVersionIndexStatus();
+				dbo.setTableId(rs.getLong(COL_ROW_VERSION_INDEX_STATUS_TABLE_ID));
+				dbo.setIndexedVersion(rs.getLong(COL_ROW_VERSION_INDEX_STATUS_VERSION));
+				return dbo;
+			}
+
+			@Override
+			public String getTableName() {
+				return TABLE_ROW_VERSION_INDEX_STATUS;
+			}
+
+			@Override
+			public String getDDLFileName() {
+				return DDL_TABLE_ROW_VERSION_INDEX_STATUS;
+			}
+
+			@Override
+			public FieldColumn[] getFieldColumns() {
+				return FIELDS;
+			}
+
+			@Override
+			public Class<? extends DBOTableRowVersionIndexStatus> getDBOClass() {
+				return DBOTableRowVersionIndexStatus.class;
+			}
+		};
+	}
+
+	public Long getTableId() {
+		return tableId;
+	}
+
+	public void setTableId(Long tableId) {
+		this.tableId = tableId;
+	}
+
+	public Long getIndexedVersion() {
+		return indexedVersion;
+	}
+
+	public void setIndexedVersion(Long indexedVersion) {
+		this.indexedVersion = indexedVersion;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((indexedVersion == null) ? 0 : indexedVersion.hashCode());
+		result = prime * result + ((tableId == null) ? 0 : tableId.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		DBOTableRowVersionIndexStatus other = (DBOTableRowVersionIndexStatus) obj;
+		if (indexedVersion == null) {
+			if (other.indexedVersion != null)
+				return false;
+		} else if (!indexedVersion.equals(other.indexedVersion))
+			return false;
+		if (tableId == null) {
+			if (other.tableId != null)
+				return false;
+		} else if (!tableId.equals(other.tableId))
+			return false;
+		return true;
+	}
+
+}
@@ -23,7 +23,6 @@ import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.V2_TABLE_WIK
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.V2_TABLE_WIKI_OWNERS;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.V2_TABLE_WIKI_PAGE;
 
-import java.io.File;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -33,13 +32,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import org.sagebionetworks.downloadtools.FileUtils;
 import org.sagebionetworks.ids.IdGenerator;
 import org.sagebionetworks.ids.IdGenerator.TYPE;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.NameConflictException;
 import org.sagebionetworks.repo.model.ObjectType;
-import org.sagebionetworks.repo.model.dao.FileHandleDao;
 import org.sagebionetworks.repo.model.dao.WikiPageKey;
 import org.sagebionetworks.repo.model.dao.WikiPageKeyHelper;
 import org.sagebionetworks.repo.model.dbo.DBOBasicDao;
@@ -50,7 +47,6 @@ import org.sagebionetworks.repo.model.dbo.v2.persistence.V2DBOWikiMarkdown;
 import org.sagebionetworks.repo.model.dbo.v2.persistence.V2DBOWikiOwner;
 import org.sagebionetworks.repo.model.dbo.v2.persistence.V2DBOWikiPage;
 import org.sagebionetworks.repo.model.file.FileHandle;
-import org.sagebionetworks.repo.model.file.S3FileHandle;
 import org.sagebionetworks.repo.model.jdo.KeyFactory;
 import org.sagebionetworks.repo.model.message.ChangeType;
 import org.sagebionetworks.repo.model.message.TransactionalMessenger;
@@ -69,9 +65,6 @@ import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.amazonaws.services.s3.AmazonS3Client;
-import com.amazonaws.services.s3.model.GetObjectRequest;
-
 /**
  * The basic implementation of the V2WikiPageDao.
  * (Derived from org.sagebionetworks.repo.model.dbo.dao.DBOWikiPageDaoImpl)
@@ -95,10 +88,7 @@ public class V2DBOWikiPageDaoImpl implements V2WikiPageDao {
 	private SimpleJdbcTemplate simpleJdbcTemplate;
 	
 	@Autowired
-	private AmazonS3Client s3Client;
-
-	@Autowired
-	private FileHandleDao fileMetadataDao;	
+	private WikiMarkdownCache markdownCache;
 
 	/**
 	 * Used to detect if a wiki object already exists.
@@ -293,6 +283,7 @@ public class V2DBOWikiPageDaoImpl implements V2WikiPageDao {
 	    newDbo.setMarkdownVersion(incrementedVersion);
 		
 		update(ownerType, ownerIdLong, newDbo);
+		markdownCache.invalidate(wikiPage.getId());
 
 		// Create a new markdown snapshot/version
 		Long markdownFileHandleId = Long.parseLong(wikiPage.getMarkdownFileHandleId());
@@ -440,20 +431,7 @@ public class V2DBOWikiPageDaoImpl implements V2WikiPageDao {
 	@Override
 	public String getMarkdown(WikiPageKey key, Long version) throws IOException, NotFoundException {
 		V2WikiPage wiki = get(key, version);
-		S3FileHandle markdownHandle = (S3FileHandle) fileMetadataDao.get(wiki.getMarkdownFileHandleId());
-		File markdownTemp = File.createTempFile(wiki.getId()+ "_markdown", ".tmp");
-		try {
-			// Retrieve uploaded markdown
-			s3Client.getObject(new GetObjectRequest(markdownHandle.getBucketName(), 
-					markdownHandle.getKey()), markdownTemp);
-			// Read the file as a string
-			String markdownString = FileUtils.readCompressedFileAsString(markdownTemp);
-			return markdownString;
-		} finally {
-			if (markdownTemp != null) {
-				markdownTemp.delete();
-			}
-		}
+		return markdownCache.getMarkdown(wiki.getId(), wiki.getMarkdownFileHandleId());
 	}
 	
 	@Override
@@ -573,6 +551,7 @@ public class V2DBOWikiPageDaoImpl implements V2WikiPageDao {
 			Long rootId = getRootWiki(key.getOwnerObjectId(), key.getOwnerObjectType());
 			// Delete the wiki using both the root and the id 
 			simpleJdbcTemplate.update(SQL_DELETE_USING_ID_AND_ROOT, new Long(key.getWikiPageId()), rootId);
+			markdownCache.invalidate(key.getWikiPageId());
 		}catch(NotFoundException e){
 			// Nothing to do if the wiki does not exist.
 		}
@@ -0,0 +1,229 @@
+package org.sagebionetworks.repo.model.dbo.v2.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.sagebionetworks.downloadtools.FileUtils;
+import org.sagebionetworks.repo.model.dao.FileHandleDao;
+import org.sagebionetworks.repo.model.file.S3FileHandle;
+import org.sagebionetworks.repo.web.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.S3Object;
+
+/**
+ * An in-memory LRU cache of wiki markdown bounded by the size of the cached
+ * data.
+ * <p>
+ * Markdown is stored in S3 as a compressed file. The cache holds the
+ * compressed bytes and decompresses them on each read, so far more pages fit
+ * in the same memory. Entries are keyed by the wiki ID and the markdown file
+ * handle ID. Each version of a wiki points to its own file handle and file
+ * handles never change, so a stale entry can never be returned. The entries of
+ * a wiki are removed when it is updated or deleted to free the memory early.
+ *
+ * @author John
+ *
+ */
+public class WikiMarkdownCache {
+
+	@Autowired
+	private FileHandleDao fileMetadataDao;
+	@Autowired
+	private AmazonS3Client s3Client;
+
+	private final long maxBytes;
+	private final long maxBytesPerEntry;
+	private long currentBytes = 0;
+	private final LinkedHashMap<CacheKey, byte[]> entries;
+
+	/**
+	 *
+	 * @param maxBytes
+	 *            The maximum size of all cached compressed markdown. A single
+	 *            markdown larger than a tenth of this will not be cached.
+	 */
+	public WikiMarkdownCache(long maxBytes) {
+		if (maxBytes < 1) throw new IllegalArgumentException("maxBytes must be greater than zero");
+		this.maxBytes = maxBytes;
+		this.maxBytesPerEntry = Math.max(1, maxBytes / 10);
+		// Access order makes this an LRU.
+		this.entries = new LinkedHashMap<CacheKey, byte[]>(16, 0.75f, true);
+	}
+
+	/**
+	 * Used for mock testing.
+	 *
+	 * @param fileMetadataDao
+	 */
+	public void setFileMetadataDao(FileHandleDao fileMetadataDao) {
+		this.fileMetadataDao = fileMetadataDao;
+	}
+
+	/**
+	 * Used for mock testing.
+	 *
+	 * @param s3Client
+	 */
+	public void setS3Client(AmazonS3Client s3Client) {
+		this.s3Client = s3Client;
+	}
+
+	/**
+	 * Get the markdown of a wiki, downloading it from S3 if it is not in the
+	 * cache.
+	 *
+	 * @param wikiId
+	 * @param markdownFileHandleId
+	 * @return
+	 * @throws IOException
+	 * @throws NotFoundException
+	 */
+	public String getMarkdown(String wikiId, String markdownFileHandleId) throws IOException, NotFoundException {
+		if (wikiId == null) throw new IllegalArgumentException("WikiId cannot be null");
+		if (markdownFileHandleId == null) throw new IllegalArgumentException("MarkdownFileHandleId cannot be null");
+		CacheKey key = new CacheKey(Long.parseLong(wikiId), Long.parseLong(markdownFileHandleId));
+		byte[] compressed = get(key);
+		if (compressed == null) {
+			// Download outside of the lock.
+			compressed = download(markdownFileHandleId);
+			put(key, compressed);
+		}
+		return FileUtils.readCompressedStreamAsString(new ByteArrayInputStream(compressed));
+	}
+
+	/**
+	 * Remove all cached markdown for a wiki now and again after the current
+	 * transaction completes.
+	 *
+	 * @param wikiId
+	 */
+	public void invalidate(String wikiId) {
+		final Long id = Long.parseLong(wikiId);
+		removeAll(id);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					removeAll(id);
+				}
+			});
+		}
+	}
+
+	/**
+	 * The number of cached markdown files.
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * The size of all cached compressed markdown.
+	 *
+	 * @return
+	 */
+	public synchronized long getCurrentBytes() {
+		return currentBytes;
+	}
+
+	private synchronized byte[] get(CacheKey key) {
+		return entries.get(key);
+	}
+
+	private synchronized void put(CacheKey key, byte[] compressed) {
+		if (compressed.length > maxBytesPerEntry) {
+			// Too big to be worth caching.
+			return;
+		}
+		byte[] old = entries.put(key, compressed);
+		if (old != null) {
+			currentBytes -= old.length;
+		}
+		currentBytes += compressed.length;
+		// Evict the least recently used entries until we are under the limit.
+		Iterator<byte[]> it = entries.values().iterator();
+		while (currentBytes > maxBytes && it.hasNext()) {
+			byte[] eldest = it.next();
+			currentBytes -= eldest.length;
+			it.remove();
+		}
+	}
+
+	private synchronized void removeAll(Long wikiId) {
+		Iterator<Map.Entry<CacheKey, byte[]>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<CacheKey, byte[]> next = it.next();
+			if (next.getKey().wikiId.equals(wikiId)) {
+				currentBytes -= next.getValue().length;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Read the compressed markdown file from S3 into memory.
+	 *
+	 * @param markdownFileHandleId
+	 * @return
+	 * @throws IOException
+	 * @throws NotFoundException
+	 */
+	private byte[] download(String markdownFileHandleId) throws IOException, NotFoundException {
+		S3FileHandle markdownHandle = (S3FileHandle) fileMetadataDao.get(markdownFileHandleId);
+		S3Object object = s3Client.getObject(markdownHandle.getBucketName(), markdownHandle.getKey());
+		InputStream in = object.getObjectContent();
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read = -1;
+			while ((read = in.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static class CacheKey {
+		final Long wikiId;
+		final Long markdownFileHandleId;
+
+		CacheKey(Long wikiId, Long markdownFileHandleId) {
+			this.wikiId = wikiId;
+			this.markdownFileHandleId = markdownFileHandleId;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + wikiId.hashCode();
+			result = prime * result + markdownFileHandleId.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			CacheKey other = (CacheKey) obj;
+			return wikiId.equals(other.wikiId) && markdownFileHandleId.equals(other.markdownFileHandleId);
+		}
+	}
+}
@@ -32,6 +32,11 @@ import com.thoughtworks.xstream.XStream;
  */
 public class JDOSecondaryPropertyUtils {
 	
+	/**
+	 * A configured XStream is thread-safe, so the paths that do not add
+	 * aliases share a single instance rather than building one per call.
+	 */
+	private static final XStream SHARED_XSTREAM = createXStream();
 
 	/**
 	 * Merge all of the annotations in the map into a single set.
@@ -163,13 +168,15 @@ public class JDOSecondaryPropertyUtils {
 	}
 	
 	/**
-	 * Convert the passed annotations to a compressed (zip) byte array
+	 * Convert the passed annotations to a compact byte array.
+	 * See {@link NamedAnnotationsCodec}.
 	 * @param dto
 	 * @return compressed annotations
 	 * @throws IOException 
 	 */
 	public static byte[] compressAnnotations(NamedAnnotations dto) throws IOException{
-		return compressObject(dto);
+		if(dto == null) return null;
+		return NamedAnnotationsCodec.encode(dto);
 	}
 	
 	public static byte[] compressObject(Object dto) throws IOException{
@@ -178,8 +185,7 @@ public class JDOSecondaryPropertyUtils {
 		BufferedOutputStream buff = new BufferedOutputStream(out);
 		GZIPOutputStream zipper = new GZIPOutputStream(buff);
 		try{
-			XStream xstream = createXStream();
-			xstream.toXML(dto, zipper);
+			SHARED_XSTREAM.toXML(dto, zipper);
 			zipper.flush();
 			zipper.close();
 			return out.toByteArray();
@@ -219,8 +225,7 @@ public class JDOSecondaryPropertyUtils {
 		BufferedOutputStream buff = new BufferedOutputStream(out);
 		GZIPOutputStream zipper = new GZIPOutputStream(buff);
 		try{
-			XStream xstream = createXStream();
-			xstream.toXML(dto, zipper);
+			SHARED_XSTREAM.toXML(dto, zipper);
 			zipper.flush();
 			zipper.close();
 			return out.toByteArray();
@@ -259,7 +264,8 @@ public class JDOSecondaryPropertyUtils {
 	}
 	
 	/**
-	 * Read the compressed (zip) byte array into the Annotations.
+	 * Read the compressed byte array into the Annotations. Both the
+	 * {@link NamedAnnotationsCodec} format and the older zipped XML are read.
 	 * @param zippedByes
 	 * @return the resurrected Annotations
 	 * @throws IOException 
@@ -271,13 +277,15 @@ public class JDOSecondaryPropertyUtils {
 	}
 		
 	public static Object decompressedObject(byte[] zippedByes) throws IOException{
+		if(NamedAnnotationsCodec.isEncoded(zippedByes)){
+			return NamedAnnotationsCodec.decode(zippedByes);
+		}
 		if(zippedByes != null){
 			ByteArrayInputStream in = new ByteArrayInputStream(zippedByes);
 			GZIPInputStream unZipper = new GZIPInputStream(in);
 			try{
-				XStream xstream = createXStream();
 				if(zippedByes != null){
-					return xstream.fromXML(unZipper);
+					return SHARED_XSTREAM.fromXML(unZipper);
 				}
 			}finally{
 				unZipper.close();
@@ -315,9 +323,8 @@ public class JDOSecondaryPropertyUtils {
 			ByteArrayInputStream in = new ByteArrayInputStream(zippedByes);
 			GZIPInputStream unZipper = new GZIPInputStream(in);
 			try{
-				XStream xstream = createXStream();
 				if(zippedByes != null){
-					return (Map<String, Set<Reference>>) xstream.fromXML(unZipper);
+					return (Map<String, Set<Reference>>) SHARED_XSTREAM.fromXML(unZipper);
 				}
 			}finally{
 				unZipper.close();
@@ -0,0 +1,400 @@
+package org.sagebionetworks.repo.model.jdo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.sagebionetworks.repo.model.Annotations;
+import org.sagebionetworks.repo.model.NamedAnnotations;
+
+/**
+ * A compact binary format for NamedAnnotations that replaces the GZIP XStream
+ * XML blobs. Each field is written in a fixed order, so no names or type
+ * information are stored and nothing needs reflection.
+ * <p>
+ * Every blob starts with {@link #MAGIC} and a version byte. A GZIP stream
+ * always starts with 0x1f, so {@link #isEncoded(byte[])} can tell the two
+ * formats apart and old XML blobs can still be read. Payloads larger than
+ * {@link #DEFLATE_THRESHOLD_BYTES} are deflated. The buffers, Deflater and
+ * Inflater are pooled per thread.
+ *
+ * @author John
+ *
+ */
+public class NamedAnnotationsCodec {
+
+	public static final byte MAGIC = (byte) 0xA7;
+	public static final byte VERSION = 1;
+	private static final byte FLAG_RAW = 0;
+	private static final byte FLAG_DEFLATED = 1;
+	private static final int HEADER_SIZE = 3;
+	/**
+	 * Smaller payloads are not worth deflating.
+	 */
+	public static final int DEFLATE_THRESHOLD_BYTES = 256;
+	private static final String UTF8 = "UTF-8";
+
+	private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+		@Override
+		protected Buffers initialValue() {
+			return new Buffers();
+		}
+	};
+
+	/**
+	 * Does the passed blob use this format?
+	 *
+	 * @param bytes
+	 * @return
+	 */
+	public static boolean isEncoded(byte[] bytes) {
+		return bytes != null && bytes.length >= HEADER_SIZE && bytes[0] == MAGIC;
+	}
+
+	/**
+	 * Write the passed annotations.
+	 *
+	 * @param named
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] encode(NamedAnnotations named) throws IOException {
+		if (named == null) throw new IllegalArgumentException("NamedAnnotations cannot be null");
+		Buffers buffers = BUFFERS.get();
+		buffers.payload.reset();
+		DataOutputStream out = new DataOutputStream(buffers.payload);
+		writeString(out, named.getId());
+		writeString(out, named.getEtag());
+		writeDate(out, named.getCreationDate());
+		writeLong(out, named.getCreatedBy());
+		Map<String, Annotations> map = named.getMap();
+		out.writeInt(map.size());
+		for (Map.Entry<String, Annotations> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			writeAnnotations(out, entry.getValue());
+		}
+		out.flush();
+		byte[] payload = buffers.payload.toByteArray();
+		if (payload.length <= DEFLATE_THRESHOLD_BYTES) {
+			byte[] result = new byte[HEADER_SIZE + payload.length];
+			writeHeader(result, FLAG_RAW);
+			System.arraycopy(payload, 0, result, HEADER_SIZE, payload.length);
+			return result;
+		}
+		Deflater deflater = buffers.deflater;
+		deflater.reset();
+		deflater.setInput(payload);
+		deflater.finish();
+		buffers.compressed.reset();
+		buffers.compressed.write(new byte[] { MAGIC, VERSION, FLAG_DEFLATED });
+		DataOutputStream header = new DataOutputStream(buffers.compressed);
+		// The inflated size lets the reader size its buffer exactly.
+		header.writeInt(payload.length);
+		header.flush();
+		byte[] chunk = buffers.chunk;
+		while (!deflater.finished()) {
+			int count = deflater.deflate(chunk);
+			buffers.compressed.write(chunk, 0, count);
+		}
+		return buffers.compressed.toByteArray();
+	}
+
+	/**
+	 * Read annotations written by {@link #encode(NamedAnnotations)}.
+	 *
+	 * @param bytes
+	 * @return
+	 * @throws IOException
+	 */
+	public static NamedAnnotations decode(byte[] bytes) throws IOException {
+		if (!isEncoded(bytes)) throw new IllegalArgumentException("Not an encoded NamedAnnotations blob");
+		if (bytes[1] != VERSION) throw new IOException("Unknown NamedAnnotations version: " + bytes[1]);
+		byte[] payload;
+		int offset;
+		int length;
+		if (bytes[2] == FLAG_DEFLATED) {
+			DataInputStream header = new DataInputStream(new ByteArrayInputStream(bytes, HEADER_SIZE, 4));
+			int inflatedSize = header.readInt();
+			payload = new byte[inflatedSize];
+			Inflater inflater = BUFFERS.get().inflater;
+			inflater.reset();
+			inflater.setInput(bytes, HEADER_SIZE + 4, bytes.length - HEADER_SIZE - 4);
+			try {
+				int read = 0;
+				while (read < inflatedSize) {
+					int count = inflater.inflate(payload, read, inflatedSize - read);
+					if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+						throw new IOException("Truncated NamedAnnotations blob");
+					}
+					read += count;
+				}
+			} catch (DataFormatException e) {
+				throw new IOException(e);
+			}
+			offset = 0;
+			length = inflatedSize;
+		} else if (bytes[2] == FLAG_RAW) {
+			payload = bytes;
+			offset = HEADER_SIZE;
+			length = bytes.length - HEADER_SIZE;
+		} else {
+			throw new IOException("Unknown NamedAnnotations flag: " + bytes[2]);
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, offset, length));
+		NamedAnnotations named = new NamedAnnotations();
+		named.setId(readString(in));
+		named.setEtag(readString(in));
+		named.setCreationDate(readDate(in));
+		named.setCreatedBy(readLong(in));
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			String name = readString(in);
+			named.put(name, readAnnotations(in));
+		}
+		return named;
+	}
+
+	private static void writeHeader(byte[] bytes, byte flag) {
+		bytes[0] = MAGIC;
+		bytes[1] = VERSION;
+		bytes[2] = flag;
+	}
+
+	private static void writeAnnotations(DataOutputStream out, Annotations annos) throws IOException {
+		writeString(out, annos.getId());
+		writeString(out, annos.getUri());
+		writeString(out, annos.getEtag());
+		writeDate(out, annos.getCreationDate());
+		Map<String, List<String>> strings = annos.getStringAnnotations();
+		if (writeMapSize(out, strings)) {
+			for (Map.Entry<String, List<String>> entry : strings.entrySet()) {
+				writeString(out, entry.getKey());
+				if (writeListSize(out, entry.getValue())) {
+					for (String value : entry.getValue()) {
+						writeString(out, value);
+					}
+				}
+			}
+		}
+		Map<String, List<Double>> doubles = annos.getDoubleAnnotations();
+		if (writeMapSize(out, doubles)) {
+			for (Map.Entry<String, List<Double>> entry : doubles.entrySet()) {
+				writeString(out, entry.getKey());
+				if (writeListSize(out, entry.getValue())) {
+					for (Double value : entry.getValue()) {
+						out.writeBoolean(value != null);
+						if (value != null) out.writeDouble(value);
+					}
+				}
+			}
+		}
+		Map<String, List<Long>> longs = annos.getLongAnnotations();
+		if (writeMapSize(out, longs)) {
+			for (Map.Entry<String, List<Long>> entry : longs.entrySet()) {
+				writeString(out, entry.getKey());
+				if (writeListSize(out, entry.getValue())) {
+					for (Long value : entry.getValue()) {
+						writeLong(out, value);
+					}
+				}
+			}
+		}
+		Map<String, List<Date>> dates = annos.getDateAnnotations();
+		if (writeMapSize(out, dates)) {
+			for (Map.Entry<String, List<Date>> entry : dates.entrySet()) {
+				writeString(out, entry.getKey());
+				if (writeListSize(out, entry.getValue())) {
+					for (Date value : entry.getValue()) {
+						writeDate(out, value);
+					}
+				}
+			}
+		}
+		Map<String, List<byte[]>> blobs = annos.getBlobAnnotations();
+		if (writeMapSize(out, blobs)) {
+			for (Map.Entry<String, List<byte[]>> entry : blobs.entrySet()) {
+				writeString(out, entry.getKey());
+				if (writeListSize(out, entry.getValue())) {
+					for (byte[] value : entry.getValue()) {
+						writeBytes(out, value);
+					}
+				}
+			}
+		}
+	}
+
+	private static Annotations readAnnotations(DataInputStream in) throws IOException {
+		Annotations annos = new Annotations();
+		annos.setId(readString(in));
+		annos.setUri(readString(in));
+		annos.setEtag(readString(in));
+		annos.setCreationDate(readDate(in));
+		int mapSize = in.readInt();
+		if (mapSize >= 0) {
+			Map<String, List<String>> map = new HashMap<String, List<String>>(mapSize * 2);
+			for (int i = 0; i < mapSize; i++) {
+				String key = readString(in);
+				int listSize = in.readInt();
+				List<String> list = null;
+				if (listSize >= 0) {
+					list = new ArrayList<String>(listSize);
+					for (int j = 0; j < listSize; j++) {
+						list.add(readString(in));
+					}
+				}
+				map.put(key, list);
+			}
+			annos.setStringAnnotations(map);
+		}
+		mapSize = in.readInt();
+		if (mapSize >= 0) {
+			Map<String, List<Double>> map = new HashMap<String, List<Double>>(mapSize * 2);
+			for (int i = 0; i < mapSize; i++) {
+				String key = readString(in);
+				int listSize = in.readInt();
+				List<Double> list = null;
+				if (listSize >= 0) {
+					list = new ArrayList<Double>(listSize);
+					for (int j = 0; j < listSize; j++) {
+						list.add(in.readBoolean() ? in.readDouble() : null);
+					}
+				}
+				map.put(key, list);
+			}
+			annos.setDoubleAnnotations(map);
+		}
+		mapSize = in.readInt();
+		if (mapSize >= 0) {
+			Map<String, List<Long>> map = new HashMap<String, List<Long>>(mapSize * 2);
+			for (int i = 0; i < mapSize; i++) {
+				String key = readString(in);
+				int listSize = in.readInt();
+				List<Long> list = null;
+				if (listSize >= 0) {
+					list = new ArrayList<Long>(listSize);
+					for (int j = 0; j < listSize; j++) {
+						list.add(readLong(in));
+					}
+				}
+				map.put(key, list);
+			}
+			annos.setLongAnnotations(map);
+		}
+		mapSize = in.readInt();
+		if (mapSize >= 0) {
+			Map<String, List<Date>> map = new HashMap<String, List<Date>>(mapSize * 2);
+			for (int i = 0; i < mapSize; i++) {
+				String key = readString(in);
+				int listSize = in.readInt();
+				List<Date> list = null;
+				if (listSize >= 0) {
+					list = new ArrayList<Date>(listSize);
+					for (int j = 0; j < listSize; j++) {
+						list.add(readDate(in));
+					}
+				}
+				map.put(key, list);
+			}
+			annos.setDateAnnotations(map);
+		}
+		mapSize = in.readInt();
+		if (mapSize >= 0) {
+			Map<String, List<byte[]>> map = new HashMap<String, List<byte[]>>(mapSize * 2);
+			for (int i = 0; i < mapSize; i++) {
+				String key = readString(in);
+				int listSize = in.readInt();
+				List<byte[]> list = null;
+				if (listSize >= 0) {
+					list = new ArrayList<byte[]>(listSize);
+					for (int j = 0; j < listSize; j++) {
+						list.add(readBytes(in));
+					}
+				}
+				map.put(key, list);
+			}
+			annos.setBlobAnnotations(map);
+		}
+		return annos;
+	}
+
+	/**
+	 * @return false if the map is null.
+	 */
+	private static boolean writeMapSize(DataOutputStream out, Map<?, ?> map) throws IOException {
+		out.writeInt(map == null ? -1 : map.size());
+		return map != null;
+	}
+
+	/**
+	 * @return false if the list is null.
+	 */
+	private static boolean writeListSize(DataOutputStream out, List<?> list) throws IOException {
+		out.writeInt(list == null ? -1 : list.size());
+		return list != null;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		writeBytes(out, value == null ? null : value.getBytes(UTF8));
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = readBytes(in);
+		return bytes == null ? null : new String(bytes, UTF8);
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(value.length);
+			out.write(value);
+		}
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	private static void writeLong(DataOutputStream out, Long value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) out.writeLong(value);
+	}
+
+	private static Long readLong(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readLong() : null;
+	}
+
+	private static void writeDate(DataOutputStream out, Date value) throws IOException {
+		writeLong(out, value == null ? null : value.getTime());
+	}
+
+	private static Date readDate(DataInputStream in) throws IOException {
+		Long time = readLong(in);
+		return time == null ? null : new Date(time);
+	}
+
+	/**
+	 * The reusable state of a single thread.
+	 */
+	private static class Buffers {
+		final ByteArrayOutputStream payload = new ByteArrayOutputStream(1024);
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream(1024);
+		final byte[] chunk = new byte[4096];
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		final Inflater inflater = new Inflater();
+	}
+}
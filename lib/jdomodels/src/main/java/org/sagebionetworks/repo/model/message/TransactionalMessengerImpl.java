@@ -246,6 +246,24 @@ public class TransactionalMessengerImpl implements TransactionalMessenger {
 		}
 	}
 
+	@Override
+	public List<ChangeMessage> sendAndRegisterMessages(List<ChangeMessage> batch, ChangeMessageBatchSender sender) {
+		if(batch == null) throw new IllegalArgumentException("Batch cannot be null");
+		if(sender == null) throw new IllegalArgumentException("Sender cannot be null");
+		try {
+			// Nothing is locked while the messages are sent.
+			List<ChangeMessage> toSend = this.changeDAO.selectMessagesToSend(batch);
+			if(toSend.isEmpty()){
+				return toSend;
+			}
+			List<ChangeMessage> sent = sender.sendMessages(toSend);
+			// The changes are only locked while the sent markers are written.
+			return this.changeDAO.registerMessagesSent(sent);
+		} catch (DataAccessException e) {
+			throw new IllegalArgumentException("Messages were not registered as sent: "+e.getMessage());
+		}
+	}
+
 	@Override
 	public List<ChangeMessage> listUnsentMessages(long limit) {
 		return this.changeDAO.listUnsentMessages(limit);
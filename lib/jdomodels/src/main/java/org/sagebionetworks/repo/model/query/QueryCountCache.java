@@ -0,0 +1,268 @@
+package org.sagebionetworks.repo.model.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sagebionetworks.repo.model.ObjectType;
+import org.sagebionetworks.repo.model.message.ChangeMessage;
+import org.sagebionetworks.repo.model.message.TransactionalMessenger;
+import org.sagebionetworks.repo.model.message.TransactionalMessengerObserver;
+import org.sagebionetworks.util.Clock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
+
+/**
+ * A bounded, in-memory cache of the total number of results of a query.
+ * <p>
+ * Each page of a listing runs the same COUNT statement. The count is keyed by
+ * the count SQL and the parameters it binds, which include the groups used by
+ * the authorization filter, so users with the same groups share an entry. Each
+ * entry expires after a short time to live. The cache is also cleared after any
+ * committed change to entities, evaluations, submissions or principals, so a
+ * cached count is usually exact and at worst a few seconds old.
+ *
+ * @author John
+ *
+ */
+public class QueryCountCache implements TransactionalMessengerObserver {
+
+	/**
+	 * Changes to these types can change the results of a query.
+	 */
+	private static final Set<ObjectType> INVALIDATING_TYPES = Collections.unmodifiableSet(EnumSet.of(ObjectType.ENTITY,
+			ObjectType.EVALUATION, ObjectType.EVALUATION_SUBMISSIONS, ObjectType.SUBMISSION, ObjectType.PRINCIPAL));
+
+	private final int maxEntries;
+	private final long timeToLiveMS;
+	private final LinkedHashMap<String, CacheEntry> entries;
+	private final AtomicLong hitCount = new AtomicLong(0);
+	private final AtomicLong missCount = new AtomicLong(0);
+
+	@Autowired
+	private Clock clock;
+	@Autowired
+	private TransactionalMessenger transactionalMessenger;
+
+	/**
+	 *
+	 * @param maxEntries The maximum number of counts held in the cache.
+	 * @param timeToLiveMS Each count is recomputed after this much time.
+	 */
+	public QueryCountCache(int maxEntries, long timeToLiveMS) {
+		if(maxEntries < 1) throw new IllegalArgumentException("maxEntries must be greater than zero");
+		this.maxEntries = maxEntries;
+		this.timeToLiveMS = timeToLiveMS;
+		// Access order makes this an LRU.
+		this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+	}
+
+	/**
+	 * Used for mock testing.
+	 *
+	 * @param clock
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Used for mock testing.
+	 *
+	 * @param transactionalMessenger
+	 */
+	public void setTransactionalMessenger(TransactionalMessenger transactionalMessenger) {
+		this.transactionalMessenger = transactionalMessenger;
+	}
+
+	/**
+	 * Called by Spring when this bean is created to listen for changes.
+	 */
+	public void initialize() {
+		// We only want to be in the list once
+		transactionalMessenger.removeObserver(this);
+		transactionalMessenger.registerObserver(this);
+	}
+
+	/**
+	 * Get the total number of results of a query after its page has been read.
+	 * <p>
+	 * When the page is not full it holds the last of the results, so the total
+	 * is exact without a count. Otherwise the count is read from the cache when
+	 * the caller is past the first page or did not ask for an exact total. The
+	 * first page always recomputes the count, so a listing refreshes its total
+	 * each time it starts over. When the caller did not ask for a total and none
+	 * is cached, the number of results read so far is returned.
+	 *
+	 * @param countSql The SQL that counts all results of the query.
+	 * @param parameters
+	 * @param offset The offset of the page.
+	 * @param limit The limit of the page.
+	 * @param pageSize The number of results in the page.
+	 * @param countTotal False if the caller does not need the total.
+	 * @param simpleJdbcTemplate Used to run the count SQL.
+	 * @return
+	 */
+	public long resolveTotal(String countSql, Map<String, Object> parameters, long offset, long limit, int pageSize,
+			boolean countTotal, SimpleJdbcTemplate simpleJdbcTemplate) {
+		if(offset < 0){
+			offset = 0;
+		}
+		String key = createKey(countSql, parameters);
+		if(pageSize < limit && (pageSize > 0 || offset == 0)){
+			// This page holds the last result.
+			long total = offset + pageSize;
+			put(key, total);
+			return total;
+		}
+		if(offset > 0 || !countTotal){
+			Long cached = get(key);
+			// A count smaller than the results already read is out of date.
+			if(cached != null && cached >= offset + pageSize){
+				return cached;
+			}
+		}
+		if(!countTotal){
+			return offset + pageSize;
+		}
+		long total = simpleJdbcTemplate.queryForLong(countSql, parameters);
+		put(key, total);
+		return total;
+	}
+
+	/**
+	 * Build the key for a count query. Only the parameters that are used by the
+	 * count SQL are part of the key, so the paging parameters shared with the
+	 * page query do not split the entries of a listing.
+	 *
+	 * @param countSql
+	 * @param parameters
+	 * @return
+	 */
+	public static String createKey(String countSql, Map<String, Object> parameters) {
+		if(countSql == null) throw new IllegalArgumentException("Count SQL cannot be null");
+		// Sort the parameters by name so the key does not depend on map order.
+		TreeMap<String, Object> used = new TreeMap<String, Object>();
+		if(parameters != null){
+			for(Map.Entry<String, Object> entry: parameters.entrySet()){
+				if(countSql.contains(":" + entry.getKey())){
+					used.put(entry.getKey(), normalize(entry.getValue()));
+				}
+			}
+		}
+		StringBuilder builder = new StringBuilder(countSql);
+		builder.append(" ");
+		builder.append(used.toString());
+		return builder.toString();
+	}
+
+	/**
+	 * Collections are sorted so their order does not change the key.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static Object normalize(Object value) {
+		if(!(value instanceof Collection)) return value;
+		List<String> values = new ArrayList<String>();
+		for(Object item: (Collection) value){
+			values.add(String.valueOf(item));
+		}
+		Collections.sort(values);
+		return values;
+	}
+
+	/**
+	 * Get the cached count for a query.
+	 *
+	 * @param key Created with {@link #createKey(String, Map)}
+	 * @return null if the count is not in the cache or has expired.
+	 */
+	public synchronized Long get(String key) {
+		CacheEntry entry = entries.get(key);
+		if(entry != null && clock.currentTimeMillis() > entry.expiresOn){
+			entries.remove(key);
+			entry = null;
+		}
+		if(entry == null){
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return entry.count;
+	}
+
+	/**
+	 * Cache the count for a query.
+	 *
+	 * @param key Created with {@link #createKey(String, Map)}
+	 * @param count
+	 */
+	public synchronized void put(String key, long count) {
+		if(key == null) throw new IllegalArgumentException("Key cannot be null");
+		entries.put(key, new CacheEntry(count, clock.currentTimeMillis()+timeToLiveMS));
+		// Drop the least recently used entries.
+		while(entries.size() > maxEntries){
+			entries.remove(entries.keySet().iterator().next());
+		}
+	}
+
+	/**
+	 * Called after a change is committed.
+	 */
+	@Override
+	public void fireChangeMessage(ChangeMessage message) {
+		if(message != null && INVALIDATING_TYPES.contains(message.getObjectType())){
+			clear();
+		}
+	}
+
+	/**
+	 * Remove all counts.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * The number of calls to {@link #get(String)} that found a live entry.
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * The number of calls to {@link #get(String)} that did not find a live entry.
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * The number of counts currently in the cache.
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private static class CacheEntry {
+		final long count;
+		final long expiresOn;
+
+		CacheEntry(long count, long expiresOn) {
+			this.count = count;
+			this.expiresOn = expiresOn;
+		}
+	}
+}
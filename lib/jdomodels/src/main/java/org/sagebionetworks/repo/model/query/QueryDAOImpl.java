@@ -50,6 +50,8 @@ public class QueryDAOImpl implements QueryDAO {
 	AccessControlListDAO accessControlListDAO;
 	@Autowired
 	private SimpleJdbcTemplate simpleJdbcTemplate;
+	@Autowired
+	private QueryCountCache queryCountCache;
 
 	private static final long MAX_BYTES_PER_QUERY = 
 			StackConfiguration.getMaximumBytesPerQueryResult();
@@ -110,21 +112,23 @@ public class QueryDAOImpl implements QueryDAO {
 		String countQueryString = countQuery.toString();
 		String fullQueryString = fullQuery.toString();
 		
-		// Execute the count query
-		long count = simpleJdbcTemplate.queryForLong(countQueryString, queryParams);
-		if (count == 0) {
-			// no results
-			QueryTableResults results = new QueryTableResults();
-			results.setHeaders(new ArrayList<String>());
-			results.setRows(new ArrayList<Row>());
-			results.setTotalNumberOfResults(0L);
-			return results;
-		}
-		
 		// Execute the full query
 		SizeLimitRowMapper sizeLimitMapper = new SizeLimitRowMapper(MAX_BYTES_PER_QUERY);
 		List<Map<String, Object>> results = simpleJdbcTemplate.query(
 				fullQueryString, sizeLimitMapper, queryParams);
+		
+		// The total comes from the page or the count cache when possible
+		long count = queryCountCache.resolveTotal(countQueryString, queryParams, 
+				userQuery.getOffset(), userQuery.getLimit(), results.size(), 
+				userQuery.isCountTotal(), simpleJdbcTemplate);
+		if (count == 0 && results.isEmpty()) {
+			// no results
+			QueryTableResults emptyResults = new QueryTableResults();
+			emptyResults.setHeaders(new ArrayList<String>());
+			emptyResults.setRows(new ArrayList<Row>());
+			emptyResults.setTotalNumberOfResults(0L);
+			return emptyResults;
+		}
 		Long userId = userInfo.getId();
 		
 		// Log query stats
@@ -22,6 +22,7 @@ import org.sagebionetworks.repo.model.query.Comparator;
 import org.sagebionetworks.repo.model.query.CompoundId;
 import org.sagebionetworks.repo.model.query.Expression;
 import org.sagebionetworks.repo.model.query.FieldType;
+import org.sagebionetworks.repo.model.query.QueryCountCache;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
@@ -44,6 +45,9 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 	
 	@Autowired
 	private NodeAliasCache aliasCache;
+	
+	@Autowired
+	private QueryCountCache queryCountCache;
 
 	/**
 	 * The maximum number of bytes allowed per query.
@@ -85,6 +89,10 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 
 	/**
 	 * Run the actual query.
+	 * <p>
+	 * The page is read first. The total is then taken from the page when it
+	 * holds the last result, or from the {@link QueryCountCache}, so the count
+	 * statement only runs when neither can provide it.
 	 * 
 	 * @param pm
 	 * @param in
@@ -105,11 +113,12 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 			// For this case there will be no results
 			return new NodeQueryResults();
 		}
-		// Run the count query
-		long count = this.simpleJdbcTemplate.queryForLong(countQuery.toString(), parameters);
-		// Now execute the non-count query
+		// Execute the page query
 		SizeLimitRowMapper sizeLimitMapper = new SizeLimitRowMapper(MAX_BYTES_PER_QUERY);
 		List<Map<String, Object>> results = simpleJdbcTemplate.query(fullQuery.toString(), sizeLimitMapper, parameters);
+		// Only count when the page and the cache cannot provide the total.
+		long count = queryCountCache.resolveTotal(countQuery.toString(), parameters, in.getOffset(), in.getLimit(), results.size(),
+				in.isCountTotal(), simpleJdbcTemplate);
 		Long userId = userInfo.getId();
 		// Build the results based on on the select
 		if(log.isDebugEnabled()){
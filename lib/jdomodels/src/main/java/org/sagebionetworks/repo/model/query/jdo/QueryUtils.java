@@ -3,6 +3,7 @@ package org.sagebionetworks.repo.model.query.jdo;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -92,13 +93,18 @@ public class QueryUtils {
 		String sql = AuthorizationSqlUtil.authorizationSQL(groups.size());
 		// Bind the variables
 		parameters.put(AuthorizationSqlUtil.ACCESS_TYPE_BIND_VAR, ACCESS_TYPE.READ.name());
-		// Bind each group
+		// Bind each group in sorted order so users with the same groups bind the same parameters.
+		List<Long> sortedGroups = new ArrayList<Long>(groups.size());
 		Iterator<Long> it = groups.iterator();
-		int index = 0;
 		while (it.hasNext()) {
 			Long ug = it.next();
 			if (ug == null)
 				throw new IllegalArgumentException("UserGroup was null");
+			sortedGroups.add(ug);
+		}
+		Collections.sort(sortedGroups);
+		int index = 0;
+		for (Long ug : sortedGroups) {
 			parameters.put(AuthorizationSqlUtil.BIND_VAR_PREFIX + index, ug);
 			index++;
 		}
@@ -376,6 +376,19 @@ public class SqlConstants {
 	public static final String COL_TABLE_ROW_COUNT			= "ROW_COUNT";
 	public static final String DDL_TABLE_ROW_CHANGE = "schema/TableRowChange-ddl.sql";
 	
+	// The compacted rowId to current version index of each table
+	public static final String TABLE_ROW_VERSION_INDEX			= "TABLE_ROW_VERSION_INDEX";
+	public static final String COL_ROW_VERSION_INDEX_TABLE_ID	= "TABLE_ID";
+	public static final String COL_ROW_VERSION_INDEX_ROW_ID		= "ROW_ID";
+	public static final String COL_ROW_VERSION_INDEX_VERSION	= "ROW_VERSION";
+	public static final String DDL_TABLE_ROW_VERSION_INDEX = "schema/TableRowVersionIndex-ddl.sql";
+	
+	// Tracks the last change set applied to the row version index of each table
+	public static final String TABLE_ROW_VERSION_INDEX_STATUS			= "TABLE_ROW_VERSION_INDEX_STATUS";
+	public static final String COL_ROW_VERSION_INDEX_STATUS_TABLE_ID	= "TABLE_ID";
+	public static final String COL_ROW_VERSION_INDEX_STATUS_VERSION		= "INDEXED_VERSION";
+	public static final String DDL_TABLE_ROW_VERSION_INDEX_STATUS = "schema/TableRowVersionIndexStatus-ddl.sql";
+	
 	
 	public static final String TABLE_BOUND_COLUMN_OWNER		= "BOUND_COLUMN_OWNER";
 	public static final String COL_BOUND_OWNER_OBJECT_ID	= "OBJECT_ID";
@@ -530,6 +543,25 @@ public class SqlConstants {
 	public static final String COL_SHARED_SEMAPHORE_LOCK_TOKEN		= "LOCK_TOKEN";
 	public static final String COL_SHARED_SEMAPHORE_EXPIRES			= "EXPIRATION";
 
+	// Throttle usage
+	public static final String TABLE_THROTTLE_USAGE					= "THROTTLE_USAGE";
+	public static final String COL_THROTTLE_USAGE_NODE				= "NODE_ID";
+	public static final String COL_THROTTLE_USAGE_KEY				= "THROTTLE_KEY";
+	public static final String COL_THROTTLE_USAGE_CONCURRENT		= "CONCURRENT";
+	public static final String COL_THROTTLE_USAGE_EXPIRES			= "EXPIRATION";
+
+	// Search index ledger
+	public static final String TABLE_SEARCH_INDEX_LEDGER			= "SEARCH_INDEX_LEDGER";
+	public static final String COL_SEARCH_INDEX_LEDGER_ENTITY_ID	= "ENTITY_ID";
+	public static final String COL_SEARCH_INDEX_LEDGER_ETAG			= "ETAG";
+	public static final String COL_SEARCH_INDEX_LEDGER_INDEXED_ON	= "LAST_INDEXED_AT";
+
+	// Node ancestry closure
+	public static final String TABLE_NODE_ANCESTOR					= "NODE_ANCESTOR";
+	public static final String COL_NODE_ANCESTOR_ANCESTOR_ID		= "ANCESTOR_ID";
+	public static final String COL_NODE_ANCESTOR_DESCENDANT_ID		= "DESCENDANT_ID";
+	public static final String COL_NODE_ANCESTOR_DEPTH				= "DEPTH";
+
 	// Upload status
 	public static final String TABLE_UPLOAD_STATUS					= "UPLOAD_STATUS";
 	public static final String COL_UPLOAD_STATUS_ID					= "ID";
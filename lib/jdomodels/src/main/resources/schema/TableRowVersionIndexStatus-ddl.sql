@@ -0,0 +1,6 @@
+CREATE TABLE `TABLE_ROW_VERSION_INDEX_STATUS` (
+  `TABLE_ID` bigint(20) NOT NULL,
+  `INDEXED_VERSION` bigint(20) NOT NULL,
+  PRIMARY KEY (`TABLE_ID`),
+  CONSTRAINT `TRVIS_TABLE_ID_FK` FOREIGN KEY (`TABLE_ID`) REFERENCES `TABLE_ID_SEQUENCE` (`TABLE_ID`) ON DELETE CASCADE
+)
\ No newline at end of file
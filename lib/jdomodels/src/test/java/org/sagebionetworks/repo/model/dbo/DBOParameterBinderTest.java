@@ -0,0 +1,127 @@
+package org.sagebionetworks.repo.model.dbo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.Test;
+import org.sagebionetworks.repo.model.dbo.DBOAnnotatedExample.ExampleEnum;
+import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Test for DBOParameterBinder
+ *
+ * @author John
+ *
+ */
+public class DBOParameterBinderTest {
+
+	/**
+	 * The binder must produce the same values and types as the BeanPropertySqlParameterSource it replaces.
+	 */
+	@Test
+	public void testSameAsBeanProperty() {
+		DBOExample example = createExample(123L);
+		TableMapping<DBOExample> mapping = example.getTableMapping();
+		DBOParameterBinder<DBOExample> binder = DBOParameterBinder.create(mapping);
+		assertNotNull(binder);
+		SqlParameterSource bound = binder.bind(example);
+		SqlParameterSource expected = new BeanPropertySqlParameterSource(example);
+		assertSameParameters(mapping, expected, bound);
+	}
+
+	/**
+	 * The binder must apply the same conversions as an AutoTableMapping.
+	 */
+	@Test
+	public void testSameAsAutoTableMapping() {
+		DBOAnnotatedExample example = new DBOAnnotatedExample();
+		example.setId(456L);
+		example.setNumber(1L);
+		example.setBlob(new byte[] { 1, 2, 3 });
+		example.setSerialized(Lists.newArrayList("one", "two"));
+		example.setComment("comment");
+		example.setExampleEnum(ExampleEnum.bbb);
+		example.setModifiedBy("me");
+		example.setModifiedOn(new Date(1000L));
+		AutoTableMapping<DBOAnnotatedExample> mapping = (AutoTableMapping<DBOAnnotatedExample>) example.getTableMapping();
+		DBOParameterBinder<DBOAnnotatedExample> binder = DBOParameterBinder.create(mapping);
+		assertNotNull(binder);
+		SqlParameterSource bound = binder.bind(example);
+		assertSameParameters(mapping, mapping.getSqlParameterSource(example), bound);
+		// The enum and date are converted
+		assertEquals("bbb", bound.getValue("exampleEnum"));
+		assertEquals(1000L, bound.getValue("modifiedOn"));
+		// Nulls are not converted
+		assertNull(bound.getValue("numberOrNull"));
+		assertNull(bound.getValue("etag"));
+	}
+
+	@Test
+	public void testUnknownParameter() {
+		DBOExample example = createExample(1L);
+		SqlParameterSource bound = DBOParameterBinder.create(example.getTableMapping()).bind(example);
+		assertFalse(bound.hasValue("notAField"));
+		assertEquals(SqlParameterSource.TYPE_UNKNOWN, bound.getSqlType("notAField"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownParameterValue() {
+		DBOExample example = createExample(1L);
+		SqlParameterSource bound = DBOParameterBinder.create(example.getTableMapping()).bind(example);
+		bound.getValue("notAField");
+	}
+
+	/**
+	 * A mapping with a field that the DBO class cannot read falls back to a BeanPropertySqlParameterSource.
+	 */
+	@Test
+	public void testNoReadableProperty() {
+		TableMapping<DBOExample> mapping = new AbstractTestTableMapping<DBOExample>() {
+			@Override
+			public FieldColumn[] getFieldColumns() {
+				return new FieldColumn[] { new FieldColumn("id", "ID", true), new FieldColumn("doesNotExist", "DOES_NOT_EXIST") };
+			}
+
+			@Override
+			public Class<? extends DBOExample> getDBOClass() {
+				return DBOExample.class;
+			}
+		};
+		assertNull(DBOParameterBinder.create(mapping));
+	}
+
+	private static void assertSameParameters(TableMapping<?> mapping, SqlParameterSource expected, SqlParameterSource actual) {
+		for (FieldColumn field : mapping.getFieldColumns()) {
+			String name = field.getFieldName();
+			assertTrue(actual.hasValue(name));
+			assertEquals(name, expected.getSqlType(name), actual.getSqlType(name));
+			Object expectedValue = expected.getValue(name);
+			Object actualValue = actual.getValue(name);
+			if (expectedValue instanceof byte[]) {
+				assertArrayEquals(name, (byte[]) expectedValue, (byte[]) actualValue);
+			} else {
+				assertEquals(name, expectedValue, actualValue);
+			}
+		}
+	}
+
+	private static DBOExample createExample(Long id) {
+		DBOExample example = new DBOExample();
+		example.setId(id);
+		example.setNumber(2L);
+		example.setBlob(new byte[] { 4, 5, 6 });
+		example.setComment("a comment");
+		example.setModifiedBy("someone");
+		example.setModifiedOn(System.currentTimeMillis());
+		return example;
+	}
+}
@@ -200,6 +200,28 @@ public class DMLUtilsTest {
 		assertEquals("SELECT `ID` FROM SOME_TABLE WHERE `ID` IN ( :BVIDLIST ) ORDER BY `ID` ASC", batchDelete);
 	}
 	
+	@Test
+	public void testListForRangeWithSelfForeignKey(){
+		String sql = DMLUtils.listRowMetadataForRange(migrateableMappingSelfForeignKey);
+		assertEquals("SELECT `ID`, `ETAG`, `PARENT_ID` FROM SOME_TABLE WHERE `ID` BETWEEN :BVMINID AND :BVMAXID ORDER BY `ID` ASC LIMIT :BCLIMIT", sql);
+	}
+	
+	@Test
+	public void testRangeChecksumWithEtag(){
+		String sql = DMLUtils.createRangeChecksumStatement(migrateableMappingSelfForeignKey);
+		assertEquals("SELECT COUNT(*) AS RANGE_COUNT, MIN(`ID`) AS RANGE_MIN_ID, MAX(`ID`) AS RANGE_MAX_ID," +
+				" CONCAT(SUM(CRC32(CONCAT(`ID`, '@', IFNULL(`ETAG`, 'NULL')))), '-', BIT_XOR(CRC32(CONCAT(`ID`, '@', IFNULL(`ETAG`, 'NULL'))))) AS RANGE_CHECKSUM" +
+				" FROM SOME_TABLE WHERE `ID` BETWEEN :BVMINID AND :BVMAXID", sql);
+	}
+	
+	@Test
+	public void testRangeChecksumNoEtag(){
+		String sql = DMLUtils.createRangeChecksumStatement(migrateableMappingNoEtagNotSelfForeignKey);
+		assertEquals("SELECT COUNT(*) AS RANGE_COUNT, MIN(`ID`) AS RANGE_MIN_ID, MAX(`ID`) AS RANGE_MAX_ID," +
+				" CONCAT(SUM(CRC32(`ID`)), '-', BIT_XOR(CRC32(`ID`))) AS RANGE_CHECKSUM" +
+				" FROM SOME_TABLE WHERE `ID` BETWEEN :BVMINID AND :BVMAXID", sql);
+	}
+	
 	@Test
 	public void testGetBatchWithSelfForeignKey(){
 		String batchDelete = DMLUtils.getBackupBatch(migrateableMappingSelfForeignKey);
@@ -12,6 +12,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.After;
@@ -23,6 +24,7 @@ import org.sagebionetworks.repo.model.AccessControlList;
 import org.sagebionetworks.repo.model.AccessControlListDAO;
 import org.sagebionetworks.repo.model.AuthorizationConstants.BOOTSTRAP_PRINCIPAL;
 import org.sagebionetworks.repo.model.ConflictingUpdateException;
+import org.sagebionetworks.repo.model.EntityAccess;
 import org.sagebionetworks.repo.model.EntityType;
 import org.sagebionetworks.repo.model.Node;
 import org.sagebionetworks.repo.model.NodeDAO;
@@ -30,6 +32,7 @@ import org.sagebionetworks.repo.model.ObjectType;
 import org.sagebionetworks.repo.model.ResourceAccess;
 import org.sagebionetworks.repo.model.UserGroup;
 import org.sagebionetworks.repo.model.UserGroupDAO;
+import org.sagebionetworks.repo.model.jdo.KeyFactory;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
@@ -195,8 +198,46 @@ public class DBOAccessControlListDAOImplTest {
 		assertFalse(aclDAO.canAccess(gs, node.getId(), ObjectType.ENTITY, ACCESS_TYPE.READ));
 	}
 
-	/**
-	 * Test method for {@link org.sagebionetworks.repo.model.dbo.dao.DBOAccessControlListDaoImpl#get(java.lang.String, Long)}.
+	@Test
+	public void testGetEntityAccess() throws Exception {
+		// Add a child that inherits from the node
+		Node child = new Node();
+		child.setName("child");
+		child.setCreatedOn(new Date());
+		child.setCreatedByPrincipalId(modifiedById);
+		child.setModifiedOn(new Date());
+		child.setModifiedByPrincipalId(modifiedById);
+		child.setNodeType(EntityType.folder.name());
+		child.setParentId(node.getId());
+		child = nodeDAO.getNode(nodeDAO.createNew(child));
+		nodeList.add(child);
+		
+		Long nodeKey = KeyFactory.stringToKey(node.getId());
+		Long childKey = KeyFactory.stringToKey(child.getId());
+		Long groupId = Long.parseLong(group.getId());
+		Long group2Id = Long.parseLong(group2.getId());
+		Set<Long> gs = new HashSet<Long>(Arrays.asList(groupId, group2Id));
+		Map<Long, EntityAccess> results = aclDAO.getEntityAccess(Arrays.asList(nodeKey, childKey, -123L), gs);
+		// The unknown ID is not included
+		assertEquals(2, results.size());
+		EntityAccess childAccess = results.get(childKey);
+		assertNotNull(childAccess);
+		assertEquals(nodeKey, childAccess.getBenefactorId());
+		assertEquals(modifiedById, childAccess.getCreatedBy());
+		assertFalse(childAccess.isParentIsRoot());
+		Set<ACCESS_TYPE> expected = new HashSet<ACCESS_TYPE>(Arrays.asList(ACCESS_TYPE.READ));
+		assertEquals(expected, childAccess.getAccessTypes(gs));
+		assertEquals(expected, childAccess.getAccessTypes(new HashSet<Long>(Arrays.asList(groupId))));
+		// The second group has no access
+		assertEquals(new HashSet<ACCESS_TYPE>(), childAccess.getAccessTypes(new HashSet<Long>(Arrays.asList(group2Id))));
+		EntityAccess nodeAccess = results.get(nodeKey);
+		assertEquals(nodeKey, nodeAccess.getBenefactorId());
+		assertEquals(createdById, nodeAccess.getCreatedBy());
+		assertEquals(expected, nodeAccess.getAccessTypes(gs));
+	}
+
+	/**
+	 * Test method for {@link org.sagebionetworks.repo.model.dbo.dao.DBOAccessControlListDaoImpl#get(java.lang.String, Long)}.
 	 */
 	@Test
 	public void testGet() throws Exception {
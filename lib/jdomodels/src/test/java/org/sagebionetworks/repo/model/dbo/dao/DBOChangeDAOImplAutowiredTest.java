@@ -27,8 +27,10 @@ import org.junit.runner.RunWith;
 import org.sagebionetworks.repo.model.ObjectType;
 import org.sagebionetworks.repo.model.ProcessedMessageDAO;
 import org.sagebionetworks.repo.model.message.ChangeMessage;
+import org.sagebionetworks.repo.model.message.ChangeMessageBatchSender;
 import org.sagebionetworks.repo.model.message.ChangeMessageUtils;
 import org.sagebionetworks.repo.model.message.ChangeType;
+import org.sagebionetworks.repo.model.message.TransactionalMessenger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DeadlockLoserDataAccessException;
 import org.springframework.test.context.ContextConfiguration;
@@ -44,6 +46,9 @@ public class DBOChangeDAOImplAutowiredTest {
 	@Autowired
 	ProcessedMessageDAO processedMessageDAO;
 	
+	@Autowired
+	TransactionalMessenger transactionalMessenger;
+	
 	@Before
 	public void before(){
 		if(changeDAO != null){
@@ -404,6 +409,74 @@ public class DBOChangeDAOImplAutowiredTest {
 		assertTrue(changeDAO.registerMessageSent(change));
 	}
 	
+	@Test
+	public void testSendAndRegisterMessages(){
+		List<ChangeMessage> batch = changeDAO.replaceChange(createList(4, ObjectType.ENTITY));
+		// The first is already sent.
+		assertTrue(changeDAO.registerMessageSent(batch.get(0)));
+		// The last is replaced so the message in the batch is stale.
+		ChangeMessage replaced = changeDAO.replaceChange(batch.get(3));
+		ChangeMessage stale = new ChangeMessage();
+		stale.setObjectId(replaced.getObjectId());
+		stale.setObjectType(replaced.getObjectType());
+		stale.setChangeNumber(replaced.getChangeNumber()-100);
+		List<ChangeMessage> toClaim = new ArrayList<ChangeMessage>(batch.subList(0, 3));
+		toClaim.add(stale);
+		// Claimed messages are passed in change number order.
+		Collections.reverse(toClaim);
+		final List<ChangeMessage> claimed = new ArrayList<ChangeMessage>();
+		List<ChangeMessage> sent = transactionalMessenger.sendAndRegisterMessages(toClaim, new ChangeMessageBatchSender() {
+			@Override
+			public List<ChangeMessage> sendMessages(List<ChangeMessage> toSend) {
+				claimed.addAll(toSend);
+				// Only the first is sent.
+				return toSend.subList(0, 1);
+			}
+		});
+		assertEquals(2, claimed.size());
+		assertEquals(batch.get(1).getChangeNumber(), claimed.get(0).getChangeNumber());
+		assertEquals(batch.get(2).getChangeNumber(), claimed.get(1).getChangeNumber());
+		assertEquals(1, sent.size());
+		assertEquals(batch.get(1).getChangeNumber(), sent.get(0).getChangeNumber());
+		// The message that was not sent and the replaced change are still unsent.
+		List<ChangeMessage> unsent = changeDAO.listUnsentMessages(10);
+		assertEquals(2, unsent.size());
+		List<Long> unsentNumbers = new ArrayList<Long>();
+		for(ChangeMessage message: unsent){
+			unsentNumbers.add(message.getChangeNumber());
+		}
+		assertTrue(unsentNumbers.contains(batch.get(2).getChangeNumber()));
+		assertTrue(unsentNumbers.contains(replaced.getChangeNumber()));
+	}
+	
+	@Test
+	public void testRegisterMessagesSent(){
+		List<ChangeMessage> batch = changeDAO.replaceChange(createList(3, ObjectType.ENTITY));
+		changeDAO.registerMessagesSent(batch);
+		assertEquals(0, changeDAO.listUnsentMessages(10).size());
+		// Registering again is not an error.
+		changeDAO.registerMessagesSent(batch);
+		// A replaced change is unsent again.
+		changeDAO.replaceChange(batch.get(0));
+		assertEquals(1, changeDAO.listUnsentMessages(10).size());
+	}
+	
+	@Test
+	public void testRegisterMessagesSentReplacedWhileSending(){
+		List<ChangeMessage> batch = changeDAO.replaceChange(createList(2, ObjectType.ENTITY));
+		List<ChangeMessage> toSend = changeDAO.selectMessagesToSend(batch);
+		assertEquals(2, toSend.size());
+		// The first change is replaced while the batch is sent.
+		ChangeMessage replaced = changeDAO.replaceChange(batch.get(0));
+		List<ChangeMessage> registered = changeDAO.registerMessagesSent(toSend);
+		assertEquals(1, registered.size());
+		assertEquals(batch.get(1).getChangeNumber(), registered.get(0).getChangeNumber());
+		// The new change still needs to be sent.
+		List<ChangeMessage> unsent = changeDAO.listUnsentMessages(10);
+		assertEquals(1, unsent.size());
+		assertEquals(replaced.getChangeNumber(), unsent.get(0).getChangeNumber());
+	}
+	
 	@Test
 	public void testRegisterMessageSentOldChange(){
 		ChangeMessage change = createList(1, ObjectType.ENTITY).get(0);
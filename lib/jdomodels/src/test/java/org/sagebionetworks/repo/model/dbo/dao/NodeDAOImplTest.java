@@ -1058,6 +1058,82 @@ public class NodeDAOImplTest {
 		}
 	}
 	
+	@Test
+	public void testGetEntityPathAfterMove() throws Exception {
+		String[] ids = createChain(4);
+		Node node = privateCreateNew("newParent");
+		node.setNodeType(EntityType.project.name());
+		String newParentId = nodeDao.createNew(node);
+		toDelete.add(newParentId);
+		// Move the second node with its sub-tree to the new parent.
+		assertTrue(nodeDao.changeNodeParent(ids[1], newParentId));
+		List<EntityHeader> path = nodeDao.getEntityPath(ids[3]);
+		assertEquals(Arrays.asList(newParentId, ids[1], ids[2], ids[3]), getIds(path));
+		// The old parent no longer has the sub-tree.
+		path = nodeDao.getEntityPath(ids[0]);
+		assertEquals(Arrays.asList(ids[0]), getIds(path));
+	}
+	
+	@Test
+	public void testGetEntityPathClearedAncestry() throws Exception {
+		String[] ids = createChain(NodeDAOImpl.BATCH_PATH_DEPTH+2);
+		List<EntityHeader> expected = nodeDao.getEntityPath(ids[ids.length-1]);
+		// Simulate nodes that existed before the ancestry was tracked.
+		nodeDao.clearAncestry(Arrays.asList(KeyFactory.stringToKey(ids[0])));
+		assertEquals(expected, nodeDao.getEntityPath(ids[ids.length-1]));
+		// A new child rebuilds the ancestry of its parent
+		Node node = privateCreateNew("child");
+		node.setNodeType(EntityType.folder.name());
+		node.setParentId(ids[ids.length-1]);
+		String childId = nodeDao.createNew(node);
+		toDelete.add(childId);
+		List<EntityHeader> path = nodeDao.getEntityPath(childId);
+		assertEquals(ids.length+1, path.size());
+		assertEquals(expected, path.subList(0, ids.length));
+		// Moving a node with no ancestry also works
+		assertTrue(nodeDao.changeNodeParent(ids[2], ids[0]));
+		path = nodeDao.getEntityPath(childId);
+		assertEquals(ids.length, path.size());
+		assertEquals(ids[0], path.get(0).getId());
+		assertEquals(ids[2], path.get(1).getId());
+		assertEquals(childId, path.get(path.size()-1).getId());
+	}
+	
+	@Test
+	public void testBackfillAncestry() throws Exception {
+		String[] ids = createChain(3);
+		List<EntityHeader> expected = nodeDao.getEntityPath(ids[ids.length-1]);
+		// Simulate nodes that existed before the ancestry was tracked.
+		nodeDao.clearAncestry(Arrays.asList(KeyFactory.stringToKey(ids[0])));
+		while(nodeDao.backfillAncestry(100) == 100);
+		// Every node now has its ancestry
+		assertEquals(0, nodeDao.backfillAncestry(100));
+		assertEquals(expected, nodeDao.getEntityPath(ids[ids.length-1]));
+	}
+	
+	/**
+	 * Create a chain of nodes where each node is the parent of the next.
+	 */
+	private String[] createChain(int depth) throws Exception {
+		String[] ids = new String[depth];
+		for (int i=0; i<depth; i++) {
+			Node node = privateCreateNew("chain_"+i);
+			node.setNodeType(EntityType.project.name());
+			if (i>0) node.setParentId(ids[i-1]);
+			ids[i] = nodeDao.createNew(node);
+			toDelete.add(ids[i]);
+		}
+		return ids;
+	}
+	
+	private static List<String> getIds(List<EntityHeader> path){
+		List<String> ids = new ArrayList<String>();
+		for(EntityHeader header: path){
+			ids.add(header.getId());
+		}
+		return ids;
+	}
+	
 	@Test
 	public void testGetChildrenList() throws NotFoundException, DatastoreException, InvalidModelException {
 		Node node = privateCreateNew("parent");
@@ -0,0 +1,73 @@
+package org.sagebionetworks.repo.model.dbo.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.sagebionetworks.repo.model.dao.SearchIndexLedgerDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "classpath:jdomodels-test-context.xml" })
+public class SearchIndexLedgerDaoImplTest {
+
+	@Autowired
+	private SearchIndexLedgerDao searchIndexLedgerDao;
+
+	@Before
+	public void before(){
+		searchIndexLedgerDao.clear();
+	}
+
+	@After
+	public void after(){
+		searchIndexLedgerDao.clear();
+	}
+
+	@Test
+	public void testRoundTrip(){
+		Map<String, String> etags = new HashMap<String, String>();
+		etags.put("syn123", "etag1");
+		etags.put("syn456", "etag2");
+		searchIndexLedgerDao.recordIndexed(etags);
+		Map<String, String> results = searchIndexLedgerDao.getIndexedEtags(Arrays.asList("syn123", "syn456", "syn789"), 0L);
+		assertEquals(etags, results);
+		// Update one
+		Map<String, String> update = new HashMap<String, String>();
+		update.put("syn123", "etag3");
+		searchIndexLedgerDao.recordIndexed(update);
+		results = searchIndexLedgerDao.getIndexedEtags(Arrays.asList("syn123"), 0L);
+		assertEquals(update, results);
+		// Delete
+		searchIndexLedgerDao.deleteEntries(Arrays.asList("syn123"));
+		results = searchIndexLedgerDao.getIndexedEtags(Arrays.asList("syn123", "syn456"), 0L);
+		assertEquals(1, results.size());
+		assertEquals("etag2", results.get("syn456"));
+	}
+
+	@Test
+	public void testExpired(){
+		Map<String, String> etags = new HashMap<String, String>();
+		etags.put("syn123", "etag1");
+		searchIndexLedgerDao.recordIndexed(etags);
+		// Entries recorded before the cutoff are not returned
+		Map<String, String> results = searchIndexLedgerDao.getIndexedEtags(Arrays.asList("syn123"), System.currentTimeMillis()+1000);
+		assertTrue(results.isEmpty());
+	}
+
+	@Test
+	public void testEmpty(){
+		searchIndexLedgerDao.recordIndexed(new HashMap<String, String>());
+		searchIndexLedgerDao.deleteEntries(Arrays.<String>asList());
+		assertTrue(searchIndexLedgerDao.getIndexedEtags(Arrays.<String>asList(), 0L).isEmpty());
+	}
+}
@@ -0,0 +1,140 @@
+package org.sagebionetworks.repo.model.dbo.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.UserInfo;
+import org.sagebionetworks.util.TestClock;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class UserInfoCacheTest {
+
+	TestClock testClock;
+	UserInfoCache cache;
+
+	@Before
+	public void before() {
+		testClock = new TestClock();
+		cache = new UserInfoCache(3, 1000);
+		cache.setClock(testClock);
+	}
+
+	private UserInfo createUserInfo(Long id, Long... groups) {
+		UserInfo info = new UserInfo(false);
+		info.setId(id);
+		info.setCreationDate(new Date(123L));
+		Set<Long> set = new HashSet<Long>(Arrays.asList(groups));
+		set.add(id);
+		info.setGroups(set);
+		return info;
+	}
+
+	@Test
+	public void testHitAndMiss() {
+		assertNull(cache.get(1L));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		UserInfo info = createUserInfo(1L, 100L);
+		cache.put(info);
+		UserInfo cached = cache.get(1L);
+		assertNotNull(cached);
+		assertEquals(info.getGroups(), cached.getGroups());
+		assertEquals(info.getCreationDate(), cached.getCreationDate());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testCopies() {
+		UserInfo info = createUserInfo(1L, 100L);
+		cache.put(info);
+		// Changing the original or a returned value must not change the cache.
+		info.getGroups().add(200L);
+		cache.get(1L).getGroups().add(300L);
+		Set<Long> expected = new HashSet<Long>(Arrays.asList(1L, 100L));
+		assertEquals(expected, cache.get(1L).getGroups());
+	}
+
+	@Test
+	public void testExpired() {
+		cache.put(createUserInfo(1L));
+		testClock.warpForward(1000);
+		assertNotNull(cache.get(1L));
+		testClock.warpForward(1);
+		assertNull(cache.get(1L));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedRemoved() {
+		cache.put(createUserInfo(1L));
+		cache.put(createUserInfo(2L));
+		cache.put(createUserInfo(3L));
+		// touch one so two is the oldest
+		cache.get(1L);
+		cache.put(createUserInfo(4L));
+		assertEquals(3, cache.size());
+		assertNull(cache.get(2L));
+		assertNotNull(cache.get(1L));
+		assertNotNull(cache.get(3L));
+		assertNotNull(cache.get(4L));
+	}
+
+	@Test
+	public void testInvalidate() {
+		cache.put(createUserInfo(1L));
+		cache.put(createUserInfo(2L));
+		cache.invalidate(Arrays.asList("1"));
+		assertNull(cache.get(1L));
+		assertNotNull(cache.get(2L));
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testPutNullId() {
+		cache.put(new UserInfo(false));
+	}
+
+	@Test
+	public void testAdminCopied() {
+		UserInfo info = new UserInfo(true);
+		info.setId(5L);
+		cache.put(info);
+		UserInfo cached = cache.get(5L);
+		assertEquals(true, cached.isAdmin());
+		assertNull(cached.getGroups());
+		assertFalse(cached == info);
+	}
+
+	@Test
+	public void testInvalidateAfterRollback() {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			cache.put(createUserInfo(1L));
+			cache.put(createUserInfo(2L));
+			cache.invalidate(Arrays.asList("1"));
+			cache.invalidateAll();
+			// A concurrent read caches the users before the transaction completes.
+			cache.put(createUserInfo(1L));
+			cache.put(createUserInfo(2L));
+			for(TransactionSynchronization sync: TransactionSynchronizationManager.getSynchronizations()){
+				sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+			}
+			assertNull(cache.get(1L));
+			assertNull(cache.get(2L));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+}
@@ -1,7 +1,9 @@
 package org.sagebionetworks.repo.model.dbo.dao.migration;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -17,6 +19,7 @@ import org.sagebionetworks.repo.model.dbo.migration.MigratableTableDAO;
 import org.sagebionetworks.repo.model.dbo.persistence.DBOFileHandle;
 import org.sagebionetworks.repo.model.file.PreviewFileHandle;
 import org.sagebionetworks.repo.model.file.S3FileHandle;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.RowMetadata;
 import org.sagebionetworks.repo.model.migration.RowMetadataResult;
@@ -121,6 +124,35 @@ public class MigratableTableDAOImplAutowireTest {
 		assertEquals(preview2.getEtag(), row.getEtag());
 		assertEquals(null, row.getParentId());
 		
+		// The same rows listed by ID range
+		long firstId = Long.parseLong(withPreview.getId());
+		long lastId = Long.parseLong(preview2.getId());
+		List<RowMetadata> rangeList = migratableTableDAO.listRowMetadataForIdRange(MigrationType.FILE_HANDLE, firstId, lastId, 1000);
+		assertEquals(totalList.getList(), rangeList);
+		rangeList = migratableTableDAO.listRowMetadataForIdRange(MigrationType.FILE_HANDLE, firstId, lastId, 2);
+		assertEquals(totalList.getList().subList(0, 2), rangeList);
+		// Checksum of the range
+		MigrationRangeChecksum checksum = migratableTableDAO.getChecksumForIdRange(MigrationType.FILE_HANDLE, firstId, lastId);
+		assertNotNull(checksum);
+		assertEquals(new Long(4), checksum.getCount());
+		assertEquals(new Long(firstId), checksum.getFirstId());
+		assertEquals(new Long(lastId), checksum.getLastId());
+		assertNotNull(checksum.getChecksum());
+		// The checksum is stable
+		assertEquals(checksum, migratableTableDAO.getChecksumForIdRange(MigrationType.FILE_HANDLE, firstId, lastId));
+		// Changing an etag changes the checksum
+		fileHandleDao.setPreviewId(withPreview.getId(), preview.getId());
+		MigrationRangeChecksum changed = migratableTableDAO.getChecksumForIdRange(MigrationType.FILE_HANDLE, firstId, lastId);
+		assertEquals(new Long(4), changed.getCount());
+		assertFalse(checksum.getChecksum().equals(changed.getChecksum()));
+		withPreview = (S3FileHandle) fileHandleDao.get(withPreview.getId());
+		// An empty range
+		MigrationRangeChecksum empty = migratableTableDAO.getChecksumForIdRange(MigrationType.FILE_HANDLE, lastId+1, lastId+1000);
+		assertEquals(new Long(0), empty.getCount());
+		assertNull(empty.getFirstId());
+		assertNull(empty.getLastId());
+		assertNull(empty.getChecksum());
+		
 		// Get the full back object
 		List<Long> idsToBackup1 = new LinkedList<Long>();
 		idsToBackup1.add(Long.parseLong(preview.getId()));
@@ -245,7 +277,7 @@ public class MigratableTableDAOImplAutowireTest {
 		expectedPrimaryTypes.add(MigrationType.ACL);
 		expectedPrimaryTypes.add(MigrationType.FAVORITE);
 		expectedPrimaryTypes.add(MigrationType.TRASH_CAN);
-		expectedPrimaryTypes.add(MigrationType.DOI);
+		expectedPrimaryTypes.add(MigrationType.DOI);
 		expectedPrimaryTypes.add(MigrationType.COMMUNITY_TEAM);
 		expectedPrimaryTypes.add(MigrationType.BRIDGE_PARTICIPANT);
 		expectedPrimaryTypes.add(MigrationType.BRIDGE_USER_PARTICIPANT_MAP);
@@ -255,7 +287,7 @@ public class MigratableTableDAOImplAutowireTest {
 		expectedPrimaryTypes.add(MigrationType.PARTICIPANT_DATA_STATUS);
 		expectedPrimaryTypes.add(MigrationType.COLUMN_MODEL);
 		expectedPrimaryTypes.add(MigrationType.BOUND_COLUMN_OWNER);
-		expectedPrimaryTypes.add(MigrationType.TABLE_SEQUENCE);
+		expectedPrimaryTypes.add(MigrationType.TABLE_SEQUENCE);
 		expectedPrimaryTypes.add(MigrationType.STORAGE_QUOTA);
 		expectedPrimaryTypes.add(MigrationType.QUIZ_RESPONSE);
 		expectedPrimaryTypes.add(MigrationType.CHANGE);
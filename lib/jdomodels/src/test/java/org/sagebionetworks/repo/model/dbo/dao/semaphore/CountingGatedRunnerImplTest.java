@@ -0,0 +1,200 @@
+package org.sagebionetworks.repo.model.dbo.dao.semaphore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sagebionetworks.ImmutablePropertyAccessor;
+import org.sagebionetworks.repo.model.dao.semaphore.ThrottleUsageDao;
+import org.sagebionetworks.repo.model.exception.LockUnavilableException;
+import org.sagebionetworks.util.TestClock;
+
+public class CountingGatedRunnerImplTest {
+
+	ThrottleUsageDao mockThrottleUsageDao;
+	TestClock testClock;
+	CountingGatedRunnerImpl gate;
+	String key;
+
+	@Before
+	public void before() {
+		mockThrottleUsageDao = Mockito.mock(ThrottleUsageDao.class);
+		testClock = new TestClock();
+		gate = new CountingGatedRunnerImpl();
+		gate.setThrottleUsageDao(mockThrottleUsageDao);
+		gate.setClock(testClock);
+		gate.setMaxNumberRunnersAccessor(ImmutablePropertyAccessor.create(2));
+		key = "111";
+		when(mockThrottleUsageDao.getClusterUsage(anyString())).thenReturn(Collections.<String, Long> emptyMap());
+	}
+
+	@Test
+	public void testConcurrencyLimit() throws Exception {
+		// Hold both slots
+		assertNotNull(gate.tryAcquire(key));
+		assertNotNull(gate.tryAcquire(key));
+		// a third call is rejected
+		try {
+			gate.attemptToRunAllSlots(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return "should not run";
+				}
+			}, key);
+			fail("Should have been throttled");
+		} catch (LockUnavilableException e) {
+			// expected
+		}
+		// Other keys are not affected
+		assertNotNull(gate.tryAcquire("222"));
+		// Nothing should go to the database per call
+		verifyZeroInteractions(mockThrottleUsageDao);
+	}
+
+	@Test
+	public void testSlotReleased() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			String result = gate.attemptToRunAllSlots(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return "okay";
+				}
+			}, key);
+			assertEquals("okay", result);
+		}
+	}
+
+	@Test
+	public void testSlotReleasedOnException() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			try {
+				gate.attemptToRunAllSlots(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						throw new IllegalStateException();
+					}
+				}, key);
+				fail();
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		}
+		assertNotNull(gate.tryAcquire(key));
+	}
+
+	@Test
+	public void testRemoteUsageCounts() throws Exception {
+		Map<String, Long> remote = new HashMap<String, Long>();
+		remote.put(key, 1L);
+		when(mockThrottleUsageDao.getClusterUsage(anyString())).thenReturn(remote);
+		gate.reconcile();
+		// Another node is using one of the two slots.
+		assertNotNull(gate.tryAcquire(key));
+		assertNull(gate.tryAcquire(key));
+	}
+
+	@Test
+	public void testReconcileReportsLocalUsage() throws Exception {
+		gate.tryAcquire(key);
+		gate.tryAcquire(key);
+		gate.reconcile();
+		Map<String, Long> expected = new HashMap<String, Long>();
+		expected.put(key, 2L);
+		verify(mockThrottleUsageDao, times(1)).reportUsage(anyString(), eq(expected), anyLong());
+	}
+
+	@Test
+	public void testReconcileDropsIdleKeys() throws Exception {
+		gate.attemptToRunAllSlots(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return "okay";
+			}
+		}, key);
+		gate.reconcile();
+		assertEquals(1, gate.getKeyCount());
+		testClock.warpForward(CountingGatedRunnerImpl.IDLE_KEY_TIMEOUT_MS + 1);
+		gate.reconcile();
+		assertEquals(0, gate.getKeyCount());
+	}
+
+	@Test
+	public void testReconcileOnlyWritesChanges() throws Exception {
+		// Nothing to report
+		gate.reconcile();
+		verify(mockThrottleUsageDao, never()).reportUsage(anyString(), anyMap(), anyLong());
+		gate.tryAcquire(key);
+		gate.reconcile();
+		gate.reconcile();
+		verify(mockThrottleUsageDao, times(1)).reportUsage(anyString(), anyMap(), anyLong());
+		// The report is refreshed before it expires.
+		testClock.warpForward(CountingGatedRunnerImpl.DEFAULT_USAGE_TIMEOUT_MS / 2 + 1);
+		gate.reconcile();
+		verify(mockThrottleUsageDao, times(2)).reportUsage(anyString(), anyMap(), anyLong());
+		// The other nodes are read each time.
+		verify(mockThrottleUsageDao, times(4)).getClusterUsage(anyString());
+	}
+
+	@Test
+	public void testAttemptToRun() throws Exception {
+		final int[] runs = new int[1];
+		gate.setSemaphoreKey("worker");
+		gate.setRunner(new Runnable() {
+			@Override
+			public void run() {
+				runs[0]++;
+				// Both slots are taken while this runs
+				assertNotNull(gate.tryAcquire("worker"));
+				assertNull(gate.tryAcquire("worker"));
+			}
+		});
+		gate.attemptToRun();
+		assertEquals(1, runs[0]);
+		// The runner's slot is released.
+		assertNotNull(gate.tryAcquire("worker"));
+		assertNull(gate.tryAcquire("worker"));
+		// Without a slot the runner is not run.
+		gate.attemptToRun();
+		assertEquals(1, runs[0]);
+	}
+
+	@Test
+	public void testAttemptToRunReleasedOnException() throws Exception {
+		gate.setSemaphoreKey("worker");
+		gate.setRunner(new Runnable() {
+			@Override
+			public void run() {
+				throw new IllegalStateException();
+			}
+		});
+		for (int i = 0; i < 3; i++) {
+			gate.attemptToRun();
+		}
+		assertNotNull(gate.tryAcquire("worker"));
+		assertNotNull(gate.tryAcquire("worker"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAttemptToRunNoRunner() throws Exception {
+		gate.setSemaphoreKey("worker");
+		gate.attemptToRun();
+	}
+}
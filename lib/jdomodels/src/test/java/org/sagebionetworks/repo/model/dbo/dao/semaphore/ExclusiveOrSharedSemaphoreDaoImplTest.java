@@ -202,4 +202,26 @@ public class ExclusiveOrSharedSemaphoreDaoImplTest {
 		// We should now have the write lock
 		assertNotNull(readLock);
 	}
+	
+	@Test
+	public void testRenewSharedLock() throws InterruptedException{
+		String key = "123";
+		String readLock = exclusiveOrSharedSemaphoreDao.acquireSharedLock(key, 1000);
+		assertNotNull(readLock);
+		// Renew the lock so it outlives its original timeout.
+		exclusiveOrSharedSemaphoreDao.renewSharedLock(key, readLock, 4000);
+		Thread.sleep(1500);
+		String writeLockPrecursor = exclusiveOrSharedSemaphoreDao.acquireExclusiveLockPrecursor(key);
+		assertNotNull(writeLockPrecursor);
+		assertEquals("The renewed read-lock should still block the write-lock", null, exclusiveOrSharedSemaphoreDao.acquireExclusiveLock(key, writeLockPrecursor, 1000));
+		// Once a writer is waiting the read-lock cannot be renewed.
+		try{
+			exclusiveOrSharedSemaphoreDao.renewSharedLock(key, readLock, 4000);
+			fail("A read-lock should not be renewed while a writer is waiting");
+		}catch(LockUnavilableException e){
+			// expected
+		}
+		exclusiveOrSharedSemaphoreDao.releaseSharedLock(key, readLock);
+		assertNotNull(exclusiveOrSharedSemaphoreDao.acquireExclusiveLock(key, writeLockPrecursor, 1000));
+	}
 }
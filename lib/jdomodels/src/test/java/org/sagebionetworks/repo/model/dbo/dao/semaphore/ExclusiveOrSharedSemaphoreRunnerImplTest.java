@@ -2,8 +2,15 @@ package org.sagebionetworks.repo.model.dbo.dao.semaphore;
 
 import static org.junit.Assert.*;
 
+import java.util.LinkedList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -144,4 +151,149 @@ public class ExclusiveOrSharedSemaphoreRunnerImplTest {
 		verify(mockExclusiveOrSharedSemaphoreDao, times(1)).releaseExclusiveLock(lockKey, writeToken);
 	}
 	
+	@Test
+	public void testConcurrentSharedLocksShareOneLease() throws Exception{
+		final String lockKey = "123";
+		final long timeout = 1000;
+		final int readers = 10;
+		String readToken = UUID.randomUUID().toString();
+		when(mockExclusiveOrSharedSemaphoreDao.acquireSharedLock(lockKey, timeout)).thenReturn(readToken);
+		// Hold every reader inside the lock until all of them are inside.
+		final CountDownLatch allInside = new CountDownLatch(readers);
+		ExecutorService executor = Executors.newFixedThreadPool(readers);
+		List<Future<String>> futures = new LinkedList<Future<String>>();
+		for(int i=0; i<readers; i++){
+			futures.add(executor.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return runner.tryRunWithSharedLock(lockKey, timeout, new Callable<String>() {
+						@Override
+						public String call() throws Exception {
+							allInside.countDown();
+							allInside.await(5, TimeUnit.SECONDS);
+							return "okay";
+						}
+					});
+				}
+			}));
+		}
+		for(Future<String> future: futures){
+			assertEquals("okay", future.get());
+		}
+		executor.shutdown();
+		// The readers share a single database read-lock, renewed at most once to cover later readers.
+		verify(mockExclusiveOrSharedSemaphoreDao, times(1)).acquireSharedLock(lockKey, timeout);
+		verify(mockExclusiveOrSharedSemaphoreDao, atMost(1)).renewSharedLock(anyString(), anyString(), anyLong());
+		verify(mockExclusiveOrSharedSemaphoreDao, times(1)).releaseSharedLock(lockKey, readToken);
+		assertEquals(0, runner.getSharedLeaseCount());
+	}
+	
+	@Test
+	public void testJoinSharedLeaseLongerTimeout() throws Exception{
+		String lockKey = "123";
+		String readToken = UUID.randomUUID().toString();
+		when(mockExclusiveOrSharedSemaphoreDao.acquireSharedLock(lockKey, 1000)).thenReturn(readToken);
+		ExclusiveOrSharedSemaphoreRunnerImpl.SharedLease lease = runner.joinSharedLease(lockKey, 1000);
+		assertNotNull(lease);
+		// A reader that needs less time joins without a database call.
+		assertEquals(lease, runner.joinSharedLease(lockKey, 500));
+		verify(mockExclusiveOrSharedSemaphoreDao, never()).renewSharedLock(anyString(), anyString(), anyLong());
+		// A reader that needs the lock for longer than the lease must renew it first.
+		assertEquals(lease, runner.joinSharedLease(lockKey, 5000));
+		verify(mockExclusiveOrSharedSemaphoreDao, times(1)).renewSharedLock(lockKey, readToken, 5000+ExclusiveOrSharedSemaphoreRunnerImpl.DEFAULT_LEASE_RENEWAL_INTERVAL_MS);
+		// If the lease cannot be renewed the reader cannot join.
+		doThrow(new LockUnavilableException()).when(mockExclusiveOrSharedSemaphoreDao).renewSharedLock(anyString(), anyString(), anyLong());
+		assertEquals(null, runner.joinSharedLease(lockKey, 10000));
+		runner.leaveSharedLease(lease);
+		runner.leaveSharedLease(lease);
+		verify(mockExclusiveOrSharedSemaphoreDao, never()).releaseSharedLock(lockKey, readToken);
+		runner.leaveSharedLease(lease);
+		verify(mockExclusiveOrSharedSemaphoreDao, times(1)).releaseSharedLock(lockKey, readToken);
+		assertEquals(0, runner.getSharedLeaseCount());
+	}
+	
+	@Test
+	public void testRenewLeases() throws Exception{
+		String lockKey = "123";
+		long timeout = 1000;
+		String readToken = UUID.randomUUID().toString();
+		when(mockExclusiveOrSharedSemaphoreDao.acquireSharedLock(lockKey, timeout)).thenReturn(readToken);
+		ExclusiveOrSharedSemaphoreRunnerImpl.SharedLease lease = runner.joinSharedLease(lockKey, timeout);
+		runner.renewLeases();
+		verify(mockExclusiveOrSharedSemaphoreDao, times(1)).renewSharedLock(lockKey, readToken, timeout+ExclusiveOrSharedSemaphoreRunnerImpl.DEFAULT_LEASE_RENEWAL_INTERVAL_MS);
+		// Once renewed a reader with the same timeout can join without a database call.
+		assertEquals(lease, runner.joinSharedLease(lockKey, timeout));
+		verify(mockExclusiveOrSharedSemaphoreDao, times(1)).renewSharedLock(anyString(), anyString(), anyLong());
+		// A waiting writer stops the renewal and closes the lease.
+		doThrow(new LockUnavilableException()).when(mockExclusiveOrSharedSemaphoreDao).renewSharedLock(anyString(), anyString(), anyLong());
+		// Simulate the passing of time so the lease is due for renewal.
+		lease.expiresOn = System.currentTimeMillis()+timeout;
+		runner.renewLeases();
+		assertEquals(null, runner.joinSharedLease(lockKey, 1));
+		runner.leaveSharedLease(lease);
+		runner.leaveSharedLease(lease);
+		verify(mockExclusiveOrSharedSemaphoreDao, times(1)).releaseSharedLock(lockKey, readToken);
+	}
+	
+	@Test
+	public void testSharedLockFailureIsNotShared() throws Exception{
+		String lockKey = "123";
+		long timeout = 1000;
+		when(mockExclusiveOrSharedSemaphoreDao.acquireSharedLock(lockKey, timeout)).thenThrow(new LockUnavilableException());
+		try {
+			runner.joinSharedLease(lockKey, timeout);
+			fail("The lock should not be available");
+		} catch (LockUnavilableException e) {
+			// expected
+		}
+		assertEquals(0, runner.getSharedLeaseCount());
+		verify(mockExclusiveOrSharedSemaphoreDao, never()).releaseSharedLock(anyString(), anyString());
+	}
+	
+	@Test
+	public void testReaderDoesNotBlockWriterOfOtherKey() throws Exception{
+		final String readKey = "123";
+		final String writeKey = "456";
+		final long timeout = 1000;
+		when(mockExclusiveOrSharedSemaphoreDao.acquireSharedLock(readKey, timeout)).thenReturn("readToken");
+		when(mockExclusiveOrSharedSemaphoreDao.acquireExclusiveLockPrecursor(writeKey)).thenReturn("precursor");
+		when(mockExclusiveOrSharedSemaphoreDao.acquireExclusiveLock(writeKey, "precursor", timeout)).thenReturn("writeToken");
+		String result = runner.tryRunWithSharedLock(readKey, timeout, new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				// A writer of another key must not wait for this reader.
+				return runner.tryRunWithExclusiveLock(writeKey, timeout, new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return "okay";
+					}
+				});
+			}
+		});
+		assertEquals("okay", result);
+		verify(mockExclusiveOrSharedSemaphoreDao, times(1)).releaseExclusiveLock(writeKey, "writeToken");
+		verify(mockExclusiveOrSharedSemaphoreDao, times(1)).releaseSharedLock(readKey, "readToken");
+		// The in-memory locks are removed once they are not in use.
+		assertEquals(0, runner.getLocalLockCount());
+	}
+	
+	@Test
+	public void testLocalLocksRemovedAfterTimeout() throws Exception{
+		String lockKey = "123";
+		long timeout = 1000;
+		when(mockExclusiveOrSharedSemaphoreDao.acquireExclusiveLockPrecursor(lockKey)).thenThrow(new LockUnavilableException());
+		try {
+			runner.tryRunWithExclusiveLock(lockKey, timeout, new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return "okay";
+				}
+			});
+			fail("The lock should not be available");
+		} catch (LockUnavilableException e) {
+			// expected
+		}
+		assertEquals(0, runner.getLocalLockCount());
+	}
+	
 }
@@ -0,0 +1,68 @@
+package org.sagebionetworks.repo.model.dbo.dao.semaphore;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.sagebionetworks.repo.model.dao.semaphore.ThrottleUsageDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "classpath:jdomodels-test-context.xml" })
+public class ThrottleUsageDaoImplTest {
+
+	@Autowired
+	ThrottleUsageDao throttleUsageDao;
+
+	@Before
+	public void before(){
+		throttleUsageDao.clearAllUsage();
+	}
+
+	@After
+	public void after(){
+		throttleUsageDao.clearAllUsage();
+	}
+
+	@Test
+	public void testReportAndSum(){
+		Map<String, Long> one = new HashMap<String, Long>();
+		one.put("111", 2L);
+		one.put("222", 1L);
+		throttleUsageDao.reportUsage("nodeOne", one, 10000);
+		Map<String, Long> two = new HashMap<String, Long>();
+		two.put("111", 3L);
+		throttleUsageDao.reportUsage("nodeTwo", two, 10000);
+		throttleUsageDao.reportUsage("nodeThree", Collections.<String, Long>emptyMap(), 10000);
+		// Each node only sees the others.
+		Map<String, Long> expected = new HashMap<String, Long>();
+		expected.put("111", 3L);
+		assertEquals(expected, throttleUsageDao.getClusterUsage("nodeOne"));
+		expected = new HashMap<String, Long>();
+		expected.put("111", 5L);
+		expected.put("222", 1L);
+		assertEquals(expected, throttleUsageDao.getClusterUsage("nodeThree"));
+		// A new report replaces the last.
+		throttleUsageDao.reportUsage("nodeOne", Collections.<String, Long>emptyMap(), 10000);
+		expected = new HashMap<String, Long>();
+		expected.put("111", 3L);
+		assertEquals(expected, throttleUsageDao.getClusterUsage("nodeThree"));
+	}
+
+	@Test
+	public void testExpired() throws InterruptedException{
+		Map<String, Long> one = new HashMap<String, Long>();
+		one.put("111", 2L);
+		throttleUsageDao.reportUsage("nodeOne", one, 10);
+		Thread.sleep(20);
+		assertEquals(Collections.<String, Long>emptyMap(), throttleUsageDao.getClusterUsage("nodeTwo"));
+	}
+}
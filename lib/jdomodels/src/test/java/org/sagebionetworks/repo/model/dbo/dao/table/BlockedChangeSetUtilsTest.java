@@ -0,0 +1,186 @@
+package org.sagebionetworks.repo.model.dbo.dao.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.dao.table.RowHandler;
+import org.sagebionetworks.repo.model.table.ColumnModel;
+import org.sagebionetworks.repo.model.table.Row;
+import org.sagebionetworks.repo.model.table.RowSet;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.google.common.collect.Sets;
+
+public class BlockedChangeSetUtilsTest {
+
+	private static final String BUCKET = "bucket";
+	private static final String KEY = "key" + BlockedChangeSetUtils.BLOCKED_KEY_SUFFIX;
+	private static final int ROW_COUNT = 5000;
+	private static final int ROWS_PER_BLOCK = 100;
+
+	/**
+	 * A local stand-in for S3 that serves ranged reads from memory and counts the bytes read.
+	 */
+	static class InMemoryS3ClientStub extends AmazonS3Client {
+		Map<String, byte[]> objects = new HashMap<String, byte[]>();
+		long bytesRead = 0;
+		int getCount = 0;
+
+		@Override
+		public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+			ObjectMetadata metadata = new ObjectMetadata();
+			metadata.setContentLength(objects.get(bucketName + "/" + key).length);
+			return metadata;
+		}
+
+		@Override
+		public S3Object getObject(GetObjectRequest request) {
+			byte[] data = objects.get(request.getBucketName() + "/" + request.getKey());
+			int start = 0;
+			int end = data.length - 1;
+			if (request.getRange() != null) {
+				start = (int) request.getRange()[0];
+				end = (int) Math.min(request.getRange()[1], data.length - 1);
+			}
+			int length = end - start + 1;
+			bytesRead += length;
+			getCount++;
+			S3Object object = new S3Object();
+			object.setObjectContent(new ByteArrayInputStream(data, start, length));
+			return object;
+		}
+	}
+
+	List<ColumnModel> models;
+	RowSet set;
+	InMemoryS3ClientStub stubS3;
+	byte[] blocked;
+
+	@Before
+	public void before() throws IOException {
+		models = TableModelTestUtils.createOneOfEachType();
+		List<Row> rows = TableModelTestUtils.createRows(models, ROW_COUNT);
+		long rowId = 0;
+		for (Row row : rows) {
+			row.setRowId(rowId++);
+			row.setVersionNumber(3L);
+		}
+		set = new RowSet();
+		set.setHeaders(TableModelUtils.getHeaders(models));
+		set.setRows(rows);
+		set.setTableId("syn123");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BlockedChangeSetUtils.validateAndWriteBlocked(models, set, out, false, ROWS_PER_BLOCK);
+		blocked = out.toByteArray();
+		stubS3 = new InMemoryS3ClientStub();
+		stubS3.objects.put(BUCKET + "/" + KEY, blocked);
+	}
+
+	@Test
+	public void testIsBlockedKey() {
+		assertTrue(BlockedChangeSetUtils.isBlockedKey(KEY));
+		assertEquals(false, BlockedChangeSetUtils.isBlockedKey("123.csv.gz"));
+		assertEquals(false, BlockedChangeSetUtils.isBlockedKey(null));
+	}
+
+	@Test
+	public void testRoundTripFullScan() throws IOException {
+		final List<Row> results = new LinkedList<Row>();
+		BlockedChangeSetUtils.scanFromBlockedStream(new ByteArrayInputStream(blocked), new RowHandler() {
+			@Override
+			public void nextRow(Row row) {
+				results.add(row);
+			}
+		});
+		assertEquals(ROW_COUNT, results.size());
+		for (int i = 0; i < ROW_COUNT; i++) {
+			assertEquals(new Long(i), results.get(i).getRowId());
+			assertEquals(new Long(3L), results.get(i).getVersionNumber());
+			assertEquals(models.size(), results.get(i).getValues().size());
+		}
+	}
+
+	@Test
+	public void testReadFooter() throws IOException {
+		List<BlockedChangeSetUtils.BlockEntry> entries = BlockedChangeSetUtils.readFooter(blocked);
+		assertEquals(ROW_COUNT / ROWS_PER_BLOCK, entries.size());
+		BlockedChangeSetUtils.BlockEntry second = entries.get(1);
+		assertEquals(100L, second.getMinRowId());
+		assertEquals(199L, second.getMaxRowId());
+		assertEquals(ROWS_PER_BLOCK, second.getRowCount());
+	}
+
+	@Test
+	public void testSelectBlocks() throws IOException {
+		List<BlockedChangeSetUtils.BlockEntry> entries = BlockedChangeSetUtils.readFooter(blocked);
+		assertEquals(1, BlockedChangeSetUtils.selectBlocks(entries, Sets.newHashSet(150L)).size());
+		assertEquals(2, BlockedChangeSetUtils.selectBlocks(entries, Sets.newHashSet(1L, 99L, 4999L)).size());
+		assertEquals(0, BlockedChangeSetUtils.selectBlocks(entries, Sets.newHashSet(ROW_COUNT + 1L)).size());
+	}
+
+	@Test
+	public void testScanRowsFromS3() throws IOException {
+		Set<Long> rowIds = Sets.newHashSet(5L, 6L, 2500L);
+		final Map<Long, Row> found = new HashMap<Long, Row>();
+		final Set<Long> filter = rowIds;
+		BlockedChangeSetUtils.scanRowsFromS3(stubS3, BUCKET, KEY, rowIds, new RowHandler() {
+			@Override
+			public void nextRow(Row row) {
+				if (filter.contains(row.getRowId())) {
+					found.put(row.getRowId(), row);
+				}
+			}
+		});
+		assertEquals(3, found.size());
+		assertEquals(new Long(2500L), found.get(2500L).getRowId());
+		assertEquals(models.size(), found.get(2500L).getValues().size());
+	}
+
+	@Test
+	public void testBytesReadScaleWithRowsRequested() throws IOException {
+		long oneRow = bytesReadFor(Sets.newHashSet(42L));
+		long tenRows = bytesReadFor(rowIdsSpread(10));
+		long manyRows = bytesReadFor(rowIdsSpread(25));
+		// a single row only needs the footer and one block
+		assertTrue("Read " + oneRow + " of " + blocked.length, oneRow * 4 < blocked.length);
+		assertTrue(oneRow < tenRows);
+		assertTrue(tenRows < manyRows);
+		assertTrue(manyRows < blocked.length);
+	}
+
+	private long bytesReadFor(Set<Long> rowIds) throws IOException {
+		stubS3.bytesRead = 0;
+		BlockedChangeSetUtils.scanRowsFromS3(stubS3, BUCKET, KEY, rowIds, new RowHandler() {
+			@Override
+			public void nextRow(Row row) {
+			}
+		});
+		return stubS3.bytesRead;
+	}
+
+	/**
+	 * Row IDs that each fall in a different block.
+	 */
+	private Set<Long> rowIdsSpread(int count) {
+		Set<Long> rowIds = new HashSet<Long>();
+		for (int i = 0; i < count; i++) {
+			rowIds.add((long) i * ROWS_PER_BLOCK);
+		}
+		return rowIds;
+	}
+}
@@ -886,7 +886,7 @@ public class TableModelUtilsTest {
 		assertNull(map);
 	}
 	
-	@Test
+	@Test
 	public void testCreateColumnNameHeaderWithoutRowId(){
 		List<ColumnModel> schema = new ArrayList<ColumnModel>();
 		schema.add(TableModelTestUtils.createColumn(123, "one", ColumnType.STRING));
@@ -936,7 +936,23 @@ public class TableModelUtilsTest {
 		assertEquals(Arrays.toString(expected), Arrays.toString(results));
 	}
 	
-	@Test
+	@Test
+	public void testWriteRowToStringArrayReuseBuffer(){
+		Row row = new Row();
+		row.setRowId(123L);
+		row.setVersionNumber(2L);
+		row.setValues(Arrays.asList("a","b","c"));
+		String[] buffer = new String[5];
+		String[] results = TableModelUtils.writeRowToStringArray(row, true, buffer);
+		assertTrue(buffer == results);
+		assertEquals(Arrays.toString(new String[]{"123", "2","a","b","c"}), Arrays.toString(results));
+		// A buffer of the wrong size is replaced.
+		results = TableModelUtils.writeRowToStringArray(row, false, buffer);
+		assertFalse(buffer == results);
+		assertEquals(Arrays.toString(new String[]{"a","b","c"}), Arrays.toString(results));
+	}
+	
+	@Test
 	public void testTranslateFromQuery() {
 		assertEquals("false", TableModelUtils.translateRowValueFromQuery("0", TableModelTestUtils.createColumn(0, "", ColumnType.BOOLEAN)));
 		assertEquals("true", TableModelUtils.translateRowValueFromQuery("1", TableModelTestUtils.createColumn(0, "", ColumnType.BOOLEAN)));
@@ -952,5 +968,5 @@ public class TableModelUtilsTest {
 			assertEquals("anything", TableModelUtils.translateRowValueFromQuery("anything", TableModelTestUtils.createColumn(0, "", type)));
 		}
 	}
-
+
 }
@@ -8,12 +8,22 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_STATUS_TABLE_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_STATUS_VERSION;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ROW_VERSION_INDEX_TABLE_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_ROW_VERSION_INDEX;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_ROW_VERSION_INDEX_STATUS;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
@@ -37,6 +47,7 @@ import org.sagebionetworks.repo.model.table.TableRowChange;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.sagebionetworks.util.ProgressCallback;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
@@ -55,6 +66,9 @@ public class TableRowTruthDAOImplTest {
 
 	@Autowired
 	private TableRowTruthDAO tableRowTruthDao;
+
+	@Autowired
+	SimpleJdbcTemplate simpleJdbcTemplate;
 		
 	protected String creatorUserGroupId;
 
@@ -323,6 +337,46 @@ public class TableRowTruthDAOImplTest {
 		}
 	}
 	
+	@Test
+	public void testAppendRowsAsyncReadWaitsForUpload() throws Exception {
+		List<ColumnModel> models = TableModelTestUtils.createOneOfEachType();
+		List<Row> rows = TableModelTestUtils.createRows(models, 5, false);
+		String tableId = "syn123";
+		RowSet set = new RowSet();
+		set.setHeaders(TableModelUtils.getHeaders(models));
+		set.setRows(rows);
+		set.setTableId(tableId);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// Hold the upload thread so the change set is recorded before it is in S3.
+			final CountDownLatch release = new CountDownLatch(1);
+			executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					release.await();
+					return null;
+				}
+			});
+			Future<RowReferenceSet> upload = tableRowTruthDao.appendRowSetToTableAsync(creatorUserGroupId, tableId, models, set,
+					executor);
+			assertFalse(upload.isDone());
+			// Release the upload from another thread while this thread reads the change set.
+			new Thread() {
+				@Override
+				public void run() {
+					release.countDown();
+				}
+			}.start();
+			Set<Long> rowIds = Sets.newHashSet(0L, 1L, 2L, 3L, 4L);
+			// The read waits for the upload rather than failing to find the change set in S3.
+			assertEquals(rowIds, tableRowTruthDao.getLatestVersionsWithRowData(tableId, rowIds, 0L).getRowIdToRowMap().keySet());
+			assertTrue(upload.isDone());
+			assertEquals(set, tableRowTruthDao.getRowSet(upload.get(), models));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
 	@Test
 	public void testGetRowOriginal() throws IOException, NotFoundException {
 		List<ColumnModel> models = TableModelTestUtils.createOneOfEachType();
@@ -497,6 +551,132 @@ public class TableRowTruthDAOImplTest {
 		}
 	}
 
+	@Test
+	public void testRebuildRowVersionIndex() throws IOException, NotFoundException {
+		// Create some test column models
+		List<ColumnModel> models = TableModelTestUtils.createOneOfEachType();
+		// create some test rows.
+		List<Row> rows = TableModelTestUtils.createRows(models, 3);
+		String tableId = "syn123";
+		RowSet set = new RowSet();
+		set.setHeaders(TableModelUtils.getHeaders(models));
+		set.setRows(rows);
+		set.setTableId(tableId);
+		tableRowTruthDao.appendRowSetToTable(creatorUserGroupId, tableId, models, set, false);
+		// update the second row
+		RowSet toUpdate = tableRowTruthDao.getRowSet(tableId, 0l, ALL_SET);
+		Row row = toUpdate.getRows().get(1);
+		TableModelTestUtils.updateRow(models, row, 100);
+		toUpdate.getRows().clear();
+		toUpdate.getRows().add(row);
+		tableRowTruthDao.appendRowSetToTable(creatorUserGroupId, tableId, models, toUpdate, false);
+
+		Map<Long, Long> expected = Maps.newHashMap();
+		expected.put(0L, 0L);
+		expected.put(1L, 1L);
+		expected.put(2L, 0L);
+		// The index is maintained by each append
+		assertEquals(expected, tableRowTruthDao.getLatestVersions(tableId, 0L, 0L, 1000L));
+		assertEquals(Maps.newHashMap(), tableRowTruthDao.getLatestVersions(tableId, 2L, 0L, 1000L));
+		// Only rows that changed at or after the min version
+		Map<Long, Long> changed = tableRowTruthDao.getLatestVersions(tableId, Sets.newHashSet(0L, 1L, 2L), 1L);
+		assertEquals(1, changed.size());
+		assertEquals(new Long(1L), changed.get(1L));
+		// Rebuilding from the change sets must produce the same index.
+		tableRowTruthDao.rebuildRowVersionIndex(tableId);
+		assertEquals(expected, tableRowTruthDao.getLatestVersions(tableId, 0L, 0L, 1000L));
+	}
+
+	@Test
+	public void testRowVersionIndexBackfill() throws IOException, NotFoundException {
+		// Create some test column models
+		List<ColumnModel> models = TableModelTestUtils.createOneOfEachType();
+		// create some test rows.
+		List<Row> rows = TableModelTestUtils.createRows(models, 3);
+		String tableId = "syn123";
+		RowSet set = new RowSet();
+		set.setHeaders(TableModelUtils.getHeaders(models));
+		set.setRows(rows);
+		set.setTableId(tableId);
+		tableRowTruthDao.appendRowSetToTable(creatorUserGroupId, tableId, models, set, false);
+		// Drop the index so this looks like a table that pre-dates it.
+		simpleJdbcTemplate.update("DELETE FROM " + TABLE_ROW_VERSION_INDEX_STATUS + " WHERE " + COL_ROW_VERSION_INDEX_STATUS_TABLE_ID
+				+ " = ?", 123L);
+		simpleJdbcTemplate.update("DELETE FROM " + TABLE_ROW_VERSION_INDEX + " WHERE " + COL_ROW_VERSION_INDEX_TABLE_ID + " = ?", 123L);
+		// update the second row
+		RowSet toUpdate = tableRowTruthDao.getRowSet(tableId, 0l, ALL_SET);
+		Row row = toUpdate.getRows().get(1);
+		TableModelTestUtils.updateRow(models, row, 100);
+		toUpdate.getRows().clear();
+		toUpdate.getRows().add(row);
+		tableRowTruthDao.appendRowSetToTable(creatorUserGroupId, tableId, models, toUpdate, false);
+
+		Map<Long, Long> expected = Maps.newHashMap();
+		expected.put(0L, 0L);
+		expected.put(1L, 1L);
+		expected.put(2L, 0L);
+		// Reads scan the change sets until the index is current.
+		assertEquals(expected, tableRowTruthDao.getLatestVersions(tableId, 0L, 0L, 1000L));
+		assertEquals(expected, tableRowTruthDao.getLatestVersions(tableId, Sets.newHashSet(0L, 1L, 2L), 0L));
+		assertEquals(Sets.newHashSet(0L, 1L, 2L), tableRowTruthDao.getLatestVersionsWithRowData(tableId, Sets.newHashSet(0L, 1L, 2L), 0L)
+				.getRowIdToRowMap().keySet());
+		// Neither the reads nor the append built the index.
+		assertEquals(0L, countIndexStatusRows(123L));
+		// The worker catches the index up.
+		final List<Long> progress = Lists.newArrayList();
+		tableRowTruthDao.updateLatestVersionCache(tableId, new ProgressCallback<Long>() {
+			@Override
+			public void progressMade(Long version) {
+				progress.add(version);
+			}
+		});
+		// The row cache can report progress too, but the index is caught up first.
+		assertEquals(Arrays.asList(0L, 1L), progress.subList(0, 2));
+		assertEquals(1L, simpleJdbcTemplate.queryForLong("SELECT " + COL_ROW_VERSION_INDEX_STATUS_VERSION + " FROM "
+				+ TABLE_ROW_VERSION_INDEX_STATUS + " WHERE " + COL_ROW_VERSION_INDEX_STATUS_TABLE_ID + " = ?", 123L));
+		assertEquals(expected, tableRowTruthDao.getLatestVersions(tableId, 0L, 0L, 1000L));
+		assertEquals(expected, tableRowTruthDao.getLatestVersions(tableId, Sets.newHashSet(0L, 1L, 2L), 0L));
+	}
+
+	@Test
+	public void testListTablesWithoutRowVersionIndex() throws IOException, NotFoundException {
+		// Create some test column models
+		List<ColumnModel> models = TableModelTestUtils.createOneOfEachType();
+		// create some test rows.
+		List<Row> rows = TableModelTestUtils.createRows(models, 3);
+		String tableId = "syn123";
+		RowSet set = new RowSet();
+		set.setHeaders(TableModelUtils.getHeaders(models));
+		set.setRows(rows);
+		set.setTableId(tableId);
+		tableRowTruthDao.appendRowSetToTable(creatorUserGroupId, tableId, models, set, false);
+		// New tables are indexed as they are appended to.
+		assertFalse(tableRowTruthDao.listTablesWithoutRowVersionIndex(1000L).contains(tableId));
+		// Drop the index so this looks like a table that pre-dates it.
+		dropRowVersionIndex(123L);
+		assertEquals(Arrays.asList(tableId), tableRowTruthDao.listTablesWithoutRowVersionIndex(1000L));
+		// The backfill rebuilds it.
+		tableRowTruthDao.rebuildRowVersionIndex(tableId);
+		assertFalse(tableRowTruthDao.listTablesWithoutRowVersionIndex(1000L).contains(tableId));
+		assertEquals(1L, countIndexStatusRows(123L));
+		Map<Long, Long> expected = Maps.newHashMap();
+		expected.put(0L, 0L);
+		expected.put(1L, 0L);
+		expected.put(2L, 0L);
+		assertEquals(expected, tableRowTruthDao.getLatestVersions(tableId, 0L, 0L, 1000L));
+	}
+
+	void dropRowVersionIndex(long tableId) {
+		simpleJdbcTemplate.update("DELETE FROM " + TABLE_ROW_VERSION_INDEX_STATUS + " WHERE " + COL_ROW_VERSION_INDEX_STATUS_TABLE_ID
+				+ " = ?", tableId);
+		simpleJdbcTemplate.update("DELETE FROM " + TABLE_ROW_VERSION_INDEX + " WHERE " + COL_ROW_VERSION_INDEX_TABLE_ID + " = ?", tableId);
+	}
+
+	private long countIndexStatusRows(long tableId) {
+		return simpleJdbcTemplate.queryForLong("SELECT COUNT(*) FROM " + TABLE_ROW_VERSION_INDEX_STATUS + " WHERE "
+				+ COL_ROW_VERSION_INDEX_STATUS_TABLE_ID + " = ?", tableId);
+	}
+
 	@Test
 	public void testAppendRowsUpdateNoConflicted() throws IOException, NotFoundException{
 		// Create some test column models
@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
@@ -25,6 +26,7 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
 
 public class TableRowTruthDAOImplWithCacheTest extends TableRowTruthDAOImplTest {
 
@@ -86,4 +88,38 @@ public class TableRowTruthDAOImplWithCacheTest extends TableRowTruthDAOImplTest
 		tableRowTruthDao.getRowSetOriginals(refs);
 		assertEquals(1, ((RowCacheDaoStub) rowCacheDao).rows.values().size());
 	}
+
+	@Test
+	public void testCacheIsUsedUntilIndexIsCurrent() throws Exception {
+		// Create some test column models
+		List<ColumnModel> models = TableModelTestUtils.createOneOfEachType();
+		// create some test rows.
+		List<Row> rows = TableModelTestUtils.createRows(models, 3);
+		String tableId = "syn123";
+		RowSet set = new RowSet();
+		set.setHeaders(TableModelUtils.getHeaders(models));
+		set.setRows(rows);
+		set.setTableId(tableId);
+		tableRowTruthDao.appendRowSetToTable(creatorUserGroupId, tableId, models, set, false);
+		tableRowTruthDao.updateLatestVersionCache(tableId, null);
+		// Drop the index so this looks like a table that pre-dates it, and mark a row in the cache so we can tell
+		// where an answer came from.
+		dropRowVersionIndex(123L);
+		((CurrentRowCacheDaoStub) currentRowCacheDao).latestVersionNumbers.get(123L).put(0L, 7L);
+
+		// Not current: the cache answers.
+		Map<Long, Long> versions = tableRowTruthDao.getLatestVersions(tableId, Sets.newHashSet(0L, 1L, 2L), 0L);
+		assertEquals(new Long(7L), versions.get(0L));
+		assertEquals(new Long(0L), versions.get(1L));
+		versions = tableRowTruthDao.getLatestVersions(tableId, 0L, 0L, 1000L);
+		assertEquals(new Long(7L), versions.get(0L));
+		assertEquals(3, versions.size());
+
+		// Current: the index answers.
+		tableRowTruthDao.rebuildRowVersionIndex(tableId);
+		versions = tableRowTruthDao.getLatestVersions(tableId, Sets.newHashSet(0L, 1L, 2L), 0L);
+		assertEquals(new Long(0L), versions.get(0L));
+		versions = tableRowTruthDao.getLatestVersions(tableId, 0L, 0L, 1000L);
+		assertEquals(new Long(0L), versions.get(0L));
+	}
 }
@@ -0,0 +1,113 @@
+package org.sagebionetworks.repo.model.dbo.v2.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sagebionetworks.downloadtools.FileUtils;
+import org.sagebionetworks.repo.model.dao.FileHandleDao;
+import org.sagebionetworks.repo.model.file.S3FileHandle;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.S3Object;
+
+public class WikiMarkdownCacheTest {
+
+	FileHandleDao mockFileHandleDao;
+	AmazonS3Client mockS3Client;
+	WikiMarkdownCache cache;
+
+	@Before
+	public void before() throws Exception {
+		mockFileHandleDao = mock(FileHandleDao.class);
+		mockS3Client = mock(AmazonS3Client.class);
+		cache = new WikiMarkdownCache(10000);
+		cache.setFileMetadataDao(mockFileHandleDao);
+		cache.setS3Client(mockS3Client);
+		stubMarkdown("111", "key111", "Markdown for one");
+		stubMarkdown("222", "key222", "Markdown for two");
+	}
+
+	private void stubMarkdown(String fileHandleId, String key, String markdown) throws Exception {
+		S3FileHandle handle = new S3FileHandle();
+		handle.setId(fileHandleId);
+		handle.setBucketName("bucket");
+		handle.setKey(key);
+		when(mockFileHandleDao.get(fileHandleId)).thenReturn(handle);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FileUtils.writeCompressedString(markdown, out);
+		final byte[] compressed = out.toByteArray();
+		// Each download needs its own stream.
+		when(mockS3Client.getObject("bucket", key)).thenAnswer(new Answer<S3Object>() {
+			@Override
+			public S3Object answer(InvocationOnMock invocation) throws Throwable {
+				S3Object object = new S3Object();
+				object.setObjectContent(new ByteArrayInputStream(compressed));
+				return object;
+			}
+		});
+	}
+
+	@Test
+	public void testGetMarkdownCached() throws Exception {
+		assertEquals("Markdown for one", cache.getMarkdown("1", "111"));
+		assertEquals("Markdown for one", cache.getMarkdown("1", "111"));
+		assertEquals(1, cache.size());
+		// Only downloaded once
+		verify(mockS3Client, times(1)).getObject("bucket", "key111");
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		assertEquals("Markdown for one", cache.getMarkdown("1", "111"));
+		assertEquals("Markdown for two", cache.getMarkdown("2", "222"));
+		assertEquals(2, cache.size());
+		cache.invalidate("1");
+		assertEquals(1, cache.size());
+		assertEquals("Markdown for one", cache.getMarkdown("1", "111"));
+		verify(mockS3Client, times(2)).getObject("bucket", "key111");
+		verify(mockS3Client, times(1)).getObject("bucket", "key222");
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		cache.getMarkdown("1", "111");
+		long sizeOfOne = cache.getCurrentBytes();
+		// Make room for only one entry.
+		cache = new WikiMarkdownCache(sizeOfOne * 10 + 1);
+		cache.setFileMetadataDao(mockFileHandleDao);
+		cache.setS3Client(mockS3Client);
+		for (int i = 0; i < 11; i++) {
+			cache.getMarkdown("" + i, "111");
+		}
+		assertEquals(10, cache.size());
+		assertEquals(sizeOfOne * 10, cache.getCurrentBytes());
+		// The least recently used entry was evicted.
+		cache.getMarkdown("0", "111");
+		verify(mockS3Client, times(13)).getObject("bucket", "key111");
+	}
+
+	@Test
+	public void testTooLargeToCache() throws Exception {
+		cache = new WikiMarkdownCache(10);
+		cache.setFileMetadataDao(mockFileHandleDao);
+		cache.setS3Client(mockS3Client);
+		assertEquals("Markdown for one", cache.getMarkdown("1", "111"));
+		assertEquals(0, cache.size());
+		assertEquals(0L, cache.getCurrentBytes());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullWikiId() throws Exception {
+		cache.getMarkdown(null, "111");
+	}
+}
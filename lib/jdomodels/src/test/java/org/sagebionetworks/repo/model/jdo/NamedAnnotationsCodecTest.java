@@ -0,0 +1,162 @@
+package org.sagebionetworks.repo.model.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.sagebionetworks.repo.model.Annotations;
+import org.sagebionetworks.repo.model.NamedAnnotations;
+import org.sagebionetworks.repo.model.util.RandomAnnotationsUtil;
+
+public class NamedAnnotationsCodecTest {
+
+	@Test
+	public void testRoundTripSmall() throws IOException {
+		NamedAnnotations named = new NamedAnnotations();
+		named.setId("syn123");
+		named.setEtag("etag");
+		named.setCreationDate(new Date(1234567L));
+		named.setCreatedBy(456L);
+		Annotations primary = named.getPrimaryAnnotations();
+		primary.addAnnotation("string", "one");
+		primary.addAnnotation("string", "\u00e9t\u00e9");
+		primary.addAnnotation("long", new Long(324));
+		primary.addAnnotation("double", new Double(32.4));
+		primary.addAnnotation("date", new Date(999L));
+		primary.addAnnotation("blob", new byte[] { 1, 2, 3 });
+		byte[] bytes = NamedAnnotationsCodec.encode(named);
+		assertTrue(NamedAnnotationsCodec.isEncoded(bytes));
+		// Small payloads are not deflated.
+		assertEquals(0, bytes[2]);
+		NamedAnnotations clone = NamedAnnotationsCodec.decode(bytes);
+		assertEquals(named, clone);
+		assertEquals(new Long(456), clone.getCreatedBy());
+	}
+
+	@Test
+	public void testRoundTripLarge() throws IOException {
+		NamedAnnotations named = new NamedAnnotations();
+		named.put("newType", RandomAnnotationsUtil.generateRandom(123L, 100));
+		byte[] bytes = NamedAnnotationsCodec.encode(named);
+		// Large payloads are deflated.
+		assertEquals(1, bytes[2]);
+		assertEquals(named, NamedAnnotationsCodec.decode(bytes));
+		// The pooled buffers are reused for the next call.
+		NamedAnnotations other = new NamedAnnotations();
+		other.put("newType", RandomAnnotationsUtil.generateRandom(456L, 50));
+		assertEquals(other, NamedAnnotationsCodec.decode(NamedAnnotationsCodec.encode(other)));
+		assertEquals(named, NamedAnnotationsCodec.decode(bytes));
+	}
+
+	@Test
+	public void testNulls() throws IOException {
+		NamedAnnotations named = new NamedAnnotations();
+		Annotations annos = new Annotations();
+		annos.setStringAnnotations(null);
+		Map<String, List<Long>> longs = new HashMap<String, List<Long>>();
+		List<Long> withNull = new ArrayList<Long>();
+		withNull.add(null);
+		withNull.add(1L);
+		longs.put("withNull", withNull);
+		longs.put("nullList", null);
+		annos.setLongAnnotations(longs);
+		named.put("nulls", annos);
+		NamedAnnotations clone = NamedAnnotationsCodec.decode(NamedAnnotationsCodec.encode(named));
+		assertEquals(named, clone);
+		Annotations cloneAnnos = clone.getAnnotationsForName("nulls");
+		assertNull(cloneAnnos.getStringAnnotations());
+		assertNull(cloneAnnos.getLongAnnotations().get("nullList"));
+		assertNull(cloneAnnos.getLongAnnotations().get("withNull").get(0));
+	}
+
+	@Test
+	public void testCompressAnnotationsUsesCodec() throws IOException {
+		NamedAnnotations named = new NamedAnnotations();
+		named.getAdditionalAnnotations().addAnnotation("key", "value");
+		byte[] bytes = JDOSecondaryPropertyUtils.compressAnnotations(named);
+		assertTrue(NamedAnnotationsCodec.isEncoded(bytes));
+		assertEquals(named, JDOSecondaryPropertyUtils.decompressedAnnotations(bytes));
+		// Old readers of generic objects must also see the annotations.
+		assertEquals(named, JDOSecondaryPropertyUtils.decompressedObject(bytes));
+	}
+
+	@Test
+	public void testReadLegacyXml() throws IOException {
+		NamedAnnotations named = new NamedAnnotations();
+		named.put("newType", RandomAnnotationsUtil.generateRandom(789L, 20));
+		byte[] legacy = JDOSecondaryPropertyUtils.compressObject(named);
+		assertFalse(NamedAnnotationsCodec.isEncoded(legacy));
+		assertEquals(named, JDOSecondaryPropertyUtils.decompressedAnnotations(legacy));
+	}
+
+	@Test
+	public void testReadLegacyBlobFiles() throws IOException {
+		for (String name : new String[] { "annotations_blob_syn313805", "annotations_blob_syn464184" }) {
+			byte[] legacy = readResource(name);
+			assertFalse(NamedAnnotationsCodec.isEncoded(legacy));
+			NamedAnnotations named = JDOSecondaryPropertyUtils.decompressedAnnotations(legacy);
+			assertNotNull(named.getId());
+			// Rewriting in the new format must not lose anything.
+			byte[] bytes = JDOSecondaryPropertyUtils.compressAnnotations(named);
+			assertEquals(named, JDOSecondaryPropertyUtils.decompressedAnnotations(bytes));
+		}
+	}
+
+	@Test
+	public void testNullAndEmpty() throws IOException {
+		assertNull(JDOSecondaryPropertyUtils.compressAnnotations(null));
+		assertFalse(NamedAnnotationsCodec.isEncoded(null));
+		assertFalse(NamedAnnotationsCodec.isEncoded(new byte[0]));
+		assertEquals(new NamedAnnotations(), JDOSecondaryPropertyUtils.decompressedAnnotations(null));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownVersion() throws IOException {
+		byte[] bytes = NamedAnnotationsCodec.encode(new NamedAnnotations());
+		bytes[1] = 99;
+		NamedAnnotationsCodec.decode(bytes);
+	}
+
+	/**
+	 * Compares the codec to the old XStream path. This is a rough timing
+	 * rather than a proper benchmark, so only the size is asserted.
+	 */
+	@Test
+	public void testCompareToXStream() throws IOException {
+		NamedAnnotations named = new NamedAnnotations();
+		named.put("newType", RandomAnnotationsUtil.generateRandom(321L, 50));
+		byte[] legacy = JDOSecondaryPropertyUtils.compressObject(named);
+		assertEquals(named, JDOSecondaryPropertyUtils.decompressedObject(legacy));
+		byte[] encoded = NamedAnnotationsCodec.encode(named);
+		assertEquals(named, NamedAnnotationsCodec.decode(encoded));
+		assertTrue(encoded.length <= legacy.length);
+	}
+
+	private static byte[] readResource(String name) throws IOException {
+		InputStream in = NamedAnnotationsCodecTest.class.getClassLoader().getResourceAsStream(name);
+		assertNotNull("Missing resource: " + name, in);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int count;
+			while ((count = in.read(buffer)) > 0) {
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -118,6 +118,18 @@ public class StubDBOChangeDAO implements DBOChangeDAO {
 		return false;
 	}
 
+	@Override
+	public List<ChangeMessage> selectMessagesToSend(List<ChangeMessage> batch) {
+		// TODO Auto-generated method stub
+		return null;
+	}
+
+	@Override
+	public List<ChangeMessage> registerMessagesSent(List<ChangeMessage> batch) {
+		// TODO Auto-generated method stub
+		return null;
+	}
+
 	@Override
 	public Long getMaxSentChangeNumber(Long lessThanOrEqual) {
 		// TODO Auto-generated method stub
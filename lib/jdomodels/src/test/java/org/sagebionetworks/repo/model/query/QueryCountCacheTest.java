@@ -0,0 +1,146 @@
+package org.sagebionetworks.repo.model.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.ObjectType;
+import org.sagebionetworks.repo.model.message.ChangeMessage;
+import org.sagebionetworks.util.TestClock;
+import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
+
+public class QueryCountCacheTest {
+
+	private static final String COUNT_SQL = "select count(n.ID) from JDONODE n where n.PARENT_ID = :parent and n.BENEFACTOR_ID in (:group0, :group1)";
+
+	TestClock testClock;
+	SimpleJdbcTemplate mockTemplate;
+	QueryCountCache cache;
+	Map<String, Object> parameters;
+
+	@Before
+	public void before() {
+		testClock = new TestClock();
+		mockTemplate = mock(SimpleJdbcTemplate.class);
+		when(mockTemplate.queryForLong(anyString(), anyMap())).thenReturn(100L);
+		cache = new QueryCountCache(3, 1000);
+		cache.setClock(testClock);
+		parameters = new HashMap<String, Object>();
+		parameters.put("parent", 123L);
+		parameters.put("group0", 1L);
+		parameters.put("group1", 2L);
+		parameters.put("limitVal", 10L);
+		parameters.put("offsetVal", 0L);
+	}
+
+	@Test
+	public void testKeyIgnoresPaging() {
+		String key = QueryCountCache.createKey(COUNT_SQL, parameters);
+		parameters.put("limitVal", 20L);
+		parameters.put("offsetVal", 40L);
+		assertEquals(key, QueryCountCache.createKey(COUNT_SQL, parameters));
+		// A different group set is a different key
+		parameters.put("group1", 3L);
+		assertFalse(key.equals(QueryCountCache.createKey(COUNT_SQL, parameters)));
+	}
+
+	@Test
+	public void testKeyCollectionOrder() {
+		String sql = "select count(n.ID) from JDONODE n where n.NODE_TYPE in (:types)";
+		parameters.put("types", Arrays.asList(3, 1, 2));
+		String key = QueryCountCache.createKey(sql, parameters);
+		parameters.put("types", Arrays.asList(1, 2, 3));
+		assertEquals(key, QueryCountCache.createKey(sql, parameters));
+	}
+
+	@Test
+	public void testLastPageNoCount() {
+		// A partial first page is the whole result.
+		assertEquals(7L, cache.resolveTotal(COUNT_SQL, parameters, 0, 10, 7, true, mockTemplate));
+		// A partial later page ends the results.
+		assertEquals(25L, cache.resolveTotal(COUNT_SQL, parameters, 20, 10, 5, true, mockTemplate));
+		// An empty first page means there are no results.
+		assertEquals(0L, cache.resolveTotal(COUNT_SQL, parameters, 0, 10, 0, true, mockTemplate));
+		verify(mockTemplate, never()).queryForLong(anyString(), anyMap());
+	}
+
+	@Test
+	public void testFirstPageAlwaysCounts() {
+		assertEquals(100L, cache.resolveTotal(COUNT_SQL, parameters, 0, 10, 10, true, mockTemplate));
+		assertEquals(100L, cache.resolveTotal(COUNT_SQL, parameters, 0, 10, 10, true, mockTemplate));
+		verify(mockTemplate, times(2)).queryForLong(COUNT_SQL, parameters);
+	}
+
+	@Test
+	public void testLaterPagesUseCache() {
+		assertEquals(100L, cache.resolveTotal(COUNT_SQL, parameters, 0, 10, 10, true, mockTemplate));
+		parameters.put("offsetVal", 10L);
+		assertEquals(100L, cache.resolveTotal(COUNT_SQL, parameters, 10, 10, 10, true, mockTemplate));
+		parameters.put("offsetVal", 20L);
+		assertEquals(100L, cache.resolveTotal(COUNT_SQL, parameters, 20, 10, 10, true, mockTemplate));
+		verify(mockTemplate, times(1)).queryForLong(anyString(), anyMap());
+		assertEquals(2, cache.getHitCount());
+	}
+
+	@Test
+	public void testExpires() {
+		cache.resolveTotal(COUNT_SQL, parameters, 0, 10, 10, true, mockTemplate);
+		testClock.warpForward(1001);
+		cache.resolveTotal(COUNT_SQL, parameters, 10, 10, 10, true, mockTemplate);
+		verify(mockTemplate, times(2)).queryForLong(anyString(), anyMap());
+	}
+
+	@Test
+	public void testStaleCountIgnored() {
+		// The cached count is smaller than the results that were read.
+		cache.put(QueryCountCache.createKey(COUNT_SQL, parameters), 5L);
+		assertEquals(100L, cache.resolveTotal(COUNT_SQL, parameters, 10, 10, 10, true, mockTemplate));
+	}
+
+	@Test
+	public void testNoCount() {
+		// Without a cached count the results read so far are returned.
+		assertEquals(20L, cache.resolveTotal(COUNT_SQL, parameters, 10, 10, 10, false, mockTemplate));
+		assertEquals(10L, cache.resolveTotal(COUNT_SQL, parameters, 0, 10, 10, false, mockTemplate));
+		verify(mockTemplate, never()).queryForLong(anyString(), anyMap());
+		// A cached count is used even for the first page.
+		cache.put(QueryCountCache.createKey(COUNT_SQL, parameters), 50L);
+		assertEquals(50L, cache.resolveTotal(COUNT_SQL, parameters, 0, 10, 10, false, mockTemplate));
+	}
+
+	@Test
+	public void testInvalidatedByChanges() {
+		String key = QueryCountCache.createKey(COUNT_SQL, parameters);
+		cache.put(key, 50L);
+		ChangeMessage message = new ChangeMessage();
+		message.setObjectType(ObjectType.WIKI);
+		cache.fireChangeMessage(message);
+		assertEquals(new Long(50), cache.get(key));
+		message.setObjectType(ObjectType.ENTITY);
+		cache.fireChangeMessage(message);
+		assertNull(cache.get(key));
+	}
+
+	@Test
+	public void testMaxEntries() {
+		for (long i = 0; i < 5; i++) {
+			cache.put("key" + i, i);
+		}
+		assertEquals(3, cache.size());
+		assertNull(cache.get("key0"));
+		assertEquals(new Long(4), cache.get("key4"));
+	}
+}
@@ -24,6 +24,7 @@ import org.apache.logging.log4j.Logger;
 import org.joda.time.DateTime;
 import org.json.JSONArray;
 import org.sagebionetworks.StackConfiguration;
+import org.sagebionetworks.repo.model.dao.SearchIndexLedgerDao;
 import org.sagebionetworks.repo.model.search.AwesomeSearchFactory;
 import org.sagebionetworks.repo.model.search.Document;
 import org.sagebionetworks.repo.model.search.DocumentFields;
@@ -77,6 +78,11 @@ public class SearchDaoImpl implements SearchDao {
 	AmazonCloudSearchClient awsSearchClient;
 	@Autowired
 	SearchDomainSetup searchDomainSetup;
+	/**
+	 * Not available when the search DAO is used without the repository database.
+	 */
+	@Autowired(required=false)
+	SearchIndexLedgerDao searchIndexLedgerDao;
 	
 	CloudSearchClient cloudHttpClient;
 	
@@ -270,6 +276,10 @@ public class SearchDaoImpl implements SearchDao {
 				Thread.sleep(5000);
 			}
 		}while(sr.getFound() > 0);
+		// Nothing is indexed anymore so the ledger must not skip any entity.
+		if(searchIndexLedgerDao != null){
+			searchIndexLedgerDao.clear();
+		}
 	}
 
 	@Override
@@ -1,9 +1,19 @@
 package org.sagebionetworks.search;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedList;
 
 import org.junit.Test;
+import org.sagebionetworks.repo.model.dao.SearchIndexLedgerDao;
 import org.sagebionetworks.repo.model.search.Document;
+import org.sagebionetworks.repo.model.search.Hit;
+import org.sagebionetworks.repo.model.search.SearchResults;
 
 
 /**
@@ -24,5 +34,20 @@ public class SearchDaoImplTest {
 		assertEquals("The document ID must be set in the fields when ",doc.getId(), doc.getFields().getId());
 		assertNotNull("A version was not set.",doc.getVersion());
 	}
+	
+	@Test
+	public void testDeleteAllDocumentsClearsLedger() throws Exception {
+		SearchDaoImpl dao = spy(new SearchDaoImpl());
+		dao.searchDomainSetup = mock(SearchDomainSetup.class);
+		when(dao.searchDomainSetup.isSearchEnabled()).thenReturn(true);
+		dao.searchIndexLedgerDao = mock(SearchIndexLedgerDao.class);
+		// The index is already empty.
+		SearchResults empty = new SearchResults();
+		empty.setFound(0L);
+		empty.setHits(new LinkedList<Hit>());
+		doReturn(empty).when(dao).listSearchDocuments(1000, 0);
+		dao.deleteAllDocuments();
+		verify(dao.searchIndexLedgerDao).clear();
+	}
 
 }
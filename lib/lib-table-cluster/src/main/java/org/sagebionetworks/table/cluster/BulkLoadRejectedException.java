@@ -0,0 +1,22 @@
+package org.sagebionetworks.table.cluster;
+
+/**
+ * Thrown when the database will not run LOAD DATA LOCAL INFILE, either because
+ * the server has local_infile disabled or because the driver does not allow
+ * it. Callers should build the index with batched updates instead.
+ * 
+ * @author John
+ *
+ */
+public class BulkLoadRejectedException extends Exception {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 3817054921645309762L;
+
+	public BulkLoadRejectedException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,141 @@
+package org.sagebionetworks.table.cluster;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sagebionetworks.repo.model.dbo.dao.table.TableModelUtils;
+import org.sagebionetworks.repo.model.table.ColumnModel;
+import org.sagebionetworks.repo.model.table.Row;
+import org.sagebionetworks.repo.model.table.RowSet;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Rebuilds a table index from scratch. Rows are streamed to a local file, which
+ * is then loaded into a staging table with LOAD DATA LOCAL INFILE. The staging
+ * table replaces the table with a single RENAME TABLE, so the current table
+ * stays readable until the new one is complete.
+ * <p>
+ * Change sets must be appended in version order. A later row replaces an
+ * earlier row with the same ID, and deleted rows are removed. If the server or
+ * driver rejects LOCAL INFILE, {@link #finish()} throws
+ * {@link BulkLoadRejectedException} and leaves the table as it was, so the
+ * caller can apply the change sets with batched updates instead. Always call
+ * {@link #close()}.
+ *
+ * @author John
+ *
+ */
+public class BulkTableLoader {
+
+	private final JdbcTemplate template;
+	private final List<ColumnModel> schema;
+	private final String tableId;
+	private final File file;
+	private final Writer writer;
+	private final StringBuilder line = new StringBuilder();
+	private final Set<Long> deletedRowIds = new HashSet<Long>();
+	private long rowCount = 0;
+	private boolean writerClosed = false;
+
+	BulkTableLoader(JdbcTemplate template, List<ColumnModel> schema, String tableId) throws IOException {
+		if (template == null) throw new IllegalArgumentException("Template cannot be null");
+		if (schema == null || schema.isEmpty()) throw new IllegalArgumentException("Schema cannot be empty");
+		if (tableId == null) throw new IllegalArgumentException("TableId cannot be null");
+		this.template = template;
+		this.schema = schema;
+		this.tableId = tableId;
+		this.file = File.createTempFile("bulkLoad" + SQLUtils.getTableNameForId(tableId), ".tsv");
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+	}
+
+	/**
+	 * Append the rows of a change set.
+	 *
+	 * @param rowSet
+	 * @throws IOException
+	 */
+	public void append(RowSet rowSet) throws IOException {
+		if (rowSet == null) throw new IllegalArgumentException("RowSet cannot be null");
+		Map<String, Integer> columnIndexMap = new HashMap<String, Integer>();
+		int index = 0;
+		for (String header : rowSet.getHeaders()) {
+			columnIndexMap.put(header, index);
+			index++;
+		}
+		for (Row row : rowSet.getRows()) {
+			if (TableModelUtils.isDeletedRow(row)) {
+				deletedRowIds.add(row.getRowId());
+			} else {
+				deletedRowIds.remove(row.getRowId());
+				line.setLength(0);
+				SQLUtils.appendRowForLoadData(line, row, columnIndexMap, schema);
+				writer.append(line);
+				rowCount++;
+			}
+		}
+	}
+
+	/**
+	 * Load the appended rows into the staging table and swap it in.
+	 *
+	 * @return The number of row lines loaded.
+	 * @throws IOException
+	 * @throws BulkLoadRejectedException
+	 *             If the rows could not be loaded with LOAD DATA LOCAL INFILE.
+	 */
+	public long finish() throws IOException, BulkLoadRejectedException {
+		closeWriter();
+		template.update(SQLUtils.dropTableIfExistsSQL(SQLUtils.getStagingTableNameForId(tableId)));
+		template.update(SQLUtils.dropTableIfExistsSQL(SQLUtils.getOldTableNameForId(tableId)));
+		template.update(SQLUtils.createStagingTableSQL(schema, tableId));
+		try {
+			template.execute(SQLUtils.buildLoadDataSQL(schema, tableId, file.getAbsolutePath()));
+		} catch (DataAccessException e) {
+			// The staging table is dropped by close().
+			throw new BulkLoadRejectedException("Failed to load the rows of table: " + tableId + " with LOAD DATA LOCAL INFILE", e);
+		}
+		if (!deletedRowIds.isEmpty()) {
+			NamedParameterJdbcTemplate namedTemplate = new NamedParameterJdbcTemplate(template);
+			namedTemplate.update(SQLUtils.buildDeleteFromStagingSQL(tableId),
+					new MapSqlParameterSource(Collections.singletonMap(SQLUtils.ROW_ID_BIND, deletedRowIds)));
+		}
+		// There must be a table to rename even if this is the first build.
+		template.update(SQLUtils.createTableSQL(schema, tableId));
+		template.update(SQLUtils.buildSwapStagingTableSQL(tableId));
+		template.update(SQLUtils.dropTableIfExistsSQL(SQLUtils.getOldTableNameForId(tableId)));
+		return rowCount;
+	}
+
+	/**
+	 * Release the local file and any staging table left by a failure.
+	 */
+	public void close() {
+		try {
+			closeWriter();
+		} catch (IOException e) {
+			// The file is deleted anyway.
+		}
+		file.delete();
+		template.update(SQLUtils.dropTableIfExistsSQL(SQLUtils.getStagingTableNameForId(tableId)));
+	}
+
+	private void closeWriter() throws IOException {
+		if (!writerClosed) {
+			writerClosed = true;
+			writer.close();
+		}
+	}
+}
@@ -16,6 +16,19 @@ public interface ConnectionFactory {
 	 */
 	TableIndexDAO getConnection(String tableId);
 	
+	/**
+	 * When the database instances change a table can be assigned to a new
+	 * shard. Until the index on the new shard is consistent,
+	 * {@link #getConnection(String)} will continue to return the old shard.
+	 * This method returns a connection to the new shard so the index can be
+	 * built there.
+	 * 
+	 * @param tableId
+	 * @return The connection to the new shard or null if the table is not
+	 *         being moved.
+	 */
+	TableIndexDAO getRebalanceTargetConnection(String tableId);
+	
 	/**
 	 * Drop all tables in every database connectoin.
 	 * 
@@ -1,12 +1,21 @@
 package org.sagebionetworks.table.cluster;
 
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.sagebionetworks.StackConfiguration;
+import org.sagebionetworks.repo.model.jdo.KeyFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 
@@ -14,45 +23,269 @@ import com.amazonaws.services.rds.AmazonRDSClient;
 import com.amazonaws.services.rds.model.DBInstance;
 
 /**
- * Note: For the first pass at this feature we are only using one database.
- * This will be extended in the future.
- * 
+ * Tables are sharded across every database instance found by the
+ * {@link InstanceDiscovery} using a {@link ConsistentHashRing} keyed by the
+ * table ID. Each instance has its own connection pool.
+ * <p>
+ * Which shard serves a table is not kept in memory alone. Whenever the set of
+ * instances is loaded (at startup and when {@link #refreshInstances()} finds
+ * a change) the tables and max complete versions held by each shard are
+ * listed. A table is served from its target shard unless another shard holds
+ * a copy the target has not caught up with, in which case that copy is
+ * served. So a new or restarted machine finds the same owners as a machine
+ * that has been running through the move.
+ * <p>
+ * The TableWorker builds the index on the target shard using
+ * {@link #getRebalanceTargetConnection(String)}. The shards are compared on a
+ * timer by {@link #checkMovedTables()}, which switches a table to its target
+ * once the target has caught up. Each machine switches on its own timer, so
+ * the old copy is only dropped once {@link #setDropOldCopyDelayMS(long)} has
+ * passed, giving every other machine time to refresh its instances and make
+ * the same switch.
+ *
  * @author jmhill
  *
  */
 public class ConnectionFactoryImpl implements ConnectionFactory {
-	
+
 	Logger log = LogManager.getLogger(ConnectionFactoryImpl.class);
-	
+
 	private static final String USE_DATABASE = "USE ";
 	private static final String CREATE_DATABASE = "CREATE DATABASE ";
 	private static final String DROP_DATABASE = "DROP DATABASE ";
-	
+	/**
+	 * The default time an old copy is kept after its table switched to the
+	 * target shard. This is longer than the interval at which instances are
+	 * refreshed.
+	 */
+	public static final long DEFAULT_DROP_OLD_COPY_DELAY_MS = 15 * 60 * 1000;
+
 	@Autowired
 	AmazonRDSClient awsRDSClient;
 	@Autowired
 	InstanceDiscovery instanceDiscovery;
 	/**
-	 * This is the repository datasource.
+	 * One connection pool for each database instance keyed by the instance identifier.
+	 */
+	private Map<String, BasicDataSource> connectionPools = new ConcurrentHashMap<String, BasicDataSource>();
+	/**
+	 * The ring used to find the shard that should own each table.
+	 */
+	private volatile ConsistentHashRing currentRing;
+	/**
+	 * Each table that is not served from its target shard, mapped to the
+	 * shard that holds the most current copy. Found by listing the shards.
+	 */
+	private volatile Map<String, String> tableOwners = new ConcurrentHashMap<String, String>();
+	/**
+	 * Tables in use that are not served from their target shard.
 	 */
-//	@Autowired
-//	BasicDataSource dataSourcePool;
+	private Set<String> pendingMoves = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 	/**
-	 * Note: This field will be remove when we actually have more than one connection.
-	 * It is a simple way to get the functionality up and running without adding full
-	 * support for a load balancing.
+	 * Old copies of tables that are now served from their target, mapped to
+	 * the time they can be dropped.
 	 */
-	private BasicDataSource singleConnectionPool;
+	private Map<OldCopy, Long> oldCopies = new ConcurrentHashMap<OldCopy, Long>();
+	private long dropOldCopyDelayMS = DEFAULT_DROP_OLD_COPY_DELAY_MS;
 
 	@Autowired
 	private StackConfiguration stackConfig;
-	
+
+	/**
+	 * Injected. How long the old copy of a table is kept after the table
+	 * switched to its target shard.
+	 * 
+	 * @param dropOldCopyDelayMS
+	 */
+	public void setDropOldCopyDelayMS(long dropOldCopyDelayMS) {
+		this.dropOldCopyDelayMS = dropOldCopyDelayMS;
+	}
+
 	@Override
 	public TableIndexDAO getConnection(String tableId) {
+		String instanceId = getServingInstance(tableId);
+		BasicDataSource pool = connectionPools.get(instanceId);
+		if(pool == null) return null;
 		// Create a new DAO for this call.
-		return new TableIndexDAOImpl(singleConnectionPool);	
+		return createIndexDao(pool);
+	}
+
+	@Override
+	public TableIndexDAO getRebalanceTargetConnection(String tableId) {
+		ConsistentHashRing current = currentRing;
+		if(current == null) return null;
+		String target = current.getNode(normalizeTableId(tableId));
+		String serving = getServingInstance(tableId);
+		if(target.equals(serving)) return null;
+		BasicDataSource pool = connectionPools.get(target);
+		if(pool == null) return null;
+		return createIndexDao(pool);
+	}
+
+	/**
+	 * Find the instance that should be used to serve the given table.
+	 *
+	 * @param tableId
+	 * @return
+	 */
+	String getServingInstance(String tableId) {
+		ConsistentHashRing current = currentRing;
+		if(current == null) throw new IllegalStateException("The table connection factory has not been initialized");
+		String key = normalizeTableId(tableId);
+		String target = current.getNode(key);
+		String owner = tableOwners.get(key);
+		if(owner == null || owner.equals(target)) return target;
+		// If the old shard is gone there is nowhere else to go.
+		if(!connectionPools.containsKey(owner) || !connectionPools.containsKey(target)) return target;
+		// The shards are compared by checkMovedTables().
+		pendingMoves.add(key);
+		return owner;
+	}
+
+	/**
+	 * Callers can identify a table with or without the 'syn' prefix, so the
+	 * ring is always keyed by the same form.
+	 * 
+	 * @param tableId
+	 * @return
+	 */
+	static String normalizeTableId(String tableId){
+		return KeyFactory.keyToString(KeyFactory.stringToKey(tableId));
+	}
+
+	/**
+	 * Called on a timer. Each table in use that is not served from its target
+	 * shard switches to the target once the target has caught up, and the old
+	 * copy of each table that switched long enough ago is dropped.
+	 */
+	public synchronized void checkMovedTables(){
+		ConsistentHashRing current = currentRing;
+		if(current == null) return;
+		for(String key: pendingMoves){
+			String target = current.getNode(key);
+			String owner = tableOwners.get(key);
+			if(owner != null && !owner.equals(target)){
+				BasicDataSource ownerPool = connectionPools.get(owner);
+				BasicDataSource targetPool = connectionPools.get(target);
+				if(ownerPool != null && targetPool != null
+						&& !isConsistentOnTarget(key, createIndexDao(ownerPool), createIndexDao(targetPool))){
+					// Still catching up.
+					continue;
+				}
+				log.info("Table: "+key+" is now served from: "+target+" instead of: "+owner);
+				tableOwners.remove(key);
+				scheduleDrop(key, owner);
+			}
+			pendingMoves.remove(key);
+		}
+		dropOldCopies(current);
+	}
+
+	/**
+	 * Drop the copy of a table held by a shard that no longer serves it, once
+	 * the delay has passed.
+	 * 
+	 * @param key
+	 * @param instanceId
+	 */
+	private void scheduleDrop(String key, String instanceId){
+		OldCopy copy = new OldCopy(key, instanceId);
+		if(!oldCopies.containsKey(copy)){
+			oldCopies.put(copy, System.currentTimeMillis() + dropOldCopyDelayMS);
+		}
+	}
+
+	private void dropOldCopies(ConsistentHashRing current){
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<OldCopy, Long>> it = oldCopies.entrySet().iterator();
+		while(it.hasNext()){
+			Map.Entry<OldCopy, Long> entry = it.next();
+			if(entry.getValue() > now) continue;
+			OldCopy copy = entry.getKey();
+			it.remove();
+			// The instances could have changed again since the table switched.
+			if(copy.instanceId.equals(current.getNode(copy.tableId)) || copy.instanceId.equals(tableOwners.get(copy.tableId))) continue;
+			BasicDataSource pool = connectionPools.get(copy.instanceId);
+			if(pool == null) continue;
+			log.info("Dropping the old copy of table: "+copy.tableId+" from: "+copy.instanceId);
+			TableIndexDAO dao = createIndexDao(pool);
+			dao.deleteTable(copy.tableId);
+			dao.deleteStatusTable(copy.tableId);
+		}
+	}
+
+	/**
+	 * List the tables and versions held by each shard to find the owner of
+	 * each table that is not served from its target in the given ring. A
+	 * copy on a shard that is not the target is only served while the target
+	 * is missing the table or behind that copy. Copies that are no longer
+	 * needed are scheduled to be dropped.
+	 * 
+	 * @param ring
+	 * @return
+	 */
+	Map<String, String> findTableOwners(ConsistentHashRing ring){
+		Map<String, Set<String>> holders = new HashMap<String, Set<String>>();
+		for(Map.Entry<String, BasicDataSource> pool: connectionPools.entrySet()){
+			if(!ring.getNodes().contains(pool.getKey())) continue;
+			for(String tableId: createIndexDao(pool.getValue()).getAllTableIds()){
+				String key = normalizeTableId(tableId);
+				Set<String> instances = holders.get(key);
+				if(instances == null){
+					instances = new HashSet<String>();
+					holders.put(key, instances);
+				}
+				instances.add(pool.getKey());
+			}
+		}
+		Map<String, String> owners = new ConcurrentHashMap<String, String>();
+		for(Map.Entry<String, Set<String>> entry: holders.entrySet()){
+			String key = entry.getKey();
+			String target = ring.getNode(key);
+			Set<String> others = new HashSet<String>(entry.getValue());
+			boolean onTarget = others.remove(target);
+			if(others.isEmpty()) continue;
+			if(!onTarget && others.size() == 1){
+				owners.put(key, others.iterator().next());
+				continue;
+			}
+			String best = null;
+			long bestVersion = -1;
+			for(String instanceId: others){
+				long version = createIndexDao(connectionPools.get(instanceId)).getMaxCurrentCompleteVersionForTable(key);
+				if(best == null || version > bestVersion){
+					best = instanceId;
+					bestVersion = version;
+				}
+			}
+			long targetVersion = onTarget ? createIndexDao(connectionPools.get(target)).getMaxCurrentCompleteVersionForTable(key) : -1;
+			if(onTarget && targetVersion >= bestVersion){
+				// The target has caught up so the other copies are not needed.
+				for(String instanceId: others){
+					scheduleDrop(key, instanceId);
+				}
+			}else{
+				owners.put(key, best);
+			}
+		}
+		return owners;
 	}
-	
+
+	/**
+	 * A table is consistent on its new shard once the new shard has applied
+	 * at least as many versions as the old shard.
+	 *
+	 * @param tableId
+	 * @param oldShard
+	 * @param targetShard
+	 * @return
+	 */
+	static boolean isConsistentOnTarget(String tableId, TableIndexDAO oldShard, TableIndexDAO targetShard){
+		Long oldVersion = oldShard.getMaxCurrentCompleteVersionForTable(tableId);
+		Long targetVersion = targetShard.getMaxCurrentCompleteVersionForTable(tableId);
+		return targetVersion >= oldVersion;
+	}
+
 	/**
 	 * This is called when the Spring bean is initialized.
 	 */
@@ -62,16 +295,79 @@ public class ConnectionFactoryImpl implements ConnectionFactory {
 			// The features is enabled so we must find all database instances that we can use
 			List<DBInstance> instances = instanceDiscovery.discoverAllInstances();
 			if(instances == null || instances.isEmpty()) throw new IllegalArgumentException("Did not find at least one database instances.  Expected at least one instances: "+InstanceUtils.createDatabaseInstanceIdentifier(0));
-			
-			// This will be improved in the future.  For now we just use the first database we find
-			DBInstance instance = instances.get(0);
-			// Use the one instance to create a single connection pool
-			singleConnectionPool = InstanceUtils.createNewDatabaseConnectionPool(stackConfig, instance);
+			updateInstances(instances);
 		}else{
 			log.debug("The table feature is disabled and cannot be used");
 		}
 	}
-	
+
+	/**
+	 * Called on a timer to discover database instances that have been added or
+	 * removed. When the set of instances changes the tables are re-distributed
+	 * across the new set.
+	 */
+	public void refreshInstances(){
+		if(!stackConfig.getTableEnabled()) return;
+		List<DBInstance> instances = instanceDiscovery.discoverAllInstances();
+		if(instances == null || instances.isEmpty()){
+			log.warn("Did not find any table database instances so the current instances will continue to be used.");
+			return;
+		}
+		updateInstances(instances);
+	}
+
+	/**
+	 * Create connection pools for new instances, close pools for lost
+	 * instances and replace the ring if the instances changed.
+	 *
+	 * @param instances
+	 */
+	synchronized void updateInstances(List<DBInstance> instances){
+		Map<String, DBInstance> byId = new HashMap<String, DBInstance>();
+		for(DBInstance instance: instances){
+			byId.put(instance.getDBInstanceIdentifier(), instance);
+		}
+		if(currentRing != null && currentRing.hasSameNodes(byId.keySet())){
+			// nothing changed
+			return;
+		}
+		// Create a pool for each new instance.
+		for(DBInstance instance: instances){
+			if(!connectionPools.containsKey(instance.getDBInstanceIdentifier())){
+				log.info("Creating a connection pool for table database: "+instance.getDBInstanceIdentifier());
+				connectionPools.put(instance.getDBInstanceIdentifier(), createPool(instance));
+			}
+		}
+		ConsistentHashRing newRing = new ConsistentHashRing(byId.keySet());
+		if(currentRing != null){
+			log.info("Table database instances changed from: "+currentRing.getNodes()+" to: "+newRing.getNodes());
+		}
+		// The owners are published before the ring, so a table is always served from where its data is.
+		tableOwners = findTableOwners(newRing);
+		pendingMoves.clear();
+		currentRing = newRing;
+		log.info(tableOwners.size()+" tables are waiting to move to their shard in: "+newRing.getNodes());
+		// Close the pools of any instance that is gone.
+		List<String> lost = new LinkedList<String>();
+		for(String instanceId: connectionPools.keySet()){
+			if(!byId.containsKey(instanceId)){
+				lost.add(instanceId);
+			}
+		}
+		for(String instanceId: lost){
+			BasicDataSource pool = connectionPools.remove(instanceId);
+			closePool(pool);
+		}
+	}
+
+	BasicDataSource createPool(DBInstance instance){
+		return InstanceUtils.createNewDatabaseConnectionPool(stackConfig, instance);
+	}
+
+	TableIndexDAO createIndexDao(BasicDataSource pool){
+		return new TableIndexDAOImpl(pool);
+	}
+
 	/**
 	 * Validate that the table feature is enabled.
 	 */
@@ -80,30 +376,67 @@ public class ConnectionFactoryImpl implements ConnectionFactory {
 			throw new IllegalArgumentException("The table feature is disabled (org.sagebionetworks.table.enabled=false) so this method is not available.");
 		}
 	}
-	
+
 	/**
 	 * Spring will calls this method when this bean is destroyed.
 	 * This is our chance to shutdown the database connection pools.
-	 * @throws SQLException 
+	 * @throws SQLException
 	 */
 	public void close() throws SQLException{
-		if(singleConnectionPool != null){
-			log.debug("Closing connection pool to: "+singleConnectionPool.getUrl());
-			singleConnectionPool.close();
+		for(BasicDataSource pool: connectionPools.values()){
+			closePool(pool);
+		}
+		connectionPools.clear();
+	}
+
+	private void closePool(BasicDataSource pool){
+		log.debug("Closing connection pool to: "+pool.getUrl());
+		try {
+			pool.close();
+		} catch (SQLException e) {
+			log.warn("Failed to close connection pool to: "+pool.getUrl(), e);
 		}
 	}
 
 	@Override
 	public void dropAllTablesForAllConnections() {
-		// For now we only have one database
-		if(this.singleConnectionPool != null){
-			String schema = InstanceUtils.createDatabaseSchemaName(stackConfig.getStack(), stackConfig.getStackInstance());
-			JdbcTemplate template = new JdbcTemplate(this.singleConnectionPool);
+		String schema = InstanceUtils.createDatabaseSchemaName(stackConfig.getStack(), stackConfig.getStackInstance());
+		for(BasicDataSource pool: connectionPools.values()){
+			JdbcTemplate template = new JdbcTemplate(pool);
 			template.update(DROP_DATABASE+schema);
 			template.update(CREATE_DATABASE+schema);
 			template.update(USE_DATABASE+schema);
 		}
-		
+		// Nothing is left to move.
+		tableOwners.clear();
+		pendingMoves.clear();
+		oldCopies.clear();
+	}
+
+	/**
+	 * The copy of a table held by one shard.
+	 */
+	private static class OldCopy {
+		final String tableId;
+		final String instanceId;
+
+		OldCopy(String tableId, String instanceId) {
+			this.tableId = tableId;
+			this.instanceId = instanceId;
+		}
+
+		@Override
+		public int hashCode() {
+			return tableId.hashCode() * 31 + instanceId.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof OldCopy))
+				return false;
+			OldCopy other = (OldCopy) obj;
+			return tableId.equals(other.tableId) && instanceId.equals(other.instanceId);
+		}
 	}
 
 }
@@ -0,0 +1,139 @@
+package org.sagebionetworks.table.cluster;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Maps keys (table IDs) to nodes (database instance identifiers) using
+ * consistent hashing. Each node is placed on the ring many times (virtual
+ * nodes) so keys are spread evenly, and adding or removing a node only moves
+ * the keys that belong to that node.
+ *
+ * This class is immutable and therefore thread safe.
+ *
+ * @author jmhill
+ *
+ */
+public class ConsistentHashRing {
+
+	public static final int DEFAULT_VIRTUAL_NODES_PER_NODE = 128;
+
+	private final TreeMap<Long, String> ring;
+	private final Set<String> nodes;
+
+	/**
+	 * Create a ring with the default number of virtual nodes per node.
+	 *
+	 * @param nodes
+	 */
+	public ConsistentHashRing(Collection<String> nodes) {
+		this(nodes, DEFAULT_VIRTUAL_NODES_PER_NODE);
+	}
+
+	/**
+	 *
+	 * @param nodes
+	 * @param virtualNodesPerNode
+	 */
+	public ConsistentHashRing(Collection<String> nodes, int virtualNodesPerNode) {
+		if (nodes == null || nodes.isEmpty()) throw new IllegalArgumentException("A ring requires at least one node");
+		if (virtualNodesPerNode < 1) throw new IllegalArgumentException("virtualNodesPerNode must be at least one");
+		this.ring = new TreeMap<Long, String>();
+		this.nodes = Collections.unmodifiableSet(new TreeSet<String>(nodes));
+		for (String node : this.nodes) {
+			for (int i = 0; i < virtualNodesPerNode; i++) {
+				ring.put(hash(node + "#" + i), node);
+			}
+		}
+	}
+
+	/**
+	 * Get the node that owns the given key.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public String getNode(String key) {
+		if (key == null) throw new IllegalArgumentException("Key cannot be null");
+		long hash = hash(key);
+		SortedMap<Long, String> tail = ring.tailMap(hash);
+		if (tail.isEmpty()) {
+			// wrap around to the start of the ring.
+			return ring.firstEntry().getValue();
+		}
+		return tail.get(tail.firstKey());
+	}
+
+	/**
+	 * The nodes in this ring.
+	 *
+	 * @return
+	 */
+	public Set<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Does this ring have exactly the passed nodes?
+	 *
+	 * @param otherNodes
+	 * @return
+	 */
+	public boolean hasSameNodes(Collection<String> otherNodes) {
+		return nodes.equals(new TreeSet<String>(otherNodes));
+	}
+
+	/**
+	 * The first eight bytes of the MD5 of the value. MD5 is used for its
+	 * distribution not its security.
+	 *
+	 * @param value
+	 * @return
+	 */
+	static long hash(String value) {
+		try {
+			MessageDigest md5 = MessageDigest.getInstance("MD5");
+			byte[] digest = md5.digest(value.getBytes("UTF-8"));
+			long hash = 0;
+			for (int i = 0; i < 8; i++) {
+				hash = (hash << 8) | (digest[i] & 0xFF);
+			}
+			return hash;
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ConsistentHashRing [nodes=" + nodes + ", size=" + ring.size() + "]";
+	}
+
+	/**
+	 * For testing, the count of keys owned by each node.
+	 *
+	 * @param keys
+	 * @return
+	 */
+	Map<String, Integer> countKeysPerNode(Collection<String> keys) {
+		Map<String, Integer> counts = new TreeMap<String, Integer>();
+		for (String node : nodes) {
+			counts.put(node, 0);
+		}
+		for (String key : keys) {
+			String node = getNode(key);
+			counts.put(node, counts.get(node) + 1);
+		}
+		return counts;
+	}
+}
@@ -39,6 +39,12 @@ public class SQLUtils {
 	public static final String TABLE_PREFIX = "T";
 	public static final String COLUMN_PREFIX = "C";
 	public static final String TABLE_STATUS_POSTFIX = "S";
+	public static final String TABLE_STAGING_POSTFIX = "_STAGING";
+	public static final String TABLE_OLD_POSTFIX = "_OLD";
+	/**
+	 * How LOAD DATA writes a null value.
+	 */
+	public static final String LOAD_DATA_NULL = "\\N";
 	
 	/**
 	 * Generate the SQL need to create or alter a table from one schema to
@@ -623,4 +629,205 @@ public class SQLUtils {
 	public static String getStatusMaxVersionSQL(String tableId) {
 		return "SELECT " + ROW_VERSION + " FROM " + getStatusTableNameForId(tableId);
 	}
+
+	/**
+	 * Create the SQL used to list the status tables in a database.
+	 * 
+	 * @return
+	 */
+	public static String getShowStatusTablesSQL() {
+		return "SHOW TABLES LIKE '" + TABLE_PREFIX + "%" + TABLE_STATUS_POSTFIX + "'";
+	}
+
+	/**
+	 * Get the table ID from the name of a status table.
+	 * 
+	 * @param tableName
+	 * @return The table ID or null if the name is not the name of a status table.
+	 */
+	public static String getTableIdFromStatusTableName(String tableName) {
+		if (tableName == null)
+			return null;
+		// The server can be configured to store names in lower case.
+		String upper = tableName.toUpperCase();
+		if (!upper.startsWith(TABLE_PREFIX) || !upper.endsWith(TABLE_STATUS_POSTFIX))
+			return null;
+		String id = upper.substring(TABLE_PREFIX.length(), upper.length() - TABLE_STATUS_POSTFIX.length());
+		if (id.length() == 0)
+			return null;
+		for (int i = 0; i < id.length(); i++) {
+			if (!Character.isDigit(id.charAt(i)))
+				return null;
+		}
+		return id;
+	}
+
+	/**
+	 * Get the name of the table a bulk load is staged in.
+	 * 
+	 * @param tableId
+	 * @return
+	 */
+	public static String getStagingTableNameForId(String tableId) {
+		return getTableNameForId(tableId) + TABLE_STAGING_POSTFIX;
+	}
+
+	/**
+	 * Get the name the replaced table has while a staging table is swapped in.
+	 * 
+	 * @param tableId
+	 * @return
+	 */
+	public static String getOldTableNameForId(String tableId) {
+		return getTableNameForId(tableId) + TABLE_OLD_POSTFIX;
+	}
+
+	/**
+	 * Create the staging table for a bulk load. It has the same definition as
+	 * the table itself.
+	 * 
+	 * @param schema
+	 * @param tableId
+	 * @return
+	 */
+	public static String createStagingTableSQL(List<ColumnModel> schema, String tableId) {
+		if (schema == null)
+			throw new IllegalArgumentException("Table schema cannot be null");
+		if (schema.size() < 1)
+			throw new IllegalArgumentException("Table schema must include at least one column");
+		StringBuilder builder = new StringBuilder();
+		builder.append("CREATE TABLE `").append(getStagingTableNameForId(tableId)).append("` ");
+		appendColumnDefinitionsToCreate(builder, schema);
+		return builder.toString();
+	}
+
+	/**
+	 * Drop a table if it exists.
+	 * 
+	 * @param tableName
+	 * @return
+	 */
+	public static String dropTableIfExistsSQL(String tableName) {
+		return "DROP TABLE IF EXISTS `" + tableName + "`";
+	}
+
+	/**
+	 * Build the LOAD DATA statement that reads a file written with
+	 * {@link #appendRowForLoadData(StringBuilder, Row, Map, List)} into the
+	 * staging table. Later lines replace earlier lines with the same row ID.
+	 * 
+	 * @param schema
+	 * @param tableId
+	 * @param filePath
+	 * @return
+	 */
+	public static String buildLoadDataSQL(List<ColumnModel> schema, String tableId, String filePath) {
+		if (schema == null) throw new IllegalArgumentException("Schema cannot be null");
+		if (filePath == null) throw new IllegalArgumentException("File path cannot be null");
+		StringBuilder builder = new StringBuilder();
+		builder.append("LOAD DATA LOCAL INFILE '");
+		builder.append(filePath.replace("\\", "\\\\").replace("'", "\\'"));
+		builder.append("' REPLACE INTO TABLE `").append(getStagingTableNameForId(tableId)).append("`");
+		builder.append(" CHARACTER SET utf8");
+		builder.append(" FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'");
+		builder.append(" LINES TERMINATED BY '\\n'");
+		builder.append(" (").append(ROW_ID).append(", ").append(ROW_VERSION);
+		for (ColumnModel cm : schema) {
+			builder.append(", ").append(getColumnNameForId(cm.getId()));
+		}
+		builder.append(")");
+		return builder.toString();
+	}
+
+	/**
+	 * Build the SQL to delete rows from the staging table.
+	 * 
+	 * @param tableId
+	 * @return
+	 */
+	public static String buildDeleteFromStagingSQL(String tableId) {
+		return "DELETE FROM `" + getStagingTableNameForId(tableId) + "` WHERE " + ROW_ID + " IN ( :" + ROW_ID_BIND + " )";
+	}
+
+	/**
+	 * Build the SQL that replaces a table with its staging table. A single
+	 * RENAME TABLE is atomic, so readers see either the old or the new table.
+	 * 
+	 * @param tableId
+	 * @return
+	 */
+	public static String buildSwapStagingTableSQL(String tableId) {
+		String tableName = getTableNameForId(tableId);
+		StringBuilder builder = new StringBuilder();
+		builder.append("RENAME TABLE `").append(tableName).append("` TO `").append(getOldTableNameForId(tableId)).append("`");
+		builder.append(", `").append(getStagingTableNameForId(tableId)).append("` TO `").append(tableName).append("`");
+		return builder.toString();
+	}
+
+	/**
+	 * Append a row as one line of a LOAD DATA file: tab separated values with
+	 * the row ID and version first, then one value per column of the schema.
+	 * 
+	 * @param builder
+	 * @param row
+	 * @param columnIndexMap
+	 *            Maps each column ID to the index of its value in the row.
+	 *            Columns that are not in the map get their default value.
+	 * @param schema
+	 */
+	public static void appendRowForLoadData(StringBuilder builder, Row row, Map<String, Integer> columnIndexMap, List<ColumnModel> schema) {
+		if (row.getRowId() == null)
+			throw new IllegalArgumentException("RowID cannot be null");
+		if (row.getVersionNumber() == null)
+			throw new IllegalArgumentException("RowVersionNumber cannot be null");
+		builder.append(row.getRowId());
+		builder.append('\t').append(row.getVersionNumber());
+		for (ColumnModel cm : schema) {
+			Integer columnIndex = columnIndexMap.get(cm.getId());
+			String value = columnIndex == null ? cm.getDefaultValue() : row.getValues().get(columnIndex);
+			builder.append('\t');
+			appendValueForLoadData(builder, parseValueForDB(cm.getColumnType(), value));
+		}
+		builder.append('\n');
+	}
+
+	/**
+	 * Append a single value escaped for LOAD DATA.
+	 * 
+	 * @param builder
+	 * @param value
+	 */
+	static void appendValueForLoadData(StringBuilder builder, Object value) {
+		if (value == null) {
+			builder.append(LOAD_DATA_NULL);
+		} else if (value instanceof Boolean) {
+			builder.append(((Boolean) value) ? '1' : '0');
+		} else if (value instanceof String) {
+			String string = (String) value;
+			for (int i = 0; i < string.length(); i++) {
+				char c = string.charAt(i);
+				switch (c) {
+				case '\\':
+					builder.append("\\\\");
+					break;
+				case '\t':
+					builder.append("\\t");
+					break;
+				case '\n':
+					builder.append("\\n");
+					break;
+				case '\r':
+					builder.append("\\r");
+					break;
+				case '\0':
+					builder.append("\\0");
+					break;
+				default:
+					builder.append(c);
+				}
+			}
+		} else {
+			builder.append(value);
+		}
+	}
 }
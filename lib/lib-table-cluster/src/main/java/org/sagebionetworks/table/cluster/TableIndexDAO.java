@@ -1,5 +1,6 @@
 package org.sagebionetworks.table.cluster;
 
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 
@@ -54,6 +55,18 @@ public interface TableIndexDAO {
 	 */
 	void createOrUpdateOrDeleteRows(RowSet rowset, List<ColumnModel> currentSchema);
 	
+	/**
+	 * Start rebuilding a table from scratch. This is much faster than
+	 * {@link #createOrUpdateOrDeleteRows(RowSet, List)} for large tables, and
+	 * the current table stays readable until the rebuilt table replaces it.
+	 * 
+	 * @param currentSchema
+	 * @param tableId
+	 * @return
+	 * @throws IOException
+	 */
+	public BulkTableLoader startBulkLoad(List<ColumnModel> currentSchema, String tableId) throws IOException;
+	
 	/**
 	 * Query a RowSet from the table.
 	 * @param query
@@ -63,6 +76,9 @@ public interface TableIndexDAO {
 	
 	/**
 	 * Provides the means to stream over query results without keeping the row data in memory.
+	 * Rows are read from a forward-only cursor as the handler consumes them. If the handler
+	 * is a {@link org.sagebionetworks.repo.model.dao.table.ReusableRowHandler} the same Row
+	 * object is passed for every row.
 	 * 
 	 * @param query
 	 * @param handler
@@ -101,6 +117,13 @@ public interface TableIndexDAO {
 	 * @param tableId
 	 */
 	public void deleteStatusTable(String tableId);
+
+	/**
+	 * Get the ID of each table that has a status table in this database.
+	 * 
+	 * @return
+	 */
+	public List<String> getAllTableIds();
 	
 	/**
 	 * Get the connection
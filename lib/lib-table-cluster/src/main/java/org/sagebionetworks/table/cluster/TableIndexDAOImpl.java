@@ -3,16 +3,20 @@ package org.sagebionetworks.table.cluster;
 import static org.sagebionetworks.repo.model.table.TableConstants.ROW_ID;
 import static org.sagebionetworks.repo.model.table.TableConstants.ROW_VERSION;
 
+import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import javax.sql.DataSource;
 
+import org.sagebionetworks.repo.model.dao.table.ReusableRowHandler;
 import org.sagebionetworks.repo.model.dao.table.RowAndHeaderHandler;
 import org.sagebionetworks.repo.model.dbo.SinglePrimaryKeySqlParameterSource;
 import org.sagebionetworks.repo.model.dbo.dao.table.TableModelUtils;
@@ -21,11 +25,14 @@ import org.sagebionetworks.repo.model.table.Row;
 import org.sagebionetworks.repo.model.table.RowSet;
 import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -40,10 +47,17 @@ public class TableIndexDAOImpl implements TableIndexDAO {
 
 	private static final String FIELD = "Field";
 	private static final String SQL_SHOW_COLUMNS = "SHOW COLUMNS FROM ";
+	/**
+	 * MySQL Connector/J only streams a result one row at a time, instead of
+	 * reading the whole result into memory, when this fetch size is used on
+	 * a forward-only, read-only statement.
+	 */
+	public static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
 
 	DataSourceTransactionManager transactionManager;
 	TransactionTemplate transactionTemplate;
 	JdbcTemplate template;
+	NamedParameterJdbcTemplate namedTemplate;
 
 	/**
 	 * The IoC constructor.
@@ -63,6 +77,7 @@ public class TableIndexDAOImpl implements TableIndexDAO {
 		// This will manage transactions for calls that need it.
 		this.transactionTemplate = new TransactionTemplate(this.transactionManager, transactionDef);
 		this.template = new JdbcTemplate(dataSource);
+		this.namedTemplate = new NamedParameterJdbcTemplate(this.template);
 	}
 
 	@Override
@@ -135,8 +150,6 @@ public class TableIndexDAOImpl implements TableIndexDAO {
 						.bindParametersForCreateOrUpdate(rowset, schema);
 				SqlParameterSource batchDeleteBinding = SQLUtils
 						.bindParameterForDelete(rowset, schema);
-				// We need a named template for this case.
-				NamedParameterJdbcTemplate namedTemplate = new NamedParameterJdbcTemplate(template);
 				if (batchUpdateOrCreateBinding.length > 0) {
 					namedTemplate.batchUpdate(createOrUpdateSql,
 							batchUpdateOrCreateBinding);
@@ -149,6 +162,11 @@ public class TableIndexDAOImpl implements TableIndexDAO {
 		});
 	}
 
+	@Override
+	public BulkTableLoader startBulkLoad(List<ColumnModel> currentSchema, String tableId) throws IOException {
+		return new BulkTableLoader(template, currentSchema, tableId);
+	}
+
 	@Override
 	public Long getRowCountForTable(String tableId) {
 		String sql = SQLUtils.getCountSQL(tableId);
@@ -190,6 +208,19 @@ public class TableIndexDAOImpl implements TableIndexDAO {
 		}
 	}
 
+	@Override
+	public List<String> getAllTableIds() {
+		List<String> names = template.queryForList(SQLUtils.getShowStatusTablesSQL(), String.class);
+		List<String> ids = new LinkedList<String>();
+		for (String name : names) {
+			String id = SQLUtils.getTableIdFromStatusTableName(name);
+			if (id != null) {
+				ids.add(id);
+			}
+		}
+		return ids;
+	}
+
 	@Override
 	public JdbcTemplate getConnection() {
 		return template;
@@ -222,44 +253,90 @@ public class TableIndexDAOImpl implements TableIndexDAO {
 	@Override
 	public boolean queryAsStream(final SqlQuery query, final RowAndHeaderHandler handler) {
 		if(query == null) throw new IllegalArgumentException("Query cannot be null");
-		final List<String> headers = new LinkedList<String>();
-		final List<Integer> nonMetadataColumnIndicies = new LinkedList<Integer>();
-		final Map<Integer, ColumnModel> modeledColumns = Maps.newHashMap();
-		// We use spring to create create the prepared statement
-		NamedParameterJdbcTemplate namedTemplate = new NamedParameterJdbcTemplate(this.template);
-		namedTemplate.query(query.getOutputSQL(), new MapSqlParameterSource(query.getParameters()), new RowCallbackHandler() {
+		// Named parameters are expanded the same way NamedParameterJdbcTemplate does it.
+		SqlParameterSource parameters = new MapSqlParameterSource(query.getParameters());
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(query.getOutputSQL());
+		String sql = NamedParameterUtils.substituteNamedParameters(parsedSql, parameters);
+		PreparedStatementCreatorFactory factory = new PreparedStatementCreatorFactory(sql,
+				NamedParameterUtils.buildSqlParameterList(parsedSql, parameters));
+		factory.setResultSetType(ResultSet.TYPE_FORWARD_ONLY);
+		factory.setUpdatableResults(false);
+		Object[] values = NamedParameterUtils.buildValueArray(parsedSql, parameters, null);
+		template.execute(factory.newPreparedStatementCreator(values), new PreparedStatementCallback<Void>() {
 			@Override
-			public void processRow(ResultSet rs) throws SQLException {
-				ResultSetMetaData metadata = rs.getMetaData();
-				if (headers.isEmpty()) {
-					// Read the headers from the result set
-					populateHeadersFromResultsSet(headers,
-							nonMetadataColumnIndicies, query, modeledColumns, metadata);
-					handler.setHeaderColumnIds(headers);
+			public Void doInPreparedStatement(PreparedStatement ps) throws SQLException {
+				ps.setFetchSize(STREAMING_FETCH_SIZE);
+				ResultSet rs = ps.executeQuery();
+				try {
+					streamResults(rs, query, handler);
+				} finally {
+					rs.close();
 				}
-				// Read the results into a new list
-				List<String> values = new LinkedList<String>();
-				Row row = new Row();
-				row.setValues(values);
-				if (!query.isAggregatedResult()) {
-					// Non-aggregate queries include two extra columns,
-					// row id and row version.
-					row.setRowId(rs.getLong(ROW_ID));
-					row.setVersionNumber(rs.getLong(ROW_VERSION));
-				}
-				// fill the value list
-				for (Integer index : nonMetadataColumnIndicies) {
-					String value = rs.getString(index);
-					ColumnModel columnModel = modeledColumns.get(index);
-					value = TableModelUtils.translateRowValueFromQuery(value, columnModel);
-					values.add(value);
-				}
-				handler.nextRow(row);
+				return null;
 			}
 		});
 		return true;
 	}
 
+	/**
+	 * Pass each row of the result to the handler. The column lookups are
+	 * resolved once from the metadata. When the handler is a
+	 * {@link ReusableRowHandler} the same Row and value list are used for
+	 * every row.
+	 * 
+	 * @param rs
+	 * @param query
+	 * @param handler
+	 * @throws SQLException
+	 */
+	static void streamResults(ResultSet rs, SqlQuery query, RowAndHeaderHandler handler) throws SQLException {
+		List<String> headers = new ArrayList<String>();
+		List<Integer> nonMetadataColumnIndicies = new LinkedList<Integer>();
+		Map<Integer, ColumnModel> modeledColumns = Maps.newHashMap();
+		ResultSetMetaData metadata = rs.getMetaData();
+		populateHeadersFromResultsSet(headers, nonMetadataColumnIndicies, query, modeledColumns, metadata);
+		int[] columnIndicies = new int[nonMetadataColumnIndicies.size()];
+		ColumnModel[] columnModels = new ColumnModel[columnIndicies.length];
+		int i = 0;
+		for (Integer index : nonMetadataColumnIndicies) {
+			columnIndicies[i] = index;
+			columnModels[i] = modeledColumns.get(index);
+			i++;
+		}
+		boolean reuseRow = handler instanceof ReusableRowHandler;
+		boolean includeRowIdAndVersion = !query.isAggregatedResult();
+		int rowIdIndex = includeRowIdAndVersion ? rs.findColumn(ROW_ID) : -1;
+		int rowVersionIndex = includeRowIdAndVersion ? rs.findColumn(ROW_VERSION) : -1;
+		Row row = null;
+		List<String> values = null;
+		boolean first = true;
+		while (rs.next()) {
+			if (first) {
+				// Headers are only passed for a non-empty result.
+				handler.setHeaderColumnIds(headers);
+				first = false;
+			}
+			if (row == null || !reuseRow) {
+				row = new Row();
+				values = new ArrayList<String>(columnIndicies.length);
+				row.setValues(values);
+			} else {
+				values.clear();
+			}
+			if (includeRowIdAndVersion) {
+				// Non-aggregate queries include two extra columns,
+				// row id and row version.
+				row.setRowId(rs.getLong(rowIdIndex));
+				row.setVersionNumber(rs.getLong(rowVersionIndex));
+			}
+			// fill the value list
+			for (int j = 0; j < columnIndicies.length; j++) {
+				values.add(TableModelUtils.translateRowValueFromQuery(rs.getString(columnIndicies[j]), columnModels[j]));
+			}
+			handler.nextRow(row);
+		}
+	}
+
 	static void populateHeadersFromResultsSet(List<String> headers, List<Integer> nonMetadataColumnIndicies, SqlQuery query,
 			Map<Integer, ColumnModel> modeledColumns, ResultSetMetaData resultSetMetaData) throws SQLException {
 		// There are three possibilities, column ID, aggregate function, or row
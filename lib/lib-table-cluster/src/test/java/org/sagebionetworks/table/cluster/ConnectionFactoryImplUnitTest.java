@@ -0,0 +1,165 @@
+package org.sagebionetworks.table.cluster;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sagebionetworks.StackConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.amazonaws.services.rds.model.DBInstance;
+
+public class ConnectionFactoryImplUnitTest {
+
+	private static final String OLD_SHARD = "table-0";
+	private static final String NEW_SHARD = "table-1";
+
+	StackConfiguration mockConfig;
+	InstanceDiscovery mockDiscovery;
+	Map<String, TableIndexDAO> shards;
+	String movedTableId;
+
+	@Before
+	public void before() {
+		mockConfig = Mockito.mock(StackConfiguration.class);
+		when(mockConfig.getTableEnabled()).thenReturn(true);
+		mockDiscovery = Mockito.mock(InstanceDiscovery.class);
+		shards = new HashMap<String, TableIndexDAO>();
+		shards.put(OLD_SHARD, Mockito.mock(TableIndexDAO.class));
+		shards.put(NEW_SHARD, Mockito.mock(TableIndexDAO.class));
+		// Find a table that moves when the new shard is added.
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList(OLD_SHARD, NEW_SHARD));
+		for (int i = 1; movedTableId == null; i++) {
+			if (NEW_SHARD.equals(ring.getNode("syn" + i))) {
+				movedTableId = "syn" + i;
+			}
+		}
+		// The table is only on the old shard.
+		when(shards.get(OLD_SHARD).getAllTableIds()).thenReturn(Arrays.asList(movedTableId.substring(3)));
+		when(shards.get(OLD_SHARD).getMaxCurrentCompleteVersionForTable(movedTableId)).thenReturn(5L);
+		when(shards.get(NEW_SHARD).getAllTableIds()).thenReturn(Collections.<String> emptyList());
+		when(shards.get(NEW_SHARD).getMaxCurrentCompleteVersionForTable(movedTableId)).thenReturn(-1L);
+	}
+
+	private ConnectionFactoryImpl createFactory(String... instanceIds) {
+		ConnectionFactoryImpl factory = new ConnectionFactoryImpl() {
+			@Override
+			BasicDataSource createPool(DBInstance instance) {
+				BasicDataSource pool = Mockito.mock(BasicDataSource.class);
+				when(pool.getUrl()).thenReturn(instance.getDBInstanceIdentifier());
+				return pool;
+			}
+
+			@Override
+			TableIndexDAO createIndexDao(BasicDataSource pool) {
+				return shards.get(pool.getUrl());
+			}
+		};
+		ReflectionTestUtils.setField(factory, "stackConfig", mockConfig);
+		ReflectionTestUtils.setField(factory, "instanceDiscovery", mockDiscovery);
+		setInstances(instanceIds);
+		factory.initialize();
+		return factory;
+	}
+
+	private void setInstances(String... instanceIds) {
+		List<DBInstance> instances = new LinkedList<DBInstance>();
+		for (String instanceId : instanceIds) {
+			instances.add(new DBInstance().withDBInstanceIdentifier(instanceId));
+		}
+		when(mockDiscovery.discoverAllInstances()).thenReturn(instances);
+	}
+
+	private void targetCatchesUp() {
+		when(shards.get(NEW_SHARD).getAllTableIds()).thenReturn(Arrays.asList(movedTableId.substring(3)));
+		when(shards.get(NEW_SHARD).getMaxCurrentCompleteVersionForTable(movedTableId)).thenReturn(5L);
+	}
+
+	@Test
+	public void testFreshFactoryWithNewInstancesServesOldCopy() {
+		// A machine that starts after the new shard was added must not route the table to a shard without its index.
+		ConnectionFactoryImpl factory = createFactory(OLD_SHARD, NEW_SHARD);
+		assertSame(shards.get(OLD_SHARD), factory.getConnection(movedTableId));
+		assertSame(shards.get(NEW_SHARD), factory.getRebalanceTargetConnection(movedTableId));
+		factory.checkMovedTables();
+		assertSame(shards.get(OLD_SHARD), factory.getConnection(movedTableId));
+	}
+
+	@Test
+	public void testFreshFactoryWithNewInstancesAfterCatchUp() {
+		targetCatchesUp();
+		ConnectionFactoryImpl factory = createFactory(OLD_SHARD, NEW_SHARD);
+		assertSame(shards.get(NEW_SHARD), factory.getConnection(movedTableId));
+		assertNull(factory.getRebalanceTargetConnection(movedTableId));
+	}
+
+	@Test
+	public void testFreshFactoryAgreesWithRunningFactory() {
+		ConnectionFactoryImpl running = createFactory(OLD_SHARD);
+		assertSame(shards.get(OLD_SHARD), running.getConnection(movedTableId));
+		setInstances(OLD_SHARD, NEW_SHARD);
+		running.refreshInstances();
+		ConnectionFactoryImpl fresh = createFactory(OLD_SHARD, NEW_SHARD);
+		assertSame(shards.get(OLD_SHARD), running.getConnection(movedTableId));
+		assertSame(shards.get(OLD_SHARD), fresh.getConnection(movedTableId));
+
+		targetCatchesUp();
+		running.checkMovedTables();
+		fresh = createFactory(OLD_SHARD, NEW_SHARD);
+		assertSame(shards.get(NEW_SHARD), running.getConnection(movedTableId));
+		assertSame(shards.get(NEW_SHARD), fresh.getConnection(movedTableId));
+	}
+
+	@Test
+	public void testOldCopyDroppedAfterDelay() {
+		ConnectionFactoryImpl factory = createFactory(OLD_SHARD);
+		factory.setDropOldCopyDelayMS(Long.MAX_VALUE / 2);
+		setInstances(OLD_SHARD, NEW_SHARD);
+		factory.refreshInstances();
+		assertSame(shards.get(OLD_SHARD), factory.getConnection(movedTableId));
+		targetCatchesUp();
+		factory.checkMovedTables();
+		assertSame(shards.get(NEW_SHARD), factory.getConnection(movedTableId));
+		// Other machines may still be using the old copy.
+		factory.checkMovedTables();
+		verify(shards.get(OLD_SHARD), never()).deleteTable(movedTableId);
+	}
+
+	@Test
+	public void testOldCopyDropped() {
+		ConnectionFactoryImpl factory = createFactory(OLD_SHARD);
+		factory.setDropOldCopyDelayMS(0L);
+		setInstances(OLD_SHARD, NEW_SHARD);
+		factory.refreshInstances();
+		assertSame(shards.get(OLD_SHARD), factory.getConnection(movedTableId));
+		targetCatchesUp();
+		factory.checkMovedTables();
+		assertSame(shards.get(NEW_SHARD), factory.getConnection(movedTableId));
+		verify(shards.get(OLD_SHARD)).deleteTable(movedTableId);
+		verify(shards.get(OLD_SHARD)).deleteStatusTable(movedTableId);
+		verify(shards.get(NEW_SHARD), never()).deleteTable(movedTableId);
+	}
+
+	@Test
+	public void testFreshFactoryKeepsCaughtUpCopyForDelay() {
+		targetCatchesUp();
+		ConnectionFactoryImpl factory = createFactory(OLD_SHARD, NEW_SHARD);
+		factory.setDropOldCopyDelayMS(0L);
+		// The drop was scheduled with the default delay.
+		factory.checkMovedTables();
+		verify(shards.get(OLD_SHARD), never()).deleteTable(movedTableId);
+	}
+}
@@ -0,0 +1,85 @@
+package org.sagebionetworks.table.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+
+	List<String> tableIds;
+
+	@Before
+	public void before(){
+		tableIds = new LinkedList<String>();
+		for(int i=0; i<10000; i++){
+			tableIds.add(""+(1000+i));
+		}
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testEmpty(){
+		new ConsistentHashRing(new LinkedList<String>());
+	}
+
+	@Test
+	public void testSingleNode(){
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("prod-1-table-0"));
+		for(String tableId: tableIds){
+			assertEquals("prod-1-table-0", ring.getNode(tableId));
+		}
+	}
+
+	@Test
+	public void testStable(){
+		ConsistentHashRing one = new ConsistentHashRing(Arrays.asList("a", "b", "c"));
+		// order of the nodes must not matter.
+		ConsistentHashRing two = new ConsistentHashRing(Arrays.asList("c", "a", "b"));
+		for(String tableId: tableIds){
+			assertEquals(one.getNode(tableId), two.getNode(tableId));
+		}
+	}
+
+	@Test
+	public void testDistribution(){
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"));
+		Map<String, Integer> counts = ring.countKeysPerNode(tableIds);
+		int expected = tableIds.size()/4;
+		for(Integer count: counts.values()){
+			// Each node should be within 25% of an even share.
+			assertTrue("Uneven distribution: "+counts, Math.abs(count - expected) < expected/4);
+		}
+	}
+
+	@Test
+	public void testAddNodeOnlyMovesToNewNode(){
+		ConsistentHashRing before = new ConsistentHashRing(Arrays.asList("a", "b", "c"));
+		ConsistentHashRing after = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"));
+		int moved = 0;
+		for(String tableId: tableIds){
+			String oldNode = before.getNode(tableId);
+			String newNode = after.getNode(tableId);
+			if(!oldNode.equals(newNode)){
+				// Tables can only move to the new node.
+				assertEquals("d", newNode);
+				moved++;
+			}
+		}
+		// About a quarter of the tables should move.
+		assertTrue("Moved: "+moved, moved > tableIds.size()/8);
+		assertTrue("Moved: "+moved, moved < tableIds.size()/2);
+	}
+
+	@Test
+	public void testHasSameNodes(){
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b"));
+		assertTrue(ring.hasSameNodes(Arrays.asList("b", "a")));
+		assertEquals(false, ring.hasSameNodes(Arrays.asList("a", "b", "c")));
+	}
+}
@@ -4,11 +4,14 @@ import static org.sagebionetworks.repo.model.table.TableConstants.ROW_ID;
 import static org.sagebionetworks.repo.model.table.TableConstants.ROW_VERSION;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -382,6 +385,60 @@ public class SQLUtilsTest {
 		assertEquals(expected, result);
 	}
 	
+	@Test
+	public void testBuildLoadDataSQL(){
+		List<ColumnModel> newSchema = helperCreateColumnsWithIds("0","2");
+		String result = SQLUtils.buildLoadDataSQL(newSchema, "syn123", "/tmp/it's.tsv");
+		String expected = "LOAD DATA LOCAL INFILE '/tmp/it\\'s.tsv' REPLACE INTO TABLE `T123_STAGING` CHARACTER SET utf8 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (ROW_ID, ROW_VERSION, C0, C2)";
+		assertEquals(expected, result);
+	}
+	
+	@Test
+	public void testBuildSwapStagingTableSQL(){
+		String expected = "RENAME TABLE `T123` TO `T123_OLD`, `T123_STAGING` TO `T123`";
+		assertEquals(expected, SQLUtils.buildSwapStagingTableSQL("syn123"));
+	}
+	
+	@Test
+	public void testCreateStagingTableSQL(){
+		String expected = "CREATE TABLE `T123_STAGING` ( ROW_ID bigint(20) NOT NULL, ROW_VERSION bigint(20) NOT NULL, `C456` bigint(20) DEFAULT NULL, PRIMARY KEY (ROW_ID) )";
+		assertEquals(expected, SQLUtils.createStagingTableSQL(simpleSchema, "syn123"));
+	}
+	
+	@Test
+	public void testAppendRowForLoadData(){
+		List<ColumnModel> newSchema = new LinkedList<ColumnModel>();
+		ColumnModel string = new ColumnModel();
+		string.setId("1");
+		string.setColumnType(ColumnType.STRING);
+		newSchema.add(string);
+		ColumnModel bool = new ColumnModel();
+		bool.setId("2");
+		bool.setColumnType(ColumnType.BOOLEAN);
+		newSchema.add(bool);
+		ColumnModel withDefault = new ColumnModel();
+		withDefault.setId("3");
+		withDefault.setColumnType(ColumnType.LONG);
+		withDefault.setDefaultValue("42");
+		newSchema.add(withDefault);
+		ColumnModel nullLong = new ColumnModel();
+		nullLong.setId("4");
+		nullLong.setColumnType(ColumnType.LONG);
+		newSchema.add(nullLong);
+		Row row = new Row();
+		row.setRowId(7L);
+		row.setVersionNumber(2L);
+		row.setValues(Arrays.asList("a\tb\nc\\d", "true", null));
+		Map<String, Integer> columnIndexMap = new HashMap<String, Integer>();
+		columnIndexMap.put("1", 0);
+		columnIndexMap.put("2", 1);
+		columnIndexMap.put("4", 2);
+		StringBuilder builder = new StringBuilder();
+		SQLUtils.appendRowForLoadData(builder, row, columnIndexMap, newSchema);
+		// Column 3 is not in the row so it gets its default.
+		assertEquals("7\t2\ta\\tb\\nc\\\\d\t1\t42\t\\N\n", builder.toString());
+	}
+	
 	@Test
 	public void testBindParametersForCreateOrUpdate(){
 		List<ColumnModel> newSchema = helperCreateColumnsWithIds("1","2","3");
@@ -466,6 +523,18 @@ public class SQLUtilsTest {
 		assertEquals(expected, result);
 	}
 	
+	@Test
+	public void testGetTableIdFromStatusTableName(){
+		assertEquals("SHOW TABLES LIKE 'T%S'", SQLUtils.getShowStatusTablesSQL());
+		assertEquals("123", SQLUtils.getTableIdFromStatusTableName(SQLUtils.getStatusTableNameForId("syn123")));
+		assertEquals("456", SQLUtils.getTableIdFromStatusTableName("t456s"));
+		// Not status tables
+		assertNull(SQLUtils.getTableIdFromStatusTableName("T123"));
+		assertNull(SQLUtils.getTableIdFromStatusTableName("TS"));
+		assertNull(SQLUtils.getTableIdFromStatusTableName("T1_STATUS"));
+		assertNull(SQLUtils.getTableIdFromStatusTableName(null));
+	}
+	
 	/**
 	 * A helper to create a list of ColumnModels from column model ids.
 	 * 
@@ -19,6 +19,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.sagebionetworks.StackConfiguration;
+import org.sagebionetworks.repo.model.dao.table.ReusableRowHandler;
 import org.sagebionetworks.repo.model.dbo.dao.table.TableModelTestUtils;
 import org.sagebionetworks.repo.model.dbo.dao.table.TableModelUtils;
 import org.sagebionetworks.repo.model.table.ColumnModel;
@@ -192,11 +193,14 @@ public class TableIndexDAOImplTest {
 		Long maxVersion = tableIndexDAO.getMaxCurrentCompleteVersionForTable(tableId);
 		assertEquals(-1L, maxVersion.longValue());
 
+		assertFalse(tableIndexDAO.getAllTableIds().contains("123"));
+
 		// Create the table
 		tableIndexDAO.setMaxCurrentCompleteVersionForTable(tableId, 2L);
 
 		maxVersion = tableIndexDAO.getMaxCurrentCompleteVersionForTable(tableId);
 		assertEquals(2L, maxVersion.longValue());
+		assertTrue(tableIndexDAO.getAllTableIds().contains("123"));
 
 		tableIndexDAO.setMaxCurrentCompleteVersionForTable(tableId, 4L);
 
@@ -255,6 +259,94 @@ public class TableIndexDAOImplTest {
 
 	}
 	
+	@Test
+	public void testBulkLoad() throws Exception {
+		List<ColumnModel> allTypes = TableModelTestUtils.createOneOfEachType();
+		// An existing table is replaced by the load.
+		tableIndexDAO.createOrUpdateTable(allTypes, tableId);
+		List<Row> rows = TableModelTestUtils.createRows(allTypes, 4);
+		RowSet set = new RowSet();
+		set.setRows(rows);
+		set.setHeaders(TableModelUtils.getHeaders(allTypes));
+		set.setTableId(tableId);
+		IdRange range = new IdRange();
+		range.setMinimumId(100L);
+		range.setMaximumId(200L);
+		range.setMaximumUpdateId(200L);
+		range.setVersionNumber(3L);
+		TableModelUtils.assignRowIdsAndVersionNumbers(set, range);
+		// The second change set deletes row 101 and updates row 102.
+		Row deletion = new Row();
+		deletion.setRowId(101L);
+		deletion.setVersionNumber(4L);
+		Row update = new Row();
+		update.setRowId(102L);
+		update.setVersionNumber(4L);
+		update.setValues(rows.get(3).getValues());
+		RowSet changes = new RowSet();
+		changes.setRows(Arrays.asList(deletion, update));
+		changes.setHeaders(set.getHeaders());
+		changes.setTableId(tableId);
+
+		BulkTableLoader loader = tableIndexDAO.startBulkLoad(allTypes, tableId);
+		try {
+			loader.append(set);
+			loader.append(changes);
+			assertEquals(5L, loader.finish());
+		} finally {
+			loader.close();
+		}
+		List<Map<String, Object>> result = tableIndexDAO.getConnection().queryForList(
+				"SELECT * FROM " + SQLUtils.getTableNameForId(tableId) + " ORDER BY " + ROW_ID);
+		assertEquals(3, result.size());
+		assertEquals(100L, result.get(0).get(ROW_ID));
+		assertEquals(102L, result.get(1).get(ROW_ID));
+		assertEquals(4L, result.get(1).get(ROW_VERSION));
+		assertEquals(result.get(2).get("C1"), result.get(1).get("C1"));
+		assertEquals(103L, result.get(2).get(ROW_ID));
+		// The rows can still be queried through the normal path.
+		SqlQuery query = new SqlQuery("select * from " + tableId, allTypes);
+		assertEquals(3, tableIndexDAO.query(query).getRows().size());
+	}
+
+	@Test
+	public void testQueryAsStreamReusableRow() throws ParseException{
+		List<ColumnModel> allTypes = TableModelTestUtils.createOneOfEachType();
+		tableIndexDAO.createOrUpdateTable(allTypes, tableId);
+		List<Row> rows = TableModelTestUtils.createRows(allTypes, 2);
+		RowSet set = new RowSet();
+		set.setRows(rows);
+		final List<String> headers = TableModelUtils.getHeaders(allTypes);
+		set.setHeaders(headers);
+		set.setTableId(tableId);
+		IdRange range = new IdRange();
+		range.setMinimumId(100L);
+		range.setMaximumId(200L);
+		range.setVersionNumber(3L);
+		TableModelUtils.assignRowIdsAndVersionNumbers(set, range);
+		tableIndexDAO.createOrUpdateOrDeleteRows(set, allTypes);
+		SqlQuery query = new SqlQuery("select * from "+tableId, allTypes);
+		final List<Row> seen = new LinkedList<Row>();
+		final List<String> copies = new LinkedList<String>();
+		tableIndexDAO.queryAsStream(query, new ReusableRowHandler() {
+			@Override
+			public void nextRow(Row row) {
+				seen.add(row);
+				copies.add(row.getRowId() + ":" + row.getValues());
+			}
+
+			@Override
+			public void setHeaderColumnIds(List<String> resultHeaders) {
+				assertEquals(headers, resultHeaders);
+			}
+		});
+		assertEquals(2, seen.size());
+		// The same row object is passed for each row.
+		assertTrue(seen.get(0) == seen.get(1));
+		assertEquals("100:[string0, 3.12, 3000, false, 4000, 5000]", copies.get(0));
+		assertEquals("101:[string1, 6.53, 3001, true, 4001, 5001]", copies.get(1));
+	}
+
 	@Test
 	public void testSimpleQueryWithDeletedRows() throws ParseException {
 		// Create the table
@@ -8,7 +8,8 @@ package org.sagebionetworks.util.csv;
 public interface CSVWriterStream {
 
 	/**
-	 * Write the next row to the stream.
+	 * Write the next row to the stream. The caller may reuse the array once
+	 * this returns, so implementations must not keep it.
 	 * 
 	 * @param nextLine
 	 */
@@ -1,22 +1,23 @@
 package org.sagebionetworks.asynchronous.workers.sqs;
 
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.amazonaws.services.sqs.model.Message;
-import com.google.common.collect.Lists;
 
 /**
  * A basic implementation of the MessageReceiver.
@@ -37,6 +38,26 @@ public class MessageReceiverImpl implements MessageReceiver {
 	 */
 	public static final int MAX_VISIBILITY_TIMEOUT_SECS = 60;
 	
+	/**
+	 * The default number of seconds to wait for messages to arrive when nothing is in flight.
+	 */
+	public static final int DEFAULT_LONG_POLL_WAIT_SECS = 10;
+	
+	/**
+	 * A single trigger stops receiving new messages after this much time and finishes the messages it holds. This
+	 * keeps a busy queue from holding a trigger forever.
+	 */
+	public static final long MAX_RECEIVE_TIME_MS = 60*1000;
+	
+	/**
+	 * The visibility of every message in flight is managed by the receiver so progress reports are not needed.
+	 */
+	private static final WorkerProgress NO_OP_PROGRESS = new WorkerProgress() {
+		@Override
+		public void progressMadeForMessage(Message message) {
+		}
+	};
+	
 	@Autowired
 	QueueServiceDao sqsDao;
 	
@@ -65,6 +86,11 @@ public class MessageReceiverImpl implements MessageReceiver {
      * Providers workers to processes messages.
      */
     private MessageWorkerFactory workerFactory;
+    
+    /**
+     * How long a receive will wait for messages to arrive when nothing is in flight.
+     */
+    private int longPollWaitSec = DEFAULT_LONG_POLL_WAIT_SECS;
 	/**
 	 * This is our thread pool.
 	 */
@@ -162,6 +188,17 @@ public class MessageReceiverImpl implements MessageReceiver {
 		this.workerFactory = workerFactory;
 	}
 	
+	/**
+	 * How long (in seconds) a receive will wait for messages to arrive when nothing is in flight. SQS allows up to 20
+	 * seconds. Zero disables long polling.
+	 * 
+	 * @param longPollWaitSec
+	 */
+	public void setLongPollWaitSec(int longPollWaitSec) {
+		if(longPollWaitSec > QueueServiceDaoImpl.MAX_WAIT_TIME_SECS) throw new IllegalArgumentException("Long poll wait cannot exceed: "+QueueServiceDaoImpl.MAX_WAIT_TIME_SECS+" seconds");
+		this.longPollWaitSec = longPollWaitSec;
+	}
+	
 	@Override
 	public void run(){
 		try {
@@ -173,11 +210,17 @@ public class MessageReceiverImpl implements MessageReceiver {
 
 	@Override
 	public int triggerFired() throws InterruptedException{
+		return triggerFired(longPollWaitSec);
+	}
+
+	/**
+	 * @param waitTimeSec How long a receive will wait for messages when nothing is in flight.
+	 * @return
+	 * @throws InterruptedException
+	 */
+	private int triggerFired(int waitTimeSec) throws InterruptedException{
 		try{
-			long start = System.currentTimeMillis();
-			int count =triggerFiredImpl();
-			long elapse = System.currentTimeMillis()-start;
-			return count;
+			return triggerFiredImpl(waitTimeSec);
 		}catch (Throwable e){
 			log.error("Trigger fired failed", e);
 			// We only want to throw a runtime.
@@ -191,7 +234,18 @@ public class MessageReceiverImpl implements MessageReceiver {
 		}
 	}
 
-	private int triggerFiredImpl() throws InterruptedException {
+	/**
+	 * Keeps up to maxNumberOfWorkerThreads*maxMessagePerWorker messages in flight. Messages waiting for a worker are
+	 * held in a prefetch buffer that is refilled each time a worker finishes, so the threads never sit idle waiting
+	 * for the next trigger. Each message has its own visibility deadline that is extended at its half-life until its
+	 * worker finishes, whether or not the worker reports progress. The messages returned by a worker are deleted as
+	 * soon as that worker finishes.
+	 * 
+	 * @param waitTimeSec
+	 * @return The number of messages received.
+	 * @throws InterruptedException
+	 */
+	private int triggerFiredImpl(int waitTimeSec) throws InterruptedException {
 		// Validate all config.
 		verifyConfig();
 		// Do nothing if this queue is not enabled
@@ -201,100 +255,103 @@ public class MessageReceiverImpl implements MessageReceiver {
 			}
 			return 0;
 		}
-
-		int maxMessages = maxNumberOfWorkerThreads*maxMessagePerWorker;
-		// Receive the maximum number of messages from the queue.
-		List<Message> toBeProcessed = sqsDao.receiveMessages(messageQueue.getQueueUrl(), visibilityTimeoutSec, maxMessages);
-		if (toBeProcessed.size() < 1) {
-			return 0;
-		}
-		// When workers continue to make progress on a message the messages will get added to this queue.
-		final ConcurrentLinkedQueue<Message> progressingMessagesQueue = new ConcurrentLinkedQueue<Message>();
-		WorkerProgress workerProgresss = new WorkerProgress() {
-			@Override
-			public void progressMadeForMessage(Message messag) {
-				// Add this message to the 
-				progressingMessagesQueue.add(messag);
-			}
-		};
-		// start all of the workers
-		List<WorkerData> currentWorkers = startWorkers(toBeProcessed, workerProgresss);
-		// Give the workers a chance to start
-		Thread.sleep(100);
-		// Watch the workers.  As they complete their tasks, delete the messages from the queue.
-		long startTime = System.currentTimeMillis();
-		long visibilityMs = visibilityTimeoutSec*1000;
+		String queueUrl = messageQueue.getQueueUrl();
+		int maxInFlight = maxNumberOfWorkerThreads*maxMessagePerWorker;
+		long visibilityMs = visibilityTimeoutSec*1000L;
 		long visibilityMsHalfLife = visibilityMs/2L;
-		while(currentWorkers.size() > 0){
-			long elapase = System.currentTimeMillis()-startTime;
-			if(elapase > visibilityMsHalfLife){
-				// If the visibility timeout is exceeded the messages will once again become visible
-				// to other works.  We do not want this to happen to messages that are currently bing processed.
-				// Therefore we reset the visibility timeout of all active messages when the half-life is reached.
-				
-				// Build up the set of messages that need to be updated
-				Set<Message> messagesToUpdate = new HashSet<Message>();
-				for(Message message = progressingMessagesQueue.poll(); message != null; message = progressingMessagesQueue.poll()){
-					messagesToUpdate.add(message);
+		// Every message that has been received but not yet finished, by message ID.
+		Map<String, InFlightMessage> inFlight = new HashMap<String, InFlightMessage>();
+		// Received messages waiting for a worker.
+		LinkedList<Message> prefetched = new LinkedList<Message>();
+		CompletionService<List<Message>> completionService = new ExecutorCompletionService<List<Message>>(executors);
+		Map<Future<List<Message>>, WorkerData> currentWorkers = new HashMap<Future<List<Message>>, WorkerData>();
+		int workerId = 0;
+		int count = 0;
+		boolean queueDrained = false;
+		long startTime = System.currentTimeMillis();
+		while(true){
+			// Refill the buffer unless the last receive found the queue empty.
+			boolean receiving = !queueDrained && System.currentTimeMillis()-startTime < MAX_RECEIVE_TIME_MS;
+			int room = maxInFlight - inFlight.size();
+			if(receiving && room > 0){
+				// Only wait on an empty queue when there is nothing else to do.
+				int wait = inFlight.isEmpty() ? waitTimeSec : 0;
+				List<Message> received = sqsDao.receiveMessages(queueUrl, visibilityTimeoutSec, room, wait);
+				long now = System.currentTimeMillis();
+				for(Message message: received){
+					// A message we already hold can be returned again if its visibility lapsed.
+					if(inFlight.containsKey(message.getMessageId())) continue;
+					inFlight.put(message.getMessageId(), new InFlightMessage(message, now+visibilityMs));
+					prefetched.add(message);
+					count++;
 				}
-				sqsDao.resetMessageVisibility(messageQueue.getQueueUrl(), visibilityTimeoutSec, messagesToUpdate);
-				// Reset the clock
-				startTime = System.currentTimeMillis();
+				queueDrained = received.size() < room;
 			}
-			// Once a worker is done we remove it.
-			List<WorkerData> toRemove = new LinkedList<WorkerData>();
+			// Hand the buffered messages to any idle threads.
+			while(currentWorkers.size() < maxNumberOfWorkerThreads && !prefetched.isEmpty()){
+				List<Message> batch = new LinkedList<Message>();
+				while(batch.size() < maxMessagePerWorker && !prefetched.isEmpty()){
+					batch.add(prefetched.poll());
+				}
+				Callable<List<Message>> worker = workerFactory.createWorker(batch, NO_OP_PROGRESS);
+				Future<List<Message>> future = completionService.submit(worker);
+				currentWorkers.put(future, new WorkerData(workerId++, batch, future));
+			}
+			if(currentWorkers.isEmpty()){
+				if(queueDrained || !receiving){
+					// Nothing left to do.
+					break;
+				}
+				// The last receive was full so there could be more.
+				continue;
+			}
+			// Wait for a worker to finish or for the next message to reach its half-life.
+			long nextHalfLife = Long.MAX_VALUE;
+			for(InFlightMessage message: inFlight.values()){
+				nextHalfLife = Math.min(nextHalfLife, message.visibleOn-visibilityMsHalfLife);
+			}
+			long waitMs = Math.max(0L, nextHalfLife-System.currentTimeMillis());
+			Future<List<Message>> done = completionService.poll(waitMs, TimeUnit.MILLISECONDS);
 			// Used to keep track of messages that need to be deleted.
 			List<Message> messagesToDelete = new LinkedList<Message>();
-			for(WorkerData data: currentWorkers){
-				if(data.getFuture().isDone()){
-					try {
-						List<Message> messages = data.getFuture().get();
-						// all returned messages are to be deleted.
-						messagesToDelete.addAll(messages);
-					} catch (InterruptedException e) {
-						// We cannot remove this message from the queue.
-						log.error("Failed to process a SQS message:", e);
-					} catch (ExecutionException e) {
-						// We cannot remove this message from the queue.
-						log.error("Failed to process a SQS message:", e);
-					}
-					// done with this future
-					toRemove.add(data);
+			while(done != null){
+				WorkerData data = currentWorkers.remove(done);
+				try {
+					// all returned messages are to be deleted.
+					messagesToDelete.addAll(done.get());
+				} catch (ExecutionException e) {
+					// We cannot remove this message from the queue.
+					log.error("Failed to process a SQS message:", e);
 				}
+				// Messages that were not returned will become visible again when their timeout expires.
+				for(Message message: data.getMessagesPassedToWorker()){
+					inFlight.remove(message.getMessageId());
+				}
+				// There is room for more messages.
+				queueDrained = false;
+				done = completionService.poll();
 			}
-			// Batch delete all of the completed message.
+			// Delete the completed messages right away.
 			if (messagesToDelete.size() > 0) {
-				sqsDao.deleteMessages(messageQueue.getQueueUrl(), messagesToDelete);
+				sqsDao.deleteMessages(queueUrl, messagesToDelete);
+			}
+			// If the visibility timeout is exceeded the messages will once again become visible
+			// to other works.  We do not want this to happen to messages that are still in flight.
+			// Therefore we reset the visibility timeout of each message that reaches its half-life.
+			long now = System.currentTimeMillis();
+			List<Message> messagesToUpdate = new LinkedList<Message>();
+			for(InFlightMessage message: inFlight.values()){
+				if(message.visibleOn-now <= visibilityMsHalfLife){
+					messagesToUpdate.add(message.message);
+					message.visibleOn = now+visibilityMs;
+				}
+			}
+			if(messagesToUpdate.size() > 0){
+				sqsDao.resetMessageVisibility(queueUrl, visibilityTimeoutSec, messagesToUpdate);
 			}
-			// remove all that we can
-			currentWorkers.removeAll(toRemove);
-			// Give other threads a chance to work
-			Thread.sleep(100);
 		}
 		// Return the number of messages that were on the queue.
-		return toBeProcessed.size();
-	}
-
-	/**
-	 * @param toBeProcessed
-	 * @param workerProgresss
-	 * @return
-	 */
-	public List<WorkerData> startWorkers(List<Message> toBeProcessed,
-			WorkerProgress workerProgresss) {
-		List<WorkerData> currentWorkers = new LinkedList<WorkerData>();
-		// Batch for each worker.
-		List<List<Message>> batches = Lists.partition(toBeProcessed, maxMessagePerWorker);
-		int workerId = 0;
-		for(List<Message> batch: batches){
-			Callable<List<Message>> worker = workerFactory.createWorker(batch, workerProgresss);
-			// Fire up the worker
-			Future<List<Message>> future = executors.submit(worker);
-			WorkerData data = new WorkerData(workerId++, batch, future);
-			// Add the worker to the list.
-			currentWorkers.add(data);
-		}
-		return currentWorkers;
+		return count;
 	}
 	
 	/**
@@ -316,7 +373,8 @@ public class MessageReceiverImpl implements MessageReceiver {
 		long start = System.currentTimeMillis();
 		int count = 0;
 		do{
-			count = triggerFired();
+			// No need to wait once the queue is empty.
+			count = triggerFired(0);
 			log.debug("Emptying the file message queue, there were at least: "+count+" messages on the queue");
 			Thread.yield();
 			long elapse = System.currentTimeMillis()-start;
@@ -325,6 +383,22 @@ public class MessageReceiverImpl implements MessageReceiver {
 		}while(count > 0);
 	}
 	
+	/**
+	 * A message that has been received and is waiting for or being processed by a worker.
+	 */
+	private static class InFlightMessage {
+		Message message;
+		/**
+		 * When this message will become visible to other receivers.
+		 */
+		long visibleOn;
+
+		public InFlightMessage(Message message, long visibleOn) {
+			this.message = message;
+			this.visibleOn = visibleOn;
+		}
+	}
+	
 	/**
 	 * Captures data about a single worker.
 	 * @author John
@@ -23,6 +23,18 @@ public interface QueueServiceDao {
 	List<Message> receiveMessages(String queueUrl,
 			int visibilityTimeoutSec, int maxMessages);
 
+	/**
+	 * Receive messages from a queue using long polling.
+	 * @param queueUrl The URL of the queue
+	 * @param visibilityTimeoutSec The visibility timeout of each messages (sec) pull from the queue.
+	 * @param maxMessages The maximum number of messages that should be pulled from the queue.
+	 * @param waitTimeSec When the queue is empty, the call will wait up to this many seconds (max 20) for a message to arrive
+	 * before returning an empty list. Zero means return immediately.
+	 * @return
+	 */
+	List<Message> receiveMessages(String queueUrl,
+			int visibilityTimeoutSec, int maxMessages, int waitTimeSec);
+
 	/**
 	 * Delete the batch of messages.
 	 * @param messagesToDelete
@@ -29,6 +29,10 @@ public class QueueServiceDaoImpl implements QueueServiceDao {
 	@Autowired
 	AmazonSQSClient amazonSQSClient;
 	private int maxSQSRequestSize = 10;
+	/**
+	 * The maximum long polling wait time allowed by SQS.
+	 */
+	public static final int MAX_WAIT_TIME_SECS = 20;
 	
 	/**
 	 * Simple queue services puts limits on the batch size of all opperations.
@@ -42,11 +46,23 @@ public class QueueServiceDaoImpl implements QueueServiceDao {
 	@Override
 	public List<Message> receiveMessages(String queueUrl,
 			int visibilityTimeoutSec, int maxMessages) {
+		return receiveMessages(queueUrl, visibilityTimeoutSec, maxMessages, 0);
+	}
+
+	@Override
+	public List<Message> receiveMessages(String queueUrl,
+			int visibilityTimeoutSec, int maxMessages, int waitTimeSec) {
+		if(waitTimeSec > MAX_WAIT_TIME_SECS) throw new IllegalArgumentException("Wait time cannot exceed: "+MAX_WAIT_TIME_SECS+" seconds");
 		List<Message> results = new LinkedList<Message>();
 		int remaining = maxMessages;
 		while(remaining > 0){
 			int toFetch = Math.min(maxSQSRequestSize, remaining);
-			ReceiveMessageResult rmr = amazonSQSClient.receiveMessage(new ReceiveMessageRequest().withQueueUrl(queueUrl).withVisibilityTimeout(visibilityTimeoutSec).withMaxNumberOfMessages(toFetch));
+			ReceiveMessageRequest request = new ReceiveMessageRequest().withQueueUrl(queueUrl).withVisibilityTimeout(visibilityTimeoutSec).withMaxNumberOfMessages(toFetch);
+			if(waitTimeSec > 0 && results.isEmpty()){
+				// Only the first request waits. Once we have messages the rest of the batch is fetched without waiting.
+				request.setWaitTimeSeconds(waitTimeSec);
+			}
+			ReceiveMessageResult rmr = amazonSQSClient.receiveMessage(request);
 			if(rmr.getMessages() != null){
 				// Add all of the messages to the results.
 				results.addAll(rmr.getMessages());
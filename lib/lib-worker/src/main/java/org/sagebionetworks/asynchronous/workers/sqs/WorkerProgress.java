@@ -13,11 +13,11 @@ public interface WorkerProgress {
 	/**
 	 * Report that progress has been made on a message.
 	 * 
-	 * Any worker that can run longer than the visibility timeout of a message, must call this method regularly
-	 * to ensure the message is not returned to the queue.  The parent process will extend the visibility timeout
-	 * of the message if needed when this method is called.
+	 * The MessageReceiverImpl extends the visibility timeout of every message until its worker finishes, so
+	 * workers it runs do not need to call this method. Other callers of a worker can use it to keep a message
+	 * from being returned to the queue.
 	 * 
-	 * A worker can keep a message invisible for up to nine hours as long a progress continues to be made.
+	 * A message can be kept invisible for up to nine hours.
 	 * 
 	 * 
 	 * @param messag
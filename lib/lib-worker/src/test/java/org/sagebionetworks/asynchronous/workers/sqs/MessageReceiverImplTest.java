@@ -1,19 +1,25 @@
 package org.sagebionetworks.asynchronous.workers.sqs;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
 import java.util.Stack;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -57,7 +63,7 @@ public class MessageReceiverImplTest {
 		}
 		// Setup the messages
 		messageQueue = new LinkedList<Message>(messageList);
-		when(mockSQSDao.receiveMessages(any(String.class), anyInt(), anyInt())).thenAnswer(new Answer<List<Message>>() {
+		when(mockSQSDao.receiveMessages(any(String.class), anyInt(), anyInt(), anyInt())).thenAnswer(new Answer<List<Message>>() {
 
 			@Override
 			public List<Message> answer(InvocationOnMock invocation)
@@ -106,7 +112,7 @@ public class MessageReceiverImplTest {
 		
 		// now trigger
 		messageReveiver.triggerFired();
-		verify(mockSQSDao, times(1)).deleteMessages(queueUrl, messageList);
+		assertEquals(new HashSet<Message>(messageList), getDeletedMessages());
 	}
 	@Test
 	public void testTrigerFiredOneFailureMulitipleSuccess() throws InterruptedException{
@@ -128,8 +134,8 @@ public class MessageReceiverImplTest {
 		for(int i=0; i<maxMessagePerWorker; i++){
 			deleteRequest.remove(0);
 		}
-		// Verify that all were deleted
-		verify(mockSQSDao, times(1)).deleteMessages(queueUrl, deleteRequest);
+		// Verify that all others were deleted
+		assertEquals(new HashSet<Message>(deleteRequest), getDeletedMessages());
 	}
 	
 	@Test
@@ -147,13 +153,9 @@ public class MessageReceiverImplTest {
 		
 		// now trigger
 		messageReveiver.triggerFired();
-		List<Message> deleteRequest = new LinkedList<Message>(messageList);
-		// This time the first batch of messages should not get delete because of the timeout
-		for(int i=0; i<maxMessagePerWorker; i++){
-			deleteRequest.remove(0);
-		}
-		// Verify that all were deleted
-		verify(mockSQSDao, times(1)).deleteMessages(queueUrl, deleteRequest);
+		// The slow worker's messages are kept invisible even though it did not report progress, so all are deleted.
+		assertEquals(new HashSet<Message>(messageList), getDeletedMessages());
+		verify(mockSQSDao, atLeastOnce()).resetMessageVisibility(anyString(), anyInt(), any(List.class));
 	}
 	
 	@Test
@@ -214,4 +216,52 @@ public class MessageReceiverImplTest {
 		verify(mockSQSDao, times(1)).resetMessageVisibility(anyString(), anyInt(), any(List.class));
 	}
 
+	@Test
+	public void testRefillAsWorkersFinish() throws InterruptedException{
+		// Add more messages than can be in flight at one time.
+		for(int i=0; i<maxMessagePerWorker*2; i++){
+			Message message = new Message().withMessageId("extra"+i).withReceiptHandle("handle2"+i);
+			messageList.add(message);
+			messageQueue.add(message);
+		}
+		Stack<StubWorker> workerStack = new Stack<StubWorker>();
+		for(int i=0; i<maxNumberOfWorkerThreads*2; i++){
+			workerStack.push(new StubWorker(100, 0, null));
+		}
+		StubWorkerFactory factory = new StubWorkerFactory(workerStack);
+		messageReveiver.setWorkerFactory(factory);
+		// A single trigger should process everything as room frees up.
+		int count = messageReveiver.triggerFired();
+		assertEquals(messageList.size(), count);
+		assertEquals(new HashSet<Message>(messageList), getDeletedMessages());
+	}
+	
+	@Test
+	public void testLongPollOnlyWhenIdle() throws InterruptedException{
+		messageReveiver.setLongPollWaitSec(7);
+		Stack<StubWorker> workerStack = new Stack<StubWorker>();
+		for(int i=0; i<maxNumberOfWorkerThreads; i++){
+			workerStack.push(new StubWorker(100, 0, null));
+		}
+		messageReveiver.setWorkerFactory(new StubWorkerFactory(workerStack));
+		messageReveiver.triggerFired();
+		// The first receive waits and so does the last once every message is done.
+		verify(mockSQSDao, times(2)).receiveMessages(anyString(), anyInt(), anyInt(), eq(7));
+		verify(mockSQSDao, Mockito.never()).receiveMessages(anyString(), anyInt(), anyInt());
+	}
+	
+	/**
+	 * Gather all of the messages passed to delete.
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<Message> getDeletedMessages(){
+		ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+		verify(mockSQSDao, atLeastOnce()).deleteMessages(eq(queueUrl), captor.capture());
+		Set<Message> deleted = new HashSet<Message>();
+		for(List<Message> batch: captor.getAllValues()){
+			deleted.addAll(batch);
+		}
+		return deleted;
+	}
+
 }
@@ -81,6 +81,23 @@ public class QueueServiceDaoTest {
 		verify(mockSQSClient, times(1)).receiveMessage(new ReceiveMessageRequest(url).withVisibilityTimeout(visibiltyTimeout).withMaxNumberOfMessages(1));
 	}
 
+	@Test
+	public void testReceiveMessagesLongPoll(){
+		String url = "url";
+		int visibiltyTimeout = 100;
+		List<Message> list = queueServiceDao.receiveMessages(url, visibiltyTimeout, 5, 20);
+		assertEquals(5, list.size());
+		// Only the first request of the batch should wait.
+		verify(mockSQSClient, times(1)).receiveMessage(new ReceiveMessageRequest(url).withVisibilityTimeout(visibiltyTimeout).withMaxNumberOfMessages(2).withWaitTimeSeconds(20));
+		verify(mockSQSClient, times(1)).receiveMessage(new ReceiveMessageRequest(url).withVisibilityTimeout(visibiltyTimeout).withMaxNumberOfMessages(2));
+		verify(mockSQSClient, times(1)).receiveMessage(new ReceiveMessageRequest(url).withVisibilityTimeout(visibiltyTimeout).withMaxNumberOfMessages(1));
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testReceiveMessagesWaitTooLong(){
+		queueServiceDao.receiveMessages("url", 100, 5, QueueServiceDaoImpl.MAX_WAIT_TIME_SECS+1);
+	}
+
 	@Test
 	public void testReceiveMessagesBatchAll(){
 		String url = "url";
@@ -29,9 +29,17 @@ public class Consumer {
 	static private Logger log = LogManager.getLogger(Consumer.class);
 	
 	public static final int MAX_BATCH_SIZE = 20;
+	/**
+	 * Percentiles of aggregated values larger than this (one hour in MS) are
+	 * not accurate.
+	 */
+	public static final long HIGHEST_TRACKABLE_VALUE = 60 * 60 * 1000;
 
 	// We us an atomic reference to the list instead of using synchronization.
 	private ConcurrentLinkedQueue<ProfileData> listProfileData = new ConcurrentLinkedQueue<ProfileData>();
+	
+	// Values that are rolled up per minute before they are sent.
+	private MetricAggregator aggregator = new MetricAggregator(HIGHEST_TRACKABLE_VALUE);
 
 	// need a cloudWatch client
 	@Autowired
@@ -63,6 +71,22 @@ public class Consumer {
 	public void addProfileData(ProfileData addToList) {
 		listProfileData.add(addToList);
 	}
+	
+	/**
+	 * Add a value that will be rolled up with all other values of the same
+	 * metric in the same minute. Only the count, sum, min, max and percentiles
+	 * of each minute are sent to CloudWatch. Use this instead of
+	 * {@link #addProfileData(ProfileData)} for high volume metrics such as
+	 * request latency.
+	 * 
+	 * @param namespace
+	 * @param name
+	 * @param unit
+	 * @param value
+	 */
+	public void addAggregatedValue(String namespace, String name, String unit, long value) {
+		aggregator.record(namespace, name, unit, value, System.currentTimeMillis());
+	}
 
 	/**
 	 * removes ProfileData from synchronized list and sends to CloudWatch.
@@ -70,9 +94,22 @@ public class Consumer {
 	 * @return List<String> where each string represents "put" success/failure
 	 */
 	public List<String> executeCloudWatchPut() {
+		return executeCloudWatchPut(System.currentTimeMillis());
+	}
+	
+	/**
+	 * Send all ProfileData and all aggregated values from minutes that ended
+	 * before the passed time.
+	 * 
+	 * @param nowMS
+	 * @return
+	 */
+	List<String> executeCloudWatchPut(long nowMS) {
 		try {
 			// collect the ProfileData from synchronized list
 			List<ProfileData> nextBunch = pollListFromQueue();
+			// and the roll up of each aggregated metric
+			nextBunch.addAll(aggregator.drain(nowMS));
 
 			//here I have a list of potentially different namespaces
 			//convert to a map (key is namespace, value is list of metricDatums)
@@ -126,6 +163,7 @@ public class Consumer {
 	// for testing only
 	public void clearProfileData() {
 		this.listProfileData.clear();
+		this.aggregator = new MetricAggregator(HIGHEST_TRACKABLE_VALUE);
 	}
 
 	/**
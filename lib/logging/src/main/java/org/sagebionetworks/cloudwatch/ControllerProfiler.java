@@ -17,6 +17,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 public class ControllerProfiler {
 	//constant for nanosecond conversion to milliseconds
 	private static final long NANOSECOND_PER_MILLISECOND = 1000000L;
+	private static final String UNIT_MILLISECONDS = "Milliseconds";
 
 	//a singleton consumer from the Spring settings file 
 	@Autowired
@@ -73,10 +74,9 @@ public class ControllerProfiler {
 		long timeMS = (end - start) /NANOSECOND_PER_MILLISECOND;
 
 		final String metricName = signature.getName() + "-" + StackConfiguration.getStackInstance();
-		//use our latency time to make a MetricDatum, and
-		//add to synchronized list
-		ProfileData profileData = makeProfileDataDTO(declaring.getName(), metricName, timeMS);
-		consumer.addProfileData(profileData);
+		//roll the latency into the histogram for this method and minute
+		//rather than sending a MetricDatum per call
+		consumer.addAggregatedValue(declaring.getName(), metricName, UNIT_MILLISECONDS, timeMS);
 		
 		//in configuration file log is set to ERROR to turn off and
 		//DEBUG to turn on
@@ -104,7 +104,7 @@ public class ControllerProfiler {
 		nextPD.setName(name);
 		if (latency<0L) throw new IllegalArgumentException("latency cannot be negative");
 		nextPD.setValue(new Double(latency));
-		nextPD.setUnit("Milliseconds");
+		nextPD.setUnit(UNIT_MILLISECONDS);
 		nextPD.setTimestamp(new Date());
 		
 		return nextPD;
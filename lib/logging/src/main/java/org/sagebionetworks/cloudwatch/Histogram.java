@@ -0,0 +1,139 @@
+package org.sagebionetworks.cloudwatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative long values with log-linear buckets.
+ * Values below {@link #SUB_BUCKET_COUNT} are counted exactly. Larger values
+ * share a bucket with others that have the same leading bits, so percentiles
+ * are accurate to within about 1.6%. The count, sum, min and max are exact.
+ * <p>
+ * Recording a value is a handful of atomic operations and never allocates, so
+ * this can be called on every request.
+ *
+ * @author John
+ *
+ */
+public class Histogram {
+
+	/**
+	 * Values below this are counted exactly.
+	 */
+	public static final int SUB_BUCKET_COUNT = 128;
+	private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+	private static final int SUB_BUCKET_HALF_BITS = Integer.numberOfTrailingZeros(SUB_BUCKET_HALF_COUNT);
+
+	private final long highestTrackableValue;
+	private final AtomicLongArray counts;
+	private final AtomicLong count = new AtomicLong(0);
+	private final AtomicLong sum = new AtomicLong(0);
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * @param highestTrackableValue
+	 *            Values larger than this are counted in the last bucket. The
+	 *            max and sum still use the actual value.
+	 */
+	public Histogram(long highestTrackableValue) {
+		if (highestTrackableValue < 1) throw new IllegalArgumentException("highestTrackableValue must be greater than zero");
+		this.highestTrackableValue = highestTrackableValue;
+		this.counts = new AtomicLongArray(bucketIndex(highestTrackableValue) + 1);
+	}
+
+	/**
+	 * Record a single value.
+	 *
+	 * @param value
+	 */
+	public void record(long value) {
+		if (value < 0) throw new IllegalArgumentException("Value cannot be negative");
+		counts.incrementAndGet(bucketIndex(Math.min(value, highestTrackableValue)));
+		sum.addAndGet(value);
+		count.incrementAndGet();
+		long current = min.get();
+		while (value < current && !min.compareAndSet(current, value)) {
+			current = min.get();
+		}
+		current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	/**
+	 * @return zero if nothing was recorded.
+	 */
+	public long getMin() {
+		return count.get() == 0 ? 0 : min.get();
+	}
+
+	/**
+	 * @return zero if nothing was recorded.
+	 */
+	public long getMax() {
+		return count.get() == 0 ? 0 : max.get();
+	}
+
+	/**
+	 * The value that the given percentage of the recorded values are less than
+	 * or equal to. This is the largest value in the matching bucket, capped by
+	 * the max recorded value.
+	 *
+	 * @param percentile
+	 *            Between 0 and 100, for example 99.9
+	 * @return zero if nothing was recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("Percentile must be between 0 and 100");
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			total += counts.get(i);
+		}
+		if (total == 0) return 0;
+		long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.min(highestValueInBucket(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * The bucket that counts the given value.
+	 *
+	 * @param value
+	 * @return
+	 */
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) return (int) value;
+		// Keep the top bits of the value and drop the rest.
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_HALF_BITS;
+		return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+	}
+
+	/**
+	 * The largest value counted by the given bucket.
+	 *
+	 * @param index
+	 * @return
+	 */
+	static long highestValueInBucket(int index) {
+		if (index < SUB_BUCKET_COUNT) return index;
+		int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+		long lowest = ((long) (index - shift * SUB_BUCKET_HALF_COUNT)) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
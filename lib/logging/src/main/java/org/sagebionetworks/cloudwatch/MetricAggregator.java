@@ -0,0 +1,169 @@
+package org.sagebionetworks.cloudwatch;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Rolls up individual values into one {@link Histogram} per metric per minute,
+ * so each metric is sent to CloudWatch as a single statistic set per minute
+ * rather than as one datum per value.
+ * <p>
+ * For each metric and minute, {@link #drain(long)} produces a ProfileData with
+ * the count, sum, min and max. It also produces one ProfileData for each of
+ * the {@link #PERCENTILES}, named with the metric name and a percentile
+ * suffix, for example "getEntity-prod-p99".
+ *
+ * @author John
+ *
+ */
+public class MetricAggregator {
+
+	public static final long MINUTE_MS = 60 * 1000;
+	/**
+	 * The percentiles published for each metric.
+	 */
+	public static final double[] PERCENTILES = new double[] { 50, 99, 99.9 };
+	public static final String[] PERCENTILE_SUFFIXES = new String[] { "-p50", "-p99", "-p99.9" };
+
+	private final long highestTrackableValue;
+	private final ConcurrentMap<MetricKey, Histogram> histograms = new ConcurrentHashMap<MetricKey, Histogram>();
+
+	/**
+	 * @param highestTrackableValue
+	 *            Percentiles of values larger than this are not accurate.
+	 */
+	public MetricAggregator(long highestTrackableValue) {
+		this.highestTrackableValue = highestTrackableValue;
+	}
+
+	/**
+	 * Record a value for a metric.
+	 *
+	 * @param namespace
+	 * @param name
+	 * @param unit
+	 *            Must be a CloudWatch StandardUnit, for example "Milliseconds".
+	 * @param value
+	 * @param timestampMS
+	 *            Determines the minute the value is counted in.
+	 */
+	public void record(String namespace, String name, String unit, long value, long timestampMS) {
+		if (namespace == null) throw new IllegalArgumentException("Namespace cannot be null");
+		if (name == null) throw new IllegalArgumentException("Name cannot be null");
+		if (unit == null) throw new IllegalArgumentException("Unit cannot be null");
+		MetricKey key = new MetricKey(namespace, name, unit, timestampMS / MINUTE_MS);
+		Histogram histogram = histograms.get(key);
+		if (histogram == null) {
+			Histogram newHistogram = new Histogram(highestTrackableValue);
+			histogram = histograms.putIfAbsent(key, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		histogram.record(value);
+	}
+
+	/**
+	 * Remove and roll up all metrics for minutes that ended before the passed
+	 * time. The current minute is left in place since it is still being
+	 * recorded.
+	 *
+	 * @param nowMS
+	 * @return
+	 */
+	public List<ProfileData> drain(long nowMS) {
+		long currentMinute = nowMS / MINUTE_MS;
+		List<ProfileData> results = new ArrayList<ProfileData>();
+		Iterator<Map.Entry<MetricKey, Histogram>> it = histograms.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<MetricKey, Histogram> entry = it.next();
+			if (entry.getKey().minute < currentMinute) {
+				it.remove();
+				rollUp(entry.getKey(), entry.getValue(), results);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * The number of metric minutes waiting to be drained.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return histograms.size();
+	}
+
+	private static void rollUp(MetricKey key, Histogram histogram, List<ProfileData> results) {
+		if (histogram.getCount() < 1) return;
+		Date timestamp = new Date(key.minute * MINUTE_MS);
+		MetricStats stats = new MetricStats();
+		stats.setCount((double) histogram.getCount());
+		stats.setSum((double) histogram.getSum());
+		stats.setMinimum((double) histogram.getMin());
+		stats.setMaximum((double) histogram.getMax());
+		ProfileData summary = createProfileData(key, key.name, timestamp);
+		summary.setMetricStats(stats);
+		results.add(summary);
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			ProfileData percentile = createProfileData(key, key.name + PERCENTILE_SUFFIXES[i], timestamp);
+			percentile.setValue((double) histogram.getValueAtPercentile(PERCENTILES[i]));
+			results.add(percentile);
+		}
+	}
+
+	private static ProfileData createProfileData(MetricKey key, String name, Date timestamp) {
+		ProfileData pd = new ProfileData();
+		pd.setNamespace(key.namespace);
+		pd.setName(name);
+		pd.setUnit(key.unit);
+		pd.setTimestamp(timestamp);
+		return pd;
+	}
+
+	/**
+	 * Identifies a single metric for a single minute.
+	 */
+	private static class MetricKey {
+		final String namespace;
+		final String name;
+		final String unit;
+		final long minute;
+
+		MetricKey(String namespace, String name, String unit, long minute) {
+			this.namespace = namespace;
+			this.name = name;
+			this.unit = unit;
+			this.minute = minute;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + (int) (minute ^ (minute >>> 32));
+			result = prime * result + name.hashCode();
+			result = prime * result + namespace.hashCode();
+			result = prime * result + unit.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			MetricKey other = (MetricKey) obj;
+			return minute == other.minute && name.equals(other.name)
+					&& namespace.equals(other.namespace) && unit.equals(other.unit);
+		}
+	}
+}
@@ -138,6 +138,39 @@ public class ConsumerTest {
 		verify(mockClient, times(1)).putMetricData(batch1);
 	}
 	
+	@Test
+	public void testAggregatedValues(){
+		// A local stand-in for CloudWatch that keeps each request.
+		final List<PutMetricDataRequest> sink = new ArrayList<PutMetricDataRequest>();
+		Consumer consumer = new Consumer(mockClient){
+			@Override
+			protected void sendMetrics(PutMetricDataRequest listForCW, AmazonCloudWatchClient cloudWatchClient) {
+				sink.add(listForCW);
+			}
+		};
+		int calls = 10000;
+		for(int i=0; i<calls; i++){
+			consumer.addAggregatedValue("namespace0", "getEntity", "Milliseconds", i%200);
+			consumer.addAggregatedValue("namespace0", "createEntity", "Milliseconds", i%50);
+		}
+		// Nothing is sent while the minute is still open
+		consumer.executeCloudWatchPut(System.currentTimeMillis() - MetricAggregator.MINUTE_MS);
+		assertEquals(0, sink.size());
+		consumer.executeCloudWatchPut(System.currentTimeMillis() + MetricAggregator.MINUTE_MS);
+		// Twenty thousand calls are rolled up into a single request.
+		assertEquals(1, sink.size());
+		PutMetricDataRequest request = sink.get(0);
+		assertEquals("namespace0", request.getNamespace());
+		assertEquals(2*(1+MetricAggregator.PERCENTILES.length), request.getMetricData().size());
+		double totalCount = 0;
+		for(MetricDatum datum: request.getMetricData()){
+			if(datum.getStatisticValues() != null){
+				totalCount += datum.getStatisticValues().getSampleCount();
+			}
+		}
+		assertEquals(2.0*calls, totalCount, 0.0);
+	}
+	
 	/**
 	 * Helper used to build up expected PutMetricDataRequest
 	 * @param list
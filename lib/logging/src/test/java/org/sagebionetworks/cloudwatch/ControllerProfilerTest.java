@@ -3,11 +3,19 @@ package org.sagebionetworks.cloudwatch;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.util.Date;
 
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -136,4 +144,21 @@ public class ControllerProfilerTest {
 		
 		//verify(mockConsumer, atLeastOnce()).addMetric((MetricDatum)anyObject());
 	}
+	
+	/**
+	 * Each call should be aggregated rather than sent as its own ProfileData.
+	 */
+	@Test
+	public void testDoBasicProfilingAggregates() throws Throwable {
+		ProceedingJoinPoint mockPJP = mock(ProceedingJoinPoint.class);
+		Signature mockSignature = mock(Signature.class);
+		when(mockPJP.getSignature()).thenReturn(mockSignature);
+		when(mockSignature.getDeclaringType()).thenReturn(ControllerProfilerTest.class);
+		when(mockSignature.getName()).thenReturn("getEntity");
+		when(mockPJP.proceed()).thenReturn("result");
+		controllerProfiler.setShouldProfile(true);
+		assertEquals("result", controllerProfiler.doBasicProfiling(mockPJP));
+		verify(mockConsumer).addAggregatedValue(eq(ControllerProfilerTest.class.getName()), anyString(), eq("Milliseconds"), anyLong());
+		verify(mockConsumer, never()).addProfileData(any(ProfileData.class));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package org.sagebionetworks.cloudwatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+	@Test
+	public void testEmpty() {
+		Histogram histogram = new Histogram(1000);
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+
+	@Test
+	public void testExactBelowSubBucketCount() {
+		Histogram histogram = new Histogram(1000);
+		for (long i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(5050, histogram.getSum());
+		assertEquals(1, histogram.getMin());
+		assertEquals(100, histogram.getMax());
+		assertEquals(50, histogram.getValueAtPercentile(50));
+		assertEquals(99, histogram.getValueAtPercentile(99));
+		assertEquals(100, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testLargeValuesWithinPrecision() {
+		Histogram histogram = new Histogram(60 * 60 * 1000);
+		for (long i = 1; i <= 100000; i++) {
+			histogram.record(i);
+		}
+		assertWithin(50000, histogram.getValueAtPercentile(50));
+		assertWithin(99000, histogram.getValueAtPercentile(99));
+		assertWithin(99900, histogram.getValueAtPercentile(99.9));
+		assertEquals(100000, histogram.getMax());
+	}
+
+	@Test
+	public void testAboveHighestTrackable() {
+		Histogram histogram = new Histogram(1000);
+		histogram.record(5000);
+		// The max and sum use the real value.
+		assertEquals(5000, histogram.getMax());
+		assertEquals(5000, histogram.getSum());
+		assertTrue(histogram.getValueAtPercentile(100) >= 1000);
+	}
+
+	@Test
+	public void testBucketsContiguous() {
+		int last = -1;
+		for (long value = 0; value < 100000; value++) {
+			int index = Histogram.bucketIndex(value);
+			assertTrue(index == last || index == last + 1);
+			assertTrue(value <= Histogram.highestValueInBucket(index));
+			last = index;
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegative() {
+		new Histogram(1000).record(-1);
+	}
+
+	@Test
+	public void testConcurrentRecord() throws Exception {
+		final Histogram histogram = new Histogram(1000);
+		final int threads = 4;
+		final int perThread = 10000;
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perThread; i++) {
+						histogram.record(i % 500);
+					}
+					done.countDown();
+				}
+			}).start();
+		}
+		done.await();
+		assertEquals(threads * perThread, histogram.getCount());
+		assertEquals(0, histogram.getMin());
+		assertEquals(499, histogram.getMax());
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		double error = Math.abs(expected - actual) / (double) expected;
+		assertTrue("Expected " + expected + " but was " + actual, error < 0.02);
+	}
+}
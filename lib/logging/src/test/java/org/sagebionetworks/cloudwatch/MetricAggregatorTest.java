@@ -0,0 +1,75 @@
+package org.sagebionetworks.cloudwatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricAggregatorTest {
+
+	MetricAggregator aggregator;
+	long minuteStart;
+
+	@Before
+	public void before() {
+		aggregator = new MetricAggregator(Consumer.HIGHEST_TRACKABLE_VALUE);
+		minuteStart = 1000 * MetricAggregator.MINUTE_MS;
+	}
+
+	@Test
+	public void testRollUp() {
+		for (int i = 1; i <= 1000; i++) {
+			aggregator.record("namespace", "getEntity", "Milliseconds", i % 100, minuteStart + i);
+		}
+		aggregator.record("namespace", "getEntity", "Milliseconds", 5000, minuteStart + 1);
+		aggregator.record("namespace", "createEntity", "Milliseconds", 7, minuteStart + 1);
+		// Nothing is drained until the minute is over.
+		assertEquals(0, aggregator.drain(minuteStart + 100).size());
+		List<ProfileData> results = aggregator.drain(minuteStart + MetricAggregator.MINUTE_MS);
+		// One summary and three percentiles for each metric.
+		assertEquals(8, results.size());
+		Map<String, ProfileData> byName = byName(results);
+		ProfileData summary = byName.get("getEntity");
+		assertNotNull(summary);
+		assertEquals("namespace", summary.getNamespace());
+		assertEquals("Milliseconds", summary.getUnit());
+		assertEquals(minuteStart, summary.getTimestamp().getTime());
+		assertNull(summary.getValue());
+		assertEquals(1001.0, summary.getMetricStats().getCount(), 0.0);
+		assertEquals(0.0, summary.getMetricStats().getMinimum(), 0.0);
+		assertEquals(5000.0, summary.getMetricStats().getMaximum(), 0.0);
+		assertEquals(49500.0 + 5000.0, summary.getMetricStats().getSum(), 0.0);
+		assertEquals(50.0, byName.get("getEntity-p50").getValue(), 1.0);
+		assertEquals(99.0, byName.get("getEntity-p99").getValue(), 1.0);
+		assertEquals(99.0, byName.get("getEntity-p99.9").getValue(), 1.0);
+		assertEquals(7.0, byName.get("createEntity-p99.9").getValue(), 0.0);
+		// Everything was drained.
+		assertEquals(0, aggregator.size());
+		assertEquals(0, aggregator.drain(minuteStart + 10 * MetricAggregator.MINUTE_MS).size());
+	}
+
+	@Test
+	public void testEachMinuteSeparate() {
+		aggregator.record("namespace", "name", "Milliseconds", 1, minuteStart);
+		aggregator.record("namespace", "name", "Milliseconds", 2, minuteStart + MetricAggregator.MINUTE_MS);
+		aggregator.record("namespace", "name", "Milliseconds", 3, minuteStart + 2 * MetricAggregator.MINUTE_MS);
+		// The current minute stays.
+		List<ProfileData> results = aggregator.drain(minuteStart + 2 * MetricAggregator.MINUTE_MS);
+		assertEquals(8, results.size());
+		assertEquals(1, aggregator.size());
+	}
+
+	private static Map<String, ProfileData> byName(List<ProfileData> list) {
+		Map<String, ProfileData> map = new HashMap<String, ProfileData>();
+		for (ProfileData pd : list) {
+			map.put(pd.getName(), pd);
+		}
+		return map;
+	}
+}
@@ -1,5 +1,7 @@
 package org.sagebionetworks.repo.model;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 import org.sagebionetworks.repo.web.NotFoundException;
@@ -11,6 +13,17 @@ public interface AccessControlListDAO  {
 	 * @throws DatastoreException 
 	 */
 	public boolean canAccess(Set<Long> groups, String resourceId, ObjectType resourceType, ACCESS_TYPE accessType) throws DatastoreException;
+	
+	/**
+	 * Load the benefactor, owner and benefactor ACL entries for the passed
+	 * groups of many entities with a single query.
+	 * 
+	 * @param entityIds
+	 * @param groups Only ACL entries for these groups are loaded.
+	 * @return The access of each entity that exists, keyed by entity ID.
+	 * @throws DatastoreException
+	 */
+	public Map<Long, EntityAccess> getEntityAccess(Collection<Long> entityIds, Set<Long> groups) throws DatastoreException;
 
 	/**
 	 * Create a new ACL
@@ -0,0 +1,95 @@
+package org.sagebionetworks.repo.model;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything needed to evaluate the permissions of an entity: its benefactor,
+ * its owner, whether its parent is the root, and the access types the
+ * benefactor's ACL grants to each of a set of groups.
+ *
+ * @author John
+ *
+ */
+public class EntityAccess {
+
+	private Long entityId;
+	private Long benefactorId;
+	private Long createdBy;
+	private boolean parentIsRoot;
+	private Map<Long, Set<ACCESS_TYPE>> accessByGroup = new HashMap<Long, Set<ACCESS_TYPE>>();
+
+	/**
+	 * Record that the benefactor's ACL grants an access type to a group.
+	 *
+	 * @param groupId
+	 * @param accessType
+	 */
+	public void addAccess(Long groupId, ACCESS_TYPE accessType) {
+		Set<ACCESS_TYPE> types = accessByGroup.get(groupId);
+		if (types == null) {
+			types = EnumSet.noneOf(ACCESS_TYPE.class);
+			accessByGroup.put(groupId, types);
+		}
+		types.add(accessType);
+	}
+
+	/**
+	 * The union of the access types granted to any of the passed groups.
+	 *
+	 * @param groups
+	 * @return
+	 */
+	public Set<ACCESS_TYPE> getAccessTypes(Set<Long> groups) {
+		Set<ACCESS_TYPE> result = EnumSet.noneOf(ACCESS_TYPE.class);
+		for (Long groupId : groups) {
+			Set<ACCESS_TYPE> types = accessByGroup.get(groupId);
+			if (types != null) {
+				result.addAll(types);
+			}
+		}
+		return result;
+	}
+
+	public Long getEntityId() {
+		return entityId;
+	}
+
+	public void setEntityId(Long entityId) {
+		this.entityId = entityId;
+	}
+
+	public Long getBenefactorId() {
+		return benefactorId;
+	}
+
+	public void setBenefactorId(Long benefactorId) {
+		this.benefactorId = benefactorId;
+	}
+
+	public Long getCreatedBy() {
+		return createdBy;
+	}
+
+	public void setCreatedBy(Long createdBy) {
+		this.createdBy = createdBy;
+	}
+
+	public boolean isParentIsRoot() {
+		return parentIsRoot;
+	}
+
+	public void setParentIsRoot(boolean parentIsRoot) {
+		this.parentIsRoot = parentIsRoot;
+	}
+
+	@Override
+	public String toString() {
+		return "EntityAccess [entityId=" + entityId + ", benefactorId="
+				+ benefactorId + ", createdBy=" + createdBy + ", parentIsRoot="
+				+ parentIsRoot + ", accessByGroup=" + accessByGroup + "]";
+	}
+
+}
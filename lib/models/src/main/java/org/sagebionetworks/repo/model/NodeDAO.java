@@ -218,6 +218,23 @@ public interface NodeDAO {
 	 */
 	public List<EntityHeader> getEntityPath(String nodeId) throws DatastoreException, NotFoundException;
 	
+	/**
+	 * Clear the cached ancestry of the given nodes and every node below them. The ancestry is rebuilt from
+	 * the parent IDs as needed. This must be called when nodes are changed without this DAO, for example,
+	 * by migration.
+	 * @param nodeIds
+	 */
+	public void clearAncestry(List<Long> nodeIds);
+	
+	/**
+	 * Build the ancestry of nodes that do not have it yet, for example, nodes created before the ancestry
+	 * was tracked. Until a node's ancestry is built its path is found by walking up its parents.
+	 * @param limit The maximum number of nodes to build.
+	 * @return The number of nodes built. Less than the limit once every node has its ancestry.
+	 * @throws NotFoundException
+	 */
+	public int backfillAncestry(long limit) throws NotFoundException;
+	
 	/**
 	 * Bootstrap all node types.
 	 * @throws DatastoreException 
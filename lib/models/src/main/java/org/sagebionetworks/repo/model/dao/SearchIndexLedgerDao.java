@@ -0,0 +1,47 @@
+package org.sagebionetworks.repo.model.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A local record of the etag each entity had when its document was last sent
+ * to the search index. The search worker uses it to drop changes for entities
+ * that are already indexed without querying the search service.
+ *
+ * @author John
+ *
+ */
+public interface SearchIndexLedgerDao {
+
+	/**
+	 * Get the indexed etag of each of the passed entities that was indexed at
+	 * or after the given time. Entities without a recent enough entry are not
+	 * in the result.
+	 *
+	 * @param entityIds
+	 * @param indexedSinceMS
+	 * @return Maps entity IDs to their indexed etag.
+	 */
+	public Map<String, String> getIndexedEtags(Collection<String> entityIds, long indexedSinceMS);
+
+	/**
+	 * Record that the passed entities were sent to the search index with the
+	 * given etags. This is a single write regardless of the number of
+	 * entities.
+	 *
+	 * @param entityIdToEtag
+	 */
+	public void recordIndexed(Map<String, String> entityIdToEtag);
+
+	/**
+	 * Remove the entries of entities that were removed from the search index.
+	 *
+	 * @param entityIds
+	 */
+	public void deleteEntries(Collection<String> entityIds);
+
+	/**
+	 * Remove all entries, for example, after the search index is rebuilt.
+	 */
+	public void clear();
+}
@@ -70,6 +70,26 @@ public interface ExclusiveOrSharedSemaphoreDao {
 	public void releaseSharedLock(String lockKey, String token)
 			throws LockReleaseFailedException;
 
+	/**
+	 * Extend the timeout of a read-lock (shared) that is still held. A
+	 * read-lock cannot be renewed once a write-lock-precursor has been issued
+	 * or a write-lock is held on the resource.
+	 * 
+	 * @param lockKey
+	 *            Identifies the resource that was locked.
+	 * @param token
+	 *            The token issued when the read-lock was acquired.
+	 * @param timeoutMS
+	 *            The read-lock will expire this many milliseconds from now.
+	 * @throws LockUnavilableException
+	 *             Thrown when a write-lock (exclusive) has been requested or
+	 *             is held on the resource.
+	 * @throws LockReleaseFailedException
+	 *             Thrown when the lock was forcibly revoked because it expired.
+	 */
+	public void renewSharedLock(String lockKey, String token, long timeoutMS)
+			throws LockUnavilableException, LockReleaseFailedException;
+
 	/**
 	 * <p>
 	 * Attempt to acquire the write-lock-precursor on a resource identified by
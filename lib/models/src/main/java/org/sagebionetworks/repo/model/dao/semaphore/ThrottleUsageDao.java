@@ -0,0 +1,45 @@
+package org.sagebionetworks.repo.model.dao.semaphore;
+
+import java.util.Map;
+
+/**
+ * Each node in the cluster throttles requests using in-memory counters and
+ * periodically reports its usage through this DAO so every node can see the
+ * usage of the entire cluster.
+ *
+ * @author John
+ *
+ */
+public interface ThrottleUsageDao {
+
+	/**
+	 * Replace all of the usage reported by a node with the passed usage. This
+	 * is a single batched write regardless of the number of keys.
+	 *
+	 * @param nodeId
+	 *            Identifies the reporting node.
+	 * @param concurrentByKey
+	 *            The number of concurrent requests currently running on the
+	 *            node for each throttle key.
+	 * @param timeoutMS
+	 *            The reported usage will be ignored if it is not replaced
+	 *            before this many milliseconds pass, for example, when a node
+	 *            dies.
+	 */
+	public void reportUsage(String nodeId, Map<String, Long> concurrentByKey, long timeoutMS);
+
+	/**
+	 * Get the total number of concurrent requests for each throttle key
+	 * reported by all other nodes that have not expired.
+	 *
+	 * @param excludeNodeId
+	 *            The usage of this node will not be included.
+	 * @return
+	 */
+	public Map<String, Long> getClusterUsage(String excludeNodeId);
+
+	/**
+	 * Remove all usage. For testing only.
+	 */
+	public void clearAllUsage();
+}
@@ -0,0 +1,15 @@
+package org.sagebionetworks.repo.model.dao.table;
+
+/**
+ * A RowAndHeaderHandler that is finished with each row when
+ * {@link #nextRow(org.sagebionetworks.repo.model.table.Row)} returns. A
+ * streaming query can then pass the same Row object, and the same value list,
+ * for every row of the result instead of allocating new ones. Handlers that
+ * keep the rows must not implement this interface.
+ * 
+ * @author John
+ *
+ */
+public interface ReusableRowHandler extends RowAndHeaderHandler {
+
+}
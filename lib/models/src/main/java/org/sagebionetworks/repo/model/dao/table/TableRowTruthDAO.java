@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.sagebionetworks.repo.model.table.ColumnModel;
 import org.sagebionetworks.repo.model.table.IdRange;
@@ -66,6 +68,25 @@ public interface TableRowTruthDAO {
 	 */
 	public RowReferenceSet appendRowSetToTable(String userId, String tableId, List<ColumnModel> models, RowSet delta, boolean isDelete)
 			throws IOException;
+	
+	/**
+	 * Append a RowSet to a table, writing the change set to S3 with the passed
+	 * executor. The row IDs, version number and change record are assigned
+	 * before this method returns, so consecutive calls stay in order. The
+	 * passed RowSet must not be changed until the returned future is done, and
+	 * the caller must wait for the future before its transaction commits.
+	 * Reads of the change set made while it is uploading wait for the upload.
+	 * 
+	 * @param userId
+	 * @param tableId
+	 * @param models
+	 * @param delta
+	 * @param uploadExecutor
+	 * @return
+	 * @throws IOException
+	 */
+	public Future<RowReferenceSet> appendRowSetToTableAsync(String userId, String tableId, List<ColumnModel> models, RowSet delta,
+			ExecutorService uploadExecutor) throws IOException;
 		
 	/**
 	 * Fetch a change set for a given table and
@@ -188,6 +209,25 @@ public interface TableRowTruthDAO {
 	 */
 	public TableRowChange getTableRowChange(String tableId, long rowVersion) throws NotFoundException;
 	
+	/**
+	 * Discard the row version index of a table and rebuild it from the table's change sets. The index is normally
+	 * maintained as rows are appended, so this is only needed if the index is suspected to be out of synch with the
+	 * change sets.
+	 * 
+	 * @param tableId
+	 * @throws IOException
+	 */
+	public void rebuildRowVersionIndex(String tableId) throws IOException;
+
+	/**
+	 * List tables that have change sets but were never added to the row version index, because they pre-date it or
+	 * were migrated from another stack. Each should be passed to {@link #rebuildRowVersionIndex(String)}.
+	 * 
+	 * @param limit
+	 * @return
+	 */
+	public List<String> listTablesWithoutRowVersionIndex(long limit);
+	
 	/**
 	 * This should never be called in a production setting.
 	 * 
@@ -195,7 +235,8 @@ public interface TableRowTruthDAO {
 	public void truncateAllRowData();
 
 	/**
-	 * Update the lastest version cache if supported
+	 * Update the lastest version cache if supported, and catch up the row version index with any change set it does
+	 * not hold yet. Until the index is current, reads scan the change sets instead.
 	 * 
 	 * @throws IOException
 	 */
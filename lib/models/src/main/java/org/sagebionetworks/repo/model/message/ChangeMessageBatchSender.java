@@ -0,0 +1,21 @@
+package org.sagebionetworks.repo.model.message;
+
+import java.util.List;
+
+/**
+ * Sends a batch of change messages on behalf of the TransactionalMessenger.
+ * 
+ * @author John
+ *
+ */
+public interface ChangeMessageBatchSender {
+
+	/**
+	 * Send a batch of messages. No lock is held while this is called.
+	 * 
+	 * @param batch
+	 * @return The messages that were actually sent. Only these will be
+	 *         registered as sent.
+	 */
+	public List<ChangeMessage> sendMessages(List<ChangeMessage> batch);
+}
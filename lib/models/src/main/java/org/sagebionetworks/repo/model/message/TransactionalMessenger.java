@@ -62,6 +62,20 @@ public interface TransactionalMessenger {
 	 */
 	public boolean registerMessageSent(ChangeMessage message);
 	
+	/**
+	 * Send a batch of messages and then register the ones sent. Messages that
+	 * are no longer the current change of their object, or that have already
+	 * been sent, are dropped before the batch is passed to the sender. No lock
+	 * is held while the sender runs, so a message can be sent more than once.
+	 * The sent markers are written with one multi-row write in a short
+	 * transaction.
+	 * 
+	 * @param batch
+	 * @param sender
+	 * @return The messages that were sent and registered.
+	 */
+	public List<ChangeMessage> sendAndRegisterMessages(List<ChangeMessage> batch, ChangeMessageBatchSender sender);
+	
 	/**
 	 * List messages that have been created but not registered as sent (see {@link #registerMessageSent(long)}).
 	 * This is used to detect messages that need to be sent either for the first time or re-sent on a new stacks.
@@ -18,6 +18,7 @@ public class BasicQuery {
 	boolean ascending = true;
 	long offset = 0;
 	long limit = 10;
+	boolean countTotal = true;
 	
 	public List<String> getSelect() {
 		return select;
@@ -56,6 +57,17 @@ public class BasicQuery {
 	public void setLimit(long limit) {
 		this.limit = limit;
 	}
+	/**
+	 * When false the caller does not need the total number of results, so it
+	 * is not counted and may only be an estimate.
+	 * @return
+	 */
+	public boolean isCountTotal() {
+		return countTotal;
+	}
+	public void setCountTotal(boolean countTotal) {
+		this.countTotal = countTotal;
+	}
 	public List<Expression> getFilters() {
 		return filters;
 	}
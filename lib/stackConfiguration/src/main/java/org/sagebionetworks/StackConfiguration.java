@@ -1412,6 +1412,15 @@ public class StackConfiguration {
 		return Long.parseLong(configuration
 				.getProperty("org.sagebionetworks.table.read.timeout.ms"));
 	}
+	
+	/**
+	 * The maximum estimated size in bytes of all table query results cached by a single machine.
+	 * @return
+	 */
+	public long getTableQueryCacheMaxBytes() {
+		return Long.parseLong(configuration
+				.getProperty("org.sagebionetworks.table.query.cache.max.bytes"));
+	}
 
 	public PropertyAccessor<Integer> getMaxConcurrentRepoConnections() {
 		return new StackConfigurationIntegerPropertyAccessor("org.sagebionetworks.max.concurrent.repo.connections");
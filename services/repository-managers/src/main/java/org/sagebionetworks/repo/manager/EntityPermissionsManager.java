@@ -1,5 +1,8 @@
 package org.sagebionetworks.repo.manager;
 
+import java.util.List;
+import java.util.Map;
+
 import org.sagebionetworks.repo.model.ACCESS_TYPE;
 import org.sagebionetworks.repo.model.ACLInheritanceException;
 import org.sagebionetworks.repo.model.AccessControlList;
@@ -105,6 +108,18 @@ public interface EntityPermissionsManager {
 	 * @throws NotFoundException 
 	 */
 	public UserEntityPermissions getUserPermissionsForEntity(UserInfo userInfo,	String entityId) throws NotFoundException, DatastoreException;
+	
+	/**
+	 * Get the user permissions for many entities. The benefactor ACLs of all
+	 * of the entities are loaded with a single query.
+	 * 
+	 * @param userInfo
+	 * @param entityIds
+	 * @return The permissions of each entity keyed by the passed entity ID.
+	 * @throws NotFoundException If any of the entities does not exist.
+	 * @throws DatastoreException
+	 */
+	public Map<String, UserEntityPermissions> getUserPermissionsForEntities(UserInfo userInfo, List<String> entityIds) throws NotFoundException, DatastoreException;
 
 	/**
 	 * Check whether or not a given resource/entity has a local ACL. Such
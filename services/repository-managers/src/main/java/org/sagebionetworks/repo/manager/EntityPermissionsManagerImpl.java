@@ -8,7 +8,13 @@ import static org.sagebionetworks.repo.model.ACCESS_TYPE.READ;
 import static org.sagebionetworks.repo.model.ACCESS_TYPE.UPDATE;
 import static org.sagebionetworks.repo.model.ACCESS_TYPE.UPLOAD;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.sagebionetworks.StackConfiguration;
 import org.sagebionetworks.repo.manager.trash.EntityInTrashCanException;
@@ -21,6 +27,7 @@ import org.sagebionetworks.repo.model.AuthorizationConstants.BOOTSTRAP_PRINCIPAL
 import org.sagebionetworks.repo.model.ConflictingUpdateException;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.DomainType;
+import org.sagebionetworks.repo.model.EntityAccess;
 import org.sagebionetworks.repo.model.InvalidModelException;
 import org.sagebionetworks.repo.model.Node;
 import org.sagebionetworks.repo.model.NodeDAO;
@@ -234,32 +241,69 @@ public class EntityPermissionsManagerImpl implements EntityPermissionsManager {
 	@Override
 	public UserEntityPermissions getUserPermissionsForEntity(UserInfo userInfo,	String entityId)
 			throws NotFoundException, DatastoreException {
+		return getUserPermissionsForEntities(userInfo, Collections.singletonList(entityId)).get(entityId);
+	}
 
-		final String benefactor = nodeInheritanceManager.getBenefactor(entityId);
-		UserEntityPermissions permissions = new UserEntityPermissions();
-		permissions.setCanAddChild(hasAccess(benefactor, CREATE, userInfo));
-		permissions.setCanChangePermissions(hasAccess(benefactor, CHANGE_PERMISSIONS, userInfo));
-		permissions.setCanDelete(hasAccess(benefactor, DELETE, userInfo));
-		permissions.setCanEdit(hasAccess(benefactor, UPDATE, userInfo));
-		permissions.setCanView(hasAccess(benefactor, READ, userInfo));
-		permissions.setCanDownload(canDownload(userInfo, entityId));
-		permissions.setCanUpload(canUpload(userInfo, entityId));
-
-		Node node = nodeDao.getNode(entityId);
-		permissions.setOwnerPrincipalId(node.getCreatedByPrincipalId());
-
+	@Override
+	public Map<String, UserEntityPermissions> getUserPermissionsForEntities(UserInfo userInfo, List<String> entityIds)
+			throws NotFoundException, DatastoreException {
+		if (entityIds == null) throw new IllegalArgumentException("EntityIds cannot be null");
 		UserInfo anonymousUser = userManager.getUserInfo(BOOTSTRAP_PRINCIPAL.ANONYMOUS_USER.getPrincipalId());
-		permissions.setCanPublicRead(hasAccess(benefactor, READ, anonymousUser));
+		// Load the ACL entries of both the user and anonymous with one query.
+		Set<Long> groups = new HashSet<Long>(userInfo.getGroups());
+		groups.addAll(anonymousUser.getGroups());
+		Map<Long, String> idsByKey = new LinkedHashMap<Long, String>();
+		for (String entityId : entityIds) {
+			idsByKey.put(KeyFactory.stringToKey(entityId), entityId);
+		}
+		Map<Long, EntityAccess> accessByKey = aclDAO.getEntityAccess(idsByKey.keySet(), groups);
 
-		final boolean parentIsRoot = nodeDao.isNodesParentRoot(entityId);
-		if (userInfo.isAdmin()) {
-			permissions.setCanEnableInheritance(!parentIsRoot);
-		} else if (AuthorizationUtils.isUserAnonymous(userInfo)) {
-			permissions.setCanEnableInheritance(false);
-		} else {
-			permissions.setCanEnableInheritance(!parentIsRoot && permissions.getCanChangePermissions());
+		final boolean isAnonymous = AuthorizationUtils.isUserAnonymous(userInfo);
+		// The terms of use are the same for every entity.
+		final boolean agreesToTermsOfUse = userInfo.isAdmin() || agreesToTermsOfUse(userInfo);
+		Map<String, UserEntityPermissions> results = new LinkedHashMap<String, UserEntityPermissions>();
+		for (Map.Entry<Long, String> entry : idsByKey.entrySet()) {
+			String entityId = entry.getValue();
+			EntityAccess access = accessByKey.get(entry.getKey());
+			if (access == null) {
+				throw new NotFoundException("The resource you are attempting to access cannot be found: " + entityId);
+			}
+			// Only CREATE and DELETE are allowed in the trash can.
+			if (TRASH_FOLDER_ID.equals(access.getBenefactorId())) {
+				throw new EntityInTrashCanException("Entity " + entityId + " is in trash can.");
+			}
+			Set<ACCESS_TYPE> granted;
+			if (userInfo.isAdmin()) {
+				granted = EnumSet.allOf(ACCESS_TYPE.class);
+			} else {
+				granted = access.getAccessTypes(userInfo.getGroups());
+				// Anonymous can at most READ
+				if (isAnonymous) {
+					granted.retainAll(EnumSet.of(READ));
+				}
+			}
+			UserEntityPermissions permissions = new UserEntityPermissions();
+			permissions.setCanAddChild(granted.contains(CREATE));
+			permissions.setCanChangePermissions(granted.contains(CHANGE_PERMISSIONS));
+			permissions.setCanDelete(granted.contains(DELETE));
+			permissions.setCanEdit(granted.contains(UPDATE));
+			permissions.setCanView(granted.contains(READ));
+			permissions.setCanDownload(canDownload(userInfo, entityId, agreesToTermsOfUse));
+			permissions.setCanUpload(canUpload(userInfo, entityId, agreesToTermsOfUse));
+			permissions.setOwnerPrincipalId(access.getCreatedBy());
+			permissions.setCanPublicRead(access.getAccessTypes(anonymousUser.getGroups()).contains(READ));
+
+			final boolean parentIsRoot = access.isParentIsRoot();
+			if (userInfo.isAdmin()) {
+				permissions.setCanEnableInheritance(!parentIsRoot);
+			} else if (isAnonymous) {
+				permissions.setCanEnableInheritance(false);
+			} else {
+				permissions.setCanEnableInheritance(!parentIsRoot && permissions.getCanChangePermissions());
+			}
+			results.put(entityId, permissions);
 		}
-		return permissions;
+		return results;
 	}
 
 	@Override
@@ -274,7 +318,13 @@ public class EntityPermissionsManagerImpl implements EntityPermissionsManager {
 	private boolean canDownload(UserInfo userInfo, final String nodeId)
 			throws DatastoreException, NotFoundException {
 		if (userInfo.isAdmin()) return true;
-		if (!agreesToTermsOfUse(userInfo)) return false;
+		return canDownload(userInfo, nodeId, agreesToTermsOfUse(userInfo));
+	}
+
+	private boolean canDownload(UserInfo userInfo, final String nodeId, boolean agreesToTermsOfUse)
+			throws DatastoreException, NotFoundException {
+		if (userInfo.isAdmin()) return true;
+		if (!agreesToTermsOfUse) return false;
 		
 		// if there are any unmet access requirements return false
 		List<String> nodeAncestorIds = AccessRequirementUtil.getNodeAncestorIds(nodeDao, nodeId, false);
@@ -287,7 +337,13 @@ public class EntityPermissionsManagerImpl implements EntityPermissionsManager {
 	private boolean canUpload(UserInfo userInfo, final String parentId)
 			throws DatastoreException, NotFoundException {
 		if (userInfo.isAdmin()) return true;
-		if (!agreesToTermsOfUse(userInfo)) return false;
+		return canUpload(userInfo, parentId, agreesToTermsOfUse(userInfo));
+	}
+
+	private boolean canUpload(UserInfo userInfo, final String parentId, boolean agreesToTermsOfUse)
+			throws DatastoreException, NotFoundException {
+		if (userInfo.isAdmin()) return true;
+		if (!agreesToTermsOfUse) return false;
 		
 		// if there are any unmet access requirements return false
 		List<String> nodeAncestorIds = AccessRequirementUtil.getNodeAncestorIds(nodeDao, parentId, true);
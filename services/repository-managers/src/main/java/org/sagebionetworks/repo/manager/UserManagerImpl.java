@@ -22,6 +22,7 @@ import org.sagebionetworks.repo.model.auth.NewUser;
 import org.sagebionetworks.repo.model.dao.NotificationEmailDAO;
 import org.sagebionetworks.repo.model.dbo.DBOBasicDao;
 import org.sagebionetworks.repo.model.dbo.dao.AuthorizationUtils;
+import org.sagebionetworks.repo.model.dbo.dao.UserInfoCache;
 import org.sagebionetworks.repo.model.dbo.persistence.DBOCredential;
 import org.sagebionetworks.repo.model.dbo.persistence.DBOSessionToken;
 import org.sagebionetworks.repo.model.dbo.persistence.DBOTermsOfUseAgreement;
@@ -62,6 +63,9 @@ public class UserManagerImpl implements UserManager {
 	@Autowired
 	private DBOBasicDao basicDAO;
 	
+	@Autowired(required=false)
+	private UserInfoCache userInfoCache;
+	
 	public UserManagerImpl() { }
 	
 	public UserManagerImpl(UserGroupDAO userGroupDAO, 
@@ -84,6 +88,10 @@ public class UserManagerImpl implements UserManager {
 		this.userGroupDAO = userGroupDAO;
 	}
 	
+	public void setUserInfoCache(UserInfoCache userInfoCache) {
+		this.userInfoCache = userInfoCache;
+	}
+	
 	@Override
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public long createUser(NewUser user) {
@@ -198,6 +206,10 @@ public class UserManagerImpl implements UserManager {
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	@Override
 	public UserInfo getUserInfo(Long principalId) throws NotFoundException {
+		if(userInfoCache != null){
+			UserInfo cached = userInfoCache.get(principalId);
+			if(cached != null) return cached;
+		}
 		UserGroup principal = userGroupDAO.get(principalId);
 		if(!principal.getIsIndividual()) throw new IllegalArgumentException("Principal: "+principalId+" is not a User");
 		// Lookup the user's name
@@ -231,6 +243,9 @@ public class UserManagerImpl implements UserManager {
 		ui.setCreationDate(principal.getCreationDate());
 		// Put all the pieces together
 		ui.setGroups(groups);
+		if(userInfoCache != null){
+			userInfoCache.put(ui);
+		}
 		return ui;
 	}
 
@@ -6,6 +6,7 @@ import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.UnauthorizedException;
 import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.daemon.BackupRestoreStatus;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.web.NotFoundException;
 
@@ -39,9 +40,10 @@ public interface BackupDaemonLauncher {
 	 * @param username
 	 * @param type
 	 * @param idsToBackup
+	 * @param format The format of the backup file. XML when null.
 	 * @return
 	 */
-	public BackupRestoreStatus startBackup(UserInfo username, MigrationType type, List<Long> idsToBackup);
+	public BackupRestoreStatus startBackup(UserInfo username, MigrationType type, List<Long> idsToBackup, BackupFormat format);
 	
 	/**
 	 * Start a restore daemon that will read data from the passed file and write it to the database.
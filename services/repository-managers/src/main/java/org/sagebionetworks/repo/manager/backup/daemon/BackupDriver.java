@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.sagebionetworks.repo.manager.backup.Progress;
 import org.sagebionetworks.repo.model.UserInfo;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 
 /**
@@ -29,6 +30,21 @@ public interface BackupDriver {
 	 */
 	public boolean writeBackup(UserInfo user, File destination,	Progress progress, MigrationType type, List<Long> idsToBackup) throws IOException, InterruptedException;
 	
+	/**
+	 * Write the objects identified by the passed list to the provided zip file in the requested format.
+	 * 
+	 * @param user
+	 * @param destination
+	 * @param progress
+	 * @param type
+	 * @param idsToBackup
+	 * @param format
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public boolean writeBackup(UserInfo user, File destination,	Progress progress, MigrationType type, List<Long> idsToBackup, BackupFormat format) throws IOException, InterruptedException;
+	
 	/**
 	 * 
 	 * @param user
@@ -16,6 +16,7 @@ import org.apache.commons.logging.LogFactory;
 import org.sagebionetworks.repo.manager.backup.Progress;
 import org.sagebionetworks.repo.manager.migration.MigrationManager;
 import org.sagebionetworks.repo.model.UserInfo;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Propagation;
@@ -32,6 +33,7 @@ public class BackupDriverImpl implements BackupDriver {
 	static private Log log = LogFactory.getLog(BackupDriverImpl.class);
 
 	private static final String ZIP_ENTRY_SUFFIX = ".xml";
+	private static final String BINARY_ZIP_ENTRY_SUFFIX = ".bin";
 
 	@Autowired
 	private MigrationManager migrationManager;
@@ -49,6 +51,13 @@ public class BackupDriverImpl implements BackupDriver {
 	 */
 	@Override
 	public boolean writeBackup(UserInfo user, File destination,	Progress progress, MigrationType type, List<Long> idsToBackup) throws IOException, InterruptedException {
+		return writeBackup(user, destination, progress, type, idsToBackup, BackupFormat.XML);
+	}
+
+	@Override
+	public boolean writeBackup(UserInfo user, File destination,	Progress progress, MigrationType type, List<Long> idsToBackup, BackupFormat format) throws IOException, InterruptedException {
+		if (format == null)
+			format = BackupFormat.XML;
 		if (destination == null)
 			throw new IllegalArgumentException(
 					"Destination file cannot be null");
@@ -68,9 +77,9 @@ public class BackupDriverImpl implements BackupDriver {
 		try {
 //			progress.appendLog(idsToBackup.toString());
 			progress.setMessage("Backup id count: "+idsToBackup.size());
-			ZipEntry entry = new ZipEntry(type.name() + ZIP_ENTRY_SUFFIX);
+			ZipEntry entry = new ZipEntry(getFileNameForType(type, format));
 			zos.putNextEntry(entry);
-			migrationManager.writeBackupBatch(user, type, idsToBackup, zos);
+			migrationManager.writeBackupBatch(user, type, idsToBackup, zos, format);
 			progress.incrementProgress();
 			// If this type has secondary types then add them to the zip as well.
 			List<MigrationType> secondaryTypes = migrationManager.getSecondaryTypes(type);
@@ -78,9 +87,9 @@ public class BackupDriverImpl implements BackupDriver {
 				for(MigrationType secondary: secondaryTypes){
 					checkForTermination(progress);
 					Thread.yield();
-					entry = new ZipEntry(secondary.name() + ZIP_ENTRY_SUFFIX);
+					entry = new ZipEntry(getFileNameForType(secondary, format));
 					zos.putNextEntry(entry);
-					migrationManager.writeBackupBatch(user, secondary, idsToBackup, zos);
+					migrationManager.writeBackupBatch(user, secondary, idsToBackup, zos, format);
 					progress.incrementProgress();
 				}
 			}
@@ -163,6 +172,7 @@ public class BackupDriverImpl implements BackupDriver {
 	 * @return
 	 */
 	public static MigrationType getTypeFromFileName(String name){
+		// Both suffixes have the same length.
 		MigrationType t = MigrationType.valueOf(name.substring(0, name.length()-ZIP_ENTRY_SUFFIX.length()));
 		return t;
 	}
@@ -173,6 +183,19 @@ public class BackupDriverImpl implements BackupDriver {
 	 * @return
 	 */
 	public static String getFileNameForType(MigrationType type){
+		return getFileNameForType(type, BackupFormat.XML);
+	}
+	
+	/**
+	 * Create a file name for a type written in the given format.
+	 * @param type
+	 * @param format
+	 * @return
+	 */
+	public static String getFileNameForType(MigrationType type, BackupFormat format){
+		if(BackupFormat.BINARY == format){
+			return type.name() + BINARY_ZIP_ENTRY_SUFFIX;
+		}
 		return type.name() + ZIP_ENTRY_SUFFIX;
 	}
 
@@ -19,6 +19,7 @@ import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.daemon.BackupRestoreStatus;
 import org.sagebionetworks.repo.model.daemon.DaemonStatus;
 import org.sagebionetworks.repo.model.daemon.DaemonType;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.web.NotFoundException;
 
@@ -63,6 +64,7 @@ public class BackupRestoreDaemon implements Runnable{
 	private volatile Throwable driverError;
 	private UserInfo user;
 	private MigrationType migrationType;
+	private BackupFormat backupFormat;
 
 	
 	/**
@@ -70,7 +72,7 @@ public class BackupRestoreDaemon implements Runnable{
 	 * @param dao
 	 * @param driver
 	 */
-	BackupRestoreDaemon(UserInfo user, BackupRestoreStatusDAO dao, BackupDriver driver, AmazonS3Client client, String bucket, ExecutorService threadPool, ExecutorService threadPool2, List<Long> idsToBackup, MigrationType migrationType){
+	BackupRestoreDaemon(UserInfo user, BackupRestoreStatusDAO dao, BackupDriver driver, AmazonS3Client client, String bucket, ExecutorService threadPool, ExecutorService threadPool2, List<Long> idsToBackup, MigrationType migrationType, BackupFormat backupFormat){
 		if(dao == null) throw new IllegalArgumentException("BackupRestoreStatusDAO cannot be null");
 		if(driver == null) throw new IllegalArgumentException("GenericBackupDriver cannot be null");
 		if(client == null) throw new IllegalArgumentException("AmazonS3Client cannot be null");
@@ -86,6 +88,7 @@ public class BackupRestoreDaemon implements Runnable{
 		this.workerPool = threadPool2;
 		this.idsToBackup = idsToBackup;
 		this.migrationType = migrationType;
+		this.backupFormat = backupFormat;
 		this.user = user;
 	}
 	
@@ -200,7 +203,7 @@ public class BackupRestoreDaemon implements Runnable{
 				try {
 					if(DaemonType.BACKUP == type){
 						// This is a backup
-						backupDriver.writeBackup(user, tempBackup, progress, migrationType, idsToBackup);							
+						backupDriver.writeBackup(user, tempBackup, progress, migrationType, idsToBackup, backupFormat);							
 					}else if(DaemonType.RESTORE == type) {
 						// This is a restore
 						backupDriver.restoreFromBackup(user, tempBackup,progress);		
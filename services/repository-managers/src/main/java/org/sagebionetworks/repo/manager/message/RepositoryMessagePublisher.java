@@ -1,5 +1,7 @@
 package org.sagebionetworks.repo.manager.message;
 
+import java.util.List;
+
 import org.sagebionetworks.repo.model.ObjectType;
 import org.sagebionetworks.repo.model.message.ChangeMessage;
 import org.sagebionetworks.repo.model.message.TransactionalMessengerObserver;
@@ -48,4 +50,14 @@ public interface RepositoryMessagePublisher extends TransactionalMessengerObserv
 	 * @return 
 	 */
 	public boolean publishToTopic(ChangeMessage message);
+	
+	/**
+	 * Publish a batch of messages to their topics and register the messages
+	 * published as sent, all in one transaction. Messages that are no longer
+	 * current or were already sent are skipped.
+	 * 
+	 * @param batch
+	 * @return The messages that were published.
+	 */
+	public List<ChangeMessage> publishBatchToTopic(List<ChangeMessage> batch);
 }
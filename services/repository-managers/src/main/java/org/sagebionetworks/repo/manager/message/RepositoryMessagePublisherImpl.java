@@ -1,15 +1,21 @@
 package org.sagebionetworks.repo.manager.message;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.sagebionetworks.repo.model.ObjectType;
 import org.sagebionetworks.repo.model.message.ChangeMessage;
+import org.sagebionetworks.repo.model.message.ChangeMessageBatchSender;
 import org.sagebionetworks.repo.model.message.TransactionalMessenger;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
@@ -34,6 +40,10 @@ import com.amazonaws.services.sns.model.PublishRequest;
 public class RepositoryMessagePublisherImpl implements RepositoryMessagePublisher {
 
 	public static final String SEMAPHORE_KEY = "UNSENT_MESSAGE_WORKER";
+	/**
+	 * The maximum number of messages claimed and published in one transaction.
+	 */
+	public static final int PUBLISH_BATCH_SIZE = 100;
 	static private Log log = LogFactory.getLog(RepositoryMessagePublisherImpl.class);
 
 	@Autowired
@@ -48,6 +58,8 @@ public class RepositoryMessagePublisherImpl implements RepositoryMessagePublishe
 	Map<ObjectType, TopicInfo> typeToTopicMap = new HashMap<ObjectType, TopicInfo>();;
 	// The prefix applied to each topic.
 	String topicPrefix;
+	// Publishes the messages of a batch concurrently.
+	ExecutorService publishExecutor;
 	
 	/**
 	 * This is injected from spring.
@@ -59,6 +71,17 @@ public class RepositoryMessagePublisherImpl implements RepositoryMessagePublishe
 		this.shouldMessagesBePublishedToTopic = shouldMessagesBePublishedToTopic;
 	}
 
+	/**
+	 * This is injected from spring. The size of the pool bounds how many
+	 * messages of a batch are published at the same time. When null, the
+	 * messages are published one at a time.
+	 * 
+	 * @param publishExecutor
+	 */
+	public void setPublishExecutor(ExecutorService publishExecutor) {
+		this.publishExecutor = publishExecutor;
+	}
+
 	/**
 	 * Default.
 	 */
@@ -149,13 +172,14 @@ public class RepositoryMessagePublisherImpl implements RepositoryMessagePublishe
 			}
 			return;
 		}
-		// Publish each message to the topic
-		for(ChangeMessage message: currentQueue){
+		// Publish the messages to the topics in batches.
+		for(int start=0; start<currentQueue.size(); start+=PUBLISH_BATCH_SIZE){
+			List<ChangeMessage> batch = currentQueue.subList(start, Math.min(start+PUBLISH_BATCH_SIZE, currentQueue.size()));
 			try {
-				publishToTopic(message);
+				publishBatchToTopic(batch);
 			} catch (Throwable e) {
-				// If one messages fails, we must send the rest.
-				log.error("Failed to publish message.", e);
+				// If one batch fails, we must send the rest.
+				log.error("Failed to publish a batch of messages.", e);
 			}
 		}
 	}
@@ -165,7 +189,7 @@ public class RepositoryMessagePublisherImpl implements RepositoryMessagePublishe
 	 * @return
 	 */
 	private List<ChangeMessage> pollListFromQueue(){
-		List<ChangeMessage> list = new LinkedList<ChangeMessage>();
+		List<ChangeMessage> list = new ArrayList<ChangeMessage>();
 		for(ChangeMessage cm = this.messageQueue.poll(); cm != null; cm = this.messageQueue.poll()){
 			// Add to the list
 			list.add(cm);
@@ -201,16 +225,7 @@ public class RepositoryMessagePublisherImpl implements RepositoryMessagePublishe
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
 	@Override
 	public boolean publishToTopic(ChangeMessage message) {
-		String json;
-		try {
-			json = EntityFactory.createJSONStringForEntity(message);
-		} catch (JSONObjectAdapterException e) {
-			// should never occur
-			throw new RuntimeException(e);
-		}
-		if (log.isTraceEnabled()) {
-			log.info("Publishing a message: " + json);
-		}
+		String json = createJSON(message);
 		// Register the message was sent within this transaction.
 		// It is important to do this before we actual send the message to the
 		// topic because we do not want to sent out duplicate messages (see
@@ -225,6 +240,81 @@ public class RepositoryMessagePublisherImpl implements RepositoryMessagePublishe
 		}
 		return true;
 	}
+
+	@Override
+	public List<ChangeMessage> publishBatchToTopic(List<ChangeMessage> batch) {
+		// The messenger drops stale and sent messages, and registers what was
+		// sent after the batch is published.
+		return this.transactionalMessanger.sendAndRegisterMessages(batch, new ChangeMessageBatchSender() {
+			@Override
+			public List<ChangeMessage> sendMessages(List<ChangeMessage> toSend) {
+				return publishConcurrently(toSend);
+			}
+		});
+	}
+
+	/**
+	 * Publish each message of a batch, using the publish executor when there
+	 * is one. A message that fails to publish is logged and left out of the
+	 * result, so it is not registered as sent and will be sent again later.
+	 * 
+	 * @param toSend
+	 * @return The messages that were published.
+	 */
+	private List<ChangeMessage> publishConcurrently(List<ChangeMessage> toSend){
+		List<Future<ChangeMessage>> futures = new ArrayList<Future<ChangeMessage>>(toSend.size());
+		for(final ChangeMessage message: toSend){
+			// Topics are resolved on this thread so the topic map is never shared.
+			final PublishRequest request = new PublishRequest(getTopicInfoLazy(message.getObjectType()).getArn(), createJSON(message));
+			Callable<ChangeMessage> publish = new Callable<ChangeMessage>() {
+				@Override
+				public ChangeMessage call() throws Exception {
+					awsSNSClient.publish(request);
+					return message;
+				}
+			};
+			if(publishExecutor != null){
+				futures.add(publishExecutor.submit(publish));
+			}else{
+				FutureTask<ChangeMessage> task = new FutureTask<ChangeMessage>(publish);
+				task.run();
+				futures.add(task);
+			}
+		}
+		List<ChangeMessage> sent = new ArrayList<ChangeMessage>(futures.size());
+		for(Future<ChangeMessage> future: futures){
+			try {
+				sent.add(future.get());
+			} catch (ExecutionException e) {
+				// If one message fails, we must still register the rest.
+				log.error("Failed to publish message.", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+		return sent;
+	}
+
+	/**
+	 * The JSON published for a message.
+	 * 
+	 * @param message
+	 * @return
+	 */
+	private static String createJSON(ChangeMessage message){
+		String json;
+		try {
+			json = EntityFactory.createJSONStringForEntity(message);
+		} catch (JSONObjectAdapterException e) {
+			// should never occur
+			throw new RuntimeException(e);
+		}
+		if (log.isTraceEnabled()) {
+			log.info("Publishing a message: " + json);
+		}
+		return json;
+	}
 	
 	/**
 	 * Information about a topic.
@@ -1,14 +1,20 @@
 package org.sagebionetworks.repo.manager.migration;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
 
+import org.sagebionetworks.repo.model.migration.BackupFormat;
+
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.StreamException;
 
 /**
  * Provides marshaling for backup objects.
+ * Backups can be written as XML or with the {@link BinaryBackupCodec}. The
+ * format is detected when a backup is read, so old XML backups can always be restored.
  * 
  * @author John
  *
@@ -24,7 +30,30 @@ public class BackupMarshalingUtils {
 	 * @param out
 	 */
 	public static <B> void writeBackupToStream(List<B> list, String alias, OutputStream out){
+		writeBackupToStream(list, alias, out, BackupFormat.XML);
+	}
+	
+	/**
+	 * Write a backup list to a Stream using the requested format.
+	 * Types that cannot be written in binary are written as XML.
+	 * 
+	 * @param list
+	 * @param alias
+	 * @param out
+	 * @param format
+	 */
+	@SuppressWarnings("unchecked")
+	public static <B> void writeBackupToStream(List<B> list, String alias, OutputStream out, BackupFormat format){
 		if(list == null || list.size() < 1) return;
+		Class<B> clazz = (Class<B>) list.get(0).getClass();
+		if(BackupFormat.BINARY == format && BinaryBackupCodec.isSupported(clazz)){
+			try {
+				BinaryBackupCodec.forClass(clazz).writeAll(list, alias, out);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return;
+		}
 		XStream xstream = new XStream();
 		xstream.alias(alias, list.get(0).getClass());
 		xstream.toXML(list, out);
@@ -39,6 +68,16 @@ public class BackupMarshalingUtils {
 	 */
 	@SuppressWarnings("unchecked")
 	public static <B> List<B> readBackupFromStream(Class<B> clazz, String alias, InputStream in){
+		if(!in.markSupported()){
+			in = new BufferedInputStream(in);
+		}
+		try {
+			if(BinaryBackupCodec.isBinary(in)){
+				return BinaryBackupCodec.forClass(clazz).readAll(alias, in);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
 		XStream xstream = new XStream();
 		xstream.alias(alias, clazz);
 		try{
@@ -0,0 +1,519 @@
+package org.sagebionetworks.repo.manager.migration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact binary encoding of backup objects, used in place of XStream XML.
+ * <p>
+ * A stream starts with a header: the {@link #MAGIC} bytes, the {@link #VERSION},
+ * the alias, then the name and type code of each field. Each row is written as
+ * its length in bytes followed by the value of each field in header order. A
+ * length of -1 marks the end of the rows.
+ * <p>
+ * The fields are read from the backup class by reflection, the same fields
+ * XStream would write. The reader matches fields by name, so a stack can read
+ * a backup written by a stack with more or fewer fields. Unknown fields are
+ * skipped and missing fields keep their default values.
+ *
+ * @author John
+ *
+ * @param <B> The backup class.
+ */
+public class BinaryBackupCodec<B> {
+
+	/**
+	 * The first bytes of every binary backup. XML backups never start with these.
+	 */
+	public static final byte[] MAGIC = new byte[] { 'S', 'B', 'K', 'B' };
+	public static final int VERSION = 1;
+
+	private static final int END_OF_ROWS = -1;
+
+	private static final byte TYPE_LONG = 1;
+	private static final byte TYPE_STRING = 2;
+	private static final byte TYPE_BYTES = 3;
+	private static final byte TYPE_BOOLEAN = 4;
+	private static final byte TYPE_DATE = 5;
+	private static final byte TYPE_TIMESTAMP = 6;
+	private static final byte TYPE_INTEGER = 7;
+	private static final byte TYPE_SHORT = 8;
+	private static final byte TYPE_DOUBLE = 9;
+	private static final byte TYPE_ENUM = 10;
+
+	private static final String UTF_8 = "UTF-8";
+
+	private static final Map<Class<?>, BinaryBackupCodec<?>> codecs = new ConcurrentHashMap<Class<?>, BinaryBackupCodec<?>>();
+	// Classes that cannot be encoded. Null values are not allowed in a ConcurrentHashMap.
+	private static final Map<Class<?>, Boolean> unsupported = new ConcurrentHashMap<Class<?>, Boolean>();
+
+	private final Constructor<B> constructor;
+	private final List<FieldCodec> fields;
+	private final Map<String, FieldCodec> fieldsByName;
+
+	private BinaryBackupCodec(Constructor<B> constructor, List<FieldCodec> fields) {
+		this.constructor = constructor;
+		this.fields = fields;
+		this.fieldsByName = new HashMap<String, FieldCodec>();
+		for (FieldCodec field : fields) {
+			fieldsByName.put(field.name, field);
+		}
+	}
+
+	/**
+	 * Can objects of the given class be written with this codec? Each field
+	 * must be of a supported type and the class must have a no-argument
+	 * constructor.
+	 *
+	 * @param clazz
+	 * @return
+	 */
+	public static boolean isSupported(Class<?> clazz) {
+		if (clazz == null) throw new IllegalArgumentException("Class cannot be null");
+		if (codecs.containsKey(clazz)) return true;
+		if (unsupported.containsKey(clazz)) return false;
+		BinaryBackupCodec<?> codec = buildCodec(clazz);
+		if (codec == null) {
+			unsupported.put(clazz, Boolean.TRUE);
+			return false;
+		}
+		codecs.put(clazz, codec);
+		return true;
+	}
+
+	/**
+	 * Get the codec for a class.
+	 *
+	 * @param clazz
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             If the class is not supported.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <B> BinaryBackupCodec<B> forClass(Class<B> clazz) {
+		if (!isSupported(clazz)) {
+			throw new IllegalArgumentException("Class cannot be written as a binary backup: " + clazz.getName());
+		}
+		return (BinaryBackupCodec<B>) codecs.get(clazz);
+	}
+
+	/**
+	 * Does the stream start with a binary backup? The stream must support
+	 * mark() and will be reset to where it started.
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean isBinary(InputStream in) throws IOException {
+		if (!in.markSupported()) throw new IllegalArgumentException("The stream must support mark()");
+		in.mark(MAGIC.length);
+		try {
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (in.read() != MAGIC[i]) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			in.reset();
+		}
+	}
+
+	/**
+	 * Write all of the rows to the stream. The stream is flushed but not
+	 * closed.
+	 *
+	 * @param list
+	 * @param alias
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeAll(List<B> list, String alias, OutputStream out) throws IOException {
+		Writer writer = createWriter(alias, out);
+		for (B row : list) {
+			writer.write(row);
+		}
+		writer.finish();
+	}
+
+	/**
+	 * Read all of the rows from the stream.
+	 *
+	 * @param alias
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public List<B> readAll(String alias, InputStream in) throws IOException {
+		Reader reader = createReader(alias, in);
+		List<B> results = new LinkedList<B>();
+		B row = null;
+		while ((row = reader.read()) != null) {
+			results.add(row);
+		}
+		return results;
+	}
+
+	/**
+	 * Start a new backup on the stream. The header is written immediately.
+	 *
+	 * @param alias
+	 * @param out
+	 * @return
+	 * @throws IOException
+	 */
+	public Writer createWriter(String alias, OutputStream out) throws IOException {
+		return new Writer(alias, out);
+	}
+
+	/**
+	 * Start reading a backup from the stream. The header is read immediately.
+	 *
+	 * @param alias
+	 *            The alias the backup must have been written with.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public Reader createReader(String alias, InputStream in) throws IOException {
+		return new Reader(alias, in);
+	}
+
+	/**
+	 * Streaming writer of rows.
+	 */
+	public class Writer {
+
+		private final DataOutputStream out;
+		private final ByteArrayOutputStream rowBuffer = new ByteArrayOutputStream();
+		private final DataOutputStream rowOut = new DataOutputStream(rowBuffer);
+
+		private Writer(String alias, OutputStream stream) throws IOException {
+			this.out = new DataOutputStream(stream);
+			out.write(MAGIC);
+			out.writeByte(VERSION);
+			writeString(out, alias);
+			out.writeInt(fields.size());
+			for (FieldCodec field : fields) {
+				writeString(out, field.name);
+				out.writeByte(field.typeCode);
+			}
+		}
+
+		/**
+		 * Write a single row.
+		 *
+		 * @param row
+		 * @throws IOException
+		 */
+		public void write(B row) throws IOException {
+			if (row == null) throw new IllegalArgumentException("Row cannot be null");
+			rowBuffer.reset();
+			for (FieldCodec field : fields) {
+				writeValue(rowOut, field.typeCode, field.get(row));
+			}
+			rowOut.flush();
+			out.writeInt(rowBuffer.size());
+			rowBuffer.writeTo(out);
+		}
+
+		/**
+		 * Mark the end of the rows and flush the stream.
+		 *
+		 * @throws IOException
+		 */
+		public void finish() throws IOException {
+			out.writeInt(END_OF_ROWS);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Streaming reader of rows.
+	 */
+	public class Reader {
+
+		private final DataInputStream in;
+		private final byte[] typeCodes;
+		// The local field for each field in the stream. Null for unknown fields.
+		private final FieldCodec[] targets;
+		private boolean done = false;
+
+		private Reader(String alias, InputStream stream) throws IOException {
+			this.in = new DataInputStream(stream);
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (magic[i] != MAGIC[i]) throw new IOException("Not a binary backup stream");
+			}
+			int version = in.readByte();
+			if (version != VERSION) throw new IOException("Unsupported binary backup version: " + version);
+			String streamAlias = readString(in);
+			if (alias != null && !alias.equals(streamAlias)) {
+				throw new IOException("Expected a backup of: " + alias + " but found: " + streamAlias);
+			}
+			int count = in.readInt();
+			typeCodes = new byte[count];
+			targets = new FieldCodec[count];
+			for (int i = 0; i < count; i++) {
+				String name = readString(in);
+				typeCodes[i] = in.readByte();
+				FieldCodec local = fieldsByName.get(name);
+				if (local != null && local.typeCode == typeCodes[i]) {
+					targets[i] = local;
+				}
+			}
+		}
+
+		/**
+		 * Read the next row.
+		 *
+		 * @return The next row or null when there are no more rows.
+		 * @throws IOException
+		 */
+		public B read() throws IOException {
+			if (done) return null;
+			int length = in.readInt();
+			if (length == END_OF_ROWS) {
+				done = true;
+				return null;
+			}
+			B row = newInstance();
+			for (int i = 0; i < typeCodes.length; i++) {
+				FieldCodec target = targets[i];
+				Object value = readValue(in, typeCodes[i], target == null ? null : target.type);
+				if (target != null && value != null) {
+					target.set(row, value);
+				}
+			}
+			return row;
+		}
+	}
+
+	private B newInstance() {
+		try {
+			return constructor.newInstance();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Build the codec for a class or null if the class is not supported.
+	 */
+	private static <B> BinaryBackupCodec<B> buildCodec(Class<B> clazz) {
+		Constructor<B> constructor;
+		try {
+			constructor = clazz.getDeclaredConstructor();
+			constructor.setAccessible(true);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+		List<FieldCodec> fields = new ArrayList<FieldCodec>();
+		Class<?> current = clazz;
+		while (current != null && current != Object.class) {
+			for (Field field : current.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+					continue;
+				}
+				Byte typeCode = getTypeCode(field.getType());
+				if (typeCode == null) {
+					return null;
+				}
+				field.setAccessible(true);
+				fields.add(new FieldCodec(field, typeCode));
+			}
+			current = current.getSuperclass();
+		}
+		// Field order from reflection is not defined so sort by name.
+		Collections.sort(fields, new Comparator<FieldCodec>() {
+			@Override
+			public int compare(FieldCodec one, FieldCodec two) {
+				return one.name.compareTo(two.name);
+			}
+		});
+		for (int i = 1; i < fields.size(); i++) {
+			if (fields.get(i).name.equals(fields.get(i - 1).name)) {
+				// A field hides a field of a super class.
+				return null;
+			}
+		}
+		return new BinaryBackupCodec<B>(constructor, fields);
+	}
+
+	private static Byte getTypeCode(Class<?> type) {
+		if (type == Long.class || type == long.class) return TYPE_LONG;
+		if (type == String.class) return TYPE_STRING;
+		if (type == byte[].class) return TYPE_BYTES;
+		if (type == Boolean.class || type == boolean.class) return TYPE_BOOLEAN;
+		if (type == Timestamp.class) return TYPE_TIMESTAMP;
+		if (type == Date.class) return TYPE_DATE;
+		if (type == Integer.class || type == int.class) return TYPE_INTEGER;
+		if (type == Short.class || type == short.class) return TYPE_SHORT;
+		if (type == Double.class || type == double.class) return TYPE_DOUBLE;
+		if (type.isEnum()) return TYPE_ENUM;
+		return null;
+	}
+
+	private static void writeValue(DataOutputStream out, byte typeCode, Object value) throws IOException {
+		if (value == null) {
+			out.writeBoolean(false);
+			return;
+		}
+		out.writeBoolean(true);
+		switch (typeCode) {
+		case TYPE_LONG:
+			out.writeLong((Long) value);
+			break;
+		case TYPE_STRING:
+			writeString(out, (String) value);
+			break;
+		case TYPE_BYTES:
+			byte[] bytes = (byte[]) value;
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			break;
+		case TYPE_BOOLEAN:
+			out.writeBoolean((Boolean) value);
+			break;
+		case TYPE_DATE:
+			out.writeLong(((Date) value).getTime());
+			break;
+		case TYPE_TIMESTAMP:
+			Timestamp timestamp = (Timestamp) value;
+			out.writeLong(timestamp.getTime());
+			out.writeInt(timestamp.getNanos());
+			break;
+		case TYPE_INTEGER:
+			out.writeInt((Integer) value);
+			break;
+		case TYPE_SHORT:
+			out.writeShort((Short) value);
+			break;
+		case TYPE_DOUBLE:
+			out.writeDouble((Double) value);
+			break;
+		case TYPE_ENUM:
+			writeString(out, ((Enum<?>) value).name());
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown type code: " + typeCode);
+		}
+	}
+
+	/**
+	 * Read a value from the stream.
+	 *
+	 * @param in
+	 * @param typeCode
+	 * @param type
+	 *            The type of the local field. Only used for enums. Null when
+	 *            the value is being skipped.
+	 * @return
+	 * @throws IOException
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object readValue(DataInputStream in, byte typeCode, Class<?> type) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		switch (typeCode) {
+		case TYPE_LONG:
+			return in.readLong();
+		case TYPE_STRING:
+			return readString(in);
+		case TYPE_BYTES:
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return bytes;
+		case TYPE_BOOLEAN:
+			return in.readBoolean();
+		case TYPE_DATE:
+			return new Date(in.readLong());
+		case TYPE_TIMESTAMP:
+			Timestamp timestamp = new Timestamp(in.readLong());
+			timestamp.setNanos(in.readInt());
+			return timestamp;
+		case TYPE_INTEGER:
+			return in.readInt();
+		case TYPE_SHORT:
+			return in.readShort();
+		case TYPE_DOUBLE:
+			return in.readDouble();
+		case TYPE_ENUM:
+			String name = readString(in);
+			if (type == null) return null;
+			return Enum.valueOf((Class<? extends Enum>) type, name);
+		default:
+			throw new IOException("Unknown type code: " + typeCode);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) throw new EOFException("Invalid string length: " + length);
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * Reads and writes a single field of the backup class.
+	 */
+	private static class FieldCodec {
+
+		final Field field;
+		final String name;
+		final Class<?> type;
+		final byte typeCode;
+
+		FieldCodec(Field field, byte typeCode) {
+			this.field = field;
+			this.name = field.getName();
+			this.type = field.getType();
+			this.typeCode = typeCode;
+		}
+
+		Object get(Object row) {
+			try {
+				return field.get(row);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		void set(Object row, Object value) {
+			try {
+				field.set(row, value);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
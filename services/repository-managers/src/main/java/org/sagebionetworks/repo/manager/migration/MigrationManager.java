@@ -5,6 +5,8 @@ import java.io.OutputStream;
 import java.util.List;
 
 import org.sagebionetworks.repo.model.UserInfo;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.RowMetadataResult;
 
@@ -50,6 +52,29 @@ public interface MigrationManager {
 	 */
 	public RowMetadataResult getRowMetadataDeltaForType(UserInfo user, MigrationType type, List<Long> idList);
 	
+	/**
+	 * Count the rows with an ID in the given range (inclusive) and calculate a checksum of their IDs and etags.
+	 * 
+	 * @param user
+	 * @param type
+	 * @param minId
+	 * @param maxId
+	 * @return
+	 */
+	public MigrationRangeChecksum getChecksumForIdRange(UserInfo user, MigrationType type, long minId, long maxId);
+	
+	/**
+	 * List the row metadata for the rows with an ID in the given range (inclusive).
+	 * 
+	 * @param user
+	 * @param type
+	 * @param minId
+	 * @param maxId
+	 * @param limit
+	 * @return
+	 */
+	public RowMetadataResult getRowMetadataForIdRange(UserInfo user, MigrationType type, long minId, long maxId, long limit);
+	
 	/**
 	 * Get a batch of objects to backup.
 	 * @param clazz
@@ -57,9 +82,19 @@ public interface MigrationManager {
 	 * @return
 	 */
 	public void writeBackupBatch(UserInfo user, MigrationType type, List<Long> rowIds, OutputStream out);
+	
+	/**
+	 * Write a batch of objects to backup in the requested format.
+	 * @param user
+	 * @param type
+	 * @param rowIds
+	 * @param out
+	 * @param format
+	 */
+	public void writeBackupBatch(UserInfo user, MigrationType type, List<Long> rowIds, OutputStream out, BackupFormat format);
 
 	/**
-	 * Create or update a batch.
+	 * Create or update a batch. The batch can be in any {@link BackupFormat}.
 	 * @param batch - batch of objects to create or update.
 	 */
 	public List<Long> createOrUpdateBatch(UserInfo user, MigrationType type, InputStream in);
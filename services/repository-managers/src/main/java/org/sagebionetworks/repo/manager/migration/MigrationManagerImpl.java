@@ -12,7 +12,9 @@ import org.sagebionetworks.repo.model.dbo.DatabaseObject;
 import org.sagebionetworks.repo.model.dbo.MigratableDatabaseObject;
 import org.sagebionetworks.repo.model.dbo.migration.MigratableTableDAO;
 import org.sagebionetworks.repo.model.dbo.migration.MigratableTableTranslation;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
 import org.sagebionetworks.repo.model.migration.ListBucketProvider;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.MigrationUtils;
 import org.sagebionetworks.repo.model.migration.RowMetadata;
@@ -98,16 +100,41 @@ public class MigrationManagerImpl implements MigrationManager {
 		return result;
 	}
 
+	@Override
+	public MigrationRangeChecksum getChecksumForIdRange(UserInfo user, MigrationType type, long minId, long maxId) {
+		validateUser(user);
+		if(type == null) throw new IllegalArgumentException("Type cannot be null");
+		if(minId > maxId) throw new IllegalArgumentException("minId cannot be greater than maxId");
+		return migratableTableDao.getChecksumForIdRange(type, minId, maxId);
+	}
+
+	@Override
+	public RowMetadataResult getRowMetadataForIdRange(UserInfo user, MigrationType type, long minId, long maxId, long limit) {
+		validateUser(user);
+		if(type == null) throw new IllegalArgumentException("Type cannot be null");
+		if(minId > maxId) throw new IllegalArgumentException("minId cannot be greater than maxId");
+		List<RowMetadata> list = migratableTableDao.listRowMetadataForIdRange(type, minId, maxId, limit);
+		RowMetadataResult result = new RowMetadataResult();
+		result.setList(list);
+		return result;
+	}
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
-	@SuppressWarnings("unchecked")
 	@Override
 	public void writeBackupBatch(UserInfo user, MigrationType type, List<Long> rowIds, OutputStream out) {
+		writeBackupBatch(user, type, rowIds, out, BackupFormat.XML);
+	}
+
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@SuppressWarnings("unchecked")
+	@Override
+	public void writeBackupBatch(UserInfo user, MigrationType type, List<Long> rowIds, OutputStream out, BackupFormat format) {
 		validateUser(user);
 		if(type == null) throw new IllegalArgumentException("Type cannot be null");
 		// Get the database object from the dao
 		MigratableDatabaseObject mdo = migratableTableDao.getObjectForType(type);
 		// Forward to the generic method
-		writeBackupBatch(mdo, type, rowIds, out);
+		writeBackupBatch(mdo, type, rowIds, out, format);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -175,8 +202,9 @@ public class MigrationManagerImpl implements MigrationManager {
 	 * @param type
 	 * @param rowIds
 	 * @param out
+	 * @param format
 	 */
-	protected <D extends DatabaseObject<D>, B> void writeBackupBatch(MigratableDatabaseObject<D, B> mdo, MigrationType type, List<Long> rowIds, OutputStream out){
+	protected <D extends DatabaseObject<D>, B> void writeBackupBatch(MigratableDatabaseObject<D, B> mdo, MigrationType type, List<Long> rowIds, OutputStream out, BackupFormat format){
 		// Get all of the data from the DAO batched.
 		List<D> databaseList = getBackupDataBatched(mdo.getDatabaseObjectClass(), rowIds);
 		// Translate to the backup objects
@@ -189,7 +217,7 @@ public class MigrationManagerImpl implements MigrationManager {
 		// we use the table name as the Alias
 		String alias = mdo.getTableMapping().getTableName();
 		// Now write the backup to the stream
-		BackupMarshalingUtils.writeBackupToStream(backupList, alias, out);
+		BackupMarshalingUtils.writeBackupToStream(backupList, alias, out, format);
 	}
 
 	/**
@@ -310,15 +338,25 @@ public class MigrationManagerImpl implements MigrationManager {
 	}
 
 	private void deleteAllForType(UserInfo user, MigrationType type){
-		// First get all data for this type.
-		RowMetadataResult result =  migratableTableDao.listRowMetadata(type, Long.MAX_VALUE, 0);
-		List<RowMetadata> list =result.getList();
-		if(list.size() > 0){
-			// Create the list of IDs to delete
-			List<Long> toDelete = new LinkedList<Long>();
-			for(RowMetadata row: list){
+		// First get all IDs for this type, one page at a time starting after the last ID of the previous page.
+		List<Long> toDelete = new LinkedList<Long>();
+		long nextId = Long.MIN_VALUE;
+		while(true){
+			List<RowMetadata> page = migratableTableDao.listRowMetadataForIdRange(type, nextId, Long.MAX_VALUE, backupBatchMax);
+			for(RowMetadata row: page){
 				toDelete.add(row.getId());
 			}
+			if(page.size() < backupBatchMax){
+				break;
+			}
+			long lastId = page.get(page.size()-1).getId();
+			if(lastId == Long.MAX_VALUE){
+				break;
+			}
+			nextId = lastId+1;
+		}
+		if(toDelete.size() > 0){
+			// Delete them all at once so children are deleted before their parents.
 			deleteObjectsById(user, type, toDelete);
 		}
 	}
@@ -0,0 +1,49 @@
+package org.sagebionetworks.repo.manager.migration;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.sagebionetworks.repo.model.NodeDAO;
+import org.sagebionetworks.repo.model.dbo.DatabaseObject;
+import org.sagebionetworks.repo.model.dbo.persistence.DBONode;
+import org.sagebionetworks.repo.model.migration.MigrationType;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Migration writes nodes directly so the node ancestry can become stale when a
+ * migrated node has moved. This listener clears the ancestry of each migrated
+ * node so it is rebuilt from the new parent IDs.
+ * 
+ * @author John
+ *
+ */
+public class NodeAncestryMigrationListener implements MigrationTypeListener {
+
+	@Autowired
+	NodeDAO nodeDao;
+
+	/**
+	 * Used for mock testing.
+	 * 
+	 * @param nodeDao
+	 */
+	public void setNodeDao(NodeDAO nodeDao) {
+		this.nodeDao = nodeDao;
+	}
+
+	@Override
+	public <D extends DatabaseObject<?>> void afterCreateOrUpdate(MigrationType type, List<D> delta) {
+		if(!MigrationType.NODE.equals(type)) return;
+		List<Long> nodeIds = new LinkedList<Long>();
+		for(D dbo: delta){
+			nodeIds.add(((DBONode) dbo).getId());
+		}
+		nodeDao.clearAncestry(nodeIds);
+	}
+
+	@Override
+	public void beforeDeleteBatch(MigrationType type, List<Long> idsToDelete) {
+		// The ancestry of deleted nodes is removed with the nodes.
+	}
+
+}
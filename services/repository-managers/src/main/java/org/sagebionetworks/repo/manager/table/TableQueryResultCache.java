@@ -0,0 +1,244 @@
+package org.sagebionetworks.repo.manager.table;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.sagebionetworks.repo.model.table.ColumnModel;
+import org.sagebionetworks.repo.model.table.Row;
+import org.sagebionetworks.repo.model.table.RowSet;
+import org.sagebionetworks.table.cluster.SqlQuery;
+
+/**
+ * An in-memory LRU cache of table query results bounded by the estimated size
+ * of the cached results.
+ * <p>
+ * Each entry is keyed by the translated SQL of a query, its bind parameters,
+ * the table schema and the version of the table the results were read from
+ * (the etag of the last change applied to the index). Since the version is part
+ * of the key, a stale entry can never be returned. Entries for a table are
+ * removed when the table changes to free the memory early.
+ * <p>
+ * Callers are expected to check authorization before calling
+ * {@link #get(SqlQuery, String)}. Results are copied on the way in and out so
+ * callers cannot change a cached result.
+ *
+ * @author John
+ *
+ */
+public class TableQueryResultCache {
+
+	/**
+	 * Rough per-object overhead used when estimating the size of a result.
+	 */
+	private static final int OBJECT_OVERHEAD_BYTES = 48;
+
+	private final long maxBytes;
+	private final long maxBytesPerEntry;
+	private long currentBytes = 0;
+	private final LinkedHashMap<CacheKey, CacheEntry> entries;
+
+	/**
+	 *
+	 * @param maxBytes
+	 *            The maximum estimated size of all cached results. A single
+	 *            result larger than a tenth of this will not be cached.
+	 */
+	public TableQueryResultCache(long maxBytes) {
+		if (maxBytes < 1) throw new IllegalArgumentException("maxBytes must be greater than zero");
+		this.maxBytes = maxBytes;
+		this.maxBytesPerEntry = Math.max(1, maxBytes / 10);
+		// Access order makes this an LRU.
+		this.entries = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true);
+	}
+
+	/**
+	 * Get the cached results of a query run against the given version of a table.
+	 *
+	 * @param query
+	 * @param tableVersion
+	 * @return A copy of the cached results or null if the results are not in the cache.
+	 */
+	public synchronized RowSet get(SqlQuery query, String tableVersion) {
+		if (tableVersion == null) return null;
+		CacheEntry entry = entries.get(new CacheKey(query, tableVersion));
+		if (entry == null) return null;
+		return copy(entry.results);
+	}
+
+	/**
+	 * Cache the results of a query run against the given version of a table.
+	 *
+	 * @param query
+	 * @param tableVersion
+	 * @param results
+	 */
+	public synchronized void put(SqlQuery query, String tableVersion, RowSet results) {
+		if (tableVersion == null || results == null) return;
+		long size = estimateSizeBytes(results);
+		if (size > maxBytesPerEntry) {
+			// Too big to be worth caching.
+			return;
+		}
+		CacheKey key = new CacheKey(query, tableVersion);
+		CacheEntry old = entries.put(key, new CacheEntry(copy(results), size));
+		if (old != null) {
+			currentBytes -= old.sizeBytes;
+		}
+		currentBytes += size;
+		// Evict the least recently used entries until we are under the limit.
+		Iterator<CacheEntry> it = entries.values().iterator();
+		while (currentBytes > maxBytes && it.hasNext()) {
+			CacheEntry eldest = it.next();
+			currentBytes -= eldest.sizeBytes;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Remove all cached results for a table.
+	 *
+	 * @param tableId
+	 */
+	public synchronized void invalidate(String tableId) {
+		Iterator<Map.Entry<CacheKey, CacheEntry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<CacheKey, CacheEntry> next = it.next();
+			if (next.getKey().tableId.equals(tableId)) {
+				currentBytes -= next.getValue().sizeBytes;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * The number of cached results.
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * The estimated size of all cached results.
+	 *
+	 * @return
+	 */
+	public synchronized long getCurrentBytes() {
+		return currentBytes;
+	}
+
+	/**
+	 * Estimate the number of bytes a RowSet occupies in memory.
+	 *
+	 * @param results
+	 * @return
+	 */
+	static long estimateSizeBytes(RowSet results) {
+		long size = OBJECT_OVERHEAD_BYTES;
+		if (results.getHeaders() != null) {
+			for (String header : results.getHeaders()) {
+				size += OBJECT_OVERHEAD_BYTES + (header == null ? 0 : header.length() * 2);
+			}
+		}
+		if (results.getRows() != null) {
+			for (Row row : results.getRows()) {
+				size += OBJECT_OVERHEAD_BYTES * 2;
+				if (row.getValues() != null) {
+					for (String value : row.getValues()) {
+						size += OBJECT_OVERHEAD_BYTES + (value == null ? 0 : value.length() * 2);
+					}
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Copy a RowSet so the cached copy is never shared.
+	 *
+	 * @param results
+	 * @return
+	 */
+	static RowSet copy(RowSet results) {
+		RowSet copy = new RowSet();
+		copy.setTableId(results.getTableId());
+		copy.setEtag(results.getEtag());
+		if (results.getHeaders() != null) {
+			copy.setHeaders(new ArrayList<String>(results.getHeaders()));
+		}
+		if (results.getRows() != null) {
+			List<Row> rows = new ArrayList<Row>(results.getRows().size());
+			for (Row row : results.getRows()) {
+				Row rowCopy = new Row();
+				rowCopy.setRowId(row.getRowId());
+				rowCopy.setVersionNumber(row.getVersionNumber());
+				if (row.getValues() != null) {
+					rowCopy.setValues(new ArrayList<String>(row.getValues()));
+				}
+				rows.add(rowCopy);
+			}
+			copy.setRows(rows);
+		}
+		return copy;
+	}
+
+	private static class CacheEntry {
+		final RowSet results;
+		final long sizeBytes;
+
+		CacheEntry(RowSet results, long sizeBytes) {
+			this.results = results;
+			this.sizeBytes = sizeBytes;
+		}
+	}
+
+	/**
+	 * The normalized form of a query against a single version of a table.
+	 */
+	private static class CacheKey {
+		final String tableId;
+		final String tableVersion;
+		final String sql;
+		final String parameters;
+		final String schema;
+
+		CacheKey(SqlQuery query, String tableVersion) {
+			this.tableId = query.getTableId();
+			this.tableVersion = tableVersion;
+			this.sql = query.getOutputSQL();
+			// Sort the parameters so the key does not depend on the map order.
+			this.parameters = new TreeMap<String, Object>(query.getParameters()).toString();
+			StringBuilder builder = new StringBuilder();
+			for (ColumnModel cm : query.getTableSchema()) {
+				builder.append(cm.getId()).append(',');
+			}
+			this.schema = builder.toString();
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + tableId.hashCode();
+			result = prime * result + tableVersion.hashCode();
+			result = prime * result + sql.hashCode();
+			result = prime * result + parameters.hashCode();
+			result = prime * result + schema.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (obj == null || getClass() != obj.getClass()) return false;
+			CacheKey other = (CacheKey) obj;
+			return tableId.equals(other.tableId) && tableVersion.equals(other.tableVersion) && sql.equals(other.sql)
+					&& parameters.equals(other.parameters) && schema.equals(other.schema);
+		}
+	}
+}
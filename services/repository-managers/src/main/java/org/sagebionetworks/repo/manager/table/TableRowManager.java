@@ -121,6 +121,30 @@ public interface TableRowManager {
 	 */
 	public List<TableRowChange> listRowSetsKeysForTable(String tableId);
 
+	/**
+	 * List the changes that have been applied to a table after the given version, in version order.
+	 * 
+	 * @param tableId
+	 * @param version
+	 * @return
+	 */
+	public List<TableRowChange> listRowSetsKeysForTableGreaterThanVersion(String tableId, long version);
+
+	/**
+	 * Get the rows of a single change set that will not be replaced by a later
+	 * change set applied in the same pass. A row is only skipped when its
+	 * current version is no greater than maxVersion, so a row replaced by a
+	 * change set that the caller will not apply is still returned.
+	 * 
+	 * @param tableId
+	 * @param rowVersion
+	 * @param maxVersion The last version the caller will apply.
+	 * @return
+	 * @throws IOException
+	 * @throws NotFoundException
+	 */
+	public RowSet getCurrentRowsOfChangeSet(String tableId, long rowVersion, long maxVersion) throws IOException, NotFoundException;
+
 	/**
 	 * Get a specific RowSet.
 	 * 
@@ -407,6 +431,22 @@ public interface TableRowManager {
 
 	void removeLatestVersionCache(String tableId) throws IOException;
 
+	/**
+	 * List tables that were never added to the row version index.
+	 * 
+	 * @param limit
+	 * @return
+	 */
+	List<String> listTablesWithoutRowVersionIndex(long limit);
+
+	/**
+	 * Build the row version index of a table from its change sets.
+	 * 
+	 * @param tableId
+	 * @throws IOException
+	 */
+	void rebuildRowVersionIndex(String tableId) throws IOException;
+
 	/**
 	 * Get the maximum number of rows allowed for a single page (get, put, or query) for the given columns.
 	 * @param models
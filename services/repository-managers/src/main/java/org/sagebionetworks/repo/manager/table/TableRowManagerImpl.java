@@ -9,6 +9,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -25,7 +28,9 @@ import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.dao.semaphore.ExclusiveOrSharedSemaphoreRunner;
 import org.sagebionetworks.repo.model.dao.table.ColumnModelDAO;
 import org.sagebionetworks.repo.model.dao.table.RowAccessor;
+import org.sagebionetworks.repo.model.dao.table.ReusableRowHandler;
 import org.sagebionetworks.repo.model.dao.table.RowAndHeaderHandler;
+import org.sagebionetworks.repo.model.dao.table.RowHandler;
 import org.sagebionetworks.repo.model.dao.table.RowSetAccessor;
 import org.sagebionetworks.repo.model.dao.table.TableRowTruthDAO;
 import org.sagebionetworks.repo.model.dao.table.TableStatusDAO;
@@ -65,11 +70,25 @@ import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
 
 public class TableRowManagerImpl implements TableRowManager {
 	
 	static private Log log = LogFactory.getLog(TableRowManagerImpl.class);
 	
+	/**
+	 * The default maximum estimated size of all cached query results.
+	 */
+	public static final long DEFAULT_QUERY_CACHE_MAX_BYTES = 64L*1024L*1024L;
+	/**
+	 * Non-consistent query results are cached by index version rather than etag.
+	 */
+	private static final String INDEX_VERSION_PREFIX = "index-version-";
+	/**
+	 * The default maximum number of change sets waiting on S3 for a single append.
+	 */
+	public static final int DEFAULT_MAX_PENDING_CHANGE_SET_UPLOADS = 3;
+	
 	@Autowired
 	AuthorizationManager authorizationManager;
 	@Autowired
@@ -98,6 +117,18 @@ public class TableRowManagerImpl implements TableRowManager {
 	 * Injected by spring
 	 */
 	int maxBytesPerChangeSet;
+	
+	/**
+	 * Injected via spring. When null, change sets are uploaded to S3 one at a time.
+	 */
+	ExecutorService changeSetUploadExecutor;
+	
+	int maxPendingChangeSetUploads = DEFAULT_MAX_PENDING_CHANGE_SET_UPLOADS;
+	
+	/**
+	 * Results of queries keyed by the version of the table they were read from.
+	 */
+	TableQueryResultCache queryResultCache = new TableQueryResultCache(DEFAULT_QUERY_CACHE_MAX_BYTES);
 	/**
 	 * Injected via spring
 	 * @param tableReadTimeoutMS
@@ -114,6 +145,31 @@ public class TableRowManagerImpl implements TableRowManager {
 		this.maxBytesPerChangeSet = maxBytesPerChangeSet;
 	}
 
+	/**
+	 * Injected via spring
+	 * @param changeSetUploadExecutor
+	 */
+	public void setChangeSetUploadExecutor(ExecutorService changeSetUploadExecutor) {
+		this.changeSetUploadExecutor = changeSetUploadExecutor;
+	}
+
+	/**
+	 * The maximum number of change sets of a single append that can be waiting on S3.
+	 * Each pending change set is held in memory until its upload finishes.
+	 * @param maxPendingChangeSetUploads
+	 */
+	public void setMaxPendingChangeSetUploads(int maxPendingChangeSetUploads) {
+		this.maxPendingChangeSetUploads = maxPendingChangeSetUploads;
+	}
+
+	/**
+	 * Injected via spring
+	 * @param queryCacheMaxBytes The maximum estimated size of all cached query results.
+	 */
+	public void setQueryCacheMaxBytes(long queryCacheMaxBytes) {
+		this.queryResultCache = new TableQueryResultCache(queryCacheMaxBytes);
+	}
+
 
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	@Override
@@ -251,6 +307,8 @@ public class TableRowManagerImpl implements TableRowManager {
 		RowReferenceSet result = tableRowTruthDao.appendRowSetToTable(user.getId().toString(), tableId, models, rowSetToDelete, true);
 		// The table has change so we must reset the state.
 		tableStatusDAO.resetTableStatusToProcessing(tableId);
+		// Cached results for the old version can no longer be used.
+		queryResultCache.invalidate(tableId);
 		return result;
 	}
 
@@ -276,56 +334,104 @@ public class TableRowManagerImpl implements TableRowManager {
 		List<Row> batch = new LinkedList<Row>();
 		int batchSizeBytes = 0;
 		int count = 0;
-		RowSet delta = new RowSet();
-		delta.setEtag(etag);
-		delta.setHeaders(headers);
-		delta.setRows(batch);
-		delta.setTableId(tableId);
-		while(rowStream.hasNext()){
-			batch.add(rowStream.next());
-			batchSizeBytes += maxBytesPerRow;
-			if(batchSizeBytes >= maxBytesPerChangeSet){
-				// Validate there aren't any illegal file handle replaces
-				validateFileHandles(user, tableId, models, delta, etag);
-				// Send this batch and keep the etag.
-				etag = appendBatchOfRowsToTable(user, models, delta, results);
-				// Clear the batch
-				count += batch.size();
-				batch.clear();
-				batchSizeBytes = 0;
-				log.info("Appended: "+count+" rows to table: "+tableId);
+		String lastEtag = etag;
+		// Batches that are still being written to S3, oldest first.
+		LinkedList<Future<RowReferenceSet>> pendingUploads = new LinkedList<Future<RowReferenceSet>>();
+		try{
+			boolean hasNext = rowStream.hasNext();
+			while(hasNext){
+				batch.add(rowStream.next());
+				batchSizeBytes += maxBytesPerRow;
+				hasNext = rowStream.hasNext();
+				// Send a full batch or the last batch.
+				if(batchSizeBytes >= maxBytesPerChangeSet || !hasNext){
+					RowSet delta = new RowSet();
+					delta.setEtag(etag);
+					delta.setHeaders(headers);
+					delta.setRows(batch);
+					delta.setTableId(tableId);
+					// Validate there aren't any illegal file handle replaces
+					validateFileHandles(user, tableId, models, delta, etag);
+					// Row IDs and versions are assigned now, in order, while the upload may continue in the background.
+					pendingUploads.add(appendBatchOfRowsToTable(user, models, delta));
+					// Limit the number of batches held in memory while waiting on S3.
+					while(pendingUploads.size() > maxPendingChangeSetUploads){
+						lastEtag = waitForBatch(pendingUploads.removeFirst(), headers, tableId, results);
+					}
+					count += batch.size();
+					// The last batch may still be uploading so it cannot be reused.
+					batch = new LinkedList<Row>();
+					batchSizeBytes = 0;
+					log.info("Appended: "+count+" rows to table: "+tableId);
+				}
+			}
+			// Every change set must be in S3 before the transaction commits.
+			while(!pendingUploads.isEmpty()){
+				lastEtag = waitForBatch(pendingUploads.removeFirst(), headers, tableId, results);
+			}
+		}finally{
+			// On failure the transaction rolls back so any remaining uploads are not needed.
+			for(Future<RowReferenceSet> pending: pendingUploads){
+				pending.cancel(true);
 			}
-		}
-		// Send the last batch is there are any rows
-		if(!batch.isEmpty()){
-			// Validate there aren't any illegal file handle replaces
-			validateFileHandles(user, tableId, models, delta, etag);
-			etag = appendBatchOfRowsToTable(user, models, delta, results);
 		}
 		// The table has change so we must reset the state.
 		tableStatusDAO.resetTableStatusToProcessing(tableId);
-		return etag;
+		// Cached results for the old version can no longer be used.
+		queryResultCache.invalidate(tableId);
+		return lastEtag;
 	}
 
 	/**
-	 * Append a batch of rows to a table.
+	 * Append a batch of rows to a table. When an upload executor is configured
+	 * the change set is written to S3 in the background.
 	 * 
-	 * @param tableId
+	 * @param user
 	 * @param models
-	 * @param etag
-	 * @param results
-	 * @param headers
-	 * @param batch
+	 * @param delta
 	 * @return
 	 * @throws IOException
 	 */
-	private String appendBatchOfRowsToTable(UserInfo user, List<ColumnModel> models, RowSet delta, RowReferenceSet results)
+	private Future<RowReferenceSet> appendBatchOfRowsToTable(UserInfo user, List<ColumnModel> models, RowSet delta)
+			throws IOException {
+		if(changeSetUploadExecutor == null){
+			return Futures.immediateFuture(tableRowTruthDao.appendRowSetToTable(user.getId().toString(), delta.getTableId(), models, delta, false));
+		}
+		return tableRowTruthDao.appendRowSetToTableAsync(user.getId().toString(), delta.getTableId(), models, delta, changeSetUploadExecutor);
+	}
+
+	/**
+	 * Wait for a batch to be written to S3 and add its row references to the results.
+	 * 
+	 * @param pending
+	 * @param headers
+	 * @param tableId
+	 * @param results
+	 * @return The etag of the batch.
+	 * @throws IOException
+	 */
+	private String waitForBatch(Future<RowReferenceSet> pending, List<String> headers, String tableId, RowReferenceSet results)
 			throws IOException {
-		RowReferenceSet rrs = tableRowTruthDao.appendRowSetToTable(user.getId().toString(), delta.getTableId(), models, delta, false);
+		RowReferenceSet rrs;
+		try {
+			rrs = pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DatastoreException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException){
+				throw (IOException) cause;
+			}
+			if(cause instanceof RuntimeException){
+				throw (RuntimeException) cause;
+			}
+			throw new DatastoreException(cause);
+		}
 		if(results != null){
 			results.setEtag(rrs.getEtag());
-			results.setHeaders(delta.getHeaders());
-			results.setTableId(delta.getTableId());
+			results.setHeaders(headers);
+			results.setTableId(tableId);
 			if(results.getRows() == null){
 				results.setRows(new LinkedList<RowReference>());
 			}
@@ -367,6 +473,46 @@ public class TableRowManagerImpl implements TableRowManager {
 		return tableRowTruthDao.listRowSetsKeysForTable(tableId);
 	}
 
+	@Override
+	public List<TableRowChange> listRowSetsKeysForTableGreaterThanVersion(String tableId, long version) {
+		return tableRowTruthDao.listRowSetsKeysForTableGreaterThanVersion(tableId, version);
+	}
+
+	@Override
+	public RowSet getCurrentRowsOfChangeSet(String tableId, long rowVersion, long maxVersion) throws IOException, NotFoundException {
+		final List<Row> rows = new LinkedList<Row>();
+		TableRowChange change = tableRowTruthDao.scanRowSet(tableId, rowVersion, new RowHandler() {
+			@Override
+			public void nextRow(Row row) {
+				rows.add(row);
+			}
+		});
+		if (!rows.isEmpty()) {
+			Set<Long> rowIds = Sets.newHashSet();
+			for (Row row : rows) {
+				rowIds.add(row.getRowId());
+			}
+			// A row with a later version will be applied by that later change set, unless the
+			// later change set was appended after the caller listed the change sets to apply.
+			Map<Long, Long> replaced = tableRowTruthDao.getLatestVersions(tableId, rowIds, rowVersion + 1);
+			if (!replaced.isEmpty()) {
+				Iterator<Row> it = rows.iterator();
+				while (it.hasNext()) {
+					Long latest = replaced.get(it.next().getRowId());
+					if (latest != null && latest <= maxVersion) {
+						it.remove();
+					}
+				}
+			}
+		}
+		RowSet set = new RowSet();
+		set.setTableId(tableId);
+		set.setHeaders(change.getHeaders());
+		set.setEtag(change.getEtag());
+		set.setRows(rows);
+		return set;
+	}
+
 	@Override
 	public RowSet getRowSet(String tableId, Long rowVersion, Set<Long> rowsToGet) throws IOException, NotFoundException {
 		return tableRowTruthDao.getRowSet(tableId, rowVersion, rowsToGet);
@@ -553,6 +699,17 @@ public class TableRowManagerImpl implements TableRowManager {
 	 */
 	@Override
 	public RowSet runConsistentQuery(final SqlQuery query) throws TableUnavilableException, NotFoundException {
+		// Check the cache before acquiring the read lock.  Cached results were read from an available
+		// index at the cached etag so they can be returned if the table is still at that etag.
+		TableStatus currentStatus = getTableStatusOrCreateIfNotExists(query.getTableId());
+		if (!TableState.AVAILABLE.equals(currentStatus.getState())) {
+			throw new TableUnavilableException(currentStatus);
+		}
+		RowSet cached = queryResultCache.get(query, currentStatus.getLastTableChangeEtag());
+		if (cached != null) {
+			cached.setEtag(currentStatus.getLastTableChangeEtag());
+			return cached;
+		}
 		final RowSet results = new RowSet();
 		final List<Row> rows = new LinkedList<Row>();
 		results.setRows(rows);
@@ -571,6 +728,7 @@ public class TableRowManagerImpl implements TableRowManager {
 		});
 		results.setTableId(query.getTableId());
 		results.setEtag(etag);
+		queryResultCache.put(query, etag, results);
 		return results;
 	}
 	
@@ -632,12 +790,15 @@ public class TableRowManagerImpl implements TableRowManager {
 			throw new IllegalArgumentException("Cannot include ROW_ID and ROW_VERSION for aggregate queries");
 		}
 		final AsynchDownloadResponseBody repsonse = new AsynchDownloadResponseBody();
-		String etag = runConsistentQueryAsStream(query, new RowAndHeaderHandler() {
+		// Each row is written before the next is read so the row and the line can be reused.
+		String etag = runConsistentQueryAsStream(query, new ReusableRowHandler() {
+			
+			String[] line = null;
 			
 			@Override
 			public void nextRow(Row row) {
-				String[] array = TableModelUtils.writeRowToStringArray(row, includeRowIdAndVersion);
-				writer.writeNext(array);
+				line = TableModelUtils.writeRowToStringArray(row, includeRowIdAndVersion, line);
+				writer.writeNext(line);
 			}
 			@Override
 			public void setHeaderColumnIds(List<String> headers) {
@@ -663,6 +824,16 @@ public class TableRowManagerImpl implements TableRowManager {
 		tableRowTruthDao.removeLatestVersionCache(tableId);
 	}
 
+	@Override
+	public List<String> listTablesWithoutRowVersionIndex(long limit) {
+		return tableRowTruthDao.listTablesWithoutRowVersionIndex(limit);
+	}
+
+	@Override
+	public void rebuildRowVersionIndex(String tableId) throws IOException {
+		tableRowTruthDao.rebuildRowVersionIndex(tableId);
+	}
+
 	TableUnavilableException createTableUnavilableException(String tableId){
 		// When this occurs we need to lookup the status of the table and pass that to the caller
 		try {
@@ -681,7 +852,34 @@ public class TableRowManagerImpl implements TableRowManager {
 	private RowSet query(SqlQuery query){
 		// Get a connection
 		TableIndexDAO indexDao = tableConnectionFactory.getConnection(query.getTableId());
-		return indexDao.query(query);
+		// Without a lock the best we can do is key the results by the last version applied to the index.
+		String cacheVersion = getIndexCacheVersion(indexDao, query.getTableId());
+		RowSet cached = queryResultCache.get(query, cacheVersion);
+		if(cached != null){
+			return cached;
+		}
+		RowSet results = indexDao.query(query);
+		// The index could have been updated while the query ran, in which case the results
+		// might not match the version they would be cached under.
+		if(cacheVersion != null && cacheVersion.equals(getIndexCacheVersion(indexDao, query.getTableId()))){
+			queryResultCache.put(query, cacheVersion, results);
+		}
+		return results;
+	}
+
+	/**
+	 * The version used to cache non-consistent query results.
+	 * 
+	 * @param indexDao
+	 * @param tableId
+	 * @return null if the index has not applied any version.
+	 */
+	private static String getIndexCacheVersion(TableIndexDAO indexDao, String tableId){
+		Long indexVersion = indexDao.getMaxCurrentCompleteVersionForTable(tableId);
+		if(indexVersion != null && indexVersion >= 0){
+			return INDEX_VERSION_PREFIX+indexVersion;
+		}
+		return null;
 	}
 	
 	/**
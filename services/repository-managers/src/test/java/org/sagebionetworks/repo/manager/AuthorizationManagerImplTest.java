@@ -6,9 +6,11 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
@@ -314,7 +316,7 @@ public class AuthorizationManagerImplTest {
 	@Test 
 	public void testCanPublicRead() throws Exception {
 		// verify that anonymous user can't initially access
-		boolean b = authorizationManager.canAccess(anonInfo, node.getId(), ObjectType.ENTITY, ACCESS_TYPE.READ);
+		boolean b = authorizationManager.canAccess(anonInfo, node.getId(), ObjectType.ENTITY, ACCESS_TYPE.READ);
 		assertFalse(b);
 		
 		//so public can't read, no matter who is requesting
@@ -367,6 +369,39 @@ public class AuthorizationManagerImplTest {
 		
 	}
 
+	@Test
+	public void testGetUserPermissionsForEntities() throws Exception {
+		AccessControlList acl = entityPermissionsManager.getACL(node.getId(), userInfo);
+		acl = AuthorizationTestHelper.addToACL(acl, userInfo.getId(), ACCESS_TYPE.READ);
+		acl = AuthorizationTestHelper.addToACL(acl, publicGroup, ACCESS_TYPE.READ);
+		acl = entityPermissionsManager.updateACL(acl, adminUser);
+		
+		List<String> ids = Arrays.asList(node.getId(), childNode.getId());
+		Map<String, UserEntityPermissions> results = entityPermissionsManager.getUserPermissionsForEntities(userInfo, ids);
+		assertEquals(2, results.size());
+		// Each must match the single entity call.
+		for(String id: ids){
+			assertEquals(entityPermissionsManager.getUserPermissionsForEntity(userInfo, id), results.get(id));
+		}
+		UserEntityPermissions uep = results.get(childNode.getId());
+		assertTrue(uep.getCanView());
+		assertFalse(uep.getCanEdit());
+		assertTrue(uep.getCanPublicRead());
+		assertEquals(node.getCreatedByPrincipalId(), uep.getOwnerPrincipalId());
+		// Admin and anonymous
+		results = entityPermissionsManager.getUserPermissionsForEntities(adminUser, ids);
+		assertTrue(results.get(childNode.getId()).getCanEdit());
+		assertTrue(results.get(childNode.getId()).getCanEnableInheritance());
+		results = entityPermissionsManager.getUserPermissionsForEntities(anonInfo, ids);
+		assertFalse(results.get(node.getId()).getCanEdit());
+		assertTrue(results.get(node.getId()).getCanView());
+	}
+	
+	@Test (expected=NotFoundException.class)
+	public void testGetUserPermissionsForEntitiesNotFound() throws Exception {
+		entityPermissionsManager.getUserPermissionsForEntities(userInfo, Arrays.asList(node.getId(), "syn-123"));
+	}
+
 	// test lack of access to something that doesn't inherit its permissions, whose parent you CAN access
 	@Test
 	public void testCantAccessNotInherited() throws Exception {		
@@ -8,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -16,6 +17,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.sagebionetworks.repo.model.AuthorizationConstants.BOOTSTRAP_PRINCIPAL;
+import org.sagebionetworks.repo.model.GroupMembersDAO;
+import org.sagebionetworks.repo.model.UserGroup;
 import org.sagebionetworks.repo.model.UserGroupDAO;
 import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.auth.NewUser;
@@ -40,6 +43,9 @@ public class UserManagerImplTest {
 	@Autowired
 	private UserGroupDAO userGroupDAO;
 	
+	@Autowired
+	private GroupMembersDAO groupMembersDAO;
+	
 	private List<String> groupsToDelete;
 	
 	
@@ -113,4 +119,33 @@ public class UserManagerImplTest {
 		userManager.getUserInfo(BOOTSTRAP_PRINCIPAL.ANONYMOUS_USER.getPrincipalId());
 		userManager.getUserInfo(BOOTSTRAP_PRINCIPAL.ANONYMOUS_USER.getPrincipalId());
 	}
+	
+	@Test
+	public void testMembershipChangeVisible() throws Exception {
+		NewUser user = new NewUser();
+		user.setEmail(UUID.randomUUID().toString() + "@test.com");
+		user.setUserName(UUID.randomUUID().toString());
+		Long principalId = userManager.createUser(user);
+		groupsToDelete.add(principalId.toString());
+		UserGroup group = new UserGroup();
+		group.setIsIndividual(false);
+		Long groupId = userGroupDAO.create(group);
+		groupsToDelete.add(groupId.toString());
+		
+		// This call will cache the user
+		UserInfo ui = userManager.getUserInfo(principalId);
+		assertFalse(ui.getGroups().contains(groupId));
+		// Changes to the returned copy must not leak into the cache
+		ui.getGroups().add(groupId);
+		ui = userManager.getUserInfo(principalId);
+		assertFalse(ui.getGroups().contains(groupId));
+		// Join the group
+		groupMembersDAO.addMembers(groupId.toString(), Collections.singletonList(principalId.toString()));
+		ui = userManager.getUserInfo(principalId);
+		assertTrue(ui.getGroups().contains(groupId));
+		// Leave the group
+		groupMembersDAO.removeMembers(groupId.toString(), Collections.singletonList(principalId.toString()));
+		ui = userManager.getUserInfo(principalId);
+		assertFalse(ui.getGroups().contains(groupId));
+	}
 }
@@ -3,6 +3,7 @@ package org.sagebionetworks.repo.manager.backup.daemon;
 import static org.junit.Assert.assertEquals;
 
 import org.junit.Test;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 
 public class BackupDriverImplTest {
@@ -14,4 +15,12 @@ public class BackupDriverImplTest {
 		MigrationType type = BackupDriverImpl.getTypeFromFileName(name);
 		assertEquals(MigrationType.FILE_HANDLE, type);
 	}
+	
+	@Test
+	public void testBinaryFileNameRoundTrip(){
+		String name = BackupDriverImpl.getFileNameForType(MigrationType.FILE_HANDLE, BackupFormat.BINARY);
+		assertEquals("FILE_HANDLE.bin", name);
+		MigrationType type = BackupDriverImpl.getTypeFromFileName(name);
+		assertEquals(MigrationType.FILE_HANDLE, type);
+	}
 }
@@ -1,20 +1,30 @@
 package org.sagebionetworks.repo.manager.message;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import org.sagebionetworks.repo.model.ObjectType;
 import org.sagebionetworks.repo.model.message.ChangeMessage;
+import org.sagebionetworks.repo.model.message.ChangeMessageBatchSender;
 import org.sagebionetworks.repo.model.message.ChangeType;
 import org.sagebionetworks.repo.model.message.TransactionalMessenger;
+import org.sagebionetworks.schema.adapter.org.json.EntityFactory;
 
 import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sns.model.CreateTopicRequest;
+import com.amazonaws.services.sns.model.CreateTopicResult;
 import com.amazonaws.services.sns.model.PublishRequest;
 
 /**
@@ -93,4 +103,81 @@ public class RepositoryMessagePublisherImplTest {
 		}
 		verify(mockAwsSNSClient, never()).publish(any(PublishRequest.class));
 	}
+	
+	@Test
+	public void testPublishBatchToTopic() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			messagePublisher.setPublishExecutor(executor);
+			stubSendAndRegister();
+			when(mockAwsSNSClient.createTopic(any(CreateTopicRequest.class))).thenReturn(new CreateTopicResult().withTopicArn("arn"));
+			List<ChangeMessage> batch = createMessages(5);
+			// The third message fails to publish.
+			final String failedBody = EntityFactory.createJSONStringForEntity(batch.get(2));
+			when(mockAwsSNSClient.publish(any(PublishRequest.class))).thenAnswer(new Answer<Object>() {
+				@Override
+				public Object answer(InvocationOnMock invocation) throws Throwable {
+					PublishRequest request = (PublishRequest) invocation.getArguments()[0];
+					if(failedBody.equals(request.getMessage())){
+						throw new IllegalStateException("Publish failed");
+					}
+					return null;
+				}
+			});
+			List<ChangeMessage> sent = messagePublisher.publishBatchToTopic(batch);
+			// Only the messages that were published are registered as sent.
+			assertEquals(4, sent.size());
+			assertFalse(sent.contains(batch.get(2)));
+			verify(mockAwsSNSClient, times(5)).publish(any(PublishRequest.class));
+			// The topic is only created once.
+			verify(mockAwsSNSClient, times(1)).createTopic(any(CreateTopicRequest.class));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testTimerFiredBatches(){
+		messagePublisher.setShouldMessagesBePublishedToTopic(true);
+		stubSendAndRegister();
+		when(mockAwsSNSClient.createTopic(any(CreateTopicRequest.class))).thenReturn(new CreateTopicResult().withTopicArn("arn"));
+		int count = RepositoryMessagePublisherImpl.PUBLISH_BATCH_SIZE+1;
+		for(ChangeMessage toFire: createMessages(count)){
+			messagePublisher.fireChangeMessage(toFire);
+		}
+		messagePublisher.timerFired();
+		// One transaction per batch rather than per message.
+		verify(mockTransactionalMessanger, times(2)).sendAndRegisterMessages(anyListOf(ChangeMessage.class), any(ChangeMessageBatchSender.class));
+		verify(mockTransactionalMessanger, never()).registerMessageSent(any(ChangeMessage.class));
+		verify(mockAwsSNSClient, times(count)).publish(any(PublishRequest.class));
+	}
+	
+	/**
+	 * The messenger passes the whole batch to the sender.
+	 */
+	private void stubSendAndRegister(){
+		when(mockTransactionalMessanger.sendAndRegisterMessages(anyListOf(ChangeMessage.class), any(ChangeMessageBatchSender.class))).thenAnswer(new Answer<List<ChangeMessage>>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public List<ChangeMessage> answer(InvocationOnMock invocation) throws Throwable {
+				List<ChangeMessage> batch = (List<ChangeMessage>) invocation.getArguments()[0];
+				ChangeMessageBatchSender sender = (ChangeMessageBatchSender) invocation.getArguments()[1];
+				return sender.sendMessages(batch);
+			}
+		});
+	}
+	
+	private List<ChangeMessage> createMessages(int count){
+		List<ChangeMessage> list = new ArrayList<ChangeMessage>();
+		for(int i=0; i<count; i++){
+			ChangeMessage toSend = new ChangeMessage();
+			toSend.setChangeNumber(new Long(i));
+			toSend.setTimestamp(new Date());
+			toSend.setChangeType(ChangeType.CREATE);
+			toSend.setObjectId("syn"+i);
+			toSend.setObjectType(ObjectType.ENTITY);
+			list.add(toSend);
+		}
+		return list;
+	}
 }
@@ -2,6 +2,7 @@ package org.sagebionetworks.repo.manager.migration;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -11,6 +12,7 @@ import java.util.List;
 
 import org.junit.Test;
 import org.sagebionetworks.repo.model.backup.FileHandleBackup;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
 
 /**
  * Test for BackupMarshalingUtils
@@ -44,6 +46,46 @@ public class BackupMarshalingUtilsTest {
 		assertEquals(list, clone);
 	}
 	
+	@Test
+	public void testBinaryRoundTrip(){
+		String alias = "files";
+		List<FileHandleBackup> list = createList(5);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BackupMarshalingUtils.writeBackupToStream(list, alias, out, BackupFormat.BINARY);
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		// The format is detected when reading.
+		List<FileHandleBackup> clone = BackupMarshalingUtils.readBackupFromStream(FileHandleBackup.class, alias, in);
+		assertNotNull(clone);
+		assertEquals(list, clone);
+	}
+	
+	@Test
+	public void testBinarySmallerThanXML(){
+		String alias = "files";
+		List<FileHandleBackup> list = createList(1000);
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		BackupMarshalingUtils.writeBackupToStream(list, alias, xml, BackupFormat.XML);
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		BackupMarshalingUtils.writeBackupToStream(list, alias, binary, BackupFormat.BINARY);
+		assertTrue(binary.size()*2 < xml.size());
+	}
+	
+	private static List<FileHandleBackup> createList(int count){
+		List<FileHandleBackup> list = new LinkedList<FileHandleBackup>();
+		for(int i=0; i<count; i++){
+			FileHandleBackup fhb = new FileHandleBackup();
+			fhb.setId(new Long(i*i));
+			fhb.setEtag("etag"+i);
+			fhb.setCreatedBy(new Long(i));
+			fhb.setCreatedOn(System.currentTimeMillis());
+			fhb.setKey("key"+i);
+			fhb.setBucketName("bucket"+i);
+			fhb.setContentType("text/plain");
+			list.add(fhb);
+		}
+		return list;
+	}
+	
 	@Test
 	public void testEmptyFile(){
 		ByteArrayInputStream in = new ByteArrayInputStream(new byte[0]);
@@ -0,0 +1,188 @@
+package org.sagebionetworks.repo.manager.migration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test for BinaryBackupCodec
+ *
+ * @author John
+ *
+ */
+public class BinaryBackupCodecTest {
+
+	enum Color { RED, BLUE }
+
+	/**
+	 * A backup with one field of each supported type.
+	 */
+	static class AllTypes {
+		Long id;
+		long primitiveLong;
+		String name;
+		byte[] bytes;
+		Boolean flag;
+		boolean primitiveFlag;
+		Date date;
+		Timestamp timestamp;
+		Integer integer;
+		int primitiveInt;
+		Short shortValue;
+		Double doubleValue;
+		Color color;
+		transient String notWritten;
+		static String alsoNotWritten = "static";
+	}
+
+	/**
+	 * The same backup as written by a stack with fewer fields.
+	 */
+	static class OlderAllTypes {
+		Long id;
+		String name;
+	}
+
+	static class Unsupported {
+		Long id;
+		List<String> names;
+	}
+
+	static class NoDefaultConstructor {
+		Long id;
+		NoDefaultConstructor(Long id){
+			this.id = id;
+		}
+	}
+
+	private static AllTypes createAllTypes(long i){
+		AllTypes row = new AllTypes();
+		row.id = i;
+		row.primitiveLong = i*2;
+		row.name = "name\u00e9"+i;
+		row.bytes = new byte[]{1, 2, (byte) i};
+		row.flag = Boolean.TRUE;
+		row.primitiveFlag = true;
+		row.date = new Date(1000L*i);
+		row.timestamp = new Timestamp(2000L*i);
+		row.timestamp.setNanos(123456789);
+		row.integer = (int) i;
+		row.primitiveInt = 7;
+		row.shortValue = (short) 3;
+		row.doubleValue = 1.5;
+		row.color = Color.BLUE;
+		row.notWritten = "transient";
+		return row;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException{
+		List<AllTypes> list = Arrays.asList(createAllTypes(1), createAllTypes(2), new AllTypes());
+		BinaryBackupCodec<AllTypes> codec = BinaryBackupCodec.forClass(AllTypes.class);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.writeAll(list, "ALL_TYPES", out);
+		List<AllTypes> clone = codec.readAll("ALL_TYPES", new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(3, clone.size());
+		for(int i=0; i<2; i++){
+			AllTypes expected = list.get(i);
+			AllTypes actual = clone.get(i);
+			assertEquals(expected.id, actual.id);
+			assertEquals(expected.primitiveLong, actual.primitiveLong);
+			assertEquals(expected.name, actual.name);
+			assertArrayEquals(expected.bytes, actual.bytes);
+			assertEquals(expected.flag, actual.flag);
+			assertEquals(expected.primitiveFlag, actual.primitiveFlag);
+			assertEquals(expected.date, actual.date);
+			assertEquals(expected.timestamp, actual.timestamp);
+			assertEquals(expected.integer, actual.integer);
+			assertEquals(expected.primitiveInt, actual.primitiveInt);
+			assertEquals(expected.shortValue, actual.shortValue);
+			assertEquals(expected.doubleValue, actual.doubleValue);
+			assertEquals(expected.color, actual.color);
+			assertNull(actual.notWritten);
+		}
+		// Nulls stay null
+		AllTypes empty = clone.get(2);
+		assertNull(empty.id);
+		assertNull(empty.name);
+		assertNull(empty.bytes);
+		assertNull(empty.timestamp);
+		assertNull(empty.color);
+	}
+
+	@Test
+	public void testStreamingReader() throws IOException{
+		BinaryBackupCodec<AllTypes> codec = BinaryBackupCodec.forClass(AllTypes.class);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryBackupCodec<AllTypes>.Writer writer = codec.createWriter("ALL_TYPES", out);
+		writer.write(createAllTypes(5));
+		writer.finish();
+		BinaryBackupCodec<AllTypes>.Reader reader = codec.createReader("ALL_TYPES", new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(new Long(5), reader.read().id);
+		assertNull(reader.read());
+		// Stays at the end
+		assertNull(reader.read());
+	}
+
+	@Test
+	public void testFieldsMatchedByName() throws IOException{
+		// A newer stack reads a backup from an older stack.
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OlderAllTypes older = new OlderAllTypes();
+		older.id = 9L;
+		older.name = "older";
+		BinaryBackupCodec.forClass(OlderAllTypes.class).writeAll(Arrays.asList(older), "ALL_TYPES", out);
+		List<AllTypes> newer = BinaryBackupCodec.forClass(AllTypes.class).readAll("ALL_TYPES", new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(1, newer.size());
+		assertEquals(new Long(9), newer.get(0).id);
+		assertEquals("older", newer.get(0).name);
+		assertNull(newer.get(0).timestamp);
+		// An older stack reads a backup from a newer stack and skips the unknown fields.
+		out = new ByteArrayOutputStream();
+		BinaryBackupCodec.forClass(AllTypes.class).writeAll(Arrays.asList(createAllTypes(3), createAllTypes(4)), "ALL_TYPES", out);
+		List<OlderAllTypes> olderList = BinaryBackupCodec.forClass(OlderAllTypes.class).readAll("ALL_TYPES", new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(2, olderList.size());
+		assertEquals(new Long(4), olderList.get(1).id);
+		assertEquals("name\u00e94", olderList.get(1).name);
+	}
+
+	@Test (expected=IOException.class)
+	public void testWrongAlias() throws IOException{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryBackupCodec<AllTypes> codec = BinaryBackupCodec.forClass(AllTypes.class);
+		codec.writeAll(Arrays.asList(createAllTypes(1)), "ALL_TYPES", out);
+		codec.readAll("OTHER", new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Test
+	public void testIsSupported(){
+		assertTrue(BinaryBackupCodec.isSupported(AllTypes.class));
+		assertFalse(BinaryBackupCodec.isSupported(Unsupported.class));
+		assertFalse(BinaryBackupCodec.isSupported(NoDefaultConstructor.class));
+	}
+
+	@Test
+	public void testIsBinary() throws IOException{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryBackupCodec.forClass(AllTypes.class).writeAll(Arrays.asList(createAllTypes(1)), "ALL_TYPES", out);
+		BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(out.toByteArray()));
+		assertTrue(BinaryBackupCodec.isBinary(in));
+		// The stream is reset
+		assertEquals('S', in.read());
+		assertFalse(BinaryBackupCodec.isBinary(new BufferedInputStream(new ByteArrayInputStream("<list/>".getBytes("UTF-8")))));
+		assertFalse(BinaryBackupCodec.isBinary(new BufferedInputStream(new ByteArrayInputStream(new byte[0]))));
+	}
+}
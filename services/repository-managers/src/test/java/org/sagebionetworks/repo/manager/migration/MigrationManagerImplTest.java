@@ -3,6 +3,10 @@ package org.sagebionetworks.repo.manager.migration;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
@@ -15,13 +19,17 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.sagebionetworks.repo.model.RestrictableObjectType;
+import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.dbo.DatabaseObject;
+import org.sagebionetworks.repo.model.dbo.MigratableDatabaseObject;
 import org.sagebionetworks.repo.model.dbo.TableMapping;
 import org.sagebionetworks.repo.model.dbo.migration.DBOSubjectAccessRequirementBackup;
 import org.sagebionetworks.repo.model.dbo.migration.MigratableTableDAO;
 import org.sagebionetworks.repo.model.dbo.migration.MigratableTableTranslation;
 import org.sagebionetworks.repo.model.dbo.persistence.DBONodeAccessRequirement;
 import org.sagebionetworks.repo.model.dbo.persistence.DBOSubjectAccessRequirement;
+import org.sagebionetworks.repo.model.migration.MigrationType;
+import org.sagebionetworks.repo.model.migration.RowMetadata;
 
 /**
  * The Unit test for MigrationManagerImpl;
@@ -59,6 +67,39 @@ public class MigrationManagerImplTest {
 		// The result should match the expected
 		assertEquals(expected, resutls);
 	}
+
+	@Test
+	public void testDeleteAllDataPagesById() throws Exception {
+		manager.setBackupBatchMax(2);
+		MigrationType type = MigrationType.FILE_HANDLE;
+		when(mockDao.getPrimaryMigrationTypes()).thenReturn(Arrays.asList(type));
+		when(mockDao.getObjectForType(type)).thenReturn(Mockito.mock(MigratableDatabaseObject.class));
+		// Each page starts after the last ID of the previous page.
+		when(mockDao.listRowMetadataForIdRange(type, Long.MIN_VALUE, Long.MAX_VALUE, 2)).thenReturn(createRowMetadata(1L, 3L));
+		when(mockDao.listRowMetadataForIdRange(type, 4L, Long.MAX_VALUE, 2)).thenReturn(createRowMetadata(4L, 7L));
+		when(mockDao.listRowMetadataForIdRange(type, 8L, Long.MAX_VALUE, 2)).thenReturn(createRowMetadata(9L));
+		List<Long> all = Arrays.asList(1L, 3L, 4L, 7L, 9L);
+		when(mockDao.listDeltaRowMetadata(type, all)).thenReturn(createRowMetadata(1L, 3L, 4L, 7L, 9L));
+		// Make the real call
+		manager.deleteAllData(new UserInfo(true));
+		// The short last page ends the listing.
+		verify(mockDao).listRowMetadataForIdRange(type, 8L, Long.MAX_VALUE, 2);
+		verify(mockDao, never()).listRowMetadataForIdRange(eq(type), eq(10L), anyLong(), anyLong());
+		verify(mockDao, never()).listRowMetadata(eq(type), anyLong(), anyLong());
+		// Every listed row is deleted.
+		verify(mockDao).deleteObjectsById(type, all);
+	}
+
+	private static List<RowMetadata> createRowMetadata(Long... ids) {
+		List<RowMetadata> list = new LinkedList<RowMetadata>();
+		for (Long id : ids) {
+			RowMetadata row = new RowMetadata();
+			row.setId(id);
+			row.setEtag("etag" + id);
+			list.add(row);
+		}
+		return list;
+	}
 	
 	/**
 	 * 
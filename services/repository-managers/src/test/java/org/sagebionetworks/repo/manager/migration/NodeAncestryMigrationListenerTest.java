@@ -0,0 +1,49 @@
+package org.sagebionetworks.repo.manager.migration;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sagebionetworks.repo.model.NodeDAO;
+import org.sagebionetworks.repo.model.dbo.persistence.DBONode;
+import org.sagebionetworks.repo.model.dbo.persistence.DBORevision;
+import org.sagebionetworks.repo.model.migration.MigrationType;
+
+public class NodeAncestryMigrationListenerTest {
+
+	NodeDAO mockNodeDao;
+	NodeAncestryMigrationListener listener;
+
+	@Before
+	public void before(){
+		mockNodeDao = Mockito.mock(NodeDAO.class);
+		listener = new NodeAncestryMigrationListener();
+		listener.setNodeDao(mockNodeDao);
+	}
+
+	@Test
+	public void testNodesCleared(){
+		List<DBONode> delta = new LinkedList<DBONode>();
+		for(long i=1; i<4; i++){
+			DBONode node = new DBONode();
+			node.setId(i);
+			delta.add(node);
+		}
+		listener.afterCreateOrUpdate(MigrationType.NODE, delta);
+		verify(mockNodeDao).clearAncestry(Arrays.asList(1L, 2L, 3L));
+	}
+
+	@Test
+	public void testOtherTypesIgnored(){
+		List<DBORevision> delta = new LinkedList<DBORevision>();
+		delta.add(new DBORevision());
+		listener.afterCreateOrUpdate(MigrationType.NODE_REVISION, delta);
+		verifyZeroInteractions(mockNodeDao);
+	}
+}
@@ -0,0 +1,105 @@
+package org.sagebionetworks.repo.manager.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.dbo.dao.table.TableModelTestUtils;
+import org.sagebionetworks.repo.model.dbo.dao.table.TableModelUtils;
+import org.sagebionetworks.repo.model.table.ColumnModel;
+import org.sagebionetworks.repo.model.table.RowSet;
+import org.sagebionetworks.table.cluster.SqlQuery;
+
+public class TableQueryResultCacheTest {
+
+	List<ColumnModel> models;
+	SqlQuery query;
+	SqlQuery otherQuery;
+	RowSet results;
+	long resultSize;
+
+	@Before
+	public void before() throws Exception {
+		models = TableModelTestUtils.createOneOfEachType();
+		query = new SqlQuery("select * from syn123 limit 10", models);
+		otherQuery = new SqlQuery("select * from syn123 limit 11", models);
+		results = new RowSet();
+		results.setTableId("syn123");
+		results.setHeaders(TableModelUtils.getHeaders(models));
+		results.setRows(TableModelTestUtils.createRows(models, 10));
+		resultSize = TableQueryResultCache.estimateSizeBytes(results);
+	}
+
+	@Test
+	public void testPutGet() {
+		TableQueryResultCache cache = new TableQueryResultCache(resultSize * 100);
+		assertNull(cache.get(query, "etag1"));
+		cache.put(query, "etag1", results);
+		RowSet cached = cache.get(query, "etag1");
+		assertEquals(results, cached);
+		// A different version or query is a miss.
+		assertNull(cache.get(query, "etag2"));
+		assertNull(cache.get(otherQuery, "etag1"));
+		// Null versions are never cached.
+		cache.put(query, null, results);
+		assertNull(cache.get(query, null));
+	}
+
+	@Test
+	public void testCopies() {
+		TableQueryResultCache cache = new TableQueryResultCache(resultSize * 100);
+		cache.put(query, "etag1", results);
+		// Changing the results after the put must not change the cache.
+		results.getRows().get(0).getValues().set(0, "changed");
+		RowSet cached = cache.get(query, "etag1");
+		assertTrue(!"changed".equals(cached.getRows().get(0).getValues().get(0)));
+		// Nor should changing what was returned.
+		cached.setEtag("changed");
+		assertNull(cache.get(query, "etag1").getEtag());
+	}
+
+	@Test
+	public void testEvictBySize() throws Exception {
+		// Room for exactly ten results.
+		TableQueryResultCache cache = new TableQueryResultCache(resultSize * 10);
+		for (int i = 0; i < 10; i++) {
+			cache.put(query, "etag" + i, results);
+		}
+		assertEquals(10, cache.size());
+		// touch the first so the second is the eldest.
+		assertNotNull(cache.get(query, "etag0"));
+		cache.put(query, "etag10", results);
+		assertEquals(10, cache.size());
+		assertNotNull(cache.get(query, "etag0"));
+		assertNull(cache.get(query, "etag1"));
+		assertNotNull(cache.get(query, "etag10"));
+		assertEquals(resultSize * 10, cache.getCurrentBytes());
+	}
+
+	@Test
+	public void testTooLargeNotCached() {
+		TableQueryResultCache cache = new TableQueryResultCache(resultSize * 5);
+		cache.put(query, "etag1", results);
+		assertNull(cache.get(query, "etag1"));
+		assertEquals(0L, cache.getCurrentBytes());
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		TableQueryResultCache cache = new TableQueryResultCache(resultSize * 100);
+		SqlQuery otherTable = new SqlQuery("select * from syn456 limit 10", models);
+		cache.put(query, "etag1", results);
+		cache.put(otherQuery, "etag1", results);
+		cache.put(otherTable, "etag1", results);
+		cache.invalidate("syn123");
+		assertNull(cache.get(query, "etag1"));
+		assertNull(cache.get(otherQuery, "etag1"));
+		assertNotNull(cache.get(otherTable, "etag1"));
+		assertEquals(1, cache.size());
+	}
+}
@@ -23,12 +23,16 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Assume;
 import org.junit.Before;
@@ -48,6 +52,7 @@ import org.sagebionetworks.repo.model.dao.semaphore.ExclusiveOrSharedSemaphoreRu
 import org.sagebionetworks.repo.model.dao.table.ColumnModelDAO;
 import org.sagebionetworks.repo.model.dao.table.RowAccessor;
 import org.sagebionetworks.repo.model.dao.table.RowAndHeaderHandler;
+import org.sagebionetworks.repo.model.dao.table.RowHandler;
 import org.sagebionetworks.repo.model.dao.table.RowSetAccessor;
 import org.sagebionetworks.repo.model.dao.table.TableRowTruthDAO;
 import org.sagebionetworks.repo.model.dao.table.TableStatusDAO;
@@ -307,6 +312,81 @@ public class TableRowManagerImplTest {
 		// verify the table status was set
 		verify(mockTableStatusDAO, times(1)).resetTableStatusToProcessing(tableId);
 	}
+	
+	@Test
+	public void testAppendRowsAsStreamPipelined() throws Exception {
+		when(mockAuthManager.canAccess(user, tableId, ObjectType.ENTITY, ACCESS_TYPE.UPDATE)).thenReturn(true);
+		when(mockAuthManager.canAccessRawFileHandleById(eq(user), anyString())).thenReturn(true);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			manager.setChangeSetUploadExecutor(executor);
+			manager.setMaxPendingChangeSetUploads(2);
+			stubAsyncAppend(executor, null);
+			int maxBytesPerRow = TableModelUtils.calculateMaxRowSize(models);
+			manager.setMaxBytesPerChangeSet(maxBytesPerRow*3);
+			RowReferenceSet results = new RowReferenceSet();
+			String etag = manager.appendRowsAsStream(user, tableId, models, set.getRows().iterator(), "etag", results);
+			// The results must be the same as the serial case.
+			assertEquals("etag3", etag);
+			assertEquals(etag, results.getEtag());
+			assertEquals(10, results.getRows().size());
+			assertEquals(new Long(0), results.getRows().get(0).getVersionNumber());
+			assertEquals(new Long(1), results.getRows().get(3).getVersionNumber());
+			assertEquals(new Long(2), results.getRows().get(6).getVersionNumber());
+			assertEquals(new Long(3), results.getRows().get(9).getVersionNumber());
+			verify(mockTruthDao, times(4)).appendRowSetToTableAsync(anyString(), anyString(), anyListOf(ColumnModel.class), any(RowSet.class), eq(executor));
+			verify(mockTableStatusDAO, times(1)).resetTableStatusToProcessing(tableId);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testAppendRowsAsStreamPipelinedUploadFailure() throws Exception {
+		when(mockAuthManager.canAccess(user, tableId, ObjectType.ENTITY, ACCESS_TYPE.UPDATE)).thenReturn(true);
+		when(mockAuthManager.canAccessRawFileHandleById(eq(user), anyString())).thenReturn(true);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			manager.setChangeSetUploadExecutor(executor);
+			IOException failure = new IOException("S3 is down");
+			stubAsyncAppend(executor, failure);
+			try {
+				manager.appendRowsAsStream(user, tableId, models, set.getRows().iterator(), "etag", null);
+				fail("The upload failure must be thrown so the transaction rolls back");
+			} catch (IOException e) {
+				assertEquals(failure, e);
+			}
+			// The table was not changed.
+			verify(mockTableStatusDAO, never()).resetTableStatusToProcessing(tableId);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Stub the asynchronous append with the same row IDs and versions as the serial append.
+	 */
+	private void stubAsyncAppend(final ExecutorService executor, final IOException failure) throws IOException {
+		when(mockTruthDao.appendRowSetToTableAsync(anyString(), anyString(), anyListOf(ColumnModel.class), any(RowSet.class), any(ExecutorService.class)))
+				.thenAnswer(new Answer<Future<RowReferenceSet>>() {
+			@Override
+			public Future<RowReferenceSet> answer(InvocationOnMock invocation) throws Throwable {
+				Object[] args = invocation.getArguments();
+				// IDs are assigned in the calling thread.
+				final RowReferenceSet results = mockTruthDao.appendRowSetToTable((String) args[0], (String) args[1],
+						(List<ColumnModel>) args[2], (RowSet) args[3], false);
+				return executor.submit(new Callable<RowReferenceSet>() {
+					@Override
+					public RowReferenceSet call() throws Exception {
+						if (failure != null) {
+							throw failure;
+						}
+						return results;
+					}
+				});
+			}
+		});
+	}
 
 	@Test(expected = IllegalArgumentException.class)
 	public void testAppendNullRowValuesFails() throws DatastoreException, NotFoundException, IOException {
@@ -591,6 +671,121 @@ public class TableRowManagerImplTest {
 		assertEquals(set, results);
 	}
 	
+	@Test
+	public void testQueryIsConsistentTrueCached() throws Exception {
+		when(mockAuthManager.canAccess(user, tableId, ObjectType.ENTITY, ACCESS_TYPE.READ)).thenReturn(true);
+		when(mockAuthManager.canAccess(user, tableId, ObjectType.ENTITY, ACCESS_TYPE.UPDATE)).thenReturn(true);
+		when(mockAuthManager.canAccessRawFileHandleById(eq(user), anyString())).thenReturn(true);
+		TableStatus status = new TableStatus();
+		status.setTableId(tableId);
+		status.setState(TableState.AVAILABLE);
+		status.setLastTableChangeEtag(UUID.randomUUID().toString());
+		when(mockTableStatusDAO.getTableStatus(tableId)).thenReturn(status);
+		RowSet first = manager.query(user, "select * from "+tableId+" limit 1", true, false);
+		RowSet second = manager.query(user, "select * from  "+tableId+"  LIMIT 1", true, false);
+		assertEquals(first, second);
+		assertEquals(status.getLastTableChangeEtag(), second.getEtag());
+		// The second query must come from the cache.
+		verify(mockTableIndexDAO, times(1)).queryAsStream(any(SqlQuery.class), any(RowAndHeaderHandler.class));
+		verify(mockExclusiveOrSharedSemaphoreRunner, times(1)).tryRunWithSharedLock(anyString(), anyLong(), any(Callable.class));
+		// A different query is not in the cache
+		manager.query(user, "select * from "+tableId+" limit 2", true, false);
+		verify(mockTableIndexDAO, times(2)).queryAsStream(any(SqlQuery.class), any(RowAndHeaderHandler.class));
+		// An append must clear the cache for the table.
+		manager.appendRows(user, tableId, models, set);
+		manager.query(user, "select * from "+tableId+" limit 1", true, false);
+		verify(mockTableIndexDAO, times(3)).queryAsStream(any(SqlQuery.class), any(RowAndHeaderHandler.class));
+	}
+
+	@Test
+	public void testQueryIsConsistentTrueCachedUnauthorized() throws Exception {
+		when(mockAuthManager.canAccess(user, tableId, ObjectType.ENTITY, ACCESS_TYPE.READ)).thenReturn(true);
+		TableStatus status = new TableStatus();
+		status.setTableId(tableId);
+		status.setState(TableState.AVAILABLE);
+		status.setLastTableChangeEtag(UUID.randomUUID().toString());
+		when(mockTableStatusDAO.getTableStatus(tableId)).thenReturn(status);
+		manager.query(user, "select * from "+tableId+" limit 1", true, false);
+		// A cached result must not be returned to a user without READ.
+		UserInfo other = new UserInfo(false, 8L);
+		when(mockAuthManager.canAccess(other, tableId, ObjectType.ENTITY, ACCESS_TYPE.READ)).thenReturn(false);
+		try{
+			manager.query(other, "select * from "+tableId+" limit 1", true, false);
+			fail("should have failed");
+		}catch(UnauthorizedException e){
+			// expected
+		}
+	}
+
+	@Test
+	public void testQueryIsConsistentFalseCachedByIndexVersion() throws Exception {
+		when(mockAuthManager.canAccess(user, tableId, ObjectType.ENTITY, ACCESS_TYPE.READ)).thenReturn(true);
+		// The version is read before and after each query that is not cached.
+		when(mockTableIndexDAO.getMaxCurrentCompleteVersionForTable(tableId)).thenReturn(3L, 3L, 3L, 4L);
+		manager.query(user, "select * from "+tableId+" limit 1", false, false);
+		manager.query(user, "select * from "+tableId+" limit 1", false, false);
+		verify(mockTableIndexDAO, times(1)).query(any(SqlQuery.class));
+		// The index moved to a new version
+		manager.query(user, "select * from "+tableId+" limit 1", false, false);
+		verify(mockTableIndexDAO, times(2)).query(any(SqlQuery.class));
+	}
+	
+	@Test
+	public void testQueryIsConsistentFalseIndexChangedDuringQuery() throws Exception {
+		when(mockAuthManager.canAccess(user, tableId, ObjectType.ENTITY, ACCESS_TYPE.READ)).thenReturn(true);
+		// The index was updated from 3 to 4 while the first query ran.
+		when(mockTableIndexDAO.getMaxCurrentCompleteVersionForTable(tableId)).thenReturn(3L, 4L, 4L);
+		manager.query(user, "select * from "+tableId+" limit 1", false, false);
+		// The results were not cached under either version.
+		manager.query(user, "select * from "+tableId+" limit 1", false, false);
+		verify(mockTableIndexDAO, times(2)).query(any(SqlQuery.class));
+		// The results read at version 4 were cached.
+		manager.query(user, "select * from "+tableId+" limit 1", false, false);
+		verify(mockTableIndexDAO, times(2)).query(any(SqlQuery.class));
+	}
+	
+	@Test
+	public void testGetCurrentRowsOfChangeSet() throws Exception {
+		final TableRowChange change = new TableRowChange();
+		change.setTableId(tableId);
+		change.setRowVersion(3L);
+		change.setEtag("etag3");
+		change.setHeaders(set.getHeaders());
+		for(int i=0; i<set.getRows().size(); i++){
+			set.getRows().get(i).setRowId((long) i);
+			set.getRows().get(i).setVersionNumber(3L);
+		}
+		stub(mockTruthDao.scanRowSet(eq(tableId), eq(3L), any(RowHandler.class))).toAnswer(new Answer<TableRowChange>() {
+			@Override
+			public TableRowChange answer(InvocationOnMock invocation) throws Throwable {
+				RowHandler handler = (RowHandler) invocation.getArguments()[2];
+				for(Row row: set.getRows()){
+					handler.nextRow(row);
+				}
+				return change;
+			}
+		});
+		// Rows 1 and 5 were updated by a later version.
+		Map<Long, Long> replaced = new HashMap<Long, Long>();
+		replaced.put(1L, 4L);
+		replaced.put(5L, 6L);
+		when(mockTruthDao.getLatestVersions(eq(tableId), any(Set.class), eq(4L))).thenReturn(replaced);
+		RowSet results = manager.getCurrentRowsOfChangeSet(tableId, 3L, 6L);
+		assertEquals(tableId, results.getTableId());
+		assertEquals("etag3", results.getEtag());
+		assertEquals(set.getHeaders(), results.getHeaders());
+		assertEquals(set.getRows().size() - 2, results.getRows().size());
+		for(Row row: results.getRows()){
+			assertTrue(!replaced.containsKey(row.getRowId()));
+		}
+		// Version 6 was appended after the caller listed the change sets up to version 4.
+		results = manager.getCurrentRowsOfChangeSet(tableId, 3L, 4L);
+		assertEquals(set.getRows().size() - 1, results.getRows().size());
+		for(Row row: results.getRows()){
+			assertTrue(row.getRowId() != 1L);
+		}
+	}
+	
 	@Test 
 	public void testQueryNoColumns() throws Exception {
 		when(mockAuthManager.canAccess(user, tableId, ObjectType.ENTITY, ACCESS_TYPE.READ)).thenReturn(true);
@@ -0,0 +1,66 @@
+package org.sagebionetworks.repo.web;
+
+import java.util.Date;
+
+import org.sagebionetworks.cloudwatch.Consumer;
+import org.sagebionetworks.cloudwatch.ProfileData;
+import org.sagebionetworks.repo.model.dbo.dao.UserInfoCache;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Periodically publishes the hits and misses of the UserInfo cache since the
+ * last call.
+ *
+ * @author John
+ *
+ */
+public class UserInfoCacheMetricPublisher {
+
+	public static final String HITS = "UserInfoCacheHits";
+	public static final String MISSES = "UserInfoCacheMisses";
+
+	@Autowired
+	private UserInfoCache userInfoCache;
+	@Autowired
+	private Consumer consumer;
+
+	private long lastHitCount = 0;
+	private long lastMissCount = 0;
+
+	public UserInfoCacheMetricPublisher() {
+	}
+
+	/**
+	 * Used for mock testing.
+	 *
+	 * @param userInfoCache
+	 * @param consumer
+	 */
+	public UserInfoCacheMetricPublisher(UserInfoCache userInfoCache, Consumer consumer) {
+		this.userInfoCache = userInfoCache;
+		this.consumer = consumer;
+	}
+
+	/**
+	 * Called from a timer.
+	 */
+	public synchronized void publishMetrics() {
+		long hits = userInfoCache.getHitCount();
+		long misses = userInfoCache.getMissCount();
+		Date now = new Date();
+		consumer.addProfileData(createProfileData(HITS, hits - lastHitCount, now));
+		consumer.addProfileData(createProfileData(MISSES, misses - lastMissCount, now));
+		lastHitCount = hits;
+		lastMissCount = misses;
+	}
+
+	private ProfileData createProfileData(String name, long value, Date timestamp) {
+		ProfileData data = new ProfileData();
+		data.setNamespace(this.getClass().getName());
+		data.setName(name);
+		data.setValue((double) value);
+		data.setUnit("Count");
+		data.setTimestamp(timestamp);
+		return data;
+	}
+}
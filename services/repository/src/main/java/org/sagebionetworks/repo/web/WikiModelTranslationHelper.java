@@ -10,6 +10,7 @@ import org.sagebionetworks.downloadtools.FileUtils;
 import org.sagebionetworks.repo.manager.file.FileHandleManager;
 import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.dao.FileHandleDao;
+import org.sagebionetworks.repo.model.dbo.v2.dao.WikiMarkdownCache;
 import org.sagebionetworks.repo.model.file.ChunkedFileToken;
 import org.sagebionetworks.repo.model.file.CreateChunkedFileTokenRequest;
 import org.sagebionetworks.repo.model.file.S3FileHandle;
@@ -22,8 +23,6 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.amazonaws.services.s3.AmazonS3Client;
-import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.ObjectMetadata;
 
 /**
  * Utility for converting between the WikiPage and V2WikiPage models.
@@ -39,18 +38,21 @@ public class WikiModelTranslationHelper implements WikiModelTranslator {
 	AmazonS3Client s3Client;
 	@Autowired
 	TempFileProvider tempFileProvider;
+	@Autowired
+	WikiMarkdownCache markdownCache;
 	
 	public static final String APPLICATION_OCTET_STREAM = "application/octet-stream";
 
 	public WikiModelTranslationHelper() {}
 	
 	public WikiModelTranslationHelper(FileHandleManager fileHandleManager, FileHandleDao fileMetadataDao,
-			AmazonS3Client s3Client, TempFileProvider tempFileProvider) {
+			AmazonS3Client s3Client, TempFileProvider tempFileProvider, WikiMarkdownCache markdownCache) {
 		super();
 		this.fileMetadataDao = fileMetadataDao;
 		this.fileHandleManager = fileHandleManager;
 		this.s3Client = s3Client;
 		this.tempFileProvider = tempFileProvider;
+		this.markdownCache = markdownCache;
 	}
 	
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
@@ -131,17 +133,9 @@ public class WikiModelTranslationHelper implements WikiModelTranslator {
 		wiki.setTitle(from.getTitle());
 		wiki.setAttachmentFileHandleIds(from.getAttachmentFileHandleIds());
 		
-		S3FileHandle markdownHandle = (S3FileHandle) fileMetadataDao.get(from.getMarkdownFileHandleId());
-		File markdownTemp = tempFileProvider.createTempFile(wiki.getId()+ "_markdown", ".tmp");
-		// Retrieve uploaded markdown
-		ObjectMetadata markdownMeta = s3Client.getObject(new GetObjectRequest(markdownHandle.getBucketName(), 
-				markdownHandle.getKey()), markdownTemp);
-		// Read the file as a string
-		String markdownString = FileUtils.readCompressedFileAsString(markdownTemp);
+		// Read the markdown through the cache shared with the wiki DAO
+		String markdownString = markdownCache.getMarkdown(from.getId(), from.getMarkdownFileHandleId());
 		wiki.setMarkdown(markdownString);
-		if(markdownTemp != null){
-			markdownTemp.delete();
-		}
 		return wiki;
 	}
 
@@ -10,6 +10,8 @@ import org.sagebionetworks.repo.model.InvalidModelException;
 import org.sagebionetworks.repo.model.UnauthorizedException;
 import org.sagebionetworks.repo.model.daemon.BackupRestoreStatus;
 import org.sagebionetworks.repo.model.daemon.RestoreSubmission;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCount;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCounts;
@@ -107,12 +109,63 @@ public class MigrationController extends BaseController {
 		return serviceProvider.getMigrationService().getRowMetadataDeltaForType(userId,	MigrationType.valueOf(type), request.getList());
 	}
 
+	/**
+	 * Get the number of rows and a checksum of their IDs and etags for a
+	 * range of IDs (inclusive). The migration client compares the ranges of
+	 * two stacks and only lists the rows of the ranges that differ.
+	 * 
+	 * @param userId
+	 * @param type
+	 * @param minId
+	 * @param maxId
+	 * @return
+	 * @throws DatastoreException
+	 * @throws NotFoundException
+	 */
+	@ResponseStatus(HttpStatus.OK)
+	@RequestMapping(value = UrlHelpers.MIGRATION_RANGE_CHECKSUM, method = RequestMethod.GET)
+	public @ResponseBody
+	MigrationRangeChecksum getChecksumForIdRange(
+			@RequestParam(value = AuthorizationConstants.USER_ID_PARAM) Long userId,
+			@RequestParam(required = true) String type,
+			@RequestParam(required = true) Long minId,
+			@RequestParam(required = true) Long maxId)
+			throws DatastoreException, NotFoundException {
+		return serviceProvider.getMigrationService().getChecksumForIdRange(userId, MigrationType.valueOf(type), minId, maxId);
+	}
+
+	/**
+	 * List the row metadata for a range of IDs (inclusive).
+	 * 
+	 * @param userId
+	 * @param type
+	 * @param minId
+	 * @param maxId
+	 * @param limit
+	 * @return
+	 * @throws DatastoreException
+	 * @throws NotFoundException
+	 */
+	@ResponseStatus(HttpStatus.OK)
+	@RequestMapping(value = UrlHelpers.MIGRATION_RANGE_ROWS, method = RequestMethod.GET)
+	public @ResponseBody
+	RowMetadataResult getRowMetadataForIdRange(
+			@RequestParam(value = AuthorizationConstants.USER_ID_PARAM) Long userId,
+			@RequestParam(required = true) String type,
+			@RequestParam(required = true) Long minId,
+			@RequestParam(required = true) Long maxId,
+			@RequestParam(required = true) Long limit)
+			throws DatastoreException, NotFoundException {
+		return serviceProvider.getMigrationService().getRowMetadataForIdRange(userId, MigrationType.valueOf(type), minId, maxId, limit);
+	}
+
 	/**
 	 * Start a backup daemon. Monitor the status of the daemon with the
 	 * getStatus method.
 	 * 
 	 * @param userId
 	 * @param header
+	 * @param format The format of the backup file, XML when not provided. Only request BINARY when the destination stack can restore it.
 	 * @param request
 	 * @return
 	 * @throws DatastoreException
@@ -128,10 +181,15 @@ public class MigrationController extends BaseController {
 	BackupRestoreStatus startBackup(
 			@RequestParam(value = AuthorizationConstants.USER_ID_PARAM) Long userId,
 			@RequestParam(required = true) String type,
+			@RequestParam(required = false) String format,
 			@RequestBody IdList request) throws DatastoreException, NotFoundException {
 		if (request == null)
 			throw new IllegalArgumentException("Request cannot be null");
-		return serviceProvider.getMigrationService().startBackup(userId, MigrationType.valueOf(type), request.getList());
+		BackupFormat backupFormat = BackupFormat.XML;
+		if (format != null) {
+			backupFormat = BackupFormat.valueOf(format);
+		}
+		return serviceProvider.getMigrationService().startBackup(userId, MigrationType.valueOf(type), request.getList(), backupFormat);
 	}
 	
 	/**
@@ -4,6 +4,8 @@ import java.util.List;
 
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.daemon.BackupRestoreStatus;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCount;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCounts;
@@ -51,16 +53,42 @@ public interface MigrationService {
 	 */
 	RowMetadataResult getRowMetadataDeltaForType(Long userId,	MigrationType valueOf, List<Long> list) throws DatastoreException, NotFoundException;
 
+	/**
+	 * Get the count and checksum of the rows with an ID in the given range (inclusive).
+	 * @param userId
+	 * @param type
+	 * @param minId
+	 * @param maxId
+	 * @return
+	 * @throws NotFoundException 
+	 * @throws DatastoreException 
+	 */
+	MigrationRangeChecksum getChecksumForIdRange(Long userId, MigrationType type, long minId, long maxId) throws DatastoreException, NotFoundException;
+
+	/**
+	 * Get the row metadata for the rows with an ID in the given range (inclusive).
+	 * @param userId
+	 * @param type
+	 * @param minId
+	 * @param maxId
+	 * @param limit
+	 * @return
+	 * @throws NotFoundException 
+	 * @throws DatastoreException 
+	 */
+	RowMetadataResult getRowMetadataForIdRange(Long userId, MigrationType type, long minId, long maxId, long limit) throws DatastoreException, NotFoundException;
+
 	/**
 	 * Start the backup of the provided list of Migration type IDs.
 	 * @param userId
 	 * @param type
 	 * @param list
+	 * @param format
 	 * @return
 	 * @throws NotFoundException 
 	 * @throws DatastoreException 
 	 */
-	BackupRestoreStatus startBackup(Long userId, MigrationType type,	List<Long> list) throws DatastoreException, NotFoundException;
+	BackupRestoreStatus startBackup(Long userId, MigrationType type,	List<Long> list, BackupFormat format) throws DatastoreException, NotFoundException;
 
 	/**
 	 * Start the restore of the provided file.
@@ -9,6 +9,8 @@ import org.sagebionetworks.repo.manager.migration.MigrationManager;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.daemon.BackupRestoreStatus;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCount;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCounts;
@@ -66,10 +68,24 @@ public class MigrationServiceImpl implements MigrationService {
 	}
 
 	@Override
-	public BackupRestoreStatus startBackup(Long userId, MigrationType type, List<Long> list) throws DatastoreException, NotFoundException {
+	public MigrationRangeChecksum getChecksumForIdRange(Long userId, MigrationType type, long minId, long maxId) throws DatastoreException, NotFoundException {
 		if(userId == null) throw new IllegalArgumentException("userId cannot be null");
 		UserInfo user = userManager.getUserInfo(userId);
-		return backupDaemonLauncher.startBackup(user, type, list);
+		return migrationManager.getChecksumForIdRange(user, type, minId, maxId);
+	}
+
+	@Override
+	public RowMetadataResult getRowMetadataForIdRange(Long userId, MigrationType type, long minId, long maxId, long limit) throws DatastoreException, NotFoundException {
+		if(userId == null) throw new IllegalArgumentException("userId cannot be null");
+		UserInfo user = userManager.getUserInfo(userId);
+		return migrationManager.getRowMetadataForIdRange(user, type, minId, maxId, limit);
+	}
+
+	@Override
+	public BackupRestoreStatus startBackup(Long userId, MigrationType type, List<Long> list, BackupFormat format) throws DatastoreException, NotFoundException {
+		if(userId == null) throw new IllegalArgumentException("userId cannot be null");
+		UserInfo user = userManager.getUserInfo(userId);
+		return backupDaemonLauncher.startBackup(user, type, list, format);
 	}
 
 	@Override
@@ -0,0 +1,53 @@
+package org.sagebionetworks.node.workers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.repo.model.NodeDAO;
+import org.sagebionetworks.repo.model.StackStatusDao;
+import org.sagebionetworks.repo.model.dbo.dao.semaphore.ProgressCallback;
+import org.sagebionetworks.repo.model.dbo.dao.semaphore.ProgressingRunner;
+import org.sagebionetworks.repo.model.status.StatusEnum;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * This worker builds the ancestry of nodes that were created before the
+ * ancestry was tracked, or that were migrated. Each run builds batches until
+ * every node has its ancestry, so once the backfill is done a run is a single
+ * query.
+ * 
+ * @author John
+ * 
+ */
+public class NodeAncestryBackfillWorker implements ProgressingRunner {
+
+	static private Logger log = LogManager.getLogger(NodeAncestryBackfillWorker.class);
+
+	/**
+	 * The number of nodes built in each transaction.
+	 */
+	public static final long BATCH_SIZE = 1000;
+
+	@Autowired
+	NodeDAO nodeDao;
+	@Autowired
+	StackStatusDao stackStatusDao;
+
+	@Override
+	public void run(ProgressCallback callback) throws Exception {
+		// Migration writes nodes directly so wait until it is done.
+		if (!StatusEnum.READ_WRITE.equals(stackStatusDao.getCurrentStatus())) {
+			return;
+		}
+		long total = 0;
+		int count;
+		do {
+			callback.progressMade();
+			count = nodeDao.backfillAncestry(BATCH_SIZE);
+			total += count;
+		} while (count >= BATCH_SIZE && StatusEnum.READ_WRITE.equals(stackStatusDao.getCurrentStatus()));
+		if (total > 0) {
+			log.info("Built the ancestry of " + total + " nodes");
+		}
+	}
+
+}
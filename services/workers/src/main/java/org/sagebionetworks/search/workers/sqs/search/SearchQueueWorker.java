@@ -1,9 +1,13 @@
 package org.sagebionetworks.search.workers.sqs.search;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 
@@ -14,6 +18,7 @@ import org.sagebionetworks.asynchronous.workers.sqs.MessageUtils;
 import org.sagebionetworks.cloudwatch.WorkerLogger;
 import org.sagebionetworks.repo.manager.search.SearchDocumentDriver;
 import org.sagebionetworks.repo.model.DatastoreException;
+import org.sagebionetworks.repo.model.dao.SearchIndexLedgerDao;
 import org.sagebionetworks.repo.model.dao.WikiPageKey;
 import org.sagebionetworks.repo.model.message.ChangeMessage;
 import org.sagebionetworks.repo.model.message.ChangeType;
@@ -36,12 +41,21 @@ public class SearchQueueWorker implements Callable<List<Message>> {
 	
 	static private Logger log = LogManager.getLogger(SearchQueueWorker.class);
 	
+	/**
+	 * Ledger entries older than this are checked against the search index
+	 * again. This bounds how long a document lost from the index can go
+	 * unnoticed.
+	 */
+	public static final long LEDGER_MAX_AGE_MS = 1000L*60*60*24*7;
+	
 	private SearchDao searchDao;
+	private SearchIndexLedgerDao ledgerDao;
 	private SearchDocumentDriver documentProvider;
 	private List<Message> messagesToProcess;
 	private V2WikiPageDao wikiPageDao;
 	
-	private List<ChangeMessage> createOrUpdateMessages;
+	// Changes to the same entity within one batch are coalesced.
+	private Map<String, ChangeMessage> createOrUpdateMessages;
 	private List<ChangeMessage> deleteMessages;
 
 	WorkerLogger workerLogger;
@@ -52,9 +66,11 @@ public class SearchQueueWorker implements Callable<List<Message>> {
 	 * @param searchDao
 	 * @param nodeWorkerManager
 	 * @param messagesToProcess
+	 * @param ledgerDao
 	 */
-	public SearchQueueWorker(SearchDao searchDao, SearchDocumentDriver documentProvider, List<Message> messagesToProcess, V2WikiPageDao wikiPageDao, WorkerLogger workerProfiler) {
+	public SearchQueueWorker(SearchDao searchDao, SearchDocumentDriver documentProvider, List<Message> messagesToProcess, V2WikiPageDao wikiPageDao, WorkerLogger workerProfiler, SearchIndexLedgerDao ledgerDao) {
 		if(searchDao == null) throw new IllegalArgumentException("SearchDao canot be null");
+		if(ledgerDao == null) throw new IllegalArgumentException("SearchIndexLedgerDao cannot be null");
 		if(documentProvider == null) throw new IllegalArgumentException("SearchDocumentDriver cannot be null");
 		if(messagesToProcess == null) throw new IllegalArgumentException("messagesToProcess cannot be null");
 		this.searchDao = searchDao;
@@ -62,6 +78,7 @@ public class SearchQueueWorker implements Callable<List<Message>> {
 		this.messagesToProcess = messagesToProcess;
 		this.wikiPageDao = wikiPageDao;
 		this.workerLogger = workerProfiler;
+		this.ledgerDao = ledgerDao;
 	}
 
 	@Override
@@ -112,15 +129,31 @@ public class SearchQueueWorker implements Callable<List<Message>> {
 	}
 
 	/**
-	 * Add a create or update message to the batch.
+	 * Add a create or update message to the batch. Only one message is kept
+	 * per entity: a message without an etag (from a wiki change) always wins
+	 * since the document must be rebuilt, otherwise the newest change wins.
 	 * @param change
 	 */
 	private void addCreateOrUpdateEntity(ChangeMessage change){
 		if(createOrUpdateMessages == null){
-			createOrUpdateMessages = new LinkedList<ChangeMessage>();
+			createOrUpdateMessages = new LinkedHashMap<String, ChangeMessage>();
+		}
+		ChangeMessage previous = createOrUpdateMessages.get(change.getObjectId());
+		if(previous == null || change.getObjectEtag() == null){
+			createOrUpdateMessages.put(change.getObjectId(), change);
+		}else if(previous.getObjectEtag() != null && isNewer(change, previous)){
+			createOrUpdateMessages.put(change.getObjectId(), change);
 		}
-		createOrUpdateMessages.add(change);
 	}
+	
+	/**
+	 * Without change numbers the message that arrived last wins.
+	 */
+	private static boolean isNewer(ChangeMessage change, ChangeMessage previous){
+		if(change.getChangeNumber() == null || previous.getChangeNumber() == null) return true;
+		return change.getChangeNumber() > previous.getChangeNumber();
+	}
+	
 	/**
 	 * Add a delete message to the batch.
 	 * @param change
@@ -144,7 +177,9 @@ public class SearchQueueWorker implements Callable<List<Message>> {
 				searchDao.deleteDocuments(toDelete);
 			} catch (Throwable e) {
 				processDeleteBatchAsSingle();
+				return;
 			}
+			ledgerDao.deleteEntries(toDelete);
 		}
 	}
 	
@@ -154,6 +189,7 @@ public class SearchQueueWorker implements Callable<List<Message>> {
 			for (ChangeMessage msg: deleteMessages) {
 				try {
 					searchDao.deleteDocument(msg.getObjectId());
+					ledgerDao.deleteEntries(Collections.singleton(msg.getObjectId()));
 				} catch (Throwable e) {
 					workerLogger.logWorkerFailure(SearchQueueWorker.class, msg, e, false);
 				}
@@ -172,11 +208,23 @@ public class SearchQueueWorker implements Callable<List<Message>> {
 	private void processCreateUpdateBatch() throws DatastoreException, ClientProtocolException, IOException, HttpClientHelperException {
 		if(createOrUpdateMessages != null){
 			log.debug("Processing "+createOrUpdateMessages.size()+" create/update messages");
+			// Look up what this stack last sent to the index in one local query.
+			Map<String, String> ledger = getIndexedEtags();
+			// Documents found in the index are added to the ledger with the batch.
+			Map<String, String> toRecord = new HashMap<String, String>();
 			// Prepare a batch of documents
 			List<Document> batch = new LinkedList<Document>();
-			for(ChangeMessage message: createOrUpdateMessages){
+			for(ChangeMessage message: createOrUpdateMessages.values()){
+				// We can ignore this message without asking the search index if this entity was already sent with this etag.
+				if(message.getObjectEtag() != null && message.getObjectEtag().equals(ledger.get(message.getObjectId()))){
+					continue;
+				}
 				// We want to ignore this message if a document with this ID and Etag already exists in the search index.
-				if(!searchDao.doesDocumentExist(message.getObjectId(), message.getObjectEtag())){
+				if(searchDao.doesDocumentExist(message.getObjectId(), message.getObjectEtag())){
+					if(message.getObjectEtag() != null){
+						toRecord.put(message.getObjectId(), message.getObjectEtag());
+					}
+				}else{
 					// We want to ignore this message if a document with this ID and Etag are not in the repository as it is an old message.
 					if(message.getObjectEtag() == null || documentProvider.doesDocumentExist(message.getObjectId(), message.getObjectEtag())){
 						// Create a document for this
@@ -196,15 +244,48 @@ public class SearchQueueWorker implements Callable<List<Message>> {
 					searchDao.createOrUpdateSearchDocument(batch);
 				} catch (Throwable e) {
 					processCreateUpdateBatchAsSingle();
+					return;
+				}
+				for(Document doc: batch){
+					addDocumentEtag(toRecord, doc);
 				}
 			}
+			ledgerDao.recordIndexed(toRecord);
+		}
+	}
+	
+	/**
+	 * Get the ledger etags of the entities in the batch that have an etag.
+	 * @return
+	 */
+	private Map<String, String> getIndexedEtags(){
+		Set<String> entityIds = new HashSet<String>();
+		for(ChangeMessage message: createOrUpdateMessages.values()){
+			if(message.getObjectEtag() != null){
+				entityIds.add(message.getObjectId());
+			}
+		}
+		if(entityIds.isEmpty()){
+			return new HashMap<String, String>();
+		}
+		return ledgerDao.getIndexedEtags(entityIds, System.currentTimeMillis()-LEDGER_MAX_AGE_MS);
+	}
+	
+	/**
+	 * Add the etag a document was built with to the map.
+	 * @param toRecord
+	 * @param doc
+	 */
+	private static void addDocumentEtag(Map<String, String> toRecord, Document doc){
+		if(doc.getFields() != null && doc.getFields().getEtag() != null){
+			toRecord.put(doc.getId(), doc.getFields().getEtag());
 		}
 	}
 
 	private void processCreateUpdateBatchAsSingle() {
 		if (createOrUpdateMessages != null) {
 			log.debug("Re-processing createUpdate batch as single messages");
-			for (ChangeMessage msg: createOrUpdateMessages) {
+			for (ChangeMessage msg: createOrUpdateMessages.values()) {
 				try {
 					if (!searchDao.doesDocumentExist(msg.getObjectId(), msg.getObjectEtag())) {
 						if (msg.getObjectEtag() == null || documentProvider.doesDocumentExist(msg.getObjectId(), msg.getObjectEtag())) {
@@ -217,6 +298,9 @@ public class SearchQueueWorker implements Callable<List<Message>> {
 							}
 							if (newDoc != null) {
 								searchDao.createOrUpdateSearchDocument(newDoc);
+								Map<String, String> toRecord = new HashMap<String, String>(1);
+								addDocumentEtag(toRecord, newDoc);
+								ledgerDao.recordIndexed(toRecord);
 							}
 						}
 						}
@@ -7,6 +7,7 @@ import org.sagebionetworks.asynchronous.workers.sqs.MessageWorkerFactory;
 import org.sagebionetworks.asynchronous.workers.sqs.WorkerProgress;
 import org.sagebionetworks.cloudwatch.WorkerLogger;
 import org.sagebionetworks.repo.manager.search.SearchDocumentDriver;
+import org.sagebionetworks.repo.model.dao.SearchIndexLedgerDao;
 import org.sagebionetworks.repo.model.v2.dao.V2WikiPageDao;
 import org.sagebionetworks.search.SearchDao;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,13 +33,16 @@ public class SearchQueueWorkerFactory implements MessageWorkerFactory {
 	@Autowired
 	private WorkerLogger workerLogger;
 	
+	@Autowired
+	private SearchIndexLedgerDao searchIndexLedgerDao;
+	
 	public void initialize(){
 	}
 
 	@Override
 	public Callable<List<Message>> createWorker(List<Message> messages, WorkerProgress workerProgress) {
 		// Create a new worker
-		return new SearchQueueWorker(searchDao, searchDocumentDriver, messages, wikPageDao, workerLogger);
+		return new SearchQueueWorker(searchDao, searchDocumentDriver, messages, wikPageDao, workerLogger, searchIndexLedgerDao);
 	}
 
 }
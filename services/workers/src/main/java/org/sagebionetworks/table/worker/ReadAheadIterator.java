@@ -0,0 +1,121 @@
+package org.sagebionetworks.table.worker;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads ahead of the caller on a separate thread, so the wrapped iterator
+ * (for example a CSV parser) works while the caller is busy with the rows it
+ * already has. At most the given number of elements are buffered.
+ * <p>
+ * Exceptions thrown by the wrapped iterator are thrown to the caller in the
+ * same position they occurred. Call {@link #close()} to stop the read-ahead
+ * thread if the caller stops before the end.
+ *
+ * @author John
+ *
+ * @param <T>
+ */
+public class ReadAheadIterator<T> implements Iterator<T> {
+
+	/**
+	 * Marks the end of the wrapped iterator.
+	 */
+	private static final Object END = new Object();
+
+	private final BlockingQueue<Object> queue;
+	private final Thread reader;
+	private Object next;
+
+	/**
+	 * Create a new object for each use. The read-ahead thread is started
+	 * immediately.
+	 *
+	 * @param wrappedIterator
+	 * @param capacity
+	 *            The maximum number of elements buffered ahead of the caller.
+	 */
+	public ReadAheadIterator(final Iterator<T> wrappedIterator, int capacity) {
+		if (wrappedIterator == null) throw new IllegalArgumentException("Iterator cannot be null");
+		if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least one");
+		this.queue = new ArrayBlockingQueue<Object>(capacity);
+		this.reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					try {
+						while (wrappedIterator.hasNext()) {
+							queue.put(wrappedIterator.next());
+						}
+						queue.put(END);
+					} catch (InterruptedException e) {
+						// Closed by the caller.
+					} catch (Throwable e) {
+						queue.put(new Failure(e));
+					}
+				} catch (InterruptedException e) {
+					// Closed by the caller.
+				}
+			}
+		}, "read-ahead-" + wrappedIterator.getClass().getSimpleName());
+		this.reader.setDaemon(true);
+		this.reader.start();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			try {
+				next = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+		if (next instanceof Failure) {
+			Throwable cause = ((Failure) next).cause;
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+		return next != END;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		T result = (T) next;
+		next = null;
+		return result;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Remove is not supported");
+	}
+
+	/**
+	 * Stop reading ahead.
+	 */
+	public void close() {
+		reader.interrupt();
+	}
+
+	/**
+	 * An exception thrown by the wrapped iterator.
+	 */
+	private static class Failure {
+		final Throwable cause;
+
+		Failure(Throwable cause) {
+			this.cause = cause;
+		}
+	}
+}
@@ -22,6 +22,7 @@ import org.sagebionetworks.repo.model.file.S3FileHandle;
 import org.sagebionetworks.repo.model.table.AsynchUploadRequestBody;
 import org.sagebionetworks.repo.model.table.AsynchUploadResponseBody;
 import org.sagebionetworks.repo.model.table.ColumnModel;
+import org.sagebionetworks.repo.model.table.Row;
 import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
 import org.sagebionetworks.util.csv.CsvNullReader;
 
@@ -38,6 +39,10 @@ import com.amazonaws.services.sqs.model.Message;
 public class TableCSVAppenderWorker implements Callable<List<Message>> {
 
 	static private Logger log = LogManager.getLogger(TableCSVAppenderWorker.class);
+	/**
+	 * The number of rows parsed ahead of the rows being appended.
+	 */
+	public static final int READ_AHEAD_ROWS = 5000;
 
 	private AsynchJobStatusManager asynchJobStatusManager;
 	private TableRowManager tableRowManager;
@@ -95,6 +100,7 @@ public class TableCSVAppenderWorker implements Callable<List<Message>> {
 	 */
 	public void processStatus(AsynchronousJobStatus status) throws Throwable {
 		CsvNullReader reader = null;
+		ReadAheadIterator<Row> readAhead = null;
 		try{
 			UserInfo user = userManger.getUserInfo(status.getStartedByUserId());
 			AsynchUploadRequestBody body = (AsynchUploadRequestBody) status.getRequestBody();
@@ -120,7 +126,9 @@ public class TableCSVAppenderWorker implements Callable<List<Message>> {
 			ProgressReporter progressReporter = new IntervalProgressReporter(status.getJobId(),fileMetadata.getContentLength(), countingInputStream, asynchJobStatusManager, progressIntervalMs);
 			// Create the iterator
 			CSVToRowIterator iterator = new CSVToRowIterator(tableSchema, reader);
-			ProgressingIteratorProxy iteratorProxy = new  ProgressingIteratorProxy(iterator, progressReporter);
+			// Parse the CSV on its own thread while earlier batches are validated and uploaded.
+			readAhead = new ReadAheadIterator<Row>(iterator, READ_AHEAD_ROWS);
+			ProgressingIteratorProxy iteratorProxy = new  ProgressingIteratorProxy(readAhead, progressReporter);
 			// Append the data to the table
 			String etag = tableRowManager.appendRowsAsStream(user, body.getTableId(), tableSchema, iteratorProxy, null, null);
 			// Done
@@ -133,6 +141,10 @@ public class TableCSVAppenderWorker implements Callable<List<Message>> {
 			asynchJobStatusManager.setJobFailed(status.getJobId(), e);
 			throw e;
 		}finally{
+			if(readAhead != null){
+				// Stop parsing before the reader is closed.
+				readAhead.close();
+			}
 			if(reader != null){
 				try {
 					// Unconditionally close the stream to the S3 file.
@@ -0,0 +1,69 @@
+package org.sagebionetworks.table.worker;
+
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.repo.manager.table.TableRowManager;
+import org.sagebionetworks.repo.model.StackStatusDao;
+import org.sagebionetworks.repo.model.dbo.dao.semaphore.ProgressCallback;
+import org.sagebionetworks.repo.model.dbo.dao.semaphore.ProgressingRunner;
+import org.sagebionetworks.repo.model.status.StatusEnum;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * This worker builds the row version index of tables that pre-date the index
+ * or were migrated. Until a table is indexed its reads are served from the
+ * latest version cache or by scanning its change sets. Each run builds batches
+ * of tables until every table is indexed, so once the backfill is done a run
+ * is a single query.
+ * 
+ * @author John
+ * 
+ */
+public class TableRowVersionIndexBackfillWorker implements ProgressingRunner {
+
+	static private Logger log = LogManager.getLogger(TableRowVersionIndexBackfillWorker.class);
+
+	/**
+	 * The number of tables listed in each batch.
+	 */
+	public static final long BATCH_SIZE = 100;
+
+	@Autowired
+	TableRowManager tableRowManager;
+	@Autowired
+	StackStatusDao stackStatusDao;
+
+	@Override
+	public void run(ProgressCallback callback) throws Exception {
+		// Migration writes change sets directly so wait until it is done.
+		if (!StatusEnum.READ_WRITE.equals(stackStatusDao.getCurrentStatus())) {
+			return;
+		}
+		long total = 0;
+		List<String> tableIds;
+		long built;
+		do {
+			callback.progressMade();
+			tableIds = tableRowManager.listTablesWithoutRowVersionIndex(BATCH_SIZE);
+			built = 0;
+			for (String tableId : tableIds) {
+				try {
+					tableRowManager.rebuildRowVersionIndex(tableId);
+					built++;
+				} catch (Exception e) {
+					// One bad table must not block the rest, it will be retried on the next run.
+					log.error("Failed to build the row version index of table: " + tableId, e);
+				}
+				callback.progressMade();
+			}
+			total += built;
+			// Stop if a full batch failed, as the next batch would list the same tables.
+		} while (tableIds.size() >= BATCH_SIZE && built > 0 && StatusEnum.READ_WRITE.equals(stackStatusDao.getCurrentStatus()));
+		if (total > 0) {
+			log.info("Built the row version index of " + total + " tables");
+		}
+	}
+
+}
@@ -3,12 +3,8 @@ package org.sagebionetworks.table.worker;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 import java.util.concurrent.Callable;
 
 import org.apache.logging.log4j.LogManager;
@@ -20,7 +16,6 @@ import org.sagebionetworks.repo.manager.table.TableRowManager;
 import org.sagebionetworks.repo.model.ConflictingUpdateException;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.ObjectType;
-import org.sagebionetworks.repo.model.dbo.dao.table.TableModelUtils;
 import org.sagebionetworks.repo.model.exception.LockUnavilableException;
 import org.sagebionetworks.repo.model.message.ChangeMessage;
 import org.sagebionetworks.repo.model.message.ChangeType;
@@ -29,11 +24,12 @@ import org.sagebionetworks.repo.model.table.RowSet;
 import org.sagebionetworks.repo.model.table.TableRowChange;
 import org.sagebionetworks.repo.model.table.TableStatus;
 import org.sagebionetworks.repo.web.NotFoundException;
+import org.sagebionetworks.table.cluster.BulkLoadRejectedException;
+import org.sagebionetworks.table.cluster.BulkTableLoader;
 import org.sagebionetworks.table.cluster.ConnectionFactory;
 import org.sagebionetworks.table.cluster.TableIndexDAO;
 
 import com.amazonaws.services.sqs.model.Message;
-import com.google.common.collect.SetMultimap;
 
 /**
  * This worker updates the index used to support the tables features. It will
@@ -49,9 +45,11 @@ public class TableWorker implements Callable<List<Message>> {
 		SUCCESS, UNRECOVERABLE_FAILURE, RECOVERABLE_FAILURE,
 	}
 
-	private static final long BATCH_SIZE = 16000;
-
 	static private Logger log = LogManager.getLogger(TableWorker.class);
+	/**
+	 * A full build of a table with at least this many rows is bulk loaded.
+	 */
+	public static final long BULK_LOAD_MIN_ROWS = 50000L;
 	List<Message> messages;
 	ConnectionFactory tableConnectionFactory;
 	TableRowManager tableRowManager;
@@ -105,6 +103,13 @@ public class TableWorker implements Callable<List<Message>> {
 						indexDao.deleteTable(change.getObjectId());
 						indexDao.deleteStatusTable(change.getObjectId());
 					}
+					// The table might also be on its way to a new shard.
+					TableIndexDAO targetDao = tableConnectionFactory
+							.getRebalanceTargetConnection(change.getObjectId());
+					if (targetDao != null) {
+						targetDao.deleteTable(change.getObjectId());
+						targetDao.deleteStatusTable(change.getObjectId());
+					}
 					processedMessages.add(message);
 				} else {
 					// Create or update.
@@ -202,6 +207,12 @@ public class TableWorker implements Callable<List<Message>> {
 			}
 			// This method will do the rest of the work.
 			String lastEtag = synchIndexWithTable(indexDAO, tableId, tableResetToken, message);
+			// If the table is being moved to a new shard then build the index there too.
+			// Queries will switch to the new shard once it has caught up.
+			TableIndexDAO targetDAO = tableConnectionFactory.getRebalanceTargetConnection(tableId);
+			if (targetDAO != null) {
+				synchIndexWithTable(targetDAO, tableId, tableResetToken, message);
+			}
 			// We are finished set the status
 			tableRowManager.attemptToSetTableStatusToAvailable(tableId,	tableResetToken, lastEtag);
 			return State.SUCCESS;
@@ -224,6 +235,11 @@ public class TableWorker implements Callable<List<Message>> {
 	 * applied will be applied. Note: This method will do no work if the index
 	 * and truth are already synchronized.
 	 * 
+	 * Only the change sets after the last version applied to the index are
+	 * read, and the index records each change set as it is applied. A worker
+	 * that stops part way (for example because it lost its lock) will resume
+	 * from the last applied change set.
+	 * 
 	 * @param connection
 	 * @param tableId
 	 * @param status
@@ -257,37 +273,89 @@ public class TableWorker implements Callable<List<Message>> {
 			return null;
 		}
 
+		// Only the change sets that have not been applied to the index.
+		List<TableRowChange> changes = tableRowManager.listRowSetsKeysForTableGreaterThanVersion(tableId, maxCurrentCompleteVersion);
+		long totalProgress = 0;
+		// Rows can only be skipped in favor of a change set that is applied in this pass.
+		long maxVersion = maxCurrentCompleteVersion;
+		for (TableRowChange change : changes) {
+			if (change.getRowCount() != null) {
+				totalProgress += change.getRowCount();
+			}
+			maxVersion = Math.max(maxVersion, change.getRowVersion());
+		}
+		if (maxCurrentCompleteVersion < 0 && !currentSchema.isEmpty() && totalProgress >= BULK_LOAD_MIN_ROWS
+				&& bulkLoadIndex(indexDao, tableId, resetToken, message, currentSchema, changes, maxVersion, totalProgress)) {
+			return lastTableRowChange.getEtag();
+		}
 		long currentProgress = 0;
-		long maxRowId = tableRowManager.getMaxRowId(tableId);
-		for (long rowId = 0; rowId <= maxRowId; rowId += BATCH_SIZE) {
-			Map<Long, Long> currentRowVersions = tableRowManager.getCurrentRowVersions(tableId, maxCurrentCompleteVersion + 1, rowId,
-					BATCH_SIZE);
-
-			// gather rows by version
-			SetMultimap<Long, Long> versionToRowsMap = TableModelUtils.createVersionToRowsMap(currentRowVersions);
-			for (Entry<Long, Collection<Long>> versionWithRows : versionToRowsMap.asMap().entrySet()) {
-				Set<Long> rowsToGet = (Set<Long>) versionWithRows.getValue();
-				Long version = versionWithRows.getKey();
-
-				// Keep this message invisible
-				workerProgress.progressMadeForMessage(message);
-
-				// This is a change that we must apply.
-				RowSet rowSet = tableRowManager.getRowSet(tableId, version, rowsToGet);
-
-				tableRowManager.attemptToUpdateTableProgress(tableId, resetToken, "Applying rows " + rowSet.getRows().size()
-						+ " to version: " + version, currentProgress, currentProgress);
+		for (TableRowChange change : changes) {
+			// Keep this message invisible
+			workerProgress.progressMadeForMessage(message);
+			Long version = change.getRowVersion();
+			// Rows replaced by a later change set are skipped as they will be applied with that change set.
+			RowSet rowSet = tableRowManager.getCurrentRowsOfChangeSet(tableId, version, maxVersion);
+			tableRowManager.attemptToUpdateTableProgress(tableId, resetToken, "Applying rows " + rowSet.getRows().size()
+					+ " to version: " + version, currentProgress, totalProgress);
+			if (!rowSet.getRows().isEmpty()) {
 				// apply the change to the table
 				indexDao.createOrUpdateOrDeleteRows(rowSet, currentSchema);
-				currentProgress += rowsToGet.size();
+			}
+			// Checkpoint so a later run can start after this change set.
+			indexDao.setMaxCurrentCompleteVersionForTable(tableId, version);
+			if (change.getRowCount() != null) {
+				currentProgress += change.getRowCount();
 			}
 		}
 
-		// If we successfully updated the table and got here, then all we know is that we are at least at the version
-		// the table was at when we started. It is still possible that a newer version came in and the we applied
-		// partial updates from that version to the index. A subsequent update will make things consistent again.
-		indexDao.setMaxCurrentCompleteVersionForTable(tableId, lastTableRowChange.getRowVersion());
-
 		return lastTableRowChange.getEtag();
 	}
+
+	/**
+	 * Build the entire index in a staging table and then swap it in. Used when
+	 * nothing has been applied to the index yet and the table is large.
+	 * 
+	 * @return False if the database rejected the bulk load, in which case the
+	 *         index is unchanged and the change sets must be applied with
+	 *         batched updates.
+	 * @throws IOException
+	 * @throws NotFoundException
+	 */
+	private boolean bulkLoadIndex(TableIndexDAO indexDao, String tableId, String resetToken, Message message,
+			List<ColumnModel> currentSchema, List<TableRowChange> changes, long maxVersion, long totalProgress) throws IOException,
+			NotFoundException {
+		BulkTableLoader loader = indexDao.startBulkLoad(currentSchema, tableId);
+		try {
+			long currentProgress = 0;
+			Long version = null;
+			for (TableRowChange change : changes) {
+				// Keep this message invisible
+				workerProgress.progressMadeForMessage(message);
+				version = change.getRowVersion();
+				RowSet rowSet = tableRowManager.getCurrentRowsOfChangeSet(tableId, version, maxVersion);
+				tableRowManager.attemptToUpdateTableProgress(tableId, resetToken, "Loading rows " + rowSet.getRows().size()
+						+ " of version: " + version, currentProgress, totalProgress);
+				loader.append(rowSet);
+				if (change.getRowCount() != null) {
+					currentProgress += change.getRowCount();
+				}
+			}
+			workerProgress.progressMadeForMessage(message);
+			tableRowManager.attemptToUpdateTableProgress(tableId, resetToken, "Swapping in the loaded table", currentProgress,
+					totalProgress);
+			long rowCount;
+			try {
+				rowCount = loader.finish();
+			} catch (BulkLoadRejectedException e) {
+				log.warn(e.getMessage() + ". Falling back to batched updates.", e);
+				return false;
+			}
+			log.info("Bulk loaded " + rowCount + " rows into table: " + tableId);
+			// Checkpoint so a later run starts after the last change set.
+			indexDao.setMaxCurrentCompleteVersionForTable(tableId, version);
+			return true;
+		} finally {
+			loader.close();
+		}
+	}
 }
@@ -0,0 +1,57 @@
+package org.sagebionetworks.node.workers;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sagebionetworks.repo.model.NodeDAO;
+import org.sagebionetworks.repo.model.StackStatusDao;
+import org.sagebionetworks.repo.model.dbo.dao.semaphore.ProgressCallback;
+import org.sagebionetworks.repo.model.status.StatusEnum;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class NodeAncestryBackfillWorkerTest {
+
+	NodeDAO mockNodeDao;
+	StackStatusDao mockStatusDao;
+	ProgressCallback mockCallback;
+	NodeAncestryBackfillWorker worker;
+
+	@Before
+	public void before() {
+		mockNodeDao = Mockito.mock(NodeDAO.class);
+		mockStatusDao = Mockito.mock(StackStatusDao.class);
+		mockCallback = Mockito.mock(ProgressCallback.class);
+		worker = new NodeAncestryBackfillWorker();
+		ReflectionTestUtils.setField(worker, "nodeDao", mockNodeDao);
+		ReflectionTestUtils.setField(worker, "stackStatusDao", mockStatusDao);
+		when(mockStatusDao.getCurrentStatus()).thenReturn(StatusEnum.READ_WRITE);
+	}
+
+	@Test
+	public void testRunUntilDone() throws Exception {
+		int full = (int) NodeAncestryBackfillWorker.BATCH_SIZE;
+		when(mockNodeDao.backfillAncestry(NodeAncestryBackfillWorker.BATCH_SIZE)).thenReturn(full, full, 3);
+		worker.run(mockCallback);
+		verify(mockNodeDao, times(3)).backfillAncestry(NodeAncestryBackfillWorker.BATCH_SIZE);
+		verify(mockCallback, times(3)).progressMade();
+	}
+
+	@Test
+	public void testDone() throws Exception {
+		when(mockNodeDao.backfillAncestry(NodeAncestryBackfillWorker.BATCH_SIZE)).thenReturn(0);
+		worker.run(mockCallback);
+		verify(mockNodeDao, times(1)).backfillAncestry(NodeAncestryBackfillWorker.BATCH_SIZE);
+	}
+
+	@Test
+	public void testReadOnly() throws Exception {
+		when(mockStatusDao.getCurrentStatus()).thenReturn(StatusEnum.READ_ONLY);
+		worker.run(mockCallback);
+		verify(mockNodeDao, never()).backfillAncestry(Mockito.anyLong());
+	}
+}
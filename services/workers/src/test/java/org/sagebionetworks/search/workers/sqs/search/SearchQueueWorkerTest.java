@@ -4,9 +4,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.http.client.ClientProtocolException;
@@ -19,8 +21,10 @@ import org.mockito.Mockito;
 import org.sagebionetworks.asynchronous.workers.sqs.MessageUtils;
 import org.sagebionetworks.cloudwatch.WorkerLogger;
 import org.sagebionetworks.repo.manager.search.SearchDocumentDriver;
+import org.sagebionetworks.repo.model.dao.SearchIndexLedgerDao;
 import org.sagebionetworks.repo.model.message.ChangeMessage;
 import org.sagebionetworks.repo.model.search.Document;
+import org.sagebionetworks.repo.model.search.DocumentFields;
 import org.sagebionetworks.repo.model.v2.dao.V2WikiPageDao;
 import org.sagebionetworks.search.SearchDao;
 
@@ -33,6 +37,7 @@ public class SearchQueueWorkerTest {
 	private V2WikiPageDao mockWikiPageDao;
 	private List<Message> messageList;
 	private WorkerLogger mockWorkerLogger;
+	private SearchIndexLedgerDao mockLedgerDao;
 	
 	@Before
 	public void before(){
@@ -41,7 +46,9 @@ public class SearchQueueWorkerTest {
 		mockWikiPageDao = Mockito.mock(V2WikiPageDao.class);
 		messageList = new LinkedList<Message>();
 		mockWorkerLogger = Mockito.mock(WorkerLogger.class);
+		mockLedgerDao = Mockito.mock(SearchIndexLedgerDao.class);
 		when(mockSearchDao.isSearchEnabled()).thenReturn(true);
+		when(mockLedgerDao.getIndexedEtags(anyCollection(), anyLong())).thenReturn(new HashMap<String, String>());
 	}
 	
 	@Test
@@ -50,7 +57,7 @@ public class SearchQueueWorkerTest {
 		messageList.add(MessageUtils.buildDeleteEntityMessage("one", "parent1", "1", "handle1"));
 		messageList.add(MessageUtils.buildDeleteEntityMessage("two", "parent2", "2", "handle2"));
 		
-		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger);
+		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger, mockLedgerDao);
 		List<Message> results = worker.call();
 		assertNotNull(results);
 		assertEquals(messageList, results);
@@ -60,6 +67,8 @@ public class SearchQueueWorkerTest {
 		deleteSet.add("two");
 		// Delete should be called
 		verify(mockSearchDao, times(1)).deleteDocuments(deleteSet);
+		// The ledger entries are removed with the documents
+		verify(mockLedgerDao, times(1)).deleteEntries(deleteSet);
 		// create should not be called
 		verify(mockSearchDao, never()).createOrUpdateSearchDocument(any(List.class));
 	}
@@ -88,7 +97,7 @@ public class SearchQueueWorkerTest {
 		when(mockSearchDao.doesDocumentExist("one", "etag1")).thenReturn(false);
 		when(mockSearchDao.doesDocumentExist("two", "etag2")).thenReturn(false);
 		
-		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger);
+		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger, mockLedgerDao);
 		List<Message> results = worker.call();
 		assertNotNull(results);
 		assertEquals(messageList, results);
@@ -113,7 +122,7 @@ public class SearchQueueWorkerTest {
 		// Create only occurs if it is not already in the search index
 		when(mockSearchDao.doesDocumentExist("one", "etag1")).thenReturn(true);
 
-		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger);
+		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger, mockLedgerDao);
 		List<Message> results = worker.call();
 		assertNotNull(results);
 		assertEquals(messageList, results);
@@ -140,7 +149,7 @@ public class SearchQueueWorkerTest {
 		// Create only occurs if it is not already in the search index
 		when(mockSearchDao.doesDocumentExist("one", "etag1")).thenReturn(false);
 
-		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger);
+		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger, mockLedgerDao);
 		List<Message> results = worker.call();
 		assertNotNull(results);
 		assertEquals(messageList, results);
@@ -177,7 +186,7 @@ public class SearchQueueWorkerTest {
 		Mockito.doThrow(eBatch).when(mockSearchDao).deleteDocuments(docIdsToDelete);
 		Mockito.doThrow(eRetry).when(mockSearchDao).deleteDocument("one");
 		
-		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger);
+		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger, mockLedgerDao);
 		List<Message> results = worker.call();
 		
 		// Verify that error logged for "one" and "two" went through
@@ -219,11 +228,132 @@ public class SearchQueueWorkerTest {
 		Mockito.doThrow(eBatch).when(mockSearchDao).createOrUpdateSearchDocument(docsToCreate);
 		Mockito.doThrow(eRetry).when(mockSearchDao).createOrUpdateSearchDocument(docOne);
 		
-		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger);
+		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger, mockLedgerDao);
 		List<Message> results = worker.call();
 		
 		// Verify that error logged for "one" and "two" went through
 		verify(mockWorkerLogger, times(1)).logWorkerFailure(SearchQueueWorker.class, cMsg, eRetry, false);
 		verify(mockSearchDao, times(1)).createOrUpdateSearchDocument(docTwo);
 	}
-}
+	
+	/**
+	 * When the ledger shows this stack already sent the entity with the same etag, the search index is not queried.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateSkippedByLedger() throws Exception{
+		messageList.add(MessageUtils.buildCreateEntityMessage("one", "parent1", "etag1", "1", "handle1"));
+		Map<String, String> ledger = new HashMap<String, String>();
+		ledger.put("one", "etag1");
+		when(mockLedgerDao.getIndexedEtags(anyCollection(), anyLong())).thenReturn(ledger);
+		
+		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger, mockLedgerDao);
+		List<Message> results = worker.call();
+		assertEquals(messageList, results);
+		
+		verify(mockSearchDao, never()).doesDocumentExist(anyString(), anyString());
+		verify(mockDocumentProvider, never()).doesDocumentExist(anyString(), anyString());
+		verify(mockSearchDao, never()).createOrUpdateSearchDocument(any(List.class));
+	}
+	
+	/**
+	 * A ledger entry with a different etag does not prevent the update.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateLedgerStale() throws Exception{
+		messageList.add(MessageUtils.buildUpdateEntityMessage("one", "parent1", "etag2", "1", "handle1"));
+		Map<String, String> ledger = new HashMap<String, String>();
+		ledger.put("one", "etag1");
+		when(mockLedgerDao.getIndexedEtags(anyCollection(), anyLong())).thenReturn(ledger);
+		when(mockDocumentProvider.doesDocumentExist("one", "etag2")).thenReturn(true);
+		when(mockSearchDao.doesDocumentExist("one", "etag2")).thenReturn(false);
+		Document docOne = createDocument("one", "etag2");
+		when(mockDocumentProvider.formulateSearchDocument("one")).thenReturn(docOne);
+		
+		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger, mockLedgerDao);
+		worker.call();
+		
+		List<Document> expectedDocs = new LinkedList<Document>();
+		expectedDocs.add(docOne);
+		verify(mockSearchDao, times(1)).createOrUpdateSearchDocument(expectedDocs);
+	}
+	
+	/**
+	 * The etags of the documents sent are recorded in the ledger.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateRecordsLedger() throws Exception{
+		messageList.add(MessageUtils.buildCreateEntityMessage("one", "parent1", "etag1", "1", "handle1"));
+		messageList.add(MessageUtils.buildCreateEntityMessage("two", "parent2", "etag2", "1", "handle2"));
+		when(mockDocumentProvider.doesDocumentExist("one", "etag1")).thenReturn(true);
+		when(mockSearchDao.doesDocumentExist("one", "etag1")).thenReturn(false);
+		when(mockDocumentProvider.formulateSearchDocument("one")).thenReturn(createDocument("one", "etag1"));
+		// two is already in the search index
+		when(mockSearchDao.doesDocumentExist("two", "etag2")).thenReturn(true);
+		
+		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger, mockLedgerDao);
+		worker.call();
+		
+		Map<String, String> expected = new HashMap<String, String>();
+		expected.put("one", "etag1");
+		expected.put("two", "etag2");
+		verify(mockLedgerDao, times(1)).recordIndexed(expected);
+	}
+	
+	/**
+	 * Nothing is recorded in the ledger when the batch fails.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateBatchFailureDoesNotRecordBatch() throws Exception{
+		messageList.add(MessageUtils.buildCreateEntityMessage("one", "parent1", "etag1", "1", "handle1"));
+		when(mockDocumentProvider.doesDocumentExist("one", "etag1")).thenReturn(true);
+		when(mockSearchDao.doesDocumentExist("one", "etag1")).thenReturn(false);
+		Document docOne = createDocument("one", "etag1");
+		when(mockDocumentProvider.formulateSearchDocument("one")).thenReturn(docOne);
+		List<Document> docsToCreate = new LinkedList<Document>();
+		docsToCreate.add(docOne);
+		Mockito.doThrow(new RuntimeException("Batch exception")).when(mockSearchDao).createOrUpdateSearchDocument(docsToCreate);
+		Mockito.doThrow(new RuntimeException("Retry exception")).when(mockSearchDao).createOrUpdateSearchDocument(docOne);
+		
+		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger, mockLedgerDao);
+		worker.call();
+		
+		verify(mockLedgerDao, never()).recordIndexed(any(Map.class));
+	}
+	
+	/**
+	 * Multiple changes to the same entity in one batch result in a single document.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCoalesceUpdates() throws Exception{
+		messageList.add(MessageUtils.buildCreateEntityMessage("one", "parent1", "etag1", "1", "handle1"));
+		messageList.add(MessageUtils.buildUpdateEntityMessage("one", "parent1", "etag2", "2", "handle2"));
+		when(mockDocumentProvider.doesDocumentExist("one", "etag2")).thenReturn(true);
+		when(mockSearchDao.doesDocumentExist("one", "etag2")).thenReturn(false);
+		Document docOne = createDocument("one", "etag2");
+		when(mockDocumentProvider.formulateSearchDocument("one")).thenReturn(docOne);
+		
+		SearchQueueWorker worker = new SearchQueueWorker(mockSearchDao, mockDocumentProvider, messageList, mockWikiPageDao, mockWorkerLogger, mockLedgerDao);
+		List<Message> results = worker.call();
+		assertEquals(messageList, results);
+		
+		List<Document> expectedDocs = new LinkedList<Document>();
+		expectedDocs.add(docOne);
+		verify(mockDocumentProvider, times(1)).formulateSearchDocument("one");
+		verify(mockSearchDao, never()).doesDocumentExist("one", "etag1");
+		verify(mockSearchDao, times(1)).createOrUpdateSearchDocument(expectedDocs);
+	}
+	
+	private static Document createDocument(String id, String etag){
+		Document doc = new Document();
+		doc.setId(id);
+		DocumentFields fields = new DocumentFields();
+		fields.setEtag(etag);
+		doc.setFields(fields);
+		return doc;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package org.sagebionetworks.table.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+public class ReadAheadIteratorTest {
+
+	@Test
+	public void testOrder() {
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < 1000; i++) {
+			input.add(i);
+		}
+		// The capacity is much smaller than the input so the reader must wait on the caller.
+		ReadAheadIterator<Integer> iterator = new ReadAheadIterator<Integer>(input.iterator(), 7);
+		List<Integer> output = new ArrayList<Integer>();
+		while (iterator.hasNext()) {
+			output.add(iterator.next());
+		}
+		assertEquals(input, output);
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testEmpty() {
+		ReadAheadIterator<Integer> iterator = new ReadAheadIterator<Integer>(new ArrayList<Integer>().iterator(), 10);
+		assertFalse(iterator.hasNext());
+		iterator.next();
+	}
+
+	@Test
+	public void testFailureInPosition() {
+		Iterator<Integer> failing = new Iterator<Integer>() {
+			int count = 0;
+
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public Integer next() {
+				if (count == 3) {
+					throw new IllegalArgumentException("Bad row");
+				}
+				return count++;
+			}
+
+			@Override
+			public void remove() {
+			}
+		};
+		ReadAheadIterator<Integer> iterator = new ReadAheadIterator<Integer>(failing, 100);
+		// The rows before the failure are still returned.
+		assertEquals(new Integer(0), iterator.next());
+		assertEquals(new Integer(1), iterator.next());
+		assertEquals(new Integer(2), iterator.next());
+		try {
+			iterator.hasNext();
+			fail("The failure should have been thrown");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Bad row", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		Iterator<Integer> endless = new Iterator<Integer>() {
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public Integer next() {
+				return 1;
+			}
+
+			@Override
+			public void remove() {
+			}
+		};
+		ReadAheadIterator<Integer> iterator = new ReadAheadIterator<Integer>(endless, 10);
+		assertTrue(iterator.hasNext());
+		iterator.close();
+		// Closing does not block the caller.
+		assertEquals(new Integer(1), iterator.next());
+	}
+}
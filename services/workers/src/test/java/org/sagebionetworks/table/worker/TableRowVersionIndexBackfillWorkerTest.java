@@ -0,0 +1,95 @@
+package org.sagebionetworks.table.worker;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sagebionetworks.repo.manager.table.TableRowManager;
+import org.sagebionetworks.repo.model.StackStatusDao;
+import org.sagebionetworks.repo.model.dbo.dao.semaphore.ProgressCallback;
+import org.sagebionetworks.repo.model.status.StatusEnum;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class TableRowVersionIndexBackfillWorkerTest {
+
+	TableRowManager mockTableRowManager;
+	StackStatusDao mockStatusDao;
+	ProgressCallback mockCallback;
+	TableRowVersionIndexBackfillWorker worker;
+
+	@Before
+	public void before() {
+		mockTableRowManager = Mockito.mock(TableRowManager.class);
+		mockStatusDao = Mockito.mock(StackStatusDao.class);
+		mockCallback = Mockito.mock(ProgressCallback.class);
+		worker = new TableRowVersionIndexBackfillWorker();
+		ReflectionTestUtils.setField(worker, "tableRowManager", mockTableRowManager);
+		ReflectionTestUtils.setField(worker, "stackStatusDao", mockStatusDao);
+		when(mockStatusDao.getCurrentStatus()).thenReturn(StatusEnum.READ_WRITE);
+	}
+
+	private List<String> createTableIds(int start, int count) {
+		List<String> tableIds = new ArrayList<String>();
+		for (int i = start; i < start + count; i++) {
+			tableIds.add("syn" + i);
+		}
+		return tableIds;
+	}
+
+	@Test
+	public void testRunUntilDone() throws Exception {
+		int full = (int) TableRowVersionIndexBackfillWorker.BATCH_SIZE;
+		when(mockTableRowManager.listTablesWithoutRowVersionIndex(TableRowVersionIndexBackfillWorker.BATCH_SIZE)).thenReturn(
+				createTableIds(0, full), createTableIds(full, 2));
+		worker.run(mockCallback);
+		verify(mockTableRowManager, times(2)).listTablesWithoutRowVersionIndex(TableRowVersionIndexBackfillWorker.BATCH_SIZE);
+		verify(mockTableRowManager).rebuildRowVersionIndex("syn0");
+		verify(mockTableRowManager).rebuildRowVersionIndex("syn" + (full + 1));
+		verify(mockTableRowManager, times(full + 2)).rebuildRowVersionIndex(Mockito.anyString());
+	}
+
+	@Test
+	public void testDone() throws Exception {
+		when(mockTableRowManager.listTablesWithoutRowVersionIndex(TableRowVersionIndexBackfillWorker.BATCH_SIZE)).thenReturn(
+				Collections.<String> emptyList());
+		worker.run(mockCallback);
+		verify(mockTableRowManager, times(1)).listTablesWithoutRowVersionIndex(TableRowVersionIndexBackfillWorker.BATCH_SIZE);
+		verify(mockTableRowManager, never()).rebuildRowVersionIndex(Mockito.anyString());
+	}
+
+	@Test
+	public void testFailureDoesNotBlockOtherTables() throws Exception {
+		when(mockTableRowManager.listTablesWithoutRowVersionIndex(TableRowVersionIndexBackfillWorker.BATCH_SIZE)).thenReturn(
+				createTableIds(0, 2));
+		doThrow(new IOException("bad change set")).when(mockTableRowManager).rebuildRowVersionIndex("syn0");
+		worker.run(mockCallback);
+		verify(mockTableRowManager).rebuildRowVersionIndex("syn1");
+	}
+
+	@Test
+	public void testFullBatchFailedStops() throws Exception {
+		int full = (int) TableRowVersionIndexBackfillWorker.BATCH_SIZE;
+		when(mockTableRowManager.listTablesWithoutRowVersionIndex(TableRowVersionIndexBackfillWorker.BATCH_SIZE)).thenReturn(
+				createTableIds(0, full));
+		doThrow(new IOException("bad change set")).when(mockTableRowManager).rebuildRowVersionIndex(Mockito.anyString());
+		worker.run(mockCallback);
+		verify(mockTableRowManager, times(1)).listTablesWithoutRowVersionIndex(TableRowVersionIndexBackfillWorker.BATCH_SIZE);
+	}
+
+	@Test
+	public void testReadOnly() throws Exception {
+		when(mockStatusDao.getCurrentStatus()).thenReturn(StatusEnum.READ_ONLY);
+		worker.run(mockCallback);
+		verify(mockTableRowManager, never()).listTablesWithoutRowVersionIndex(Mockito.anyLong());
+	}
+}
@@ -3,6 +3,7 @@ package org.sagebionetworks.table.worker;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
@@ -28,10 +29,13 @@ import org.sagebionetworks.repo.model.dbo.dao.table.TableModelTestUtils;
 import org.sagebionetworks.repo.model.exception.LockUnavilableException;
 import org.sagebionetworks.repo.model.message.ChangeType;
 import org.sagebionetworks.repo.model.table.ColumnModel;
+import org.sagebionetworks.repo.model.table.Row;
 import org.sagebionetworks.repo.model.table.RowSet;
 import org.sagebionetworks.repo.model.table.TableRowChange;
 import org.sagebionetworks.repo.model.table.TableStatus;
 import org.sagebionetworks.repo.web.NotFoundException;
+import org.sagebionetworks.table.cluster.BulkLoadRejectedException;
+import org.sagebionetworks.table.cluster.BulkTableLoader;
 import org.sagebionetworks.table.cluster.ConnectionFactory;
 import org.sagebionetworks.table.cluster.TableIndexDAO;
 import org.sagebionetworks.table.worker.TableWorker.State;
@@ -168,14 +172,15 @@ public class TableWorkerTest {
 		when(mockTableRowManager.getColumnModelsForTable(tableId)).thenReturn(currentSchema);
 		when(mockTableRowManager.getTableStatusOrCreateIfNotExists(tableId)).thenReturn(status);
 		when(mockTableIndexDAO.getMaxCurrentCompleteVersionForTable(tableId)).thenReturn(-1L);
-		when(mockTableRowManager.getCurrentRowVersions(tableId, 0L, 0L, 16000L)).thenReturn(Collections.singletonMap(0L, 0L));
 		TableRowChange trc = new TableRowChange();
 		trc.setEtag("etag");
 		trc.setRowVersion(0L);
+		trc.setRowCount(1L);
 		when(mockTableRowManager.getLastTableRowChange(tableId)).thenReturn(trc);
+		when(mockTableRowManager.listRowSetsKeysForTableGreaterThanVersion(tableId, -1L)).thenReturn(Collections.singletonList(trc));
 		RowSet rowSet = new RowSet();
 		rowSet.setRows(Collections.singletonList(TableModelTestUtils.createRow(0L, 0L, "2")));
-		when(mockTableRowManager.getRowSet(tableId, 0L, Collections.singleton(0L))).thenReturn(rowSet);
+		when(mockTableRowManager.getCurrentRowsOfChangeSet(tableId, 0L, 0L)).thenReturn(rowSet);
 		Message two = MessageUtils.buildMessage(ChangeType.UPDATE, tableId, ObjectType.TABLE, resetToken);
 		List<Message> messages = Arrays.asList(two);
 		// Create the worker
@@ -208,14 +213,15 @@ public class TableWorkerTest {
 		when(mockTableRowManager.getColumnModelsForTable(tableId)).thenReturn(currentSchema);
 		when(mockTableRowManager.getTableStatusOrCreateIfNotExists(tableId)).thenReturn(status);
 		when(mockTableIndexDAO.getMaxCurrentCompleteVersionForTable(tableId)).thenReturn(2L);
-		when(mockTableRowManager.getCurrentRowVersions(tableId, 3L, 0L, 16000L)).thenReturn(Collections.singletonMap(0L, 3L));
 		TableRowChange trc = new TableRowChange();
 		trc.setEtag("etag");
 		trc.setRowVersion(3L);
+		trc.setRowCount(1L);
 		when(mockTableRowManager.getLastTableRowChange(tableId)).thenReturn(trc);
+		when(mockTableRowManager.listRowSetsKeysForTableGreaterThanVersion(tableId, 2L)).thenReturn(Collections.singletonList(trc));
 		RowSet rowSet = new RowSet();
 		rowSet.setRows(Collections.singletonList(TableModelTestUtils.createRow(0L, 3L, "2")));
-		when(mockTableRowManager.getRowSet(tableId, 3L, Collections.singleton(0L))).thenReturn(rowSet);
+		when(mockTableRowManager.getCurrentRowsOfChangeSet(tableId, 3L, 3L)).thenReturn(rowSet);
 		Message two = MessageUtils.buildMessage(ChangeType.UPDATE, tableId, ObjectType.TABLE, resetToken);
 		List<Message> messages = Arrays.asList(two);
 		// Create the worker
@@ -232,6 +238,175 @@ public class TableWorkerTest {
 		verify(mockTableIndexDAO).setMaxCurrentCompleteVersionForTable(tableId, 3L);
 	}
 	
+	/**
+	 * Only change sets after the last applied version should be read and each must be checkpointed as it is
+	 * applied.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testIncrementalSyncWithCheckpoints() throws Exception {
+		String tableId = "456";
+		String resetToken = "reset-token";
+		TableStatus status = new TableStatus();
+		status.setResetToken(resetToken);
+		List<ColumnModel> currentSchema = Lists.newArrayList();
+		when(mockTableRowManager.getColumnModelsForTable(tableId)).thenReturn(currentSchema);
+		when(mockTableRowManager.getTableStatusOrCreateIfNotExists(tableId)).thenReturn(status);
+		// A previous worker applied up to version 5.
+		when(mockTableIndexDAO.getMaxCurrentCompleteVersionForTable(tableId)).thenReturn(5L);
+		TableRowChange six = new TableRowChange();
+		six.setRowVersion(6L);
+		six.setEtag("etag6");
+		six.setRowCount(2L);
+		TableRowChange seven = new TableRowChange();
+		seven.setRowVersion(7L);
+		seven.setEtag("etag7");
+		seven.setRowCount(1L);
+		when(mockTableRowManager.getLastTableRowChange(tableId)).thenReturn(seven);
+		when(mockTableRowManager.listRowSetsKeysForTableGreaterThanVersion(tableId, 5L)).thenReturn(Arrays.asList(six, seven));
+		// Every row of version 6 was replaced by version 7.
+		RowSet sixRows = new RowSet();
+		sixRows.setRows(Collections.<Row> emptyList());
+		RowSet sevenRows = new RowSet();
+		sevenRows.setRows(Collections.singletonList(TableModelTestUtils.createRow(0L, 7L, "2")));
+		when(mockTableRowManager.getCurrentRowsOfChangeSet(tableId, 6L, 7L)).thenReturn(sixRows);
+		when(mockTableRowManager.getCurrentRowsOfChangeSet(tableId, 7L, 7L)).thenReturn(sevenRows);
+		Message two = MessageUtils.buildMessage(ChangeType.UPDATE, tableId, ObjectType.TABLE, resetToken);
+		List<Message> messages = Arrays.asList(two);
+		TableWorker worker = createNewWorker(messages);
+		List<Message> results = worker.call();
+		assertEquals(messages, results);
+		// The full table must not be walked.
+		verify(mockTableRowManager, never()).getCurrentRowVersions(anyString(), anyLong(), anyLong(), anyLong());
+		verify(mockTableRowManager, never()).getCurrentRowsOfChangeSet(eq(tableId), eq(5L), anyLong());
+		verify(mockTableIndexDAO, never()).createOrUpdateOrDeleteRows(sixRows, currentSchema);
+		verify(mockTableIndexDAO).createOrUpdateOrDeleteRows(sevenRows, currentSchema);
+		// Each change set is checkpointed
+		verify(mockTableIndexDAO).setMaxCurrentCompleteVersionForTable(tableId, 6L);
+		verify(mockTableIndexDAO).setMaxCurrentCompleteVersionForTable(tableId, 7L);
+		verify(mockTableRowManager, times(1)).attemptToSetTableStatusToAvailable(tableId, resetToken, "etag7");
+	}
+
+	/**
+	 * A change set appended after the worker listed the change sets must not cause rows of the listed change sets
+	 * to be skipped, since the index is checkpointed at the last listed version.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentAppend() throws Exception {
+		String tableId = "456";
+		String resetToken = "reset-token";
+		TableStatus status = new TableStatus();
+		status.setResetToken(resetToken);
+		List<ColumnModel> currentSchema = Lists.newArrayList();
+		when(mockTableRowManager.getColumnModelsForTable(tableId)).thenReturn(currentSchema);
+		when(mockTableRowManager.getTableStatusOrCreateIfNotExists(tableId)).thenReturn(status);
+		when(mockTableIndexDAO.getMaxCurrentCompleteVersionForTable(tableId)).thenReturn(5L);
+		TableRowChange six = new TableRowChange();
+		six.setRowVersion(6L);
+		six.setEtag("etag6");
+		six.setRowCount(1L);
+		when(mockTableRowManager.getLastTableRowChange(tableId)).thenReturn(six);
+		// Version 7 is appended after the change sets are listed.
+		when(mockTableRowManager.listRowSetsKeysForTableGreaterThanVersion(tableId, 5L)).thenReturn(Arrays.asList(six));
+		RowSet sixRows = new RowSet();
+		sixRows.setRows(Collections.singletonList(TableModelTestUtils.createRow(0L, 6L, "2")));
+		when(mockTableRowManager.getCurrentRowsOfChangeSet(tableId, 6L, 6L)).thenReturn(sixRows);
+		Message two = MessageUtils.buildMessage(ChangeType.UPDATE, tableId, ObjectType.TABLE, resetToken);
+		List<Message> messages = Arrays.asList(two);
+		TableWorker worker = createNewWorker(messages);
+		List<Message> results = worker.call();
+		assertEquals(messages, results);
+		// Only rows replaced by a listed change set can be skipped.
+		verify(mockTableRowManager).getCurrentRowsOfChangeSet(tableId, 6L, 6L);
+		verify(mockTableIndexDAO).createOrUpdateOrDeleteRows(sixRows, currentSchema);
+		verify(mockTableIndexDAO).setMaxCurrentCompleteVersionForTable(tableId, 6L);
+		verify(mockTableIndexDAO, never()).setMaxCurrentCompleteVersionForTable(tableId, 7L);
+	}
+
+	/**
+	 * When the database rejects LOAD DATA LOCAL INFILE the index is built with batched updates instead.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBulkLoadRejected() throws Exception {
+		String tableId = "456";
+		String resetToken = "reset-token";
+		TableStatus status = new TableStatus();
+		status.setResetToken(resetToken);
+		List<ColumnModel> currentSchema = TableModelTestUtils.createOneOfEachType();
+		when(mockTableRowManager.getColumnModelsForTable(tableId)).thenReturn(currentSchema);
+		when(mockTableRowManager.getTableStatusOrCreateIfNotExists(tableId)).thenReturn(status);
+		when(mockTableIndexDAO.getMaxCurrentCompleteVersionForTable(tableId)).thenReturn(-1L);
+		TableRowChange trc = new TableRowChange();
+		trc.setEtag("etag");
+		trc.setRowVersion(0L);
+		trc.setRowCount(TableWorker.BULK_LOAD_MIN_ROWS);
+		when(mockTableRowManager.getLastTableRowChange(tableId)).thenReturn(trc);
+		when(mockTableRowManager.listRowSetsKeysForTableGreaterThanVersion(tableId, -1L)).thenReturn(Collections.singletonList(trc));
+		RowSet rowSet = new RowSet();
+		rowSet.setRows(Collections.singletonList(TableModelTestUtils.createRow(0L, 0L, "2")));
+		when(mockTableRowManager.getCurrentRowsOfChangeSet(tableId, 0L, 0L)).thenReturn(rowSet);
+		BulkTableLoader mockLoader = Mockito.mock(BulkTableLoader.class);
+		when(mockTableIndexDAO.startBulkLoad(currentSchema, tableId)).thenReturn(mockLoader);
+		when(mockLoader.finish()).thenThrow(new BulkLoadRejectedException("rejected", null));
+		Message two = MessageUtils.buildMessage(ChangeType.UPDATE, tableId, ObjectType.TABLE, resetToken);
+		List<Message> messages = Arrays.asList(two);
+		TableWorker worker = createNewWorker(messages);
+		List<Message> results = worker.call();
+		assertEquals(messages, results);
+		verify(mockLoader).close();
+		verify(mockTableIndexDAO).createOrUpdateOrDeleteRows(rowSet, currentSchema);
+		verify(mockTableIndexDAO).setMaxCurrentCompleteVersionForTable(tableId, 0L);
+		verify(mockTableRowManager).attemptToSetTableStatusToAvailable(tableId, resetToken, "etag");
+	}
+
+	/**
+	 * When a table is being moved to a new shard the index must be built on both the old and new shard.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRebalanceBuildsTargetShard() throws Exception {
+		String tableId = "456";
+		String resetToken = "reset-token";
+		TableIndexDAO mockTargetDAO = Mockito.mock(TableIndexDAO.class);
+		when(mockTableConnectionFactory.getRebalanceTargetConnection(tableId)).thenReturn(mockTargetDAO);
+		TableStatus status = new TableStatus();
+		status.setResetToken(resetToken);
+		List<ColumnModel> currentSchema = Lists.newArrayList();
+		when(mockTableRowManager.getColumnModelsForTable(tableId)).thenReturn(currentSchema);
+		when(mockTableRowManager.getTableStatusOrCreateIfNotExists(tableId)).thenReturn(status);
+		// The old shard is current but the new shard is empty.
+		when(mockTableIndexDAO.getMaxCurrentCompleteVersionForTable(tableId)).thenReturn(0L);
+		when(mockTargetDAO.getMaxCurrentCompleteVersionForTable(tableId)).thenReturn(-1L);
+		TableRowChange trc = new TableRowChange();
+		trc.setEtag("etag");
+		trc.setRowVersion(0L);
+		trc.setRowCount(1L);
+		when(mockTableRowManager.getLastTableRowChange(tableId)).thenReturn(trc);
+		when(mockTableRowManager.listRowSetsKeysForTableGreaterThanVersion(tableId, 0L)).thenReturn(Collections.<TableRowChange> emptyList());
+		when(mockTableRowManager.listRowSetsKeysForTableGreaterThanVersion(tableId, -1L)).thenReturn(Collections.singletonList(trc));
+		RowSet rowSet = new RowSet();
+		rowSet.setRows(Collections.singletonList(TableModelTestUtils.createRow(0L, 0L, "2")));
+		when(mockTableRowManager.getCurrentRowsOfChangeSet(tableId, 0L, 0L)).thenReturn(rowSet);
+		Message two = MessageUtils.buildMessage(ChangeType.UPDATE, tableId, ObjectType.TABLE, resetToken);
+		List<Message> messages = Arrays.asList(two);
+		TableWorker worker = createNewWorker(messages);
+		List<Message> results = worker.call();
+		assertEquals(messages, results);
+		// nothing new for the old shard
+		verify(mockTableIndexDAO, never()).createOrUpdateOrDeleteRows(any(RowSet.class), anyList());
+		verify(mockTableIndexDAO, never()).setMaxCurrentCompleteVersionForTable(anyString(), anyLong());
+		// the new shard gets everything
+		verify(mockTargetDAO).createOrUpdateOrDeleteRows(rowSet, currentSchema);
+		verify(mockTargetDAO).setMaxCurrentCompleteVersionForTable(tableId, 0L);
+		verify(mockTableRowManager, times(1)).attemptToSetTableStatusToAvailable(tableId, resetToken, "etag");
+	}
+
 	/**
 	 * When an unknown exception is thrown the table status must get set to failed.
 	 * @throws Exception
@@ -1,5 +1,7 @@
 package org.sagebionetworks.tool.migration;
 
+import org.sagebionetworks.repo.model.migration.BackupFormat;
+
 /**
  * Provides configuration information
  * 
@@ -52,5 +54,11 @@ public interface Configuration {
 	 * Defer exceptions
 	 */
 	public boolean getDeferExceptions();
+	
+	/**
+	 * The format the source should write backups in. Only use BINARY when the
+	 * destination can restore it.
+	 */
+	public BackupFormat getBackupFormat();
 
 }
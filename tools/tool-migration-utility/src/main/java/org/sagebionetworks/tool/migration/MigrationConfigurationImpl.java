@@ -9,6 +9,7 @@ import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
 
 /**
  * Provides configuration information 
@@ -159,4 +160,13 @@ public class MigrationConfigurationImpl implements Configuration {
 		}
 		return v;
 	}
+	
+	@Override
+	public BackupFormat getBackupFormat() {
+		String format = System.getProperty("org.sagebionetworks.backup.format");
+		if (format == null) {
+			return BackupFormat.XML;
+		}
+		return BackupFormat.valueOf(format);
+	}
 }
@@ -14,6 +14,7 @@ import org.sagebionetworks.repo.model.daemon.BackupRestoreStatus;
 import org.sagebionetworks.repo.model.daemon.DaemonStatus;
 import org.sagebionetworks.repo.model.daemon.RestoreSubmission;
 import org.sagebionetworks.repo.model.IdList;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
 import org.sagebionetworks.repo.model.migration.ListBucketProvider;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.MigrationUtils;
@@ -39,6 +40,7 @@ public class CreateUpdateWorker implements Callable<Long>, BatchWorker {
 	long batchSize;
 	long timeoutMS;
 	int retryDenominator;
+	BackupFormat backupFormat;
 	
 	/**
 	 * 
@@ -53,10 +55,11 @@ public class CreateUpdateWorker implements Callable<Long>, BatchWorker {
 	 * @param retryDenominator - If a daemon fails to backup or restore a single batch, the worker will divide the batch into sub-batches
 	 * using this number as the denominator. An attempt will then be made to retry the migration of each sub-batch in an attempt to isolate the problem.
 	 * If this is set to less than 2, then no re-try will be attempted.
+	 * @param backupFormat - The format the source writes each backup in.
 	 */
 	public CreateUpdateWorker(MigrationType type, long count, Iterator<RowMetadata> iterator, BasicProgress progress,
 			SynapseAdminClient destClient,
-			SynapseAdminClient sourceClient, long batchSize, long timeoutMS, int retryDenominator) {
+			SynapseAdminClient sourceClient, long batchSize, long timeoutMS, int retryDenominator, BackupFormat backupFormat) {
 		super();
 		this.type = type;
 		this.count = count;
@@ -69,6 +72,7 @@ public class CreateUpdateWorker implements Callable<Long>, BatchWorker {
 		this.batchSize = batchSize;
 		this.timeoutMS = timeoutMS;
 		this.retryDenominator = retryDenominator;
+		this.backupFormat = backupFormat;
 	}
 
 	@Override
@@ -165,7 +169,7 @@ public class CreateUpdateWorker implements Callable<Long>, BatchWorker {
 		// Start a backup.
 		IdList request = new IdList();
 		request.setList(ids);
-		BackupRestoreStatus status = this.sourceClient.startBackup(type, request);
+		BackupRestoreStatus status = this.sourceClient.startBackup(type, request, backupFormat);
 		// Wait for the backup to complete
 		status = waitForDaemon(status.getId(), this.sourceClient);
 		// Now restore this to the destination
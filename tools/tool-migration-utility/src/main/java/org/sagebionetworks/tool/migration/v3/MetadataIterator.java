@@ -1,12 +1,16 @@
 package org.sagebionetworks.tool.migration.v3;
 
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.sagebionetworks.client.SynapseAdminClient;
 import org.sagebionetworks.client.exceptions.SynapseException;
 import org.sagebionetworks.repo.model.migration.MigrationType;
+import org.sagebionetworks.repo.model.migration.MigrationTypeCount;
+import org.sagebionetworks.repo.model.migration.MigrationTypeCounts;
 import org.sagebionetworks.repo.model.migration.RowMetadata;
 import org.sagebionetworks.repo.model.migration.RowMetadataResult;
 import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
@@ -27,7 +31,8 @@ public class MetadataIterator implements Iterator<RowMetadata> {
 	long batchSize;
 	Iterator<RowMetadata> lastPageIterator;
 	RowMetadataResult lastPage;
-	long offset;
+	long nextId;
+	boolean lastPageRead = false;
 	boolean done = false;
 	BasicProgress progress;
 	
@@ -43,7 +48,7 @@ public class MetadataIterator implements Iterator<RowMetadata> {
 		this.type = type;
 		this.client = client;
 		this.batchSize = batchSize;
-		this.offset = 0;
+		this.nextId = Long.MIN_VALUE;
 		this.done = false;
 		this.progress = progress;
 	}
@@ -74,25 +79,55 @@ public class MetadataIterator implements Iterator<RowMetadata> {
 	}
 
 	/**
-	 * Get the next page.
+	 * Get the next page. Each page starts after the last ID of the previous page
+	 * so the cost of a page does not grow with the number of rows already read.
 	 * @return Returns true when there is no more data, and false when there is more data to read.
 	 * @throws SynapseException
 	 * @throws JSONObjectAdapterException
 	 */
 	private boolean getNextPage() throws SynapseException,	JSONObjectAdapterException {
-		long start = System.currentTimeMillis();
-		this.lastPage = client.getRowMetadata(type, batchSize, offset);
-		long elapse = System.currentTimeMillis()-start;
-//		System.out.println("Fetched "+batchSize+" ids in "+elapse+" ms");
-		this.offset += this.batchSize;
-		this.lastPageIterator = lastPage.getList().iterator();
-		this.done = this.lastPage.getList().isEmpty();
-		progress.setTotal(lastPage.getTotalCount());
+		if(progress.getTotal() < 1){
+			progress.setTotal(getTypeCount());
+		}
+		List<RowMetadata> list = null;
+		if(!lastPageRead){
+			this.lastPage = client.getRowMetadataForIdRange(type, nextId, Long.MAX_VALUE, batchSize);
+			list = lastPage.getList();
+		}
+		if(list == null){
+			list = new LinkedList<RowMetadata>();
+		}
+		this.lastPageIterator = list.iterator();
+		this.done = list.isEmpty();
+		if(!done){
+			long lastId = list.get(list.size()-1).getId();
+			// A short page or the largest possible ID means there is nothing left to read.
+			this.lastPageRead = list.size() < batchSize || lastId == Long.MAX_VALUE;
+			this.nextId = lastId+1;
+		}
 		if(done){
 			progress.setDone();
 		}
 		return done;
 	}
+	
+	/**
+	 * The total number of rows of this type, used to report progress.
+	 * @return
+	 * @throws SynapseException
+	 * @throws JSONObjectAdapterException
+	 */
+	private long getTypeCount() throws SynapseException, JSONObjectAdapterException {
+		MigrationTypeCounts counts = client.getTypeCounts();
+		if(counts != null && counts.getList() != null){
+			for(MigrationTypeCount count: counts.getList()){
+				if(type.equals(count.getType()) && count.getCount() != null){
+					return count.getCount();
+				}
+			}
+		}
+		return 0;
+	}
 
 	/**
 	 * Get the next row metadata
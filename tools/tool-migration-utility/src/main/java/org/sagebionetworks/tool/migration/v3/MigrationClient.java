@@ -21,6 +21,7 @@ import org.apache.commons.logging.LogFactory;
 import org.sagebionetworks.client.SynapseAdminClient;
 import org.sagebionetworks.client.exceptions.SynapseException;
 import org.sagebionetworks.repo.model.PaginatedResults;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCount;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCounts;
@@ -44,6 +45,7 @@ public class MigrationClient {
 	ExecutorService threadPool;
 	List<Exception> deferredExceptions;
 	final int MAX_DEFERRED_EXCEPTIONS = 10;
+	BackupFormat backupFormat = BackupFormat.XML;
 	
 	/**
 	 * New migration client.
@@ -55,6 +57,16 @@ public class MigrationClient {
 		threadPool = Executors.newFixedThreadPool(1);
 		deferredExceptions = new ArrayList<Exception>();
 	}
+	
+	/**
+	 * The format the source should write backups in. Defaults to XML.
+	 * Only use BINARY when the destination can restore it.
+	 * @param backupFormat
+	 */
+	public void setBackupFormat(BackupFormat backupFormat) {
+		if(backupFormat == null) throw new IllegalArgumentException("BackupFormat cannot be null");
+		this.backupFormat = backupFormat;
+	}
 
 	/**
 	 * Migrate all data from the source to destination.
@@ -258,7 +270,7 @@ public class MigrationClient {
 		BufferedRowMetadataReader reader = new BufferedRowMetadataReader(new FileReader(createUpdateTemp));
 		try{
 			BasicProgress progress = new BasicProgress();
-			CreateUpdateWorker worker = new CreateUpdateWorker(type, count, reader,progress,factory.createNewDestinationClient(), factory.createNewSourceClient(), batchSize, timeout, retryDenominator);
+			CreateUpdateWorker worker = new CreateUpdateWorker(type, count, reader,progress,factory.createNewDestinationClient(), factory.createNewSourceClient(), batchSize, timeout, retryDenominator, backupFormat);
 			Future<Long> future = this.threadPool.submit(worker);
 			while(!future.isDone()){
 				// Log the progress
@@ -327,7 +339,6 @@ public class MigrationClient {
 	 */
 	private DeltaCounts calcualteDeltas(MigrationType type, long batchSize, File createTemp, File updateTemp, File deleteTemp)	throws Exception {
 		BasicProgress sourceProgress = new BasicProgress();
-		BasicProgress destProgress = new BasicProgress();
 		BufferedRowMetadataWriter createOut = null;
 		BufferedRowMetadataWriter updateOut = null;
 		BufferedRowMetadataWriter deleteOut = null;
@@ -335,9 +346,8 @@ public class MigrationClient {
 			createOut = new BufferedRowMetadataWriter(new FileWriter(createTemp));
 			updateOut = new BufferedRowMetadataWriter(new FileWriter(updateTemp));
 			deleteOut = new BufferedRowMetadataWriter(new FileWriter(deleteTemp));
-			MetadataIterator sourceIt = new MetadataIterator(type, factory.createNewSourceClient(), batchSize, sourceProgress);
-			MetadataIterator destIt = new MetadataIterator(type, factory.createNewDestinationClient(), batchSize, destProgress);
-			DeltaBuilder builder  = new DeltaBuilder(sourceIt, destIt, createOut, updateOut, deleteOut);
+			// Only the ID ranges that differ between the stacks are listed.
+			RangeDeltaBuilder builder  = new RangeDeltaBuilder(type, factory.createNewSourceClient(), factory.createNewDestinationClient(), batchSize, createOut, updateOut, deleteOut, sourceProgress);
 			// Do the work on a separate thread
 			Future<DeltaCounts> future = this.threadPool.submit(builder);
 			// Wait for the future to finish
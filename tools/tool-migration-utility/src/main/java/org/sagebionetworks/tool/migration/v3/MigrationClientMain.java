@@ -31,6 +31,7 @@ public class MigrationClientMain {
 		// Create the client factory
 		SynapseClientFactory factory = new SynapseClientFactoryImpl(configuration);
 		MigrationClient client = new MigrationClient(factory);
+		client.setBackupFormat(configuration.getBackupFormat());
 		boolean failed = false;
 		for (int i = 0; i < configuration.getMaxRetries(); i++) {
 			try{
@@ -0,0 +1,194 @@
+package org.sagebionetworks.tool.migration.v3;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.sagebionetworks.client.SynapseAdminClient;
+import org.sagebionetworks.client.exceptions.SynapseException;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
+import org.sagebionetworks.repo.model.migration.MigrationType;
+import org.sagebionetworks.repo.model.migration.RowMetadata;
+import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
+import org.sagebionetworks.tool.migration.v3.stream.RowWriter;
+import org.sagebionetworks.tool.progress.BasicProgress;
+
+/**
+ * Builds the deltas between the two stacks by comparing checksums of ID ranges.
+ * <p>
+ * Both stacks are asked for the row count and a checksum of the IDs and etags
+ * of a range of IDs. A range that matches on both stacks is skipped without
+ * listing any of its rows. A range that does not match is split in half until
+ * it holds no more than a batch of rows, then the rows of both stacks are
+ * listed and compared with a {@link DeltaBuilder}. When the stacks are mostly
+ * in sync only the few ranges that changed are listed.
+ * <p>
+ * Ranges are visited in ascending ID order so the rows are written in the same
+ * order as a full listing would write them.
+ *
+ * @author John
+ *
+ */
+public class RangeDeltaBuilder implements Callable<DeltaCounts> {
+
+	MigrationType type;
+	SynapseAdminClient sourceClient;
+	SynapseAdminClient destClient;
+	long batchSize;
+	RowWriter<RowMetadata> toCreate;
+	RowWriter<RowMetadata> toUpdate;
+	RowWriter<RowMetadata> toDelete;
+	BasicProgress progress;
+
+	/**
+	 *
+	 * @param type - The type to build the deltas for.
+	 * @param sourceClient
+	 * @param destClient
+	 * @param batchSize - The maximum number of rows listed from a stack with a single call.
+	 * @param toCreate
+	 * @param toUpdate
+	 * @param toDelete
+	 * @param progress - Tracks the number of source rows that have been compared.
+	 */
+	public RangeDeltaBuilder(MigrationType type, SynapseAdminClient sourceClient, SynapseAdminClient destClient, long batchSize,
+			RowWriter<RowMetadata> toCreate, RowWriter<RowMetadata> toUpdate, RowWriter<RowMetadata> toDelete, BasicProgress progress) {
+		super();
+		if(type == null) throw new IllegalArgumentException("Type cannot be null");
+		if(sourceClient == null) throw new IllegalArgumentException("Source cannot be null");
+		if(destClient == null) throw new IllegalArgumentException("Destination cannot be null");
+		if(batchSize < 1) throw new IllegalArgumentException("Batch size must be at least one");
+		this.type = type;
+		this.sourceClient = sourceClient;
+		this.destClient = destClient;
+		this.batchSize = batchSize;
+		this.toCreate = toCreate;
+		this.toUpdate = toUpdate;
+		this.toDelete = toDelete;
+		this.progress = progress;
+	}
+
+	@Override
+	public DeltaCounts call() throws Exception {
+		DeltaCounts counts = compareRange(Long.MIN_VALUE, Long.MAX_VALUE, true);
+		progress.setDone();
+		return counts;
+	}
+
+	/**
+	 * Compare a range of IDs (inclusive) on both stacks.
+	 *
+	 * @param minId
+	 * @param maxId
+	 * @param isRoot True for the first call.
+	 * @return
+	 * @throws Exception
+	 */
+	private DeltaCounts compareRange(long minId, long maxId, boolean isRoot) throws Exception {
+		MigrationRangeChecksum source = sourceClient.getChecksumForIdRange(type, minId, maxId);
+		MigrationRangeChecksum dest = destClient.getChecksumForIdRange(type, minId, maxId);
+		long sourceCount = source.getCount();
+		long destCount = dest.getCount();
+		if(isRoot){
+			progress.setTotal(sourceCount);
+		}
+		if(sourceCount == destCount && equal(source.getChecksum(), dest.getChecksum())){
+			// Nothing changed in this range.
+			progress.setCurrent(progress.getCurrent()+sourceCount);
+			return new DeltaCounts(0, 0, 0);
+		}
+		// Narrow the range to the rows that actually exist on either stack.
+		long lowId = min(source.getFirstId(), dest.getFirstId());
+		long highId = max(source.getLastId(), dest.getLastId());
+		if(Math.max(sourceCount, destCount) <= batchSize || lowId == highId){
+			// Small enough to list both sides.
+			progress.setCurrent(progress.getCurrent()+sourceCount);
+			return listAndCompare(lowId, highId);
+		}
+		// Split the range and compare each half in order.
+		long middle = midpoint(lowId, highId);
+		DeltaCounts lower = compareRange(lowId, middle, false);
+		DeltaCounts upper = compareRange(middle+1, highId, false);
+		return new DeltaCounts(lower.getCreate()+upper.getCreate(), lower.getUpdate()+upper.getUpdate(), lower.getDelete()+upper.getDelete());
+	}
+
+	/**
+	 * List the rows of both stacks for a range and compare them.
+	 *
+	 * @param minId
+	 * @param maxId
+	 * @return
+	 * @throws Exception
+	 */
+	private DeltaCounts listAndCompare(long minId, long maxId) throws Exception {
+		List<RowMetadata> sourceRows = listRange(sourceClient, minId, maxId);
+		List<RowMetadata> destRows = listRange(destClient, minId, maxId);
+		DeltaBuilder builder = new DeltaBuilder(new NullTerminatedIterator(sourceRows), new NullTerminatedIterator(destRows), toCreate, toUpdate, toDelete);
+		return builder.call();
+	}
+
+	private List<RowMetadata> listRange(SynapseAdminClient client, long minId, long maxId) throws SynapseException, JSONObjectAdapterException {
+		List<RowMetadata> list = client.getRowMetadataForIdRange(type, minId, maxId, batchSize).getList();
+		if(list == null){
+			return new LinkedList<RowMetadata>();
+		}
+		return list;
+	}
+
+	/**
+	 * The midpoint of two longs rounded down without overflow.
+	 *
+	 * @param low
+	 * @param high
+	 * @return
+	 */
+	static long midpoint(long low, long high) {
+		return (low & high) + ((low ^ high) >> 1);
+	}
+
+	private static boolean equal(String one, String two) {
+		if(one == null) return two == null;
+		return one.equals(two);
+	}
+
+	private static long min(Long one, Long two) {
+		if(one == null) return two;
+		if(two == null) return one;
+		return Math.min(one, two);
+	}
+
+	private static long max(Long one, Long two) {
+		if(one == null) return two;
+		if(two == null) return one;
+		return Math.max(one, two);
+	}
+
+	/**
+	 * The DeltaBuilder expects next() to return null when there is no more data.
+	 */
+	private static class NullTerminatedIterator implements Iterator<RowMetadata> {
+
+		Iterator<RowMetadata> wrapped;
+
+		NullTerminatedIterator(List<RowMetadata> list) {
+			this.wrapped = list.iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return wrapped.hasNext();
+		}
+
+		@Override
+		public RowMetadata next() {
+			if(!wrapped.hasNext()) return null;
+			return wrapped.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Not supported");
+		}
+	}
+}
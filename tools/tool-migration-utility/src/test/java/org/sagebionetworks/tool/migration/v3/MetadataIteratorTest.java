@@ -74,13 +74,18 @@ public class MetadataIteratorTest {
 		}while(row != null);
 		// Did we get what we expected?
 		assertEquals(mockStack.metadata.get(type), results);
+		assertEquals(rowCount, progress.getTotal());
+		// Each page continues from the last ID of the previous page.
+		assertEquals(15, mockStack.rangeListHistory.size());
+		assertEquals(new Long(Long.MIN_VALUE), mockStack.rangeListHistory.get(0)[0]);
+		assertEquals(new Long(7), mockStack.rangeListHistory.get(1)[0]);
 	}
 	
 	@Test (expected=RuntimeException.class)
 	public void testFailure() throws SynapseException, JSONObjectAdapterException{
 		// Throw exceptions
 		BasicProgress progress = new BasicProgress();
-		when(mockSynapse.getRowMetadata(any(MigrationType.class), any(Long.class), any(Long.class))).thenThrow(new IllegalStateException("one"));
+		when(mockSynapse.getRowMetadataForIdRange(any(MigrationType.class), any(Long.class), any(Long.class), any(Long.class))).thenThrow(new IllegalStateException("one"));
 		MetadataIterator iterator = new MetadataIterator(type, mockSynapse, 7, progress);
 		iterator.next();
 	}
@@ -0,0 +1,141 @@
+package org.sagebionetworks.tool.migration.v3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.client.SynapseAdminClient;
+import org.sagebionetworks.repo.model.migration.MigrationType;
+import org.sagebionetworks.repo.model.migration.RowMetadata;
+import org.sagebionetworks.tool.migration.v3.stream.ListRowMetadataWriter;
+import org.sagebionetworks.tool.progress.BasicProgress;
+
+/**
+ * Test for the range checksum delta detection.
+ *
+ * @author John
+ *
+ */
+public class RangeDeltaBuilderTest {
+
+	MigrationType type = MigrationType.values()[0];
+	SynapseAdminClientMockState sourceState;
+	SynapseAdminClient source;
+	SynapseAdminClientMockState destState;
+	SynapseAdminClient dest;
+	ListRowMetadataWriter create;
+	ListRowMetadataWriter update;
+	ListRowMetadataWriter delete;
+	BasicProgress progress;
+
+	@Before
+	public void before() throws Exception{
+		sourceState = new SynapseAdminClientMockState();
+		sourceState.endpoint = "source";
+		source = SynapseAdminClientMocker.createMock(sourceState);
+		destState = new SynapseAdminClientMockState();
+		destState.endpoint = "destination";
+		dest = SynapseAdminClientMocker.createMock(destState);
+		create = new ListRowMetadataWriter();
+		update = new ListRowMetadataWriter();
+		delete = new ListRowMetadataWriter();
+		progress = new BasicProgress();
+		// Both stacks start with the same 100 rows
+		sourceState.metadata.put(type, createRows(100));
+		destState.metadata.put(type, createRows(100));
+	}
+
+	@Test
+	public void testNoDelta() throws Exception{
+		RangeDeltaBuilder builder = new RangeDeltaBuilder(type, source, dest, 10, create, update, delete, progress);
+		DeltaCounts counts = builder.call();
+		assertEquals(0, counts.getCreate());
+		assertEquals(0, counts.getUpdate());
+		assertEquals(0, counts.getDelete());
+		// Nothing should have been listed
+		assertTrue(sourceState.rangeListHistory.isEmpty());
+		assertTrue(destState.rangeListHistory.isEmpty());
+		assertEquals(100, progress.getCurrent());
+	}
+
+	@Test
+	public void testDeltas() throws Exception{
+		List<RowMetadata> sourceRows = sourceState.metadata.get(type);
+		List<RowMetadata> destRows = destState.metadata.get(type);
+		// 50 changed on the source
+		sourceRows.get(50).setEtag("changed");
+		// 75 is new on the source
+		destRows.remove(75);
+		// 120 was deleted from the source
+		RowMetadata extra = new RowMetadata();
+		extra.setId(120L);
+		extra.setEtag("e120");
+		destRows.add(extra);
+
+		RangeDeltaBuilder builder = new RangeDeltaBuilder(type, source, dest, 10, create, update, delete, progress);
+		DeltaCounts counts = builder.call();
+		assertEquals(1, counts.getCreate());
+		assertEquals(1, counts.getUpdate());
+		assertEquals(1, counts.getDelete());
+		assertEquals(new Long(75), create.getList().get(0).getId());
+		assertEquals(new Long(50), update.getList().get(0).getId());
+		assertEquals("changed", update.getList().get(0).getEtag());
+		assertEquals(new Long(120), delete.getList().get(0).getId());
+		// Only the ranges around the three changes should be listed.
+		assertEquals(3, sourceState.rangeListHistory.size());
+		assertEquals(3, destState.rangeListHistory.size());
+		assertEquals(100, progress.getCurrent());
+	}
+
+	@Test
+	public void testEmptyDestination() throws Exception{
+		destState.metadata.put(type, new LinkedList<RowMetadata>());
+		RangeDeltaBuilder builder = new RangeDeltaBuilder(type, source, dest, 7, create, update, delete, progress);
+		DeltaCounts counts = builder.call();
+		assertEquals(100, counts.getCreate());
+		assertEquals(0, counts.getUpdate());
+		assertEquals(0, counts.getDelete());
+		// The creates must be in ID order.
+		List<RowMetadata> results = create.getList();
+		for(int i=0; i<100; i++){
+			assertEquals(new Long(i), results.get(i).getId());
+		}
+	}
+
+	@Test
+	public void testSingleRowBatch() throws Exception{
+		destState.metadata.get(type).get(3).setEtag("changed");
+		RangeDeltaBuilder builder = new RangeDeltaBuilder(type, source, dest, 1, create, update, delete, progress);
+		DeltaCounts counts = builder.call();
+		assertEquals(0, counts.getCreate());
+		assertEquals(1, counts.getUpdate());
+		assertEquals(0, counts.getDelete());
+		assertEquals(new Long(3), update.getList().get(0).getId());
+	}
+
+	@Test
+	public void testMidpoint(){
+		assertEquals(5L, RangeDeltaBuilder.midpoint(0, 10));
+		assertEquals(5L, RangeDeltaBuilder.midpoint(5, 6));
+		assertEquals(-1L, RangeDeltaBuilder.midpoint(Long.MIN_VALUE, Long.MAX_VALUE));
+		assertEquals(Long.MAX_VALUE-1, RangeDeltaBuilder.midpoint(Long.MAX_VALUE-1, Long.MAX_VALUE));
+	}
+
+	/**
+	 * Helper to create rows with the IDs 0 to count-1.
+	 */
+	private static List<RowMetadata> createRows(int count){
+		List<RowMetadata> list = new LinkedList<RowMetadata>();
+		for(long i=0; i<count; i++){
+			RowMetadata row = new RowMetadata();
+			row.setId(i);
+			row.setEtag("e"+i);
+			list.add(row);
+		}
+		return list;
+	}
+}
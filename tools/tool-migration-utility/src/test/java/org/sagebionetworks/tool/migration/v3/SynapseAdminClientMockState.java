@@ -37,6 +37,8 @@ public class SynapseAdminClientMockState {
 	public Long maxChangeNumber = 100L;
 	
 	public List<Long> replayChangeNumbersHistory = new LinkedList<Long>();
+	
+	public List<Long[]> rangeListHistory = new LinkedList<Long[]>();
 
 	public BackupRestoreStatus status;
 	
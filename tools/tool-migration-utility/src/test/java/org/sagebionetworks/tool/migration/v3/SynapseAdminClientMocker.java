@@ -32,6 +32,8 @@ import org.sagebionetworks.repo.model.daemon.DaemonType;
 import org.sagebionetworks.repo.model.daemon.RestoreSubmission;
 import org.sagebionetworks.repo.model.message.FireMessagesResult;
 import org.sagebionetworks.repo.model.IdList;
+import org.sagebionetworks.repo.model.migration.BackupFormat;
+import org.sagebionetworks.repo.model.migration.MigrationRangeChecksum;
 import org.sagebionetworks.repo.model.migration.MigrationType;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCount;
 import org.sagebionetworks.repo.model.migration.MigrationTypeCounts;
@@ -213,7 +215,60 @@ public class SynapseAdminClientMocker {
 			
 		});
 		
-		when(client.startBackup(any(MigrationType.class), any(IdList.class))).thenAnswer(new Answer<BackupRestoreStatus>() {
+		when(client.getChecksumForIdRange(any(MigrationType.class), anyLong(), anyLong())).thenAnswer(new Answer<MigrationRangeChecksum>() {
+
+			@Override
+			public MigrationRangeChecksum answer(InvocationOnMock invocation)
+					throws Throwable {
+				MigrationType migrationType = (MigrationType) invocation.getArguments()[0];
+				Long minId = (Long) invocation.getArguments()[1];
+				Long maxId = (Long) invocation.getArguments()[2];
+				
+				if (migrationType == null)
+					throw new IllegalArgumentException("Type cannot be null");
+				List<RowMetadata> range = getRange(state.metadata.get(migrationType), minId, maxId, Long.MAX_VALUE);
+				MigrationRangeChecksum result = new MigrationRangeChecksum();
+				result.setType(migrationType);
+				result.setMinid(minId);
+				result.setMaxid(maxId);
+				result.setCount(new Long(range.size()));
+				if (!range.isEmpty()) {
+					result.setFirstId(range.get(0).getId());
+					result.setLastId(range.get(range.size() - 1).getId());
+					StringBuilder builder = new StringBuilder();
+					for (RowMetadata row : range) {
+						builder.append(row.getId()).append("@").append(row.getEtag()).append(",");
+					}
+					result.setChecksum(builder.toString());
+				}
+				return result;
+			}
+			
+		});
+		
+		when(client.getRowMetadataForIdRange(any(MigrationType.class), anyLong(), anyLong(), anyLong())).thenAnswer(new Answer<RowMetadataResult>() {
+
+			@Override
+			public RowMetadataResult answer(InvocationOnMock invocation)
+					throws Throwable {
+				MigrationType migrationType = (MigrationType) invocation.getArguments()[0];
+				Long minId = (Long) invocation.getArguments()[1];
+				Long maxId = (Long) invocation.getArguments()[2];
+				Long limit = (Long) invocation.getArguments()[3];
+				
+				if (migrationType == null)
+					throw new IllegalArgumentException("Type cannot be null");
+				state.rangeListHistory.add(new Long[]{minId, maxId});
+				List<RowMetadata> range = getRange(state.metadata.get(migrationType), minId, maxId, limit);
+				RowMetadataResult result = new RowMetadataResult();
+				result.setTotalCount(new Long(range.size()));
+				result.setList(range);
+				return result;
+			}
+			
+		});
+		
+		Answer<BackupRestoreStatus> backupAnswer = new Answer<BackupRestoreStatus>() {
 
 			@Override
 			public BackupRestoreStatus answer(InvocationOnMock invocation)
@@ -247,7 +302,9 @@ public class SynapseAdminClientMocker {
 				}
 			}
 			
-		});
+		};
+		when(client.startBackup(any(MigrationType.class), any(IdList.class))).thenAnswer(backupAnswer);
+		when(client.startBackup(any(MigrationType.class), any(IdList.class), any(BackupFormat.class))).thenAnswer(backupAnswer);
 		
 		when(client.startRestore(any(MigrationType.class), any(RestoreSubmission.class))).thenAnswer(new Answer<BackupRestoreStatus>() {
 
@@ -349,6 +406,26 @@ public class SynapseAdminClientMocker {
 		return client;
 	}
 
+	/**
+	 * Helper to get the rows with an ID in a range (inclusive), in ID order
+	 */
+	private static List<RowMetadata> getRange(List<RowMetadata> list, long minId, long maxId, long limit) {
+		List<RowMetadata> range = new LinkedList<RowMetadata>();
+		for (RowMetadata row : list) {
+			if (range.size() >= limit) {
+				break;
+			}
+			if (row.getId() >= minId && row.getId() <= maxId) {
+				RowMetadata copy = new RowMetadata();
+				copy.setId(row.getId());
+				copy.setEtag(row.getEtag());
+				copy.setParentId(row.getParentId());
+				range.add(copy);
+			}
+		}
+		return range;
+	}
+
 	/**
 	 * Create a clone of a JSONEntity.
 	 */